@@ -1,6 +1,7 @@
 package br.com.clinica;
 
-import br.com.clinica.service.BackupService;
+import br.com.clinica.service.AuditoriaService;
+import br.com.clinica.service.InicializacaoService;
 import javafx.application.Application;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Scene;
@@ -12,14 +13,10 @@ public class MainApp extends Application {
     @Override
     public void start(Stage stage) throws Exception {
 
-        //backup automático diário (1 por dia)
-        try {
-            BackupService.BackupResult r = BackupService.backupDiarioSeNecessario();
-            System.out.println("[Backup] " + r.mensagem + (r.arquivo != null ? " -> " + r.arquivo : ""));
-        } catch (Exception e) {
-            // Não deixa o app morrer por causa de backup
-            System.err.println("[Backup] Falha ao executar backup automático: " + e.getMessage());
-        }
+        long t0 = System.nanoTime();
+
+        // pool, backup diário, schema e preload rodam em background (não seguram a tela de login)
+        InicializacaoService.iniciar(t0);
 
         //carrega tela de login
         FXMLLoader loader = new FXMLLoader(getClass().getResource("/view/login-view.fxml"));
@@ -42,6 +39,14 @@ public class MainApp extends Application {
         stage.setResizable(true);
         stage.centerOnScreen();
         stage.show();
+
+        InicializacaoService.marcar("login visível", t0);
+    }
+
+    @Override
+    public void stop() {
+        // grava a auditoria que ainda está na fila antes de sair
+        AuditoriaService.encerrar();
     }
 
     public static void main(String[] args) {
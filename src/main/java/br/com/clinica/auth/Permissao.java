@@ -19,6 +19,9 @@ public enum Permissao {
     // Auditoria (somente admin)
     AUDITORIA_VER("VER AUDITORIA"),
 
+    // Diagnóstico do banco/pool (somente admin)
+    DIAGNOSTICO_VER("VER DIAGNÓSTICO DO BANCO"),
+
     // Agenda
     AGENDA_VER("VER AGENDA"),
     AGENDA_GERENCIAR("GERENCIAR AGENDA"),
@@ -27,6 +30,8 @@ public enum Permissao {
     FINANCEIRO_VER("VER FINANCEIRO"),
     NOTA_GERAR("GERAR NOTA"),
     RELATORIOS_VER("VER RELATÓRIOS"),
+    CAIXA_FECHAR("FECHAR CAIXA"),
+    CAIXA_REABRIR("REABRIR CAIXA"), // somente admin
 
     // Prontuário
     PRONTUARIO_VER("VER PRONTUÁRIOS"),
@@ -14,8 +14,9 @@ public final class Policy {
     public static boolean temPermissao(Integer perfilId, String nomePerfil, Permissao permissao) {
         if (permissao == null) return false;
 
-        // Auditoria: SOMENTE ADMIN
-        if (permissao == Permissao.AUDITORIA_VER) {
+        // Auditoria, diagnóstico e reabertura de caixa: SOMENTE ADMIN
+        if (permissao == Permissao.AUDITORIA_VER || permissao == Permissao.DIAGNOSTICO_VER
+                || permissao == Permissao.CAIXA_REABRIR) {
             return nomePerfil != null && nomePerfil.trim().equalsIgnoreCase(Perfis.ADMIN);
         }
 
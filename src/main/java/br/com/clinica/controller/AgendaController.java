@@ -2,14 +2,20 @@ package br.com.clinica.controller;
 
 import br.com.clinica.auth.Perfis;
 import br.com.clinica.dao.AgendamentoDAO;
-import br.com.clinica.dao.PacienteDAO;
 import br.com.clinica.dao.ProcedimentoFrequenteDAO;
 import br.com.clinica.dao.UsuarioDAO;
 import br.com.clinica.model.Agendamento;
 import br.com.clinica.model.Paciente;
+import br.com.clinica.model.Recorrencia;
 import br.com.clinica.model.Usuario;
 import br.com.clinica.model.enums.SalaAtendimento;
 import br.com.clinica.model.enums.StatusAgendamento;
+import br.com.clinica.model.enums.TipoRecorrencia;
+import br.com.clinica.service.AgendaFeed;
+import br.com.clinica.service.CacheAgenda;
+import br.com.clinica.service.DiretorioPacientes;
+import br.com.clinica.service.HorariosLivresService;
+import br.com.clinica.service.IndiceAgenda;
 import br.com.clinica.session.Session;
 import javafx.application.Platform;
 import javafx.collections.FXCollections;
@@ -27,8 +33,10 @@ import javafx.util.StringConverter;
 import java.time.LocalDate;
 import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Set;
 
 import javafx.animation.PauseTransition;
 import javafx.concurrent.Task;
@@ -40,15 +48,14 @@ public class AgendaController {
     private static final DateTimeFormatter HORA_FORMATTER = DateTimeFormatter.ofPattern("HH:mm", LOCALE_PT_BR);
     private static final DateTimeFormatter DATA_BR = DateTimeFormatter.ofPattern("dd/MM/yyyy", LOCALE_PT_BR);
 
-    // Regras fixas
-    private static final LocalTime HORA_ABERTURA = LocalTime.of(7, 0);
-    private static final LocalTime HORA_FECHAMENTO = LocalTime.of(19, 0);
-    private static final LocalTime ALMOCO_INICIO = LocalTime.of(12, 0);
-    private static final LocalTime ALMOCO_FIM = LocalTime.of(13, 0);
+    private static final DateTimeFormatter DIA_SEMANA_BR = DateTimeFormatter.ofPattern("EEE dd/MM", LOCALE_PT_BR);
+
+    private static final int DURACAO_PADRAO_MIN = 60;
+    private static final int HORARIOS_SUGERIDOS = 10;
+    private static final int DIAS_BUSCA_HORARIOS = 30;
 
     private final AgendamentoDAO agendamentoDAO = new AgendamentoDAO();
     private final UsuarioDAO usuarioDAO = new UsuarioDAO();
-    private final PacienteDAO pacienteDAO = new PacienteDAO();
     private final ProcedimentoFrequenteDAO procedimentoDAO = new ProcedimentoFrequenteDAO();
 
     @FXML private DatePicker dpData;
@@ -61,10 +68,22 @@ public class AgendaController {
     @FXML private TextField txtProcedimento;
     @FXML private TextArea txtObservacoes;
 
+    @FXML private TextField txtDuracao;
+
+    @FXML private ComboBox<TipoRecorrencia> cbRepetir;
+    @FXML private TextField txtIntervalo;
+    @FXML private TextField txtSessoes;
+    @FXML private DatePicker dpRepetirAte;
+    @FXML private Button btnProximosHorarios;
+
     @FXML private Label lblMensagem;
     @FXML private Button btnFinalizarConsulta;
 
+    @FXML private ComboBox<Visao> cbVisao;
+    @FXML private Label lblPeriodo;
+
     @FXML private TableView<Agendamento> tbAgenda;
+    @FXML private TableColumn<Agendamento, String> colData;
     @FXML private TableColumn<Agendamento, String> colHora;
     @FXML private TableColumn<Agendamento, String> colProfissional;
     @FXML private TableColumn<Agendamento, String> colSala;
@@ -72,11 +91,23 @@ public class AgendaController {
     @FXML private TableColumn<Agendamento, String> colStatus;
 
     private final ContextMenu menuSugestoes = new ContextMenu();
+    private final ContextMenu menuHorarios = new ContextMenu();
     private final PauseTransition debounceProc = new PauseTransition(Duration.millis(250));
     private long procReqSeq = 0;
 
+    private final PauseTransition debounceConflito = new PauseTransition(Duration.millis(200));
+    private long conflitoReqSeq = 0;
+    private boolean avisoConflitoVisivel = false;
+
     private LocalDate ultimaDataValida = null;
 
+    // janela exibida na tabela (para aplicar as alterações do feed sem recarregar)
+    private LocalDate janelaInicio = null;
+    private LocalDate janelaFim = null;
+    private Integer janelaProfissionalId = null;
+    private Runnable cancelarFeed = null;
+    private boolean preenchendoFormulario = false;
+
     @FXML
     public void initialize() {
         dpData.setValue(null);
@@ -87,7 +118,7 @@ public class AgendaController {
         cbProfissional.setItems(FXCollections.observableArrayList(usuarioDAO.listarProfissionaisAtivos()));
         configurarPesquisaProfissional();
 
-        cbPaciente.setItems(FXCollections.observableArrayList(pacienteDAO.listarTodos()));
+        cbPaciente.setItems(FXCollections.observableArrayList(DiretorioPacientes.todos(true)));
         configurarPesquisaPaciente(); // ✅ pesquisa no paciente
 
         cbSala.setItems(FXCollections.observableArrayList(SalaAtendimento.values()));
@@ -96,6 +127,21 @@ public class AgendaController {
         txtHoraFim.setTextFormatter(criarTextFormatterHora());
 
         configurarSugestoesProcedimento();
+        configurarAvisoConflito();
+        configurarRecorrencia();
+
+        cbVisao.setItems(FXCollections.observableArrayList(Visao.values()));
+        cbVisao.setValue(Visao.DIA);
+        cbVisao.valueProperty().addListener((obs, old, v) -> {
+            if (dpData.getValue() != null) carregarAgendaDoDia();
+        });
+
+        colData.setCellValueFactory(c ->
+                new javafx.beans.property.SimpleStringProperty(
+                        c.getValue().getData() != null ? c.getValue().getData().format(DIA_SEMANA_BR) : ""
+                )
+        );
+        colData.setVisible(false);
 
         colHora.setCellValueFactory(c ->
                 new javafx.beans.property.SimpleStringProperty(
@@ -126,6 +172,7 @@ public class AgendaController {
         });
 
         aplicarRegraDeVisaoPorPerfil();
+        assinarFeed();
 
         tbAgenda.getItems().clear();
         setMsg("Selecione uma data para visualizar a agenda.");
@@ -376,9 +423,16 @@ public class AgendaController {
             Paciente sel = cbPaciente.getSelectionModel().getSelectedItem();
             if (sel != null && conv.toString(sel).equals(texto)) return;
 
-            String t = texto == null ? "" : texto.trim().toLowerCase();
+            String t = texto == null ? "" : texto.trim();
 
-            filtrados.setPredicate(p -> t.isBlank() || safe(p.getNome()).toLowerCase().contains(t));
+            if (t.isBlank()) {
+                filtrados.setPredicate(p -> true);
+            } else {
+                // índice do diretório (sem acento, também por CPF/telefone) em vez de varrer nome a nome
+                Set<Long> ids = new HashSet<>();
+                for (Paciente p : DiretorioPacientes.buscar(t, true, Integer.MAX_VALUE)) ids.add(p.getId());
+                filtrados.setPredicate(p -> ids.contains(p.getId()));
+            }
 
             if (!cbPaciente.isShowing()) cbPaciente.show();
         });
@@ -518,6 +572,97 @@ public class AgendaController {
         });
     }
 
+    // =========================
+    // Conflito: aviso enquanto preenche (índice em memória do dia)
+    // =========================
+    private void configurarAvisoConflito() {
+        debounceConflito.setOnFinished(ev -> {
+            Agendamento probe = agendamentoDoFormulario();
+            if (probe == null) {
+                conflitoReqSeq++;
+                limparAvisoConflito();
+                return;
+            }
+
+            final long seq = ++conflitoReqSeq;
+
+            Task<List<IndiceAgenda.Conflito>> task = new Task<>() {
+                @Override
+                protected List<IndiceAgenda.Conflito> call() {
+                    return IndiceAgenda.conflitos(probe); // só vai ao banco na 1ª vez do dia
+                }
+            };
+
+            task.setOnSucceeded(e -> {
+                if (seq != conflitoReqSeq) return; // resposta velha
+                List<IndiceAgenda.Conflito> conflitos = task.getValue();
+                if (conflitos == null || conflitos.isEmpty()) {
+                    limparAvisoConflito();
+                } else {
+                    setMsg(textoConflito(conflitos.get(0)));
+                    avisoConflitoVisivel = true;
+                }
+            });
+
+            task.setOnFailed(e -> task.getException().printStackTrace()); // o salvar ainda valida no banco
+
+            Thread t = new Thread(task, "agenda-conflito");
+            t.setDaemon(true);
+            t.start();
+        });
+
+        dpData.valueProperty().addListener((obs, old, v) -> debounceConflito.playFromStart());
+        txtHoraInicio.textProperty().addListener((obs, old, v) -> debounceConflito.playFromStart());
+        txtHoraFim.textProperty().addListener((obs, old, v) -> debounceConflito.playFromStart());
+        cbProfissional.valueProperty().addListener((obs, old, v) -> debounceConflito.playFromStart());
+        cbSala.valueProperty().addListener((obs, old, v) -> debounceConflito.playFromStart());
+        cbPaciente.valueProperty().addListener((obs, old, v) -> debounceConflito.playFromStart());
+    }
+
+    /** Só o que o índice precisa (data, horário, profissional, sala, paciente); null se ainda incompleto. */
+    private Agendamento agendamentoDoFormulario() {
+        LocalDate data = dpData.getValue();
+        LocalTime ini = parseHora(txtHoraInicio.getText());
+        LocalTime fim = parseHora(txtHoraFim.getText());
+        if (data == null || ini == null || fim == null || !fim.isAfter(ini)) return null;
+
+        Usuario profissional = cbProfissional.getValue();
+        SalaAtendimento sala = cbSala.getValue();
+        Paciente paciente = cbPaciente.getValue();
+        if (profissional == null && sala == null && paciente == null) return null;
+
+        Agendamento ag = new Agendamento();
+        ag.setData(data);
+        ag.setHoraInicio(ini);
+        ag.setHoraFim(fim);
+        if (profissional != null && profissional.getId() != null) ag.setProfissionalId(Math.toIntExact(profissional.getId()));
+        ag.setSala(sala);
+        if (paciente != null && paciente.getId() != null) ag.setPacienteId(Math.toIntExact(paciente.getId()));
+
+        // linha selecionada na tabela não conflita com ela mesma
+        Agendamento sel = tbAgenda.getSelectionModel().getSelectedItem();
+        if (sel != null) ag.setId(sel.getId());
+        return ag;
+    }
+
+    private void limparAvisoConflito() {
+        if (avisoConflitoVisivel) setMsg("");
+        avisoConflitoVisivel = false;
+    }
+
+    private String textoConflito(IndiceAgenda.Conflito c) {
+        Agendamento a = c.existente();
+        String horario = a.getHoraInicio().format(HORA_FORMATTER) + "-" + a.getHoraFim().format(HORA_FORMATTER);
+        return switch (c.recurso()) {
+            case PROFISSIONAL -> "⚠ Conflito: " + safe(a.getProfissionalNome()) + " já tem agendamento das " + horario
+                    + (a.getPacienteNome() != null ? " (" + a.getPacienteNome() + ")." : ".");
+            case SALA -> "⚠ Conflito: " + a.getSala().getDescricao() + " ocupada das " + horario
+                    + " (" + safe(a.getProfissionalNome()) + ").";
+            case PACIENTE -> "⚠ Conflito: " + safe(a.getPacienteNome()) + " já está agendado(a) das " + horario
+                    + " com " + safe(a.getProfissionalNome()) + ".";
+        };
+    }
+
     // =========================
     // Hora: máscara HH:mm sem prender ':'
     // =========================
@@ -662,12 +807,21 @@ public class AgendaController {
             ag.setObservacoes(txtObservacoes.getText() != null ? txtObservacoes.getText().trim() : "");
             ag.setStatus(StatusAgendamento.AGENDADO);
 
-            if (agendamentoDAO.existeConflito(ag)) {
-                setMsg("Conflito de agenda: já existe agendamento nesse horário (profissional/sala/paciente).");
+            Recorrencia recorrencia = recorrenciaInformada();
+            if (recorrencia != null) {
+                salvarSerie(ag, recorrencia, procedimento, sala);
+                return;
+            }
+
+            // verificação + insert num comando só (outra estação pode ter marcado o horário agora)
+            if (!agendamentoDAO.salvar(ag)) {
+                List<IndiceAgenda.Conflito> conflitos = IndiceAgenda.conflitos(ag);
+                setMsg(conflitos.isEmpty()
+                        ? "Conflito de agenda: já existe agendamento nesse horário (profissional/sala/paciente)."
+                        : textoConflito(conflitos.get(0)));
                 return;
             }
 
-            agendamentoDAO.salvar(ag);
             procedimentoDAO.registrarUso(procedimento, sala);
 
             setMsg("Agendamento salvo com sucesso.");
@@ -680,6 +834,203 @@ public class AgendaController {
         }
     }
 
+    /** Próximos horários livres (a partir da data escolhida ou de hoje), numa consulta só ao banco. */
+    @FXML
+    private void onProximosHorarios() {
+        LocalDate de = dpData.getValue() != null ? dpData.getValue() : LocalDate.now();
+        int duracao = duracaoInformada();
+
+        Usuario profissional = obterProfissionalSelecionado();
+        Paciente paciente = obterPacienteSelecionado();
+        SalaAtendimento sala = cbSala.getValue();
+
+        Integer profissionalId = profissional != null ? Math.toIntExact(profissional.getId()) : null;
+        Integer pacienteId = paciente != null ? Math.toIntExact(paciente.getId()) : null;
+
+        btnProximosHorarios.setDisable(true);
+        setMsg("Buscando horários livres...");
+
+        Task<List<HorariosLivresService.HorarioLivre>> task = new Task<>() {
+            @Override
+            protected List<HorariosLivresService.HorarioLivre> call() {
+                return HorariosLivresService.proximos(de, de.plusDays(DIAS_BUSCA_HORARIOS), duracao,
+                        profissionalId, sala, pacienteId, HORARIOS_SUGERIDOS);
+            }
+        };
+
+        task.setOnSucceeded(e -> {
+            btnProximosHorarios.setDisable(false);
+            List<HorariosLivresService.HorarioLivre> livres = task.getValue();
+
+            menuHorarios.getItems().clear();
+            if (livres == null || livres.isEmpty()) {
+                menuHorarios.hide();
+                setMsg("Nenhum horário livre de " + duracao + " min nos próximos " + DIAS_BUSCA_HORARIOS + " dias.");
+                return;
+            }
+
+            for (HorariosLivresService.HorarioLivre h : livres) {
+                MenuItem item = new MenuItem(h.data().format(DIA_SEMANA_BR) + "  " +
+                        h.inicio().format(HORA_FORMATTER) + " - " + h.fim().format(HORA_FORMATTER) +
+                        "  · " + h.sala().getDescricao());
+                item.setOnAction(ev -> usarHorario(h));
+                menuHorarios.getItems().add(item);
+            }
+            setMsg(livres.size() + " horário(s) livre(s) de " + duracao + " min.");
+            menuHorarios.show(btnProximosHorarios, Side.BOTTOM, 0, 0);
+        });
+
+        task.setOnFailed(e -> {
+            btnProximosHorarios.setDisable(false);
+            task.getException().printStackTrace();
+            setMsg("Erro ao buscar horários: " + task.getException().getMessage());
+        });
+
+        Thread t = new Thread(task, "agenda-horarios-livres");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    /** Duração digitada; se vazia, usa hora fim - hora início; senão o padrão. */
+    private int duracaoInformada() {
+        String txt = txtDuracao != null && txtDuracao.getText() != null ? txtDuracao.getText().trim() : "";
+        if (!txt.isEmpty()) {
+            try {
+                int v = Integer.parseInt(txt);
+                if (v > 0) return v;
+            } catch (NumberFormatException ignored) { }
+        }
+
+        LocalTime ini = parseHora(txtHoraInicio.getText());
+        LocalTime fim = parseHora(txtHoraFim.getText());
+        if (ini != null && fim != null && fim.isAfter(ini)) {
+            return (int) java.time.Duration.between(ini, fim).toMinutes();
+        }
+        return DURACAO_PADRAO_MIN;
+    }
+
+    private void usarHorario(HorariosLivresService.HorarioLivre h) {
+        dpData.setValue(h.data());
+        dpData.getEditor().setText(dpData.getConverter().toString(h.data()));
+        txtHoraInicio.setText(h.inicio().format(HORA_FORMATTER));
+        txtHoraFim.setText(h.fim().format(HORA_FORMATTER));
+        cbSala.setValue(h.sala());
+        carregarAgendaDoDia();
+    }
+
+    // =========================
+    // Recorrência (plano de sessões)
+    // =========================
+    private void configurarRecorrencia() {
+        // null = não repete
+        cbRepetir.getItems().setAll(java.util.Arrays.asList(null, TipoRecorrencia.SEMANAL, TipoRecorrencia.A_CADA_N_DIAS));
+        cbRepetir.setCellFactory(lv -> new ListCell<>() {
+            @Override protected void updateItem(TipoRecorrencia item, boolean empty) {
+                super.updateItem(item, empty);
+                setText(empty ? "" : textoRecorrencia(item));
+            }
+        });
+        cbRepetir.setButtonCell(new ListCell<>() {
+            @Override protected void updateItem(TipoRecorrencia item, boolean empty) {
+                super.updateItem(item, empty);
+                setText(textoRecorrencia(empty ? null : item));
+            }
+        });
+        cbRepetir.setValue(null);
+
+        cbRepetir.valueProperty().addListener((obs, old, tipo) -> atualizarCamposRecorrencia());
+        atualizarCamposRecorrencia();
+    }
+
+    private String textoRecorrencia(TipoRecorrencia t) {
+        return t == null ? "Não repetir" : t.getDescricao();
+    }
+
+    private void atualizarCamposRecorrencia() {
+        TipoRecorrencia tipo = cbRepetir.getValue();
+        boolean repete = tipo != null;
+        txtIntervalo.setDisable(!repete);
+        txtSessoes.setDisable(!repete);
+        dpRepetirAte.setDisable(!repete);
+        txtIntervalo.setPromptText(tipo == TipoRecorrencia.A_CADA_N_DIAS ? "dias" : "semanas");
+    }
+
+    /** Regra preenchida na tela, ou null se não repete. Lança IllegalArgumentException se incompleta. */
+    private Recorrencia recorrenciaInformada() {
+        TipoRecorrencia tipo = cbRepetir.getValue();
+        if (tipo == null) return null;
+
+        int intervalo = inteiro(txtIntervalo.getText(), 1);
+        Integer sessoes = txtSessoes.getText() == null || txtSessoes.getText().isBlank()
+                ? null : inteiro(txtSessoes.getText(), 0);
+        LocalDate ate = dpRepetirAte.getValue();
+
+        if (intervalo <= 0) throw new IllegalArgumentException("Intervalo da repetição deve ser maior que zero.");
+        if (sessoes != null && sessoes <= 0) throw new IllegalArgumentException("Quantidade de sessões inválida.");
+        if (sessoes == null && ate == null) throw new IllegalArgumentException("Informe a quantidade de sessões ou a data final.");
+        if (ate != null && dpData.getValue() != null && ate.isBefore(dpData.getValue())) {
+            throw new IllegalArgumentException("A data final da repetição é anterior à data do agendamento.");
+        }
+
+        return new Recorrencia(tipo, intervalo, sessoes, ate);
+    }
+
+    private int inteiro(String s, int padrao) {
+        if (s == null || s.isBlank()) return padrao;
+        try {
+            return Integer.parseInt(s.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /** Valida a série inteira numa consulta e grava tudo num batch (ou nada). */
+    private void salvarSerie(Agendamento modelo, Recorrencia recorrencia, String procedimento, SalaAtendimento sala) {
+        boolean cortada = recorrencia.ultrapassaLimite(modelo.getData());
+        if (cortada) {
+            Alert confirm = new Alert(Alert.AlertType.CONFIRMATION);
+            confirm.setTitle("Repetição");
+            confirm.setHeaderText("Série limitada a " + Recorrencia.MAX_OCORRENCIAS + " sessões");
+            confirm.setContentText("A repetição informada passa de " + Recorrencia.MAX_OCORRENCIAS +
+                    " sessões. Só as primeiras " + Recorrencia.MAX_OCORRENCIAS + " serão agendadas. Continuar?");
+            if (confirm.showAndWait().orElse(ButtonType.CANCEL) != ButtonType.OK) {
+                setMsg("Série não salva.");
+                return;
+            }
+        }
+
+        modelo.setRecorrencia(recorrencia);
+        AgendamentoDAO.ResultadoSerie r = agendamentoDAO.salvarSerie(modelo);
+
+        if (!r.ok()) {
+            StringBuilder sb = new StringBuilder("Conflito em ").append(r.conflitos().size()).append(" data(s), nada foi salvo: ");
+            int mostrar = Math.min(3, r.conflitos().size());
+            for (int i = 0; i < mostrar; i++) {
+                Agendamento a = r.conflitos().get(i);
+                if (i > 0) sb.append("; ");
+                sb.append(a.getData().format(DATA_BR)).append(' ')
+                        .append(a.getHoraInicio().format(HORA_FORMATTER)).append('-')
+                        .append(a.getHoraFim().format(HORA_FORMATTER))
+                        .append(" (").append(safe(a.getProfissionalNome())).append(')');
+            }
+            if (r.conflitos().size() > mostrar) sb.append("...");
+            setMsg(sb.toString());
+            return;
+        }
+
+        List<Agendamento> gravados = r.gravados();
+        if (gravados.isEmpty()) {
+            setMsg("Nenhuma sessão foi agendada.");
+            return;
+        }
+
+        procedimentoDAO.registrarUso(procedimento, sala);
+        setMsg(gravados.size() + " sessões agendadas (até " + gravados.get(gravados.size() - 1).getData().format(DATA_BR) + ")" +
+                (cortada ? ", limite de " + Recorrencia.MAX_OCORRENCIAS + " sessões." : "."));
+        limparFormulario();
+        carregarAgendaDoDia();
+    }
+
     @FXML
     private void onIniciarAtendimento() {
         Agendamento sel = tbAgenda.getSelectionModel().getSelectedItem();
@@ -734,6 +1085,7 @@ public class AgendaController {
 
     @FXML
     private void onDataAlterada() {
+        if (preenchendoFormulario) return; // clique numa linha de outro dia da semana/mês
         LocalDate data = dpData.getValue();
         if (data == null) return;
 
@@ -752,6 +1104,9 @@ public class AgendaController {
         LocalDate data = dpData.getValue();
         if (data == null) {
             tbAgenda.getItems().clear();
+            janelaInicio = null;
+            janelaFim = null;
+            if (lblPeriodo != null) lblPeriodo.setText("");
             setMsg("Selecione uma data para visualizar a agenda.");
             return;
         }
@@ -762,30 +1117,166 @@ public class AgendaController {
             return;
         }
 
-        List<Agendamento> lista;
+        Integer profissionalId = null;
 
         if (podeVerTodos()) {
             Usuario escolhido = cbProfissional.getValue();
-            if (escolhido != null) {
-                lista = agendamentoDAO.listarPorDataEProfissional(data, Math.toIntExact(escolhido.getId()));
-            } else {
-                lista = agendamentoDAO.listarPorData(data);
-            }
+            if (escolhido != null) profissionalId = Math.toIntExact(escolhido.getId());
         } else {
             Usuario logado = Session.getUsuario();
-            if (logado != null) {
-                lista = agendamentoDAO.listarPorDataEProfissional(data, Math.toIntExact(logado.getId()));
-            } else {
-                lista = agendamentoDAO.listarPorData(data);
-            }
+            if (logado != null) profissionalId = Math.toIntExact(logado.getId());
+        }
+
+        // dia, semana ou mês: uma consulta de período (ou nenhuma, se já está no cache)
+        Visao visao = visaoAtual();
+        LocalDate inicio = visao.inicio(data);
+        LocalDate fim = visao.fim(data);
+
+        List<Agendamento> lista = CacheAgenda.periodo(inicio, fim, profissionalId);
+        janelaInicio = inicio;
+        janelaFim = fim;
+        janelaProfissionalId = profissionalId;
+
+        if (colData != null) colData.setVisible(visao != Visao.DIA);
+        if (lblPeriodo != null) {
+            lblPeriodo.setText(visao == Visao.DIA
+                    ? data.format(DATA_BR)
+                    : inicio.format(DATA_BR) + " a " + fim.format(DATA_BR));
         }
 
         tbAgenda.setItems(FXCollections.observableArrayList(lista));
         setMsg("Agenda carregada.");
     }
 
+    // =========================
+    // Feed: alterações de outras estações entram na tabela sem recarregar
+    // =========================
+    private void assinarFeed() {
+        cancelarFeed = AgendaFeed.assinar(lote -> Platform.runLater(() -> aplicarAlteracoes(lote)));
+
+        // para de receber quando a tela sai do conteúdo principal
+        tbAgenda.sceneProperty().addListener((obs, old, scene) -> {
+            if (scene == null && cancelarFeed != null) {
+                cancelarFeed.run();
+                cancelarFeed = null;
+            }
+        });
+    }
+
+    private void aplicarAlteracoes(List<AgendamentoDAO.Alteracao> lote) {
+        if (janelaInicio == null) return;
+
+        // só mexe nas linhas alteradas: seleção e rolagem das outras ficam como estão
+        var itens = tbAgenda.getItems();
+
+        for (AgendamentoDAO.Alteracao alt : lote) {
+            itens.removeIf(a -> a.getId() != null && a.getId() == alt.agendamentoId());
+
+            Agendamento atual = alt.atual();
+            if (atual == null || !visivelNaJanela(atual)) continue;
+
+            int pos = 0;
+            while (pos < itens.size() && !depois(itens.get(pos), atual)) pos++;
+            itens.add(pos, atual);
+        }
+    }
+
+    /** Mesma regra da carga: dentro da janela, do profissional filtrado e não concluído. */
+    private boolean visivelNaJanela(Agendamento a) {
+        if (a.getData() == null || a.getData().isBefore(janelaInicio) || a.getData().isAfter(janelaFim)) return false;
+        if (a.getStatus() == StatusAgendamento.CONCLUIDO) return false;
+        return janelaProfissionalId == null || janelaProfissionalId.equals(a.getProfissionalId());
+    }
+
+    /** a vem depois de b na ordem da tabela (data, hora início)? */
+    private boolean depois(Agendamento a, Agendamento b) {
+        int c = a.getData().compareTo(b.getData());
+        if (c != 0) return c > 0;
+        return a.getHoraInicio().isAfter(b.getHoraInicio());
+    }
+
+    // =========================
+    // Visão: dia / semana / mês
+    // =========================
+    private enum Visao {
+        DIA("Dia"), SEMANA("Semana"), MES("Mês");
+
+        private final String descricao;
+
+        Visao(String descricao) {
+            this.descricao = descricao;
+        }
+
+        LocalDate inicio(LocalDate d) {
+            return switch (this) {
+                case DIA -> d;
+                case SEMANA -> d.with(java.time.DayOfWeek.MONDAY);
+                case MES -> d.withDayOfMonth(1);
+            };
+        }
+
+        LocalDate fim(LocalDate d) {
+            return switch (this) {
+                case DIA -> d;
+                case SEMANA -> d.with(java.time.DayOfWeek.SUNDAY);
+                case MES -> d.withDayOfMonth(d.lengthOfMonth());
+            };
+        }
+
+        LocalDate mover(LocalDate d, int passos) {
+            return switch (this) {
+                case DIA -> d.plusDays(passos);
+                case SEMANA -> d.plusWeeks(passos);
+                case MES -> d.plusMonths(passos);
+            };
+        }
+
+        @Override
+        public String toString() {
+            return descricao;
+        }
+    }
+
+    private Visao visaoAtual() {
+        return cbVisao != null && cbVisao.getValue() != null ? cbVisao.getValue() : Visao.DIA;
+    }
+
+    @FXML
+    private void onAnterior() {
+        navegar(-1);
+    }
+
+    @FXML
+    private void onProximo() {
+        navegar(1);
+    }
+
+    @FXML
+    private void onHoje() {
+        irPara(LocalDate.now());
+    }
+
+    private void navegar(int passos) {
+        LocalDate base = dpData.getValue() != null ? dpData.getValue() : LocalDate.now();
+        LocalDate alvo = visaoAtual().mover(base, passos);
+        // a data selecionada nunca fica no passado (semana/mês atual ainda mostram os dias anteriores)
+        if (alvo.isBefore(LocalDate.now())) alvo = LocalDate.now();
+        irPara(alvo);
+    }
+
+    private void irPara(LocalDate data) {
+        dpData.setValue(data);
+        dpData.getEditor().setText(dpData.getConverter().toString(data));
+        carregarAgendaDoDia();
+    }
+
     private void preencherFormulario(Agendamento ag) {
-        dpData.setValue(ag.getData());
+        preenchendoFormulario = true;
+        try {
+            dpData.setValue(ag.getData());
+        } finally {
+            preenchendoFormulario = false;
+        }
         txtHoraInicio.setText(ag.getHoraInicio() != null ? ag.getHoraInicio().format(HORA_FORMATTER) : "");
         txtHoraFim.setText(ag.getHoraFim() != null ? ag.getHoraFim().format(HORA_FORMATTER) : "");
         txtProcedimento.setText(ag.getProcedimento() != null ? ag.getProcedimento() : "");
@@ -820,9 +1311,7 @@ public class AgendaController {
     }
 
     private boolean horarioPermitido(LocalTime ini, LocalTime fim) {
-        if (ini.isBefore(HORA_ABERTURA) || fim.isAfter(HORA_FECHAMENTO)) return false;
-        boolean sobrepoeAlmoco = !(fim.isBefore(ALMOCO_INICIO) || ini.isAfter(ALMOCO_FIM));
-        return !sobrepoeAlmoco;
+        return HorariosLivresService.horarioPermitido(ini, fim);
     }
 
     private void limparFormulario() {
@@ -832,9 +1321,14 @@ public class AgendaController {
         txtObservacoes.clear();
         cbPaciente.getSelectionModel().clearSelection();
         cbSala.getSelectionModel().clearSelection();
+        if (cbRepetir != null) cbRepetir.setValue(null);
+        if (txtIntervalo != null) txtIntervalo.clear();
+        if (txtSessoes != null) txtSessoes.clear();
+        if (dpRepetirAte != null) dpRepetirAte.setValue(null);
     }
 
     private void setMsg(String s) {
+        avisoConflitoVisivel = false;
         if (lblMensagem != null) lblMensagem.setText(s == null ? "" : s);
     }
 
@@ -924,24 +1418,13 @@ public class AgendaController {
             }
         }
 
-        // fallback: lista completa do DAO
+        // fallback: diretório em memória (nome exato, depois "contém")
         try {
-            List<Paciente> todos = pacienteDAO.listarTodos();
-            for (Paciente p : todos) {
-                if (p == null) continue;
-                if (safe(p.getNome()).equalsIgnoreCase(alvo)) return p;
-            }
-        } catch (Exception ignored) { }
+            Paciente exato = DiretorioPacientes.porNomeExato(alvo);
+            if (exato != null) return exato;
 
-        // fallback final: contém
-        try {
-            String alvoLc = alvo.toLowerCase(LOCALE_PT_BR);
-            List<Paciente> todos = pacienteDAO.listarTodos();
-            for (Paciente p : todos) {
-                if (p == null) continue;
-                String nome = safe(p.getNome()).toLowerCase(LOCALE_PT_BR);
-                if (!nome.isBlank() && nome.contains(alvoLc)) return p;
-            }
+            List<Paciente> parecidos = DiretorioPacientes.buscar(alvo, true, 1);
+            if (!parecidos.isEmpty()) return parecidos.get(0);
         } catch (Exception ignored) { }
 
         return null;
@@ -3,6 +3,7 @@ package br.com.clinica.controller;
 import br.com.clinica.dao.AnamneseDAO;
 import br.com.clinica.dao.AnexoPacienteDAO;
 import br.com.clinica.dao.PacienteDAO;
+import br.com.clinica.database.Transacao;
 import br.com.clinica.model.Agendamento;
 import br.com.clinica.model.Anamnese;
 import br.com.clinica.model.Paciente;
@@ -316,16 +317,19 @@ public class AnamneseController {
 
             if (editando) {
                 a.setId(selecionada.getId());
-                anamneseDAO.atualizar(a);
 
-                anexoDAO.criarOuAtualizarArquivoEvolucao(paciente.getId(), a.getId(), gerarTextoEvolucaoParaArquivo(a));
+                // anamnese + anexo da evolução no mesmo commit
+                Transacao.executar(() -> {
+                    anamneseDAO.atualizar(a);
+                    anexoDAO.criarOuAtualizarArquivoEvolucao(paciente.getId(), a.getId(), gerarTextoEvolucaoParaArquivo(a));
+                });
                 carregarInicialEvolucoes();
                 setInfo("Evolução atualizada.");
             } else {
-                int id = anamneseDAO.inserir(a);
-                a.setId(id);
-
-                anexoDAO.criarOuAtualizarArquivoEvolucao(paciente.getId(), a.getId(), gerarTextoEvolucaoParaArquivo(a));
+                Transacao.executar(() -> {
+                    a.setId(anamneseDAO.inserir(a));
+                    anexoDAO.criarOuAtualizarArquivoEvolucao(paciente.getId(), a.getId(), gerarTextoEvolucaoParaArquivo(a));
+                });
                 carregarInicialEvolucoes();
                 limparFormulario();
                 setInfo("Evolução salva com sucesso.");
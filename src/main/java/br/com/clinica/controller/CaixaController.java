@@ -1,18 +1,21 @@
 package br.com.clinica.controller;
 
 import br.com.clinica.dao.NotaDAO;
-import br.com.clinica.dao.PacienteDAO;
 import br.com.clinica.dao.ProdutoDAO;
 import br.com.clinica.dao.UsuarioDAO;
 import br.com.clinica.model.*;
 import br.com.clinica.model.enums.TipoItemNota;
+import br.com.clinica.service.DiretorioPacientes;
 import br.com.clinica.service.NotaPdfService;
+import br.com.clinica.util.AppLogger;
 import javafx.application.Platform;
 import javafx.beans.property.SimpleDoubleProperty;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.collections.FXCollections;
+import javafx.collections.ListChangeListener;
 import javafx.collections.ObservableList;
 import javafx.collections.transformation.FilteredList;
+import javafx.concurrent.Task;
 import javafx.fxml.FXML;
 import javafx.scene.control.*;
 import javafx.scene.input.KeyCode;
@@ -21,12 +24,18 @@ import javafx.stage.Stage;
 import javafx.util.StringConverter;
 
 import java.io.File;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.sql.SQLException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientConnectionException;
 import java.text.DecimalFormat;
 import java.text.DecimalFormatSymbols;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
+import java.util.UUID;
 import java.util.function.Function;
 
 public class CaixaController {
@@ -65,7 +74,6 @@ public class CaixaController {
     @FXML private Button btnFechar;
 
     // DAOs
-    private final PacienteDAO pacienteDAO = new PacienteDAO();
     private final UsuarioDAO usuarioDAO = new UsuarioDAO();
     private final ProdutoDAO produtoDAO = new ProdutoDAO();
     private final NotaDAO notaDAO = new NotaDAO();
@@ -81,6 +89,13 @@ public class CaixaController {
     // Lista de itens da nota
     private final ObservableList<NotaItem> itensNota = FXCollections.observableArrayList();
 
+    // Reenvio automático quando a rede falha (seguro: a chave da nota evita gravar duas vezes)
+    private static final int TENTATIVAS_FINALIZAR = 3;
+    private static final long ESPERA_REENVIO_MS = 1_000;
+
+    // Chave da nota em andamento: a mesma em todos os "Finalizar" até a nota mudar ou ser gravada
+    private String chaveNotaPendente;
+
     @FXML
     public void initialize() {
         configurarToggleGroup();
@@ -93,6 +108,12 @@ public class CaixaController {
         // Autocomplete/pesquisa
         configurarPesquisaCombos();
 
+        // mudou a nota = outra nota: o próximo "Finalizar" ganha chave nova
+        itensNota.addListener((ListChangeListener<NotaItem>) c -> chaveNotaPendente = null);
+        cbPaciente.valueProperty().addListener((obs, a, b) -> chaveNotaPendente = null);
+        cbProfissional.valueProperty().addListener((obs, a, b) -> chaveNotaPendente = null);
+        cbFormaPagamento.valueProperty().addListener((obs, a, b) -> chaveNotaPendente = null);
+
         atualizarTotal();
     }
 
@@ -182,7 +203,7 @@ public class CaixaController {
 
     private void carregarCombosPrincipais() {
         // Pacientes
-        pacientes.setAll(pacienteDAO.listarAtivos());
+        pacientes.setAll(DiretorioPacientes.todos(false));
         cbPaciente.setItems(pacientes);
 
         // Profissionais (filtrados no DAO)
@@ -500,63 +521,104 @@ public class CaixaController {
 
     @FXML
     private void onFinalizarNota() {
-        try {
-            Paciente paciente = cbPaciente.getValue();
-            Usuario profissional = cbProfissional.getValue();
-            String formaPagamento = cbFormaPagamento.getValue();
-
-            if (paciente == null) { mostrarErro("Paciente obrigatório", "Selecione um paciente."); return; }
-            if (profissional == null) { mostrarErro("Profissional obrigatório", "Selecione um profissional."); return; }
-            if (formaPagamento == null || formaPagamento.isBlank()) { mostrarErro("Forma de pagamento obrigatória", "Selecione a forma de pagamento."); return; }
-            if (itensNota.isEmpty()) { mostrarErro("Nenhum item", "Adicione pelo menos um item à nota antes de finalizar."); return; }
-
-            Nota nota = new Nota();
-            nota.setDataHora(LocalDateTime.now());
-            nota.setPaciente(paciente);
-            nota.setProfissional(profissional);
-            nota.setFormaPagamento(formaPagamento);
-            nota.setObservacao(txtObservacao.getText());
-
-            List<NotaItem> listaItens = new ArrayList<>(itensNota);
-            nota.setItens(listaItens);
-            nota.recalcularTotais();
-
-            notaDAO.salvarNota(nota);
-
-            FileChooser fileChooser = new FileChooser();
-            fileChooser.setTitle("Salvar nota em PDF");
-            fileChooser.getExtensionFilters().add(
-                    new FileChooser.ExtensionFilter("Arquivo PDF", "*.pdf"));
-
-            String nomePaciente = paciente.getNome() != null
-                    ? paciente.getNome().replaceAll("[^a-zA-Z0-9_\\- ]", "")
-                    : "nota";
-
-            fileChooser.setInitialFileName("nota_" + nomePaciente + ".pdf");
-
-            File destino = fileChooser.showSaveDialog(lblTotal.getScene().getWindow());
-
-            if (destino != null) {
-                try {
-                    notaPdfService.gerarRecibo(nota, destino);
-                    mostrarAviso("Nota salva",
-                            "Nota gravada com sucesso!\n\nPDF gerado em:\n" + destino.getAbsolutePath());
-                } catch (Exception ex) {
-                    ex.printStackTrace();
-                    mostrarErro("Erro ao gerar PDF", ex.getMessage());
-                    return;
+        Paciente paciente = cbPaciente.getValue();
+        Usuario profissional = cbProfissional.getValue();
+        String formaPagamento = cbFormaPagamento.getValue();
+
+        if (paciente == null) { mostrarErro("Paciente obrigatório", "Selecione um paciente."); return; }
+        if (profissional == null) { mostrarErro("Profissional obrigatório", "Selecione um profissional."); return; }
+        if (formaPagamento == null || formaPagamento.isBlank()) { mostrarErro("Forma de pagamento obrigatória", "Selecione a forma de pagamento."); return; }
+        if (itensNota.isEmpty()) { mostrarErro("Nenhum item", "Adicione pelo menos um item à nota antes de finalizar."); return; }
+
+        if (chaveNotaPendente == null) chaveNotaPendente = UUID.randomUUID().toString();
+
+        Nota nota = new Nota();
+        nota.setDataHora(LocalDateTime.now());
+        nota.setPaciente(paciente);
+        nota.setProfissional(profissional);
+        nota.setFormaPagamento(formaPagamento);
+        nota.setObservacao(txtObservacao.getText());
+        nota.setChaveRequisicao(chaveNotaPendente);
+
+        List<NotaItem> listaItens = new ArrayList<>(itensNota);
+        nota.setItens(listaItens);
+        nota.recalcularTotais();
+
+        btnFinalizar.setDisable(true);
+
+        Task<Void> task = new Task<>() {
+            @Override
+            protected Void call() throws Exception {
+                for (int tentativa = 1; ; tentativa++) {
+                    try {
+                        notaDAO.salvarNota(nota);
+                        return null;
+                    } catch (RuntimeException e) {
+                        if (tentativa >= TENTATIVAS_FINALIZAR || !falhaDeRede(e)) throw e;
+                        AppLogger.error("[Caixa] falha de rede ao finalizar nota, reenviando (" + tentativa + ")", e);
+                        Thread.sleep(ESPERA_REENVIO_MS * tentativa);
+                    }
                 }
-            } else {
-                mostrarAviso("Nota salva",
-                        "Nota gravada com sucesso.\n(O PDF não foi gerado porque o salvamento foi cancelado.)");
             }
+        };
 
+        task.setOnSucceeded(e -> {
+            btnFinalizar.setDisable(false);
+            chaveNotaPendente = null;
+            gerarPdfNota(nota, paciente);
             limparFormulario();
+        });
 
-        } catch (Exception e) {
-            e.printStackTrace();
-            mostrarErro("Erro ao salvar nota", e.getMessage());
+        task.setOnFailed(e -> {
+            btnFinalizar.setDisable(false);
+            Throwable ex = task.getException();
+            AppLogger.error("[Caixa] erro ao finalizar nota", ex);
+            // a chave continua: finalizar de novo a mesma nota não duplica
+            mostrarErro("Erro ao salvar nota", ex != null ? ex.getMessage() : "Erro desconhecido.");
+        });
+
+        Thread t = new Thread(task, "caixa-finalizar-nota");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    private void gerarPdfNota(Nota nota, Paciente paciente) {
+        FileChooser fileChooser = new FileChooser();
+        fileChooser.setTitle("Salvar nota em PDF");
+        fileChooser.getExtensionFilters().add(
+                new FileChooser.ExtensionFilter("Arquivo PDF", "*.pdf"));
+
+        String nomePaciente = paciente.getNome() != null
+                ? paciente.getNome().replaceAll("[^a-zA-Z0-9_\\- ]", "")
+                : "nota";
+
+        fileChooser.setInitialFileName("nota_" + nomePaciente + ".pdf");
+
+        File destino = fileChooser.showSaveDialog(lblTotal.getScene().getWindow());
+
+        if (destino != null) {
+            try {
+                notaPdfService.gerarRecibo(nota, destino);
+                mostrarAviso("Nota salva",
+                        "Nota gravada com sucesso!\n\nPDF gerado em:\n" + destino.getAbsolutePath());
+            } catch (Exception ex) {
+                ex.printStackTrace();
+                mostrarErro("Erro ao gerar PDF", ex.getMessage());
+            }
+        } else {
+            mostrarAviso("Nota salva",
+                    "Nota gravada com sucesso.\n(O PDF não foi gerado porque o salvamento foi cancelado.)");
+        }
+    }
+
+    /** Timeout / conexão caída: a nota pode ou não ter sido gravada, então reenviar (com a mesma chave) é seguro. */
+    private static boolean falhaDeRede(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof SocketTimeoutException || t instanceof SocketException) return true;
+            if (t instanceof SQLTransientConnectionException || t instanceof SQLRecoverableException) return true;
+            if (t instanceof SQLException se && se.getSQLState() != null && se.getSQLState().startsWith("08")) return true;
         }
+        return false;
     }
 
     private void limparFormulario() {
@@ -0,0 +1,145 @@
+package br.com.clinica.controller;
+
+import br.com.clinica.auth.AuthGuard;
+import br.com.clinica.auth.Permissao;
+import br.com.clinica.database.PoolMetrics;
+import br.com.clinica.service.DiagnosticoBancoService;
+import br.com.clinica.service.DiagnosticoBancoService.Probe;
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
+import javafx.beans.property.SimpleStringProperty;
+import javafx.collections.FXCollections;
+import javafx.concurrent.Task;
+import javafx.fxml.FXML;
+import javafx.scene.control.*;
+import javafx.util.Duration;
+
+import java.time.format.DateTimeFormatter;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+public class DiagnosticoController {
+
+    private static final DateTimeFormatter DH_FMT = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm:ss");
+
+    @FXML private TableView<PoolMetrics.Snapshot> tblPools;
+    @FXML private TableColumn<PoolMetrics.Snapshot, String> colPool;
+    @FXML private TableColumn<PoolMetrics.Snapshot, String> colAtivas;
+    @FXML private TableColumn<PoolMetrics.Snapshot, String> colOciosas;
+    @FXML private TableColumn<PoolMetrics.Snapshot, String> colAguardando;
+    @FXML private TableColumn<PoolMetrics.Snapshot, String> colTotal;
+    @FXML private TableColumn<PoolMetrics.Snapshot, String> colCheckouts;
+    @FXML private TableColumn<PoolMetrics.Snapshot, String> colTimeouts;
+    @FXML private TableColumn<PoolMetrics.Snapshot, String> colP50;
+    @FXML private TableColumn<PoolMetrics.Snapshot, String> colP95;
+    @FXML private TableColumn<PoolMetrics.Snapshot, String> colP99;
+    @FXML private TableColumn<PoolMetrics.Snapshot, String> colMax;
+
+    @FXML private TableView<Probe> tblProbes;
+    @FXML private TableColumn<Probe, String> colProbeQuando;
+    @FXML private TableColumn<Probe, String> colProbeCheckout;
+    @FXML private TableColumn<Probe, String> colProbeRtt;
+    @FXML private TableColumn<Probe, String> colProbeErro;
+
+    @FXML private Button btnTestar;
+    @FXML private Label lblStatus;
+
+    // só lê métricas em memória: barato o suficiente para atualizar a cada 5s
+    private final Timeline autoRefresh = new Timeline(new KeyFrame(Duration.seconds(5), e -> carregar()));
+
+    @FXML
+    public void initialize() {
+        AuthGuard.exigirPermissao(Permissao.DIAGNOSTICO_VER);
+
+        colPool.setCellValueFactory(c -> new SimpleStringProperty(c.getValue().pool()));
+        colAtivas.setCellValueFactory(c -> new SimpleStringProperty(String.valueOf(c.getValue().ativas())));
+        colOciosas.setCellValueFactory(c -> new SimpleStringProperty(String.valueOf(c.getValue().ociosas())));
+        colAguardando.setCellValueFactory(c -> new SimpleStringProperty(String.valueOf(c.getValue().aguardando())));
+        colTotal.setCellValueFactory(c -> new SimpleStringProperty(c.getValue().total() + " / " + c.getValue().maximo()));
+        colCheckouts.setCellValueFactory(c -> new SimpleStringProperty(String.valueOf(c.getValue().checkouts())));
+        colTimeouts.setCellValueFactory(c -> new SimpleStringProperty(String.valueOf(c.getValue().timeouts())));
+        colP50.setCellValueFactory(c -> new SimpleStringProperty(ms(c.getValue().p50Ms())));
+        colP95.setCellValueFactory(c -> new SimpleStringProperty(ms(c.getValue().p95Ms())));
+        colP99.setCellValueFactory(c -> new SimpleStringProperty(ms(c.getValue().p99Ms())));
+        colMax.setCellValueFactory(c -> new SimpleStringProperty(ms(c.getValue().maxMs())));
+
+        colProbeQuando.setCellValueFactory(c -> new SimpleStringProperty(c.getValue().quando().format(DH_FMT)));
+        colProbeCheckout.setCellValueFactory(c -> new SimpleStringProperty(ms(c.getValue().checkoutMs())));
+        colProbeRtt.setCellValueFactory(c -> new SimpleStringProperty(c.getValue().ok() ? ms(c.getValue().rttMs()) : "-"));
+        colProbeErro.setCellValueFactory(c -> new SimpleStringProperty(c.getValue().ok() ? "" : c.getValue().erro()));
+
+        carregar();
+
+        autoRefresh.setCycleCount(Timeline.INDEFINITE);
+        autoRefresh.play();
+
+        // para o refresh quando a tela sai do conteúdo principal
+        tblPools.sceneProperty().addListener((obs, old, scene) -> {
+            if (scene == null) autoRefresh.stop();
+        });
+    }
+
+    @FXML
+    private void onAtualizar() {
+        carregar();
+    }
+
+    @FXML
+    private void onTestarAgora() {
+        btnTestar.setDisable(true);
+
+        Task<Probe> task = new Task<>() {
+            @Override
+            protected Probe call() {
+                return DiagnosticoBancoService.probeAgora();
+            }
+        };
+
+        task.setOnSucceeded(e -> {
+            btnTestar.setDisable(false);
+            carregar();
+        });
+        task.setOnFailed(e -> {
+            btnTestar.setDisable(false);
+            lblStatus.setText("Falha ao testar conexão: " + task.getException().getMessage());
+        });
+
+        Thread t = new Thread(task, "db-diagnostico-manual");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    private void carregar() {
+        tblPools.setItems(FXCollections.observableArrayList(PoolMetrics.INSTANCE.snapshot()));
+
+        List<Probe> probes = DiagnosticoBancoService.historico();
+        Collections.reverse(probes); // mais recente primeiro
+        tblProbes.setItems(FXCollections.observableArrayList(probes));
+
+        lblStatus.setText(resumo(probes));
+    }
+
+    /** Dica rápida: fila no pool x rede lenta. */
+    private String resumo(List<Probe> probes) {
+        if (probes.isEmpty()) return "Nenhum teste executado ainda.";
+
+        Probe ultimo = probes.get(0);
+        if (!ultimo.ok()) return "Último teste falhou: " + ultimo.erro();
+
+        boolean filaNoPool = PoolMetrics.INSTANCE.snapshot().stream().anyMatch(s -> s.aguardando() > 0 || s.timeouts() > 0);
+        String base = "Último teste: checkout " + ms(ultimo.checkoutMs()) + " ms, ida e volta " + ms(ultimo.rttMs()) + " ms.";
+
+        if (filaNoPool || (ultimo.checkoutMs() > 50 && ultimo.checkoutMs() > ultimo.rttMs() * 2)) {
+            return base + " Há espera por conexões no pool (pool esgotado).";
+        }
+        if (ultimo.rttMs() > 150) {
+            return base + " A latência está na rede/banco remoto.";
+        }
+        return base;
+    }
+
+    private String ms(double v) {
+        return String.format(Locale.ROOT, "%.1f", v);
+    }
+}
@@ -1,6 +1,9 @@
 package br.com.clinica.controller;
 
+import br.com.clinica.dao.MovimentoEstoqueDAO;
 import br.com.clinica.dao.ProdutoDAO;
+import br.com.clinica.dao.ProdutoLoteDAO;
+import br.com.clinica.dao.RegistroAlteradoException;
 import br.com.clinica.model.Produto;
 import br.com.clinica.model.enums.TipoProduto;
 import javafx.beans.property.SimpleBooleanProperty;
@@ -40,6 +43,9 @@ public class EstoqueController {
     @FXML private CheckBox chkVencendo;
 
     @FXML private TextField txtBuscar;
+    @FXML private TextField txtQtdEntrada;
+    @FXML private TextField txtLoteEntrada;
+    @FXML private DatePicker dpValidadeEntrada;
 
     @FXML private TableView<Produto> tblProdutos;
     @FXML private TableColumn<Produto, String> colNome;
@@ -51,6 +57,10 @@ public class EstoqueController {
     @FXML private Label lblMensagem;
 
     private final ProdutoDAO produtoDAO = new ProdutoDAO();
+    private final MovimentoEstoqueDAO movimentoEstoqueDAO = new MovimentoEstoqueDAO();
+    private final ProdutoLoteDAO loteDAO = new ProdutoLoteDAO();
+
+    private static final int HISTORICO_LIMITE = 100;
     private Produto selecionado;
 
     private final ObservableList<Produto> masterList = FXCollections.observableArrayList();
@@ -58,6 +68,7 @@ public class EstoqueController {
 
     private static final Locale LOCALE_BR = new Locale("pt", "BR");
     private static final DateTimeFormatter DATA_BR = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+    private static final DateTimeFormatter DATA_HORA_BR = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm");
     private static final DecimalFormatSymbols SYM_BR = DecimalFormatSymbols.getInstance(LOCALE_BR);
 
     // Quantidade: 0, 1, 10,5, 1.234,56
@@ -73,10 +84,13 @@ public class EstoqueController {
         // DatePicker dd/MM/yyyy + máscara no editor
         configurarDatePickerBR(dpValidade);
         aplicarMascaraDataNoEditor(dpValidade);
+        configurarDatePickerBR(dpValidadeEntrada);
+        aplicarMascaraDataNoEditor(dpValidadeEntrada);
 
         // Quantidade (estoque) — permite vírgula e ponto; sem “moeda”
         aplicarFiltroQuantidade(txtEstoqueAtual);
         aplicarFiltroQuantidade(txtEstoqueMinimo);
+        aplicarFiltroQuantidade(txtQtdEntrada);
 
         // Preços — máscara de moeda (digitos -> ##.###,##)
         aplicarMascaraMoeda(txtPrecoCusto);
@@ -148,6 +162,8 @@ public class EstoqueController {
             lblMensagem.setText("Salvo com sucesso!");
             atualizarLista();
             selecionarNaTabela(p);
+        } catch (RegistroAlteradoException ex) {
+            recarregarAposConflito(ex);
         } catch (IllegalArgumentException ex) {
             lblMensagem.setText(ex.getMessage());
         } catch (Exception ex) {
@@ -171,12 +187,180 @@ public class EstoqueController {
             atualizarLista();
             selecionarNaTabela(sel);
             lblMensagem.setText("Status atualizado!");
+        } catch (RegistroAlteradoException e) {
+            recarregarAposConflito(e);
         } catch (Exception e) {
             e.printStackTrace();
             lblMensagem.setText("Erro ao atualizar status.");
         }
     }
 
+    // outra estação salvou o produto antes: recarrega a lista (e o formulário) com o que está no banco
+    private void recarregarAposConflito(RegistroAlteradoException ex) {
+        atualizarLista();
+        for (Produto item : masterList) {
+            if (item.getId() != null && item.getId() == ex.getId()) {
+                tblProdutos.getSelectionModel().clearSelection();
+                selecionarNaTabela(item);
+                break;
+            }
+        }
+        lblMensagem.setText(ex.getMessage());
+        new Alert(Alert.AlertType.WARNING, ex.getMessage()).showAndWait();
+    }
+
+    @FXML
+    private void onRegistrarEntrada() {
+        lblMensagem.setText("");
+        Produto sel = tblProdutos.getSelectionModel().getSelectedItem();
+        if (sel == null) {
+            lblMensagem.setText("Selecione um produto na tabela.");
+            return;
+        }
+
+        try {
+            double qtd = parseNumero(txtQtdEntrada.getText());
+            produtoDAO.registrarEntrada(sel, qtd, txtLoteEntrada.getText(), lerData(dpValidadeEntrada), null);
+            txtQtdEntrada.clear();
+            txtLoteEntrada.clear();
+            dpValidadeEntrada.setValue(null);
+            dpValidadeEntrada.getEditor().clear();
+            atualizarLista();
+            selecionarNaTabela(sel);
+            lblMensagem.setText("Entrada registrada! Estoque: " + DF_QTD.format(sel.getEstoqueAtual()));
+        } catch (IllegalArgumentException ex) {
+            lblMensagem.setText(ex.getMessage());
+        } catch (Exception ex) {
+            ex.printStackTrace();
+            lblMensagem.setText("Erro ao registrar entrada: " + ex.getMessage());
+        }
+    }
+
+    @FXML
+    private void onHistorico() {
+        lblMensagem.setText("");
+        Produto sel = tblProdutos.getSelectionModel().getSelectedItem();
+        if (sel == null) {
+            lblMensagem.setText("Selecione um produto na tabela.");
+            return;
+        }
+
+        List<MovimentoEstoqueDAO.Movimento> movs;
+        try {
+            movs = movimentoEstoqueDAO.historico(sel.getId(), HISTORICO_LIMITE);
+        } catch (Exception ex) {
+            ex.printStackTrace();
+            lblMensagem.setText("Erro ao carregar histórico: " + ex.getMessage());
+            return;
+        }
+
+        // do mais recente para trás: o saldo depois de cada linha sai do saldo atual
+        StringBuilder sb = new StringBuilder();
+        double saldo = sel.getEstoqueAtual();
+        for (MovimentoEstoqueDAO.Movimento m : movs) {
+            sb.append(m.dataHora().format(DATA_HORA_BR)).append("   ")
+                    .append(m.tipo().getDescricao()).append("   ")
+                    .append(m.quantidade() > 0 ? "+" : "").append(DF_QTD.format(m.quantidade()))
+                    .append("   saldo ").append(DF_QTD.format(saldo));
+            if (m.notaId() != null) sb.append("   (nota ").append(m.notaId()).append(')');
+            if (m.observacao() != null && !m.observacao().isBlank()) sb.append("   ").append(m.observacao());
+            sb.append('\n');
+            saldo -= m.quantidade();
+        }
+        if (movs.isEmpty()) sb.append("Nenhum movimento registrado.");
+
+        mostrarTexto("Histórico de estoque", sel.getNome() + " — últimos " + HISTORICO_LIMITE + " movimentos", sb.toString());
+    }
+
+    /** Saldo do produto no fim de um dia passado (snapshot + movimentos depois dele, ver MovimentoEstoqueDAO). */
+    @FXML
+    private void onSaldoEm() {
+        lblMensagem.setText("");
+        Produto sel = tblProdutos.getSelectionModel().getSelectedItem();
+        if (sel == null) {
+            lblMensagem.setText("Selecione um produto na tabela.");
+            return;
+        }
+
+        DatePicker dp = new DatePicker(LocalDate.now().minusDays(1));
+        Dialog<LocalDate> dialog = new Dialog<>();
+        dialog.setTitle("Saldo em uma data");
+        dialog.setHeaderText(sel.getNome() + " — saldo no fim do dia");
+        dialog.getDialogPane().setContent(dp);
+        dialog.getDialogPane().getButtonTypes().addAll(ButtonType.OK, ButtonType.CANCEL);
+        dialog.setResultConverter(bt -> bt == ButtonType.OK ? dp.getValue() : null);
+
+        LocalDate dia = dialog.showAndWait().orElse(null);
+        if (dia == null) return;
+
+        try {
+            double saldo = movimentoEstoqueDAO.saldoEm(sel.getId(), dia.atTime(23, 59, 59));
+            lblMensagem.setText("Saldo de " + sel.getNome() + " em " + dia.format(DATA_BR) + ": " + DF_QTD.format(saldo));
+        } catch (Exception ex) {
+            ex.printStackTrace();
+            lblMensagem.setText("Erro ao calcular saldo: " + ex.getMessage());
+        }
+    }
+
+    @FXML
+    private void onLotes() {
+        lblMensagem.setText("");
+        Produto sel = tblProdutos.getSelectionModel().getSelectedItem();
+        if (sel == null) {
+            lblMensagem.setText("Selecione um produto na tabela.");
+            return;
+        }
+
+        try {
+            List<ProdutoLoteDAO.Lote> lotes = loteDAO.listarComSaldo(sel.getId());
+            mostrarTexto("Lotes do produto", sel.getNome() + " — ordem de saída (vence primeiro, sai primeiro)",
+                    lotes.isEmpty() ? "Nenhum lote com saldo." : textoLotes(lotes, false));
+        } catch (Exception ex) {
+            ex.printStackTrace();
+            lblMensagem.setText("Erro ao carregar lotes: " + ex.getMessage());
+        }
+    }
+
+    @FXML
+    private void onLotesVencendo() {
+        lblMensagem.setText("");
+        try {
+            LocalDate ate = LocalDate.now().plusDays(ProdutoDAO.DIAS_ALERTA_VALIDADE);
+            List<ProdutoLoteDAO.Lote> lotes = loteDAO.listarVencendo(ate);
+            mostrarTexto("Lotes vencendo", "Lotes com saldo vencidos ou vencendo até " + ate.format(DATA_BR),
+                    lotes.isEmpty() ? "Nenhum lote vencendo." : textoLotes(lotes, true));
+        } catch (Exception ex) {
+            ex.printStackTrace();
+            lblMensagem.setText("Erro ao carregar lotes: " + ex.getMessage());
+        }
+    }
+
+    private String textoLotes(List<ProdutoLoteDAO.Lote> lotes, boolean comProduto) {
+        LocalDate hoje = LocalDate.now();
+        StringBuilder sb = new StringBuilder();
+        for (ProdutoLoteDAO.Lote l : lotes) {
+            if (comProduto) sb.append(l.produtoNome()).append("   ");
+            sb.append("lote ").append(l.lote() == null || l.lote().isBlank() ? "(sem lote)" : l.lote()).append("   ")
+                    .append(l.validade() != null ? "validade " + l.validade().format(DATA_BR) : "sem validade").append("   ")
+                    .append("saldo ").append(DF_QTD.format(l.quantidade()));
+            if (l.validade() != null && l.validade().isBefore(hoje)) sb.append("   VENCIDO");
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+
+    private void mostrarTexto(String titulo, String cabecalho, String texto) {
+        TextArea area = new TextArea(texto);
+        area.setEditable(false);
+        area.setPrefSize(640, 360);
+
+        Alert alert = new Alert(Alert.AlertType.INFORMATION);
+        alert.setTitle(titulo);
+        alert.setHeaderText(cabecalho);
+        alert.getDialogPane().setContent(area);
+        alert.showAndWait();
+    }
+
     @FXML
     private void onAtualizarLista() {
         atualizarLista();
@@ -276,14 +460,7 @@ public class EstoqueController {
 
         String lote = txtLote.getText();
 
-        // Se o usuário digitou no editor, tenta converter
-        LocalDate validade = dpValidade.getValue();
-        if (validade == null) {
-            String txt = dpValidade.getEditor().getText();
-            if (txt != null && txt.trim().length() == 10) {
-                try { validade = LocalDate.parse(txt.trim(), DATA_BR); } catch (Exception ignored) {}
-            }
-        }
+        LocalDate validade = lerData(dpValidade);
 
         Double precoCusto = parseMoedaNullable(txtPrecoCusto.getText());
         Double precoVenda = parseMoedaNullable(txtPrecoVenda.getText());
@@ -302,6 +479,18 @@ public class EstoqueController {
         return p;
     }
 
+    // Se o usuário digitou no editor, tenta converter
+    private LocalDate lerData(DatePicker dp) {
+        LocalDate data = dp.getValue();
+        if (data == null) {
+            String txt = dp.getEditor().getText();
+            if (txt != null && txt.trim().length() == 10) {
+                try { data = LocalDate.parse(txt.trim(), DATA_BR); } catch (Exception ignored) {}
+            }
+        }
+        return data;
+    }
+
     // MÁSCARAS / FORMATOS
 
     private void configurarDatePickerBR(DatePicker dp) {
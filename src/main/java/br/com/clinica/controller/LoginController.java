@@ -2,13 +2,16 @@ package br.com.clinica.controller;
 
 import br.com.clinica.dao.AuditoriaDAO;
 import br.com.clinica.model.Usuario;
+import br.com.clinica.service.InicializacaoService;
 import br.com.clinica.service.LoginService;
 import br.com.clinica.session.Session;
+import javafx.application.Platform;
 import javafx.concurrent.Task;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
+import javafx.scene.control.Alert;
 import javafx.scene.control.Button;
 import javafx.scene.control.Label;
 import javafx.scene.control.PasswordField;
@@ -17,6 +20,9 @@ import javafx.stage.Stage;
 import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
 public class LoginController {
     //teste
     @FXML private ImageView imgLogoLogin;
@@ -37,6 +43,13 @@ public class LoginController {
     private final LoginService loginService = new LoginService();
     private final AuditoriaDAO auditoria = new AuditoriaDAO();
 
+    /** Migrações do banco falharam na inicialização: a tela principal não pode abrir. */
+    private static final class SchemaIndisponivelException extends RuntimeException {
+        SchemaIndisponivelException(Throwable causa) {
+            super(causa.getMessage(), causa);
+        }
+    }
+
     @FXML
     public void initialize() {
         // garante estado inicial
@@ -54,12 +67,7 @@ public class LoginController {
             System.out.println("Logo não encontrada: /images/logo-klean.png");
         }
 
-        // Pré-aquecer conexão (evita primeira autenticação muito lenta)
-        new Thread(() -> {
-            try (java.sql.Connection c = br.com.clinica.database.DatabaseConfig.getConnection()) {
-                // abrir/fechar já aquece pool/SSL
-            } catch (Exception ignored) {}
-        }, "db-warmup").start();
+        // (o pool já é aquecido em background pelo InicializacaoService)
         // foco inicial no usuário
         txtUsuario.requestFocus();
 
@@ -142,7 +150,20 @@ public class LoginController {
         Task<Usuario> task = new Task<>() {
             @Override
             protected Usuario call() {
-                return loginService.autenticar(loginFinal, senhaFinal);
+                Usuario u = loginService.autenticar(loginFinal, senhaFinal);
+                if (u == null) return null;
+
+                // a tela principal usa o schema novo: espera as migrações do startup terminarem
+                CompletableFuture<Void> schema = InicializacaoService.schemaPronto();
+                if (!schema.isDone() && lblErro != null) {
+                    Platform.runLater(() -> lblErro.setText("Atualizando o banco de dados, aguarde..."));
+                }
+                try {
+                    schema.join();
+                } catch (CompletionException e) {
+                    throw new SchemaIndisponivelException(e.getCause() != null ? e.getCause() : e);
+                }
+                return u;
             }
         };
 
@@ -153,22 +174,16 @@ public class LoginController {
                 if (u == null) {
                     if (lblErro != null) lblErro.setText("Usuário ou senha inválidos.");
 
-                    // Auditoria em background (não travar a UI)
-                    new Thread(() ->
-                            auditoria.registrar("LOGIN_FALHA", "USUARIO", loginFinal, "falha de autenticação"),
-                            "auditoria-login-falha"
-                    ).start();
+                    // só enfileira: quem grava é a thread do AuditoriaService
+                    auditoria.registrar("LOGIN_FALHA", "USUARIO", loginFinal, "falha de autenticação");
                     return;
                 }
 
                 // sucesso
                 Session.setUsuario(u);
 
-                // Auditoria em background (não travar a troca de tela)
-                new Thread(() ->
-                        auditoria.registrar("LOGIN_OK", "USUARIO", String.valueOf(u.getId()), "login realizado"),
-                        "auditoria-login-ok"
-                ).start();
+                // só enfileira (não trava a troca de tela)
+                auditoria.registrar("LOGIN_OK", "USUARIO", String.valueOf(u.getId()), "login realizado");
 
                 // abrir tela principal
                 Stage stage = (Stage) txtUsuario.getScene().getWindow();
@@ -204,6 +219,20 @@ public class LoginController {
         task.setOnFailed(evt -> {
             try {
                 Throwable ex = task.getException();
+
+                if (ex instanceof SchemaIndisponivelException) {
+                    if (lblErro != null) lblErro.setText("Banco de dados não atualizado.");
+
+                    Alert a = new Alert(Alert.AlertType.ERROR);
+                    a.setTitle("Erro ao iniciar");
+                    a.setHeaderText("Não foi possível atualizar o banco de dados");
+                    a.setContentText("O sistema não pode ser usado até isso ser resolvido. " +
+                            "Veja logs/app.log e reinicie o aplicativo.\n\n" + ex.getMessage());
+                    a.showAndWait();
+                    Platform.exit();
+                    return;
+                }
+
                 if (lblErro != null) lblErro.setText("Erro ao autenticar. Verifique conexão com o banco.");
                 if (ex != null) ex.printStackTrace();
             } finally {
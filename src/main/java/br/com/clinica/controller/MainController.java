@@ -4,7 +4,10 @@ import br.com.clinica.auth.AuthGuard;
 import br.com.clinica.auth.Permissao;
 import br.com.clinica.auth.exceptions.AcessoNegadoException;
 import br.com.clinica.auth.exceptions.NaoAutenticadoException;
+import br.com.clinica.dao.ProdutoDAO;
+import br.com.clinica.service.AlertasEstoqueService;
 import br.com.clinica.session.Session;
+import javafx.application.Platform;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
@@ -24,7 +27,9 @@ import javafx.stage.Stage;
 
 import java.io.IOException;
 import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Deque;
+import java.util.List;
 
 public class MainController {
 
@@ -46,6 +51,7 @@ public class MainController {
     @FXML private MenuItem miRelatorios;
     @FXML private MenuItem miUsuarios;
     @FXML private MenuItem miAuditoria;
+    @FXML private MenuItem miDiagnostico;
 
     @FXML private Button btnCardPacientes;
     @FXML private Button btnCardAgenda;
@@ -53,6 +59,9 @@ public class MainController {
     @FXML private Button btnCardEstoque;
     @FXML private Button btnCardUsuarios;
 
+    @FXML private Label lblBadgeEstoque;
+    private Runnable cancelarAlertasEstoque;
+
     // conecta controller ao main-view.fxml
     @FXML private VBox homeBox;
     @FXML private AnchorPane contentPane;
@@ -74,6 +83,7 @@ public class MainController {
         atualizarUsuarioLogado();
         aplicarPermissoesHome();
         aplicarPermissoesMenu();
+        assinarAlertasEstoque();
 
         //carregar a imagem
         var logoUrl = getClass().getResource("/images/logo-klean.png");
@@ -109,6 +119,9 @@ public class MainController {
         removerItem(menuOperacoes, miCaixa);
         removerItem(menuOperacoes, miEstoque);
 
+        // diagnóstico do banco: só admin
+        if (!temPermissao(Permissao.DIAGNOSTICO_VER)) removerItem(menuRelatorios, miDiagnostico);
+
         // aplica permissão: se não tiver acesso, remove o menu inteiro
         if (!temPermissao(Permissao.PACIENTE_VER)) removerMenu(menuCadastros);
         if (!temPermissao(Permissao.AGENDA_VER)) removerMenu(menuOperacoes);
@@ -204,6 +217,7 @@ public class MainController {
     @FXML private void onRelatorios() { abrirTelaNoConteudo("/view/relatorios-view.fxml", Permissao.RELATORIOS_VER); }
     @FXML private void onUsuarios() { abrirTelaNoConteudo("/view/usuarios-view.fxml", Permissao.USUARIO_GERENCIAR); }
     @FXML private void onAuditoria() { abrirTelaNoConteudo("/view/auditoria-view.fxml", Permissao.AUDITORIA_VER); }
+    @FXML private void onDiagnostico() { abrirTelaNoConteudo("/view/diagnostico-view.fxml", Permissao.DIAGNOSTICO_VER); }
 
     // NAVEGAÇÃO INTERNA
     private void abrirTelaNoConteudo(String fxmlPath, Permissao permissao) {
@@ -268,6 +282,22 @@ public class MainController {
         contentPane.setManaged(true);
     }
 
+    // aviso no card do estoque: a contagem vem da thread do AlertasEstoqueService
+    private void assinarAlertasEstoque() {
+        if (lblBadgeEstoque == null || !btnCardEstoque.isVisible()) return;
+        cancelarAlertasEstoque = AlertasEstoqueService.assinar(c -> Platform.runLater(() -> mostrarAlertasEstoque(c)));
+    }
+
+    private void mostrarAlertasEstoque(ProdutoDAO.ContagemAlertas c) {
+        List<String> partes = new ArrayList<>();
+        if (c.baixoEstoque() > 0) partes.add(c.baixoEstoque() + " abaixo do mínimo");
+        if (c.vencendo() > 0) partes.add(c.vencendo() + " vencendo");
+
+        lblBadgeEstoque.setText(String.join(" · ", partes));
+        lblBadgeEstoque.setVisible(!partes.isEmpty());
+        lblBadgeEstoque.setManaged(!partes.isEmpty());
+    }
+
     private void aplicarPermissoesHome() {
         aplicarPermissao(btnCardPacientes, Permissao.PACIENTE_VER);
         aplicarPermissao(btnCardAgenda, Permissao.AGENDA_VER);
@@ -304,6 +334,8 @@ public class MainController {
             return;
         }
 
+        if (cancelarAlertasEstoque != null) cancelarAlertasEstoque.run();
+
         // limpa sessão
         Session.limpar();
 
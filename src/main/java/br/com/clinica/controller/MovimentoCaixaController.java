@@ -1,8 +1,12 @@
 package br.com.clinica.controller;
 
+import br.com.clinica.auth.AuthGuard;
+import br.com.clinica.auth.Permissao;
+import br.com.clinica.dao.FechamentoCaixaDAO;
 import br.com.clinica.dao.MovimentoCaixaDAO;
 import br.com.clinica.model.MovimentoCaixa;
 import br.com.clinica.model.enums.TipoMovimento;
+import br.com.clinica.session.Session;
 import javafx.beans.property.SimpleDoubleProperty;
 import javafx.beans.property.SimpleObjectProperty;
 import javafx.beans.property.SimpleStringProperty;
@@ -13,6 +17,7 @@ import javafx.scene.control.*;
 import javafx.stage.Stage;
 
 import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
 import java.util.List;
 
 public class MovimentoCaixaController {
@@ -56,10 +61,25 @@ public class MovimentoCaixaController {
     @FXML
     private Label lblSaldo;
 
+    @FXML
+    private Label lblSaldoAnterior;
+
+    @FXML
+    private Label lblSaldoFinal;
+
+    @FXML
+    private Label lblUltimoFechamento;
+
+    @FXML
+    private Button btnFecharCaixa;
+
     @FXML
     private Button btnFechar;
 
+    private static final DateTimeFormatter DATA_BR = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+
     private final MovimentoCaixaDAO movimentoCaixaDAO = new MovimentoCaixaDAO();
+    private final FechamentoCaixaDAO fechamentoCaixaDAO = new FechamentoCaixaDAO();
     private final ObservableList<MovimentoCaixa> movimentos = FXCollections.observableArrayList();
 
     @FXML
@@ -117,6 +137,16 @@ public class MovimentoCaixaController {
         List<MovimentoCaixa> lista = movimentoCaixaDAO.listarPorPeriodo(inicio, fim);
         movimentos.setAll(lista);
         atualizarTotais();
+        atualizarSaldos(inicio, fim);
+    }
+
+    /** Saldo antes e depois do período: último fechamento + movimentos dos dias ainda abertos. */
+    private void atualizarSaldos(LocalDate inicio, LocalDate fim) {
+        lblSaldoAnterior.setText(String.format("R$ %.2f", fechamentoCaixaDAO.saldoAte(inicio.minusDays(1))));
+        lblSaldoFinal.setText(String.format("R$ %.2f", fechamentoCaixaDAO.saldoAte(fim)));
+
+        LocalDate ultimo = fechamentoCaixaDAO.ultimoDiaFechado();
+        lblUltimoFechamento.setText(ultimo == null ? "nenhum" : ultimo.format(DATA_BR));
     }
 
     private void atualizarTotais() {
@@ -143,6 +173,93 @@ public class MovimentoCaixaController {
         carregarMovimentos();
     }
 
+    @FXML
+    private void onFecharCaixa() {
+        try {
+            AuthGuard.exigirPermissao(Permissao.CAIXA_FECHAR);
+        } catch (Exception e) {
+            mostrarErro("Fechar caixa", "Você não tem permissão para fechar o caixa.");
+            return;
+        }
+
+        // padrão: até ontem (fechar hoje trava notas e lançamentos pelo resto do dia)
+        LocalDate hoje = LocalDate.now();
+        LocalDate ontem = hoje.minusDays(1);
+        LocalDate dia = dtFim.getValue() != null && dtFim.getValue().isBefore(hoje) ? dtFim.getValue() : ontem;
+
+        ButtonType btDia = new ButtonType("Fechar até " + dia.format(DATA_BR), ButtonBar.ButtonData.OK_DONE);
+        ButtonType btHoje = new ButtonType("Fechar até hoje", ButtonBar.ButtonData.OTHER);
+
+        Alert confirma = new Alert(Alert.AlertType.CONFIRMATION, "", btDia, ButtonType.CANCEL);
+        confirma.setTitle("Fechar caixa");
+        confirma.setHeaderText("Fechar o caixa até " + dia.format(DATA_BR) + "?");
+        confirma.setContentText("Depois de fechado, os movimentos até esse dia não podem mais ser lançados nem alterados.");
+        if (dtFim.getValue() != null && !dtFim.getValue().isBefore(hoje)) {
+            // período termina hoje: fechar hoje só com escolha explícita
+            confirma.getButtonTypes().add(1, btHoje);
+            confirma.setContentText(confirma.getContentText() +
+                    "\n\nFechar até HOJE bloqueia novas notas e lançamentos no caixa pelo resto do dia.");
+        }
+
+        ButtonType escolha = confirma.showAndWait().orElse(ButtonType.CANCEL);
+        if (escolha == btHoje) dia = hoje;
+        else if (escolha != btDia) return;
+
+        try {
+            Integer usuarioId = Session.getUsuario() != null ? Session.getUsuario().getId() : null;
+            List<FechamentoCaixaDAO.Fechamento> fechados = fechamentoCaixaDAO.fecharAte(dia, usuarioId);
+
+            FechamentoCaixaDAO.Fechamento ultimo = fechados.get(fechados.size() - 1);
+            Alert ok = new Alert(Alert.AlertType.INFORMATION);
+            ok.setTitle("Fechar caixa");
+            ok.setHeaderText(null);
+            ok.setContentText((fechados.size() == 1 ? "1 dia fechado." : fechados.size() + " dias fechados.")
+                    + String.format("%nSaldo em %s: R$ %.2f", ultimo.data().format(DATA_BR), ultimo.saldoAcumulado()));
+            ok.showAndWait();
+
+            carregarMovimentos();
+        } catch (IllegalArgumentException e) {
+            mostrarErro("Fechar caixa", e.getMessage());
+        } catch (Exception e) {
+            e.printStackTrace();
+            mostrarErro("Erro ao fechar caixa", e.getMessage());
+        }
+    }
+
+    /** Reabre o último dia fechado (somente admin). Para voltar mais dias, repetir. */
+    @FXML
+    private void onReabrirCaixa() {
+        try {
+            AuthGuard.exigirPermissao(Permissao.CAIXA_REABRIR);
+        } catch (Exception e) {
+            mostrarErro("Reabrir caixa", "Somente o administrador pode reabrir o caixa.");
+            return;
+        }
+
+        try {
+            LocalDate ultimo = fechamentoCaixaDAO.ultimoDiaFechado();
+            if (ultimo == null) {
+                mostrarErro("Reabrir caixa", "O caixa ainda não foi fechado.");
+                return;
+            }
+
+            Alert confirma = new Alert(Alert.AlertType.CONFIRMATION);
+            confirma.setTitle("Reabrir caixa");
+            confirma.setHeaderText("Reabrir o caixa de " + ultimo.format(DATA_BR) + "?");
+            confirma.setContentText("Os lançamentos desse dia voltam a poder ser feitos/alterados. " +
+                    "O dia precisa ser fechado de novo depois. A reabertura fica registrada na auditoria.");
+            if (confirma.showAndWait().orElse(ButtonType.CANCEL) != ButtonType.OK) return;
+
+            fechamentoCaixaDAO.reabrirDesde(ultimo);
+            carregarMovimentos();
+        } catch (IllegalArgumentException e) {
+            mostrarErro("Reabrir caixa", e.getMessage());
+        } catch (Exception e) {
+            e.printStackTrace();
+            mostrarErro("Erro ao reabrir caixa", e.getMessage());
+        }
+    }
+
     @FXML
     private void onFechar() {
         Stage stage = (Stage) lblSaldo.getScene().getWindow();
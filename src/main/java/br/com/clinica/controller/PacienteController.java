@@ -1,12 +1,14 @@
 package br.com.clinica.controller;
 
 import br.com.clinica.dao.PacienteDAO;
+import br.com.clinica.dao.RegistroAlteradoException;
 import br.com.clinica.model.Paciente;
 import br.com.clinica.util.ValidationUtils;
 import javafx.application.Platform;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
+import javafx.concurrent.Task;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Node;
@@ -51,6 +53,7 @@ public class PacienteController {
     // ✅ NOVO: botões da busca
     @FXML private Button btnEditarSelecionado;
     @FXML private Button btnHistoricoSelecionado;
+    @FXML private Button btnCarregarMais;
 
     // ====== CADASTRO ======
     @FXML private TextField txtNome;
@@ -76,6 +79,13 @@ public class PacienteController {
 
     private final PacienteDAO pacienteDAO = new PacienteDAO();
     private final ObservableList<Paciente> pacientes = FXCollections.observableArrayList();
+
+    // ✅ busca paginada (filtro roda no banco)
+    private static final int PAGINA_BUSCA = 100;
+    private String termoBuscaAtual = "";
+    private PacienteDAO.Filtros filtrosBuscaAtual = PacienteDAO.Filtros.SO_ATIVOS;
+    private PacienteDAO.Cursor proximoCursorBusca;
+    private long seqBusca = 0;
     private Paciente pacienteSelecionado;
 
     // ✅ Se entrou no cadastro vindo da busca (Editar), o Voltar deve retornar para a busca
@@ -159,23 +169,55 @@ public class PacienteController {
         String query = txtBusca != null ? txtBusca.getText().trim() : "";
         boolean incluirInativos = chkMostrarInativosBusca != null && chkMostrarInativosBusca.isSelected();
 
-        List<Paciente> lista = pacienteDAO.listarTodos(incluirInativos);
+        termoBuscaAtual = query;
+        filtrosBuscaAtual = new PacienteDAO.Filtros(incluirInativos);
 
-        if (query.isBlank()) {
-            pacientes.setAll(lista);
-        } else {
-            String qLower = query.toLowerCase();
-            String qDigits = digits(query);
+        clearSelectionBusca();
+        carregarPaginaBusca(null);
+    }
 
-            pacientes.setAll(lista.stream().filter(p ->
-                    safe(p.getNome()).toLowerCase().contains(qLower)
-                            || safe(p.getCpf()).contains(qDigits)
-                            || safe(p.getTelefone()).contains(qDigits)
-            ).toList());
-        }
+    @FXML
+    private void onCarregarMais() {
+        if (proximoCursorBusca != null) carregarPaginaBusca(proximoCursorBusca);
+    }
 
-        if (tableBusca != null) tableBusca.refresh();
-        clearSelectionBusca();
+    /** Busca no banco (filtro + paginação lá) fora da thread da UI. cursor == null -> primeira página. */
+    private void carregarPaginaBusca(PacienteDAO.Cursor cursor) {
+        final long seq = ++seqBusca;
+        final String termo = termoBuscaAtual;
+        final PacienteDAO.Filtros filtros = filtrosBuscaAtual;
+
+        if (btnCarregarMais != null) btnCarregarMais.setDisable(true);
+
+        Task<PacienteDAO.Pagina> task = new Task<>() {
+            @Override
+            protected PacienteDAO.Pagina call() {
+                return pacienteDAO.buscar(termo, filtros, cursor, PAGINA_BUSCA);
+            }
+        };
+
+        task.setOnSucceeded(e -> {
+            if (seq != seqBusca) return; // já existe uma busca mais nova
+
+            PacienteDAO.Pagina pagina = task.getValue();
+            if (cursor == null) pacientes.setAll(pagina.itens());
+            else pacientes.addAll(pagina.itens());
+
+            proximoCursorBusca = pagina.proximo();
+            if (btnCarregarMais != null) btnCarregarMais.setDisable(proximoCursorBusca == null);
+            if (tableBusca != null) tableBusca.refresh();
+        });
+
+        task.setOnFailed(e -> {
+            if (seq != seqBusca) return;
+            Throwable ex = task.getException();
+            if (ex != null) ex.printStackTrace();
+            new Alert(Alert.AlertType.ERROR, "Erro ao buscar pacientes.").showAndWait();
+        });
+
+        Thread t = new Thread(task, "paciente-busca");
+        t.setDaemon(true);
+        t.start();
     }
 
     @FXML
@@ -312,9 +354,18 @@ public class PacienteController {
             }
 
             setBotoesAtivo(pacienteSelecionado);
-            onAtualizarLista();
             onBuscarPaciente();
 
+        } catch (RegistroAlteradoException e) {
+            // outra estação salvou antes: mostra o que está no banco em vez de sobrescrever
+            Paciente atual = pacienteDAO.buscarPorId(e.getId());
+            if (atual != null) {
+                pacienteSelecionado = atual;
+                fillForm(atual);
+                setBotoesAtivo(atual);
+            }
+            setMensagem(e.getMessage());
+            new Alert(Alert.AlertType.WARNING, e.getMessage()).showAndWait();
         } catch (Exception e) {
             e.printStackTrace();
             setMensagem("Erro ao salvar paciente.");
@@ -324,29 +375,43 @@ public class PacienteController {
     @FXML
     private void onInativar() {
         if (pacienteSelecionado == null || pacienteSelecionado.getId() == null) { setMensagem("Selecione um paciente para inativar."); return; }
-        pacienteDAO.inativar(pacienteSelecionado.getId());
-        pacienteSelecionado.setAtivo(false);
-        setBotoesAtivo(pacienteSelecionado);
-        setMensagem("Paciente inativado com sucesso.");
-        onAtualizarLista();
-        onBuscarPaciente();
+        alterarStatus(false);
     }
 
     @FXML
     private void onAtivar() {
         if (pacienteSelecionado == null || pacienteSelecionado.getId() == null) { setMensagem("Selecione um paciente para ativar."); return; }
-        pacienteDAO.ativar(pacienteSelecionado.getId());
-        pacienteSelecionado.setAtivo(true);
-        setBotoesAtivo(pacienteSelecionado);
-        setMensagem("Paciente ativado com sucesso.");
-        onAtualizarLista();
-        onBuscarPaciente();
+        alterarStatus(true);
+    }
+
+    private void alterarStatus(boolean ativo) {
+        try {
+            // o DAO ajusta ativo/versao do paciente depois do commit (o status também conta como edição)
+            if (ativo) pacienteDAO.ativar(pacienteSelecionado);
+            else pacienteDAO.inativar(pacienteSelecionado);
+            setBotoesAtivo(pacienteSelecionado);
+            setMensagem(ativo ? "Paciente ativado com sucesso." : "Paciente inativado com sucesso.");
+            onBuscarPaciente();
+        } catch (RegistroAlteradoException e) {
+            // outra estação mexeu no paciente: recarrega o que está no banco
+            Paciente atual = pacienteDAO.buscarPorId(e.getId());
+            if (atual != null) {
+                pacienteSelecionado = atual;
+                fillForm(atual);
+                setBotoesAtivo(atual);
+            }
+            setMensagem(e.getMessage());
+            new Alert(Alert.AlertType.WARNING, e.getMessage()).showAndWait();
+        }
     }
 
     @FXML
     private void onAtualizarLista() {
-        boolean incluir = chkMostrarInativos != null && chkMostrarInativos.isSelected();
-        pacientes.setAll(pacienteDAO.listarTodos(incluir));
+        // a lista exibida é a da busca: refaz a busca paginada em vez de carregar todos os pacientes
+        if (chkMostrarInativosBusca != null && chkMostrarInativos != null) {
+            chkMostrarInativosBusca.setSelected(chkMostrarInativos.isSelected());
+        }
+        onBuscarPaciente();
     }
 
     private void applyFormToPaciente(Paciente p,
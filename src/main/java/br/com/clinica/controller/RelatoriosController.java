@@ -7,7 +7,6 @@ import br.com.clinica.dao.UsuarioDAO;
 import br.com.clinica.model.Agendamento;
 import br.com.clinica.model.MovimentoCaixa;
 import br.com.clinica.model.Nota;
-import br.com.clinica.model.enums.TipoMovimento;
 import br.com.clinica.model.Usuario;
 import br.com.clinica.service.NotaPdfService;
 import br.com.clinica.service.RelatorioAgendamentosPdfService;
@@ -24,6 +23,8 @@ import javafx.stage.FileChooser;
 
 import java.io.File;
 import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.List;
 
 public class RelatoriosController {
@@ -44,7 +45,10 @@ public class RelatoriosController {
     @FXML private Label lblCxSaidas;
     @FXML private Label lblCxSaldo;
 
+    @FXML private ComboBox<String> cbCxVisao;
+
     private final ObservableList<MovimentoCaixa> caixaObs = FXCollections.observableArrayList();
+    private MovimentoCaixaDAO.Resumo caixaResumo;
 
     // ABA AGENDAMENTOS
     @FXML private DatePicker dtAgInicio;
@@ -77,8 +81,18 @@ public class RelatoriosController {
     @FXML private TableColumn<NotaDAO.NotaResumo, String> colNotaForma;
     @FXML private TableColumn<NotaDAO.NotaResumo, Double> colNotaTotal;
 
+    @FXML private Label lblNotaQtd;
+    @FXML private Label lblNotaTotal;
+    @FXML private Button btnNotasMais;
+
     private final ObservableList<NotaDAO.NotaResumo> notasObs = FXCollections.observableArrayList();
 
+    // filtros da última busca (o "Carregar mais" continua a mesma consulta) e cursor da próxima página
+    private record FiltroNotas(LocalDate inicio, LocalDate fim, String paciente, Integer profissionalId, String forma) {}
+    private FiltroNotas filtroNotas;
+    private NotaDAO.CursorNota proximoCursorNotas;
+    private NotaDAO.TotaisNotas totaisNotas;
+
     // DAOs / Services
     private final MovimentoCaixaDAO movimentoCaixaDAO = new MovimentoCaixaDAO();
     private final AgendamentoDAO agendamentoDAO = new AgendamentoDAO();
@@ -92,6 +106,13 @@ public class RelatoriosController {
 
     private static final String FORMA_TODAS = "TODAS";
 
+    // Caixa: lançamento a lançamento só em períodos curtos; acima disso a tabela mostra as somas do banco
+    private static final String CX_LANCAMENTOS = "Lançamentos";
+    private static final String CX_POR_DIA = "Somas por dia";
+    private static final String CX_POR_DIA_PACIENTE = "Somas por dia e paciente";
+    private static final int DIAS_MAX_LANCAMENTOS = 62;
+    private static final int PAGINA_NOTAS = 200;
+
     @FXML
     public void initialize() {
         LocalDate hoje = LocalDate.now();
@@ -125,6 +146,9 @@ public class RelatoriosController {
         cbNotaForma.getSelectionModel().select(FORMA_TODAS);
 
         // Caixa
+        cbCxVisao.setItems(FXCollections.observableArrayList(CX_LANCAMENTOS, CX_POR_DIA, CX_POR_DIA_PACIENTE));
+        cbCxVisao.getSelectionModel().select(CX_LANCAMENTOS);
+
         tblCaixa.setItems(caixaObs);
         colCxData.setCellValueFactory(c -> new SimpleStringProperty(c.getValue().getData() != null ? c.getValue().getData().toString() : ""));
         colCxTipo.setCellValueFactory(c -> new SimpleStringProperty(c.getValue().getTipo() != null ? c.getValue().getTipo().name() : ""));
@@ -200,12 +224,26 @@ public class RelatoriosController {
             if (ini == null || fim == null) { erro("Período inválido", "Informe data inicial e final."); return; }
             if (fim.isBefore(ini)) { erro("Período inválido", "A data final não pode ser menor que a inicial."); return; }
 
-            List<MovimentoCaixa> lista = movimentoCaixaDAO.listarPorPeriodo(ini, fim);
-            caixaObs.setAll(lista);
+            String visao = cbCxVisao.getValue();
+            if (CX_LANCAMENTOS.equals(visao) && ChronoUnit.DAYS.between(ini, fim) + 1 > DIAS_MAX_LANCAMENTOS) {
+                visao = CX_POR_DIA; // período longo: não traz cada lançamento pela rede
+                cbCxVisao.getSelectionModel().select(visao);
+            }
+
+            // totais agrupados no banco (poucas linhas, mesmo para um ano)
+            caixaResumo = movimentoCaixaDAO.resumir(ini, fim, CX_POR_DIA_PACIENTE.equals(visao));
+
+            if (CX_LANCAMENTOS.equals(visao)) {
+                caixaObs.setAll(movimentoCaixaDAO.listarPorPeriodo(ini, fim));
+            } else {
+                List<MovimentoCaixa> linhas = new ArrayList<>();
+                for (MovimentoCaixaDAO.Soma g : caixaResumo.grupos()) linhas.add(linhaSoma(g));
+                caixaObs.setAll(linhas);
+            }
 
-            double entradas = lista.stream().filter(m -> m.getTipo() == TipoMovimento.ENTRADA).mapToDouble(MovimentoCaixa::getValor).sum();
-            double saidas   = lista.stream().filter(m -> m.getTipo() == TipoMovimento.SAIDA).mapToDouble(MovimentoCaixa::getValor).sum();
-            double saldo = entradas - saidas;
+            double entradas = caixaResumo.entradas();
+            double saidas   = caixaResumo.saidas();
+            double saldo = caixaResumo.saldo();
 
             lblCxEntradas.setText(String.format("R$ %.2f", entradas));
             lblCxSaidas.setText(String.format("R$ %.2f", saidas));
@@ -230,7 +268,7 @@ public class RelatoriosController {
         if (destino == null) return;
 
         try {
-            relCaixaPdf.gerar(dtCxInicio.getValue(), dtCxFim.getValue(), caixaObs, destino);
+            relCaixaPdf.gerar(dtCxInicio.getValue(), dtCxFim.getValue(), caixaObs, caixaResumo, destino);
             aviso("Concluído", "PDF gerado em:\n" + destino.getAbsolutePath());
         } catch (Exception e) {
             e.printStackTrace();
@@ -238,6 +276,18 @@ public class RelatoriosController {
         }
     }
 
+    /** Grupo do resumo como linha da tabela do caixa (descrição = quantos lançamentos somou). */
+    private MovimentoCaixa linhaSoma(MovimentoCaixaDAO.Soma g) {
+        MovimentoCaixa m = new MovimentoCaixa();
+        m.setData(g.data());
+        m.setTipo(g.tipo());
+        m.setFormaPagamento(g.formaPagamento());
+        m.setValor(g.valor());
+        m.setPacienteNome(g.pacienteNome());
+        m.setDescricao(g.quantidade() + (g.quantidade() == 1 ? " lançamento" : " lançamentos"));
+        return m;
+    }
+
     // AGENDAMENTOS
 
     @FXML
@@ -304,15 +354,44 @@ public class RelatoriosController {
             String forma = cbNotaForma.getValue();
             if (FORMA_TODAS.equals(forma)) forma = null;
 
-            List<NotaDAO.NotaResumo> lista = notaDAO.listarNotasResumo(ini, fim, pacienteLike, profissionalId, forma);
-            notasObs.setAll(lista);
+            filtroNotas = new FiltroNotas(ini, fim, pacienteLike, profissionalId, forma);
+
+            // totais do período inteiro (tabela de resumo), a lista vem por páginas
+            totaisNotas = notaDAO.totaisNotas(ini, fim, pacienteLike, profissionalId, forma);
+            lblNotaQtd.setText(String.valueOf(totaisNotas.quantidade()));
+            lblNotaTotal.setText(String.format("R$ %.2f", totaisNotas.total()));
 
+            notasObs.clear();
+            proximoCursorNotas = null;
+            carregarPaginaNotas();
+
+        } catch (Exception e) {
+            e.printStackTrace();
+            erro("Erro ao buscar notas", e.getMessage());
+        }
+    }
+
+    @FXML
+    private void onCarregarMaisNotas() {
+        if (filtroNotas == null || proximoCursorNotas == null) return;
+        try {
+            carregarPaginaNotas();
         } catch (Exception e) {
             e.printStackTrace();
             erro("Erro ao buscar notas", e.getMessage());
         }
     }
 
+    private void carregarPaginaNotas() {
+        FiltroNotas f = filtroNotas;
+        NotaDAO.PaginaNotas pagina = notaDAO.listarNotasResumo(f.inicio(), f.fim(), f.paciente(),
+                f.profissionalId(), f.forma(), proximoCursorNotas, PAGINA_NOTAS);
+
+        notasObs.addAll(pagina.itens());
+        proximoCursorNotas = pagina.proximo();
+        btnNotasMais.setDisable(proximoCursorNotas == null);
+    }
+
     @FXML
     private void onExportarNotasPdf() {
         if (notasObs.isEmpty()) { aviso("Nada para exportar", "Busque um relatório antes de exportar."); return; }
@@ -335,7 +414,7 @@ public class RelatoriosController {
             if (FORMA_TODAS.equals(forma)) forma = "";
 
             relNotasPdf.gerar(dtNotaInicio.getValue(), dtNotaFim.getValue(),
-                    pacienteLike, profTxt, forma, notasObs, destino);
+                    pacienteLike, profTxt, forma, notasObs, totaisNotas, destino);
 
             aviso("Concluído", "PDF gerado em:\n" + destino.getAbsolutePath());
         } catch (Exception e) {
@@ -1,6 +1,7 @@
 package br.com.clinica.dao;
 
 import br.com.clinica.database.DatabaseConfig;
+import br.com.clinica.database.Transacao;
 
 import java.sql.*;
 import java.util.ArrayList;
@@ -32,7 +33,7 @@ public class AdminUsuariosPerfisDAO {
     public List<PerfilRow> listarPerfis() {
         String sql = "SELECT id, nome FROM perfil ORDER BY nome";
         List<PerfilRow> out = new ArrayList<>();
-        try (Connection c = DatabaseConfig.getConnection();
+        try (Connection c = DatabaseConfig.getReadConnection();
              PreparedStatement ps = c.prepareStatement(sql);
              ResultSet rs = ps.executeQuery()) {
 
@@ -51,38 +52,45 @@ public class AdminUsuariosPerfisDAO {
 
     public void criarPerfil(String nome) {
         String sql = "INSERT INTO perfil (nome) VALUES (?)";
-        try (Connection c = DatabaseConfig.getConnection();
-             PreparedStatement ps = c.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+        Transacao.executar(() -> {
+            try (Connection c = DatabaseConfig.getConnection();
+                 PreparedStatement ps = c.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
 
-            ps.setString(1, nome);
-            ps.executeUpdate();
+                ps.setString(1, nome);
+                ps.executeUpdate();
 
-            int id = -1;
-            try (ResultSet rs = ps.getGeneratedKeys()) {
-                if (rs.next()) id = rs.getInt(1);
-            }
+                int id = -1;
+                try (ResultSet rs = ps.getGeneratedKeys()) {
+                    if (rs.next()) id = rs.getInt(1);
+                }
 
-            auditoria.registrar("CRIAR", "PERFIL", String.valueOf(id), "nome=" + nome);
+                auditoria.registrar("CRIAR", "PERFIL", String.valueOf(id), "nome=" + nome);
 
-        } catch (SQLException e) {
-            throw new RuntimeException("Erro ao criar perfil", e);
-        }
+            } catch (SQLException e) {
+                throw new RuntimeException("Erro ao criar perfil", e);
+            }
+        });
     }
 
     public void renomearPerfil(int perfilId, String novoNome) {
         String sql = "UPDATE perfil SET nome=? WHERE id=?";
-        try (Connection c = DatabaseConfig.getConnection();
-             PreparedStatement ps = c.prepareStatement(sql)) {
+        Transacao.executar(() -> {
+            try (Connection c = DatabaseConfig.getConnection();
+                 PreparedStatement ps = c.prepareStatement(sql)) {
 
-            ps.setString(1, novoNome);
-            ps.setInt(2, perfilId);
-            ps.executeUpdate();
+                ps.setString(1, novoNome);
+                ps.setInt(2, perfilId);
+                ps.executeUpdate();
 
-            auditoria.registrar("EDITAR", "PERFIL", String.valueOf(perfilId), "novoNome=" + novoNome);
+                auditoria.registrar("EDITAR", "PERFIL", String.valueOf(perfilId), "novoNome=" + novoNome);
 
-        } catch (SQLException e) {
-            throw new RuntimeException("Erro ao renomear perfil", e);
-        }
+            } catch (SQLException e) {
+                throw new RuntimeException("Erro ao renomear perfil", e);
+            }
+        });
+
+        // lista de profissionais (Agenda/Caixa/Relatórios) fica em cache
+        UsuarioDAO.invalidarCacheProfissionais();
     }
 
     // ===================== USUÁRIOS =====================
@@ -109,7 +117,7 @@ public class AdminUsuariosPerfisDAO {
         String sql = base + where + " ORDER BY u.ativo DESC, u.login";
 
         List<UsuarioRow> out = new ArrayList<>();
-        try (Connection c = DatabaseConfig.getConnection();
+        try (Connection c = DatabaseConfig.getReadConnection();
              PreparedStatement ps = c.prepareStatement(sql)) {
 
             for (int i = 0; i < params.size(); i++) ps.setObject(i + 1, params.get(i));
@@ -140,28 +148,33 @@ public class AdminUsuariosPerfisDAO {
             INSERT INTO usuario (nome, pessoa_nome, login, senha, ativo, perfil_id)
             VALUES (?, ?, ?, ?, ?, ?)
             """;
-        try (Connection c = DatabaseConfig.getConnection();
-             PreparedStatement ps = c.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-
-            ps.setString(1, u.nome);
-            ps.setString(2, u.pessoaNome);
-            ps.setString(3, u.login);
-            ps.setString(4, u.senha);
-            ps.setInt(5, u.ativo ? 1 : 0);
-            ps.setInt(6, u.perfilId);
-            ps.executeUpdate();
-
-            int id = -1;
-            try (ResultSet rs = ps.getGeneratedKeys()) {
-                if (rs.next()) id = rs.getInt(1);
-            }
+        Transacao.executar(() -> {
+            try (Connection c = DatabaseConfig.getConnection();
+                 PreparedStatement ps = c.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+
+                ps.setString(1, u.nome);
+                ps.setString(2, u.pessoaNome);
+                ps.setString(3, u.login);
+                ps.setString(4, u.senha);
+                ps.setInt(5, u.ativo ? 1 : 0);
+                ps.setInt(6, u.perfilId);
+                ps.executeUpdate();
+
+                int id = -1;
+                try (ResultSet rs = ps.getGeneratedKeys()) {
+                    if (rs.next()) id = rs.getInt(1);
+                }
 
-            auditoria.registrar("CRIAR", "USUARIO", String.valueOf(id),
-                    "login=" + u.login + ", pessoa=" + u.pessoaNome + ", perfilId=" + u.perfilId);
+                auditoria.registrar("CRIAR", "USUARIO", String.valueOf(id),
+                        "login=" + u.login + ", pessoa=" + u.pessoaNome + ", perfilId=" + u.perfilId);
 
-        } catch (SQLException e) {
-            throw new RuntimeException("Erro ao inserir usuário", e);
-        }
+            } catch (SQLException e) {
+                throw new RuntimeException("Erro ao inserir usuário", e);
+            }
+        });
+
+        // lista de profissionais (Agenda/Caixa/Relatórios) fica em cache
+        UsuarioDAO.invalidarCacheProfissionais();
     }
 
     public void atualizarUsuario(UsuarioRow u) {
@@ -170,58 +183,70 @@ public class AdminUsuariosPerfisDAO {
                SET nome=?, pessoa_nome=?, login=?, senha=?, ativo=?, perfil_id=?
              WHERE id=?
             """;
-        try (Connection c = DatabaseConfig.getConnection();
-             PreparedStatement ps = c.prepareStatement(sql)) {
-
-            ps.setString(1, u.nome);
-            ps.setString(2, u.pessoaNome);
-            ps.setString(3, u.login);
-            ps.setString(4, u.senha);
-            ps.setInt(5, u.ativo ? 1 : 0);
-            ps.setInt(6, u.perfilId);
-            ps.setInt(7, u.id);
-            ps.executeUpdate();
-
-            auditoria.registrar("EDITAR", "USUARIO", String.valueOf(u.id),
-                    "login=" + u.login + ", pessoa=" + u.pessoaNome + ", ativo=" + u.ativo + ", perfilId=" + u.perfilId);
+        Transacao.executar(() -> {
+            try (Connection c = DatabaseConfig.getConnection();
+                 PreparedStatement ps = c.prepareStatement(sql)) {
+
+                ps.setString(1, u.nome);
+                ps.setString(2, u.pessoaNome);
+                ps.setString(3, u.login);
+                ps.setString(4, u.senha);
+                ps.setInt(5, u.ativo ? 1 : 0);
+                ps.setInt(6, u.perfilId);
+                ps.setInt(7, u.id);
+                ps.executeUpdate();
+
+                auditoria.registrar("EDITAR", "USUARIO", String.valueOf(u.id),
+                        "login=" + u.login + ", pessoa=" + u.pessoaNome + ", ativo=" + u.ativo + ", perfilId=" + u.perfilId);
+
+            } catch (SQLException e) {
+                throw new RuntimeException("Erro ao atualizar usuário", e);
+            }
+        });
 
-        } catch (SQLException e) {
-            throw new RuntimeException("Erro ao atualizar usuário", e);
-        }
+        // lista de profissionais (Agenda/Caixa/Relatórios) fica em cache
+        UsuarioDAO.invalidarCacheProfissionais();
     }
 
     public void ativarInativarUsuario(int usuarioId, boolean novoAtivo) {
         String sql = "UPDATE usuario SET ativo=? WHERE id=?";
-        try (Connection c = DatabaseConfig.getConnection();
-             PreparedStatement ps = c.prepareStatement(sql)) {
+        Transacao.executar(() -> {
+            try (Connection c = DatabaseConfig.getConnection();
+                 PreparedStatement ps = c.prepareStatement(sql)) {
 
-            ps.setInt(1, novoAtivo ? 1 : 0);
-            ps.setInt(2, usuarioId);
-            ps.executeUpdate();
+                ps.setInt(1, novoAtivo ? 1 : 0);
+                ps.setInt(2, usuarioId);
+                ps.executeUpdate();
 
-            auditoria.registrar(novoAtivo ? "ATIVAR" : "INATIVAR",
-                    "USUARIO",
-                    String.valueOf(usuarioId),
-                    "status=" + (novoAtivo ? "ativo" : "inativo"));
+                auditoria.registrar(novoAtivo ? "ATIVAR" : "INATIVAR",
+                        "USUARIO",
+                        String.valueOf(usuarioId),
+                        "status=" + (novoAtivo ? "ativo" : "inativo"));
 
-        } catch (SQLException e) {
-            throw new RuntimeException("Erro ao ativar/inativar usuário", e);
-        }
+            } catch (SQLException e) {
+                throw new RuntimeException("Erro ao ativar/inativar usuário", e);
+            }
+        });
+
+        // lista de profissionais (Agenda/Caixa/Relatórios) fica em cache
+        UsuarioDAO.invalidarCacheProfissionais();
     }
 
     public void resetSenha(int usuarioId, String novaSenha) {
         String sql = "UPDATE usuario SET senha=? WHERE id=?";
-        try (Connection c = DatabaseConfig.getConnection();
-             PreparedStatement ps = c.prepareStatement(sql)) {
+        Transacao.executar(() -> {
+            try (Connection c = DatabaseConfig.getConnection();
+                 PreparedStatement ps = c.prepareStatement(sql)) {
 
-            ps.setString(1, novaSenha);
-            ps.setInt(2, usuarioId);
-            ps.executeUpdate();
+                ps.setString(1, novaSenha);
+                ps.setInt(2, usuarioId);
+                ps.executeUpdate();
 
-            auditoria.registrar("RESET_SENHA", "USUARIO", String.valueOf(usuarioId), "senha resetada");
+                auditoria.registrar("RESET_SENHA", "USUARIO", String.valueOf(usuarioId), "senha resetada");
 
-        } catch (SQLException e) {
-            throw new RuntimeException("Erro ao resetar senha", e);
-        }
+            } catch (SQLException e) {
+                throw new RuntimeException("Erro ao resetar senha", e);
+            }
+        });
     }
 }
\ No newline at end of file
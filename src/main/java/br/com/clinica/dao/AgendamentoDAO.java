@@ -1,39 +1,83 @@
 package br.com.clinica.dao;
 
 import br.com.clinica.database.DatabaseConfig;
+import br.com.clinica.database.Transacao;
 import br.com.clinica.model.Agendamento;
 import br.com.clinica.model.enums.SalaAtendimento;
 import br.com.clinica.model.enums.StatusAgendamento;
+import br.com.clinica.service.CacheAgenda;
+import br.com.clinica.service.IndiceAgenda;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.time.LocalDate;
 import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public class AgendamentoDAO {
 
     private static final DateTimeFormatter HORA_FORMATTER =
             DateTimeFormatter.ofPattern("HH:mm");
 
-    public void salvar(Agendamento ag) {
+    /**
+     * Linha do feed de alterações (agenda_alteracao, V006).
+     * atual = estado atual do agendamento; null se foi excluído.
+     */
+    public record Alteracao(long seq, String op, int agendamentoId, Agendamento atual) {}
+
+    /**
+     * Resultado de {@link #salvarSerie}: ou grava tudo (conflitos vazio, gravados com ao menos uma data), ou nada
+     * (conflitos = agendamentos existentes que ocupam alguma das datas).
+     */
+    public record ResultadoSerie(List<Agendamento> gravados, List<Agendamento> conflitos) {
+        public boolean ok() { return conflitos.isEmpty(); }
+    }
+
+    /** Sobreposição detectada pelo banco no meio do lote: desfaz a transação inteira. */
+    private static final class SobreposicaoException extends RuntimeException {
+        SobreposicaoException(SQLException causa) {
+            super(causa.getMessage(), causa);
+        }
+    }
+
+    /**
+     * Insere o agendamento se não houver sobreposição (profissional, sala ou paciente; cancelados não contam).
+     * Verificação e insert vão no mesmo comando; no Postgres a exclusion constraint (V005) fecha a corrida
+     * entre duas estações, no SQLite o trigger roda no único escritor.
+     *
+     * @return false se conflitou (nada foi gravado); true se gravou (ag.id preenchido)
+     */
+    public boolean salvar(Agendamento ag) {
         String sql = "INSERT INTO agendamento (" +
                 "data, hora_inicio, hora_fim, " +
                 "profissional_id, profissional_nome, " +
                 "paciente_id, paciente_nome, " +
                 "sala, procedimento, observacoes, status" +
-                ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+                ") SELECT ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ? " +
+                "WHERE NOT EXISTS (" +
+                "SELECT 1 FROM agendamento " +
+                "WHERE data = ? AND status <> ? " +
+                "AND ( (profissional_id = ?) OR (sala = ?) OR (paciente_id = ?) ) " +
+                "AND (hora_inicio < ? AND hora_fim > ?)" +
+                ")";
+
+        String data = ag.getData().toString(); // coluna data é text
+        String inicio = ag.getHoraInicio().format(HORA_FORMATTER);
+        String fim = ag.getHoraFim().format(HORA_FORMATTER);
 
         try (Connection conn = DatabaseConfig.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
+             PreparedStatement ps = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
 
-            ps.setString(1, ag.getData().toString()); // coluna data é text
-            ps.setString(2, ag.getHoraInicio().format(HORA_FORMATTER));
-            ps.setString(3, ag.getHoraFim().format(HORA_FORMATTER));
+            ps.setString(1, data);
+            ps.setString(2, inicio);
+            ps.setString(3, fim);
             ps.setInt(4, ag.getProfissionalId());
             ps.setString(5, ag.getProfissionalNome());
 
@@ -46,17 +90,190 @@ public class AgendamentoDAO {
             ps.setString(10, ag.getObservacoes());
             ps.setString(11, ag.getStatus().name());
 
-            ps.executeUpdate();
+            // conflito
+            ps.setString(12, data);
+            ps.setString(13, StatusAgendamento.CANCELADO.name());
+            ps.setInt(14, ag.getProfissionalId());
+            ps.setString(15, ag.getSala().name());
+
+            if (ag.getPacienteId() != null) ps.setInt(16, ag.getPacienteId());
+            else ps.setNull(16, java.sql.Types.INTEGER);
+
+            ps.setString(17, fim);
+            ps.setString(18, inicio);
+
+            if (ps.executeUpdate() == 0) {
+                IndiceAgenda.invalidar(ag.getData()); // o índice em memória não sabia desse conflito
+                return false;
+            }
+
+            try (ResultSet rs = ps.getGeneratedKeys()) {
+                if (rs.next()) ag.setId(rs.getInt(1));
+            }
+            IndiceAgenda.salvo(ag);
+            CacheAgenda.invalidar(ag.getData());
+            return true;
         } catch (SQLException e) {
+            if (violouSobreposicao(e)) {
+                IndiceAgenda.invalidar(ag.getData());
+                return false;
+            }
             throw new RuntimeException("Erro ao salvar agendamento", e);
         }
     }
 
+    /**
+     * Grava todas as ocorrências da série (ag.recorrencia) ou nenhuma.
+     *
+     * Uma consulta de período traz o que já está ocupado entre a primeira e a última data; o conflito de cada
+     * ocorrência é conferido em memória. Sem conflito, todas entram num único batch, na mesma transação da
+     * consulta (no SQLite é o único escritor; no Postgres a exclusion constraint pega quem entrou no meio).
+     */
+    public ResultadoSerie salvarSerie(Agendamento modelo) {
+        List<LocalDate> datas = modelo.getRecorrencia() != null
+                ? modelo.getRecorrencia().datas(modelo.getData())
+                : List.of(modelo.getData());
+        if (datas.isEmpty()) throw new IllegalArgumentException("A repetição não gera nenhuma data.");
+
+        String serieId = java.util.UUID.randomUUID().toString();
+        List<Agendamento> ocorrencias = new ArrayList<>();
+        for (LocalDate d : datas) ocorrencias.add(ocorrencia(modelo, d, serieId));
+
+        String sql = "INSERT INTO agendamento (" +
+                "data, hora_inicio, hora_fim, " +
+                "profissional_id, profissional_nome, " +
+                "paciente_id, paciente_nome, " +
+                "sala, procedimento, observacoes, status, serie_id" +
+                ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+        ResultadoSerie resultado;
+        try {
+            resultado = Transacao.executar(() -> {
+                List<Agendamento> conflitos = conflitosDaSerie(ocorrencias, datas.get(0), datas.get(datas.size() - 1));
+                if (!conflitos.isEmpty()) return new ResultadoSerie(List.of(), conflitos);
+
+                try (Connection conn = DatabaseConfig.getConnection();
+                     PreparedStatement ps = conn.prepareStatement(sql)) {
+
+                    for (Agendamento ag : ocorrencias) {
+                        ps.setString(1, ag.getData().toString());
+                        ps.setString(2, ag.getHoraInicio().format(HORA_FORMATTER));
+                        ps.setString(3, ag.getHoraFim().format(HORA_FORMATTER));
+                        ps.setInt(4, ag.getProfissionalId());
+                        ps.setString(5, ag.getProfissionalNome());
+
+                        if (ag.getPacienteId() != null) ps.setInt(6, ag.getPacienteId());
+                        else ps.setNull(6, java.sql.Types.INTEGER);
+
+                        ps.setString(7, ag.getPacienteNome());
+                        ps.setString(8, ag.getSala().name());
+                        ps.setString(9, ag.getProcedimento());
+                        ps.setString(10, ag.getObservacoes());
+                        ps.setString(11, ag.getStatus().name());
+                        ps.setString(12, serieId);
+                        ps.addBatch();
+                    }
+                    ps.executeBatch();
+                } catch (SQLException e) {
+                    if (violouSobreposicao(e)) throw new SobreposicaoException(e);
+                    throw new RuntimeException("Erro ao salvar série de agendamentos", e);
+                }
+                return new ResultadoSerie(ocorrencias, List.of());
+            });
+        } catch (SobreposicaoException e) {
+            // outra estação marcou no meio: confere de novo só para dizer onde
+            List<Agendamento> conflitos = conflitosDaSerie(ocorrencias, datas.get(0), datas.get(datas.size() - 1));
+            if (conflitos.isEmpty()) {
+                // o conflito já saiu (ex: cancelado logo depois): nada foi gravado, não é sucesso
+                throw new IllegalStateException("Outro agendamento ocupou um dos horários durante a gravação. " +
+                        "Nada foi salvo; tente novamente.", e);
+            }
+            resultado = new ResultadoSerie(List.of(), conflitos);
+        }
+
+        for (LocalDate d : datas) {
+            IndiceAgenda.invalidar(d);
+            CacheAgenda.invalidar(d);
+        }
+        return resultado;
+    }
+
+    /** Agendamentos existentes que sobrepõem alguma ocorrência (uma consulta para o período da série). */
+    private List<Agendamento> conflitosDaSerie(List<Agendamento> ocorrencias, LocalDate inicio, LocalDate fim) {
+        Map<LocalDate, List<Agendamento>> ocupados = new HashMap<>();
+        for (Agendamento a : listarOcupadosPorPeriodo(inicio, fim)) {
+            ocupados.computeIfAbsent(a.getData(), k -> new ArrayList<>()).add(a);
+        }
+
+        List<Agendamento> conflitos = new ArrayList<>();
+        for (Agendamento novo : ocorrencias) {
+            for (Agendamento a : ocupados.getOrDefault(novo.getData(), List.of())) {
+                boolean mesmoRecurso = novo.getProfissionalId().equals(a.getProfissionalId())
+                        || novo.getSala() == a.getSala()
+                        || (novo.getPacienteId() != null && novo.getPacienteId().equals(a.getPacienteId()));
+                boolean sobrepoe = a.getHoraInicio().isBefore(novo.getHoraFim()) && a.getHoraFim().isAfter(novo.getHoraInicio());
+                if (mesmoRecurso && sobrepoe) {
+                    conflitos.add(a);
+                    break; // um por data basta para avisar
+                }
+            }
+        }
+        return conflitos;
+    }
+
+    private Agendamento ocorrencia(Agendamento modelo, LocalDate data, String serieId) {
+        Agendamento a = new Agendamento();
+        a.setData(data);
+        a.setHoraInicio(modelo.getHoraInicio());
+        a.setHoraFim(modelo.getHoraFim());
+        a.setProfissionalId(modelo.getProfissionalId());
+        a.setProfissionalNome(modelo.getProfissionalNome());
+        a.setPacienteId(modelo.getPacienteId());
+        a.setPacienteNome(modelo.getPacienteNome());
+        a.setSala(modelo.getSala());
+        a.setProcedimento(modelo.getProcedimento());
+        a.setObservacoes(modelo.getObservacoes());
+        a.setStatus(modelo.getStatus());
+        a.setSerieId(serieId);
+        return a;
+    }
+
+    /** Exclusion constraint do Postgres (23P01) ou RAISE do trigger do SQLite (ver V005). */
+    private boolean violouSobreposicao(SQLException e) {
+        // no batch o erro real pode vir encadeado (getNextException)
+        for (SQLException atual = e; atual != null; atual = atual.getNextException()) {
+            if ("23P01".equals(atual.getSQLState())) return true;
+            if (atual.getMessage() != null && atual.getMessage().contains("conflito_agenda")) return true;
+        }
+        return false;
+    }
+
+    /** Agendamentos do dia que ocupam horário (tudo menos cancelado), para o índice de conflitos. */
+    public List<Agendamento> listarOcupados(LocalDate data) {
+        String sql = "SELECT * FROM agendamento WHERE data = ? AND status <> ? ORDER BY hora_inicio";
+        List<Agendamento> lista = new ArrayList<>();
+
+        try (Connection conn = DatabaseConfig.getReadConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+
+            ps.setString(1, data.toString());
+            ps.setString(2, StatusAgendamento.CANCELADO.name());
+
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) lista.add(mapearAgendamento(rs));
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro ao listar horários ocupados", e);
+        }
+
+        return lista;
+    }
+
     public List<Agendamento> listarPorData(LocalDate data) {
         String sql = "SELECT * FROM agendamento WHERE data = ? AND status <> ? ORDER BY hora_inicio";
         List<Agendamento> lista = new ArrayList<>();
 
-        try (Connection conn = DatabaseConfig.getConnection();
+        try (Connection conn = DatabaseConfig.getReadConnection();
              PreparedStatement ps = conn.prepareStatement(sql)) {
 
             ps.setString(1, data.toString());
@@ -76,7 +293,7 @@ public class AgendamentoDAO {
         String sql = "SELECT * FROM agendamento WHERE data = ? AND profissional_id = ? AND status <> ? ORDER BY hora_inicio";
         List<Agendamento> lista = new ArrayList<>();
 
-        try (Connection conn = DatabaseConfig.getConnection();
+        try (Connection conn = DatabaseConfig.getReadConnection();
              PreparedStatement ps = conn.prepareStatement(sql)) {
 
             ps.setString(1, data.toString());
@@ -100,71 +317,93 @@ public class AgendamentoDAO {
 
             ps.setString(1, status.name());
             ps.setInt(2, agendamentoId);
-            ps.executeUpdate();
+            if (ps.executeUpdate() == 0) {
+                throw new IllegalArgumentException("Agendamento não encontrado (pode ter sido excluído em outra estação).");
+            }
+
+            IndiceAgenda.statusAlterado(agendamentoId, status);
+            CacheAgenda.statusAlterado(agendamentoId, status);
 
         } catch (SQLException e) {
             throw new RuntimeException("Erro ao atualizar status do agendamento", e);
         }
     }
 
+    /**
+     * Postgres: exclusion constraints da V005 que não existem no banco. A migração pula a constraint
+     * quando já há sobreposições antigas; nesse caso só a checagem do INSERT do app protege a agenda.
+     */
+    public List<String> constraintsSobreposicaoAusentes() {
+        List<String> esperadas = List.of("ex_agendamento_profissional", "ex_agendamento_sala", "ex_agendamento_paciente");
+        if (!DatabaseConfig.isPostgres()) return List.of();
+
+        String sql = "SELECT conname FROM pg_constraint WHERE conrelid = 'agendamento'::regclass AND contype = 'x'";
+        List<String> faltando = new ArrayList<>(esperadas);
+
+        try (Connection conn = DatabaseConfig.getReadConnection();
+             PreparedStatement ps = conn.prepareStatement(sql);
+             ResultSet rs = ps.executeQuery()) {
+
+            while (rs.next()) faltando.remove(rs.getString(1));
+            return faltando;
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro ao conferir constraints da agenda", e);
+        }
+    }
+
     public void finalizarConsulta(int agendamentoId) {
         atualizarStatus(agendamentoId, StatusAgendamento.CONCLUIDO);
     }
 
-    public boolean existeConflito(Agendamento ag) {
-        String sql = "SELECT COUNT(1) " +
-                "FROM agendamento " +
-                "WHERE data = ? AND status <> ? " +
-                "AND ( (profissional_id = ?) OR (sala = ?) OR (paciente_id = ?) ) " +
-                "AND (hora_inicio < ? AND hora_fim > ?)";
-
-        try (Connection conn = DatabaseConfig.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
+    public List<Agendamento> listarPorPeriodo(LocalDate inicio, LocalDate fim) {
+        String sql = "SELECT * FROM agendamento " +
+                "WHERE data >= ? AND data <= ? " +
+                "AND status <> ? " +
+                "ORDER BY data, hora_inicio";
 
-            ps.setString(1, ag.getData().toString());
-            ps.setString(2, StatusAgendamento.CANCELADO.name());
-            ps.setInt(3, ag.getProfissionalId());
-            ps.setString(4, ag.getSala().name());
+        List<Agendamento> lista = new ArrayList<>();
 
-            if (ag.getPacienteId() != null) ps.setInt(5, ag.getPacienteId());
-            else ps.setNull(5, java.sql.Types.INTEGER);
+        try (Connection conn = DatabaseConfig.getReadConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
 
-            ps.setString(6, ag.getHoraFim().format(HORA_FORMATTER));
-            ps.setString(7, ag.getHoraInicio().format(HORA_FORMATTER));
+            // coluna data é text ISO: comparar texto com texto usa o índice (date(data) forçava full scan)
+            ps.setString(1, inicio.toString());
+            ps.setString(2, fim.toString());
+            ps.setString(3, StatusAgendamento.CONCLUIDO.name());
 
             try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) return rs.getInt(1) > 0;
+                while (rs.next()) {
+                    lista.add(mapearAgendamento(rs));
+                }
             }
         } catch (SQLException e) {
-            throw new RuntimeException("Erro ao verificar conflito de agenda", e);
+            throw new RuntimeException("Erro ao listar agendamentos por período", e);
         }
 
-        return false;
+        return lista;
     }
 
-    public List<Agendamento> listarPorPeriodo(LocalDate inicio, LocalDate fim) {
+    /** Tudo que ocupa horário no período (menos cancelados), para a busca de horários livres. */
+    public List<Agendamento> listarOcupadosPorPeriodo(LocalDate inicio, LocalDate fim) {
         String sql = "SELECT * FROM agendamento " +
-                "WHERE date(data) BETWEEN ? AND ? " +
+                "WHERE data >= ? AND data <= ? " +
                 "AND status <> ? " +
                 "ORDER BY data, hora_inicio";
 
         List<Agendamento> lista = new ArrayList<>();
 
-        try (Connection conn = DatabaseConfig.getConnection();
+        try (Connection conn = DatabaseConfig.getReadConnection();
              PreparedStatement ps = conn.prepareStatement(sql)) {
 
-            // ✅ fix do erro date >= varchar
-            ps.setObject(1, inicio);
-            ps.setObject(2, fim);
-            ps.setString(3, StatusAgendamento.CONCLUIDO.name());
+            ps.setString(1, inicio.toString());
+            ps.setString(2, fim.toString());
+            ps.setString(3, StatusAgendamento.CANCELADO.name());
 
             try (ResultSet rs = ps.executeQuery()) {
-                while (rs.next()) {
-                    lista.add(mapearAgendamento(rs));
-                }
+                while (rs.next()) lista.add(mapearAgendamento(rs));
             }
         } catch (SQLException e) {
-            throw new RuntimeException("Erro ao listar agendamentos por período", e);
+            throw new RuntimeException("Erro ao listar horários ocupados do período", e);
         }
 
         return lista;
@@ -172,19 +411,19 @@ public class AgendamentoDAO {
 
     public List<Agendamento> listarPorPeriodoEProfissional(LocalDate inicio, LocalDate fim, Integer profissionalId) {
         String sql = "SELECT * FROM agendamento " +
-                "WHERE date(data) BETWEEN ? AND ? " +
+                "WHERE data >= ? AND data <= ? " +
                 "AND profissional_id = ? " +
                 "AND status <> ? " +
                 "ORDER BY data, hora_inicio";
 
         List<Agendamento> lista = new ArrayList<>();
 
-        try (Connection conn = DatabaseConfig.getConnection();
+        try (Connection conn = DatabaseConfig.getReadConnection();
              PreparedStatement ps = conn.prepareStatement(sql)) {
 
-            // ✅ fix do erro date >= varchar
-            ps.setObject(1, inicio);
-            ps.setObject(2, fim);
+            // mesmo range do listarPorPeriodo (cai em idx_agendamento_data_prof)
+            ps.setString(1, inicio.toString());
+            ps.setString(2, fim.toString());
             ps.setInt(3, profissionalId);
             ps.setString(4, StatusAgendamento.CONCLUIDO.name());
 
@@ -200,6 +439,80 @@ public class AgendamentoDAO {
         return lista;
     }
 
+    // =========================================================
+    // FEED DE ALTERAÇÕES (ver AgendaFeed)
+    // =========================================================
+
+    /** Versão atual da agenda (último seq de agenda_alteracao; 0 se vazio). */
+    public long ultimaAlteracao() {
+        try (Connection conn = DatabaseConfig.getReadConnection();
+             PreparedStatement ps = conn.prepareStatement("SELECT MAX(seq) FROM agenda_alteracao");
+             ResultSet rs = ps.executeQuery()) {
+            return rs.next() ? rs.getLong(1) : 0;
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro ao consultar versão da agenda", e);
+        }
+    }
+
+    /** Só os seq das alterações com seq > desde (conferência barata, pela chave primária). */
+    public List<Long> listarSeqAlteracoesDesde(long desde) {
+        List<Long> out = new ArrayList<>();
+
+        try (Connection conn = DatabaseConfig.getReadConnection();
+             PreparedStatement ps = conn.prepareStatement("SELECT seq FROM agenda_alteracao WHERE seq > ? ORDER BY seq")) {
+
+            ps.setLong(1, desde);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) out.add(rs.getLong(1));
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro ao listar alterações da agenda", e);
+        }
+        return out;
+    }
+
+    /** Alterações com seq > desde, já com o estado atual de cada agendamento (em ordem de seq). */
+    public List<Alteracao> listarAlteracoesDesde(long desde) {
+        String sql = "SELECT l.seq AS alt_seq, l.op AS alt_op, l.agendamento_id AS alt_agendamento_id, a.* " +
+                "FROM agenda_alteracao l " +
+                "LEFT JOIN agendamento a ON a.id = l.agendamento_id " +
+                "WHERE l.seq > ? " +
+                "ORDER BY l.seq";
+
+        List<Alteracao> lista = new ArrayList<>();
+
+        try (Connection conn = DatabaseConfig.getReadConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+
+            ps.setLong(1, desde);
+
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    rs.getInt("id");
+                    Agendamento atual = rs.wasNull() ? null : mapearAgendamento(rs);
+                    lista.add(new Alteracao(rs.getLong("alt_seq"), rs.getString("alt_op"),
+                            rs.getInt("alt_agendamento_id"), atual));
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro ao listar alterações da agenda", e);
+        }
+
+        return lista;
+    }
+
+    /** Apaga o histórico do feed, mantendo as últimas {@code manter} alterações. */
+    public void limparAlteracoes(long manter) {
+        try (Connection conn = DatabaseConfig.getConnection();
+             PreparedStatement ps = conn.prepareStatement(
+                     "DELETE FROM agenda_alteracao WHERE seq <= (SELECT MAX(seq) FROM agenda_alteracao) - ?")) {
+            ps.setLong(1, manter);
+            ps.executeUpdate();
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro ao limpar alterações da agenda", e);
+        }
+    }
+
     private Agendamento mapearAgendamento(ResultSet rs) throws SQLException {
         Agendamento a = new Agendamento();
         a.setId(rs.getInt("id")); // ✅ mantém int/Integer (como seu model)
@@ -218,6 +531,7 @@ public class AgendamentoDAO {
         a.setProcedimento(rs.getString("procedimento"));
         a.setObservacoes(rs.getString("observacoes"));
         a.setStatus(StatusAgendamento.valueOf(rs.getString("status")));
+        a.setSerieId(rs.getString("serie_id"));
         return a;
     }
 }
\ No newline at end of file
@@ -116,7 +116,7 @@ public class AnamneseDAO {
              LIMIT 1
         """;
 
-        try (Connection conn = DatabaseConfig.getConnection();
+        try (Connection conn = DatabaseConfig.getReadConnection();
              PreparedStatement ps = conn.prepareStatement(sql)) {
 
             ps.setInt(1, agendamentoId);
@@ -140,7 +140,7 @@ public class AnamneseDAO {
              LIMIT 1
         """;
 
-        try (Connection conn = DatabaseConfig.getConnection();
+        try (Connection conn = DatabaseConfig.getReadConnection();
              PreparedStatement ps = conn.prepareStatement(sql)) {
 
             ps.setLong(1, pacienteId);
@@ -163,7 +163,7 @@ public class AnamneseDAO {
         String sql = "SELECT * FROM anamnese WHERE paciente_id = ? ORDER BY data_hora DESC";
         List<Anamnese> list = new ArrayList<>();
 
-        try (Connection conn = DatabaseConfig.getConnection();
+        try (Connection conn = DatabaseConfig.getReadConnection();
              PreparedStatement ps = conn.prepareStatement(sql)) {
 
             ps.setLong(1, pacienteId);
@@ -182,7 +182,7 @@ public class AnamneseDAO {
         String sql = "SELECT * FROM anamnese WHERE agendamento_id = ? ORDER BY data_hora DESC";
         List<Anamnese> list = new ArrayList<>();
 
-        try (Connection conn = DatabaseConfig.getConnection();
+        try (Connection conn = DatabaseConfig.getReadConnection();
              PreparedStatement ps = conn.prepareStatement(sql)) {
 
             ps.setInt(1, agendamentoId);
@@ -199,7 +199,7 @@ public class AnamneseDAO {
 
     public Anamnese buscarPorId(int id) {
         String sql = "SELECT * FROM anamnese WHERE id = ?";
-        try (Connection conn = DatabaseConfig.getConnection();
+        try (Connection conn = DatabaseConfig.getReadConnection();
              PreparedStatement ps = conn.prepareStatement(sql)) {
 
             ps.setInt(1, id);
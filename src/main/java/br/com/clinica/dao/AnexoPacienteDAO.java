@@ -1,6 +1,7 @@
 package br.com.clinica.dao;
 
 import br.com.clinica.database.DatabaseConfig;
+import br.com.clinica.database.Transacao;
 import br.com.clinica.service.SupabaseStorageService;
 
 import java.awt.Desktop;
@@ -18,17 +19,16 @@ public class AnexoPacienteDAO {
 
     private static final DateTimeFormatter DB_FMT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
 
-    // Storage (Supabase)
-    private final SupabaseStorageService storage = new SupabaseStorageService();
+    // Storage (Supabase): criado só quando for usado (lê supabase.* do db.properties)
+    private SupabaseStorageService storage;
 
+    private SupabaseStorageService storage() {
+        if (storage == null) storage = new SupabaseStorageService();
+        return storage;
+    }
+
+    // Schema (tabela anexo_paciente) vem das migrações: o construtor não faz I/O.
     public AnexoPacienteDAO() {
-        // No PostgreSQL/Supabase não existe PRAGMA nem AUTOINCREMENT.
-        // Mantemos o auto-ajuste de schema apenas no SQLite.
-        if (!isPostgres()) {
-            criarOuAjustarTabela();
-        } else {
-            garantirTabelaPostgres();
-        }
     }
 
     // ======================================================
@@ -84,107 +84,6 @@ public class AnexoPacienteDAO {
         }
     }
 
-    // =========================
-    // Detecta banco (SQLite x PostgreSQL)
-    // =========================
-    private boolean isPostgres() {
-        try (Connection conn = DatabaseConfig.getConnection()) {
-            String prod = conn.getMetaData().getDatabaseProductName();
-            return prod != null && prod.toLowerCase().contains("postgres");
-        } catch (Exception e) {
-            return false;
-        }
-    }
-
-    /**
-     * No Postgres/Supabase, garantimos a tabela usando sintaxe compatível.
-     * Não usamos PRAGMA e não usamos AUTOINCREMENT.
-     */
-    private void garantirTabelaPostgres() {
-        String create = """
-                CREATE TABLE IF NOT EXISTS anexo_paciente (
-                    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
-                    paciente_id BIGINT NOT NULL,
-                    anamnese INTEGER NULL,
-                    nome_arquivo TEXT NOT NULL,
-                    caminho_arquivo TEXT NOT NULL,
-                    storage_path TEXT NULL,
-                    tamanho_bytes BIGINT NULL,
-                    descricao TEXT NULL,
-                    data_hora TEXT NOT NULL
-                );
-                """;
-
-        try (Connection conn = DatabaseConfig.getConnection();
-             Statement st = conn.createStatement()) {
-
-            st.execute(create);
-
-            // Garantir colunas (caso sua tabela tenha sido criada antes sem alguma coluna)
-            st.execute("ALTER TABLE anexo_paciente ADD COLUMN IF NOT EXISTS anamnese INTEGER NULL");
-            st.execute("ALTER TABLE anexo_paciente ADD COLUMN IF NOT EXISTS nome_arquivo TEXT NOT NULL DEFAULT ''");
-            st.execute("ALTER TABLE anexo_paciente ADD COLUMN IF NOT EXISTS caminho_arquivo TEXT NOT NULL DEFAULT ''");
-            st.execute("ALTER TABLE anexo_paciente ADD COLUMN IF NOT EXISTS storage_path TEXT NULL");
-            st.execute("ALTER TABLE anexo_paciente ADD COLUMN IF NOT EXISTS tamanho_bytes BIGINT NULL");
-            st.execute("ALTER TABLE anexo_paciente ADD COLUMN IF NOT EXISTS descricao TEXT NULL");
-            st.execute("ALTER TABLE anexo_paciente ADD COLUMN IF NOT EXISTS data_hora TEXT NOT NULL DEFAULT ''");
-
-        } catch (SQLException e) {
-            throw new RuntimeException("Erro ao garantir tabela anexo_paciente (Postgres)", e);
-        }
-    }
-
-    private void criarOuAjustarTabela() {
-        String create = """
-                CREATE TABLE IF NOT EXISTS anexo_paciente (
-                    id INTEGER PRIMARY KEY AUTOINCREMENT,
-                    paciente_id INTEGER NOT NULL,
-                    anamnese INTEGER NULL,
-                    nome_arquivo TEXT NOT NULL,
-                    caminho_arquivo TEXT NOT NULL,
-                    storage_path TEXT NULL,
-                    tamanho_bytes INTEGER NULL,
-                    descricao TEXT NULL,
-                    data_hora TEXT NOT NULL
-                );
-                """;
-
-        try (Connection conn = DatabaseConfig.getConnection();
-             Statement st = conn.createStatement()) {
-            st.execute(create);
-        } catch (SQLException e) {
-            throw new RuntimeException("Erro ao criar tabela anexo_paciente", e);
-        }
-
-        Set<String> cols = new HashSet<>();
-        try (Connection conn = DatabaseConfig.getConnection();
-             Statement st = conn.createStatement();
-             ResultSet rs = st.executeQuery("PRAGMA table_info(anexo_paciente)")) {
-            while (rs.next()) cols.add(rs.getString("name"));
-        } catch (SQLException e) {
-            throw new RuntimeException("Erro ao ler schema de anexo_paciente", e);
-        }
-
-        addColumnIfMissing(cols, "anamnese", "INTEGER NULL");
-        addColumnIfMissing(cols, "nome_arquivo", "TEXT NOT NULL DEFAULT ''");
-        addColumnIfMissing(cols, "caminho_arquivo", "TEXT NOT NULL DEFAULT ''");
-        addColumnIfMissing(cols, "storage_path", "TEXT NULL");
-        addColumnIfMissing(cols, "tamanho_bytes", "INTEGER NULL");
-        addColumnIfMissing(cols, "descricao", "TEXT NULL");
-        addColumnIfMissing(cols, "data_hora", "TEXT NOT NULL DEFAULT ''");
-    }
-
-    private void addColumnIfMissing(Set<String> cols, String col, String ddl) {
-        if (cols.contains(col)) return;
-        String sql = "ALTER TABLE anexo_paciente ADD COLUMN " + col + " " + ddl + ";";
-        try (Connection conn = DatabaseConfig.getConnection();
-             Statement st = conn.createStatement()) {
-            st.execute(sql);
-        } catch (SQLException e) {
-            throw new RuntimeException("Erro ao adicionar coluna '" + col + "' em anexo_paciente", e);
-        }
-    }
-
     // =========================
     // PDF (NUVEM + LEGADO)
     // =========================
@@ -208,7 +107,7 @@ public class AnexoPacienteDAO {
             String storagePath = "pacientes/" + pacienteId + "/" + unique;
 
             // upload nuvem
-            storage.uploadPdf(storagePath, arquivoPdf.toPath());
+            storage().uploadPdf(storagePath, arquivoPdf.toPath());
 
             Long tamanho = null;
             try { tamanho = Files.size(arquivoPdf.toPath()); } catch (Exception ignored) {}
@@ -252,7 +151,7 @@ public class AnexoPacienteDAO {
         String sql = "SELECT * FROM anexo_paciente WHERE paciente_id = ? ORDER BY data_hora DESC";
         List<AnexoPacienteItem> list = new ArrayList<>();
 
-        try (Connection conn = DatabaseConfig.getConnection();
+        try (Connection conn = DatabaseConfig.getReadConnection();
              PreparedStatement ps = conn.prepareStatement(sql)) {
 
             ps.setLong(1, pacienteId);
@@ -312,7 +211,7 @@ public class AnexoPacienteDAO {
 
         // remove da nuvem
         if (storagePath != null && !storagePath.isBlank()) {
-            try { storage.delete(storagePath); } catch (Exception ignored) {}
+            try { storage().delete(storagePath); } catch (Exception ignored) {}
         }
 
         // remove local (legado)
@@ -330,7 +229,7 @@ public class AnexoPacienteDAO {
         }
 
         try {
-            String url = storage.createSignedUrl(storagePath);
+            String url = storage().createSignedUrl(storagePath);
             // segurança extra contra espaços (evita URISyntaxException)
             url = url.replace(" ", "%20");
             Desktop.getDesktop().browse(new URI(url));
@@ -389,8 +288,70 @@ public class AnexoPacienteDAO {
 
         String agora = LocalDateTime.now().format(DB_FMT);
 
-        // verifica se já existe um anexo "EVOLUCAO" para esta anamneseId
-        Long existenteId = null;
+        // busca + insert/update na mesma conexão/commit
+        final Long tamanhoFinal = tamanho;
+        Transacao.executar(() -> {
+            // verifica se já existe um anexo "EVOLUCAO" para esta anamneseId
+            Long existenteId = buscarIdAnexoEvolucao(pacienteId, anamneseId);
+            if (existenteId == null) {
+                String ins = """
+                    INSERT INTO anexo_paciente
+                    (paciente_id, anamnese, nome_arquivo, caminho_arquivo, storage_path, tamanho_bytes, descricao, data_hora)
+                    VALUES (?, ?, ?, ?, ?, ?, ?, ?)
+                """;
+                try (Connection conn = DatabaseConfig.getConnection();
+                     PreparedStatement ps = conn.prepareStatement(ins)) {
+
+                    ps.setLong(1, pacienteId);
+                    ps.setInt(2, anamneseId);
+                    ps.setString(3, nomeArquivo);
+                    ps.setString(4, destino.toAbsolutePath().toString());
+                    ps.setNull(5, Types.VARCHAR); // storage_path (não usado para evolução local)
+
+                    if (tamanhoFinal == null) ps.setNull(6, Types.BIGINT);
+                    else ps.setLong(6, tamanhoFinal);
+
+                    ps.setString(7, "EVOLUCAO");
+                    ps.setString(8, agora);
+
+                    ps.executeUpdate();
+
+                } catch (SQLException e) {
+                    throw new RuntimeException("Erro ao inserir anexo TXT da evolução", e);
+                }
+            } else {
+                String upd = """
+                    UPDATE anexo_paciente
+                       SET nome_arquivo = ?,
+                           caminho_arquivo = ?,
+                           storage_path = NULL,
+                           tamanho_bytes = ?,
+                           descricao = 'EVOLUCAO',
+                           data_hora = ?
+                     WHERE id = ?
+                """;
+                try (Connection conn = DatabaseConfig.getConnection();
+                     PreparedStatement ps = conn.prepareStatement(upd)) {
+
+                    ps.setString(1, nomeArquivo);
+                    ps.setString(2, destino.toAbsolutePath().toString());
+
+                    if (tamanhoFinal == null) ps.setNull(3, Types.BIGINT);
+                    else ps.setLong(3, tamanhoFinal);
+
+                    ps.setString(4, agora);
+                    ps.setLong(5, existenteId);
+
+                    ps.executeUpdate();
+
+                } catch (SQLException e) {
+                    throw new RuntimeException("Erro ao atualizar anexo TXT da evolução", e);
+                }
+            }
+        });
+    }
+
+    private Long buscarIdAnexoEvolucao(Long pacienteId, Integer anamneseId) {
         String q = """
             SELECT id FROM anexo_paciente
              WHERE paciente_id = ?
@@ -405,66 +366,10 @@ public class AnexoPacienteDAO {
             ps.setLong(1, pacienteId);
             ps.setInt(2, anamneseId);
             try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) existenteId = rs.getLong(1);
+                return rs.next() ? rs.getLong(1) : null;
             }
         } catch (SQLException e) {
             throw new RuntimeException("Erro ao verificar anexo de evolução existente", e);
         }
-
-        if (existenteId == null) {
-            String ins = """
-                INSERT INTO anexo_paciente
-                (paciente_id, anamnese, nome_arquivo, caminho_arquivo, storage_path, tamanho_bytes, descricao, data_hora)
-                VALUES (?, ?, ?, ?, ?, ?, ?, ?)
-            """;
-            try (Connection conn = DatabaseConfig.getConnection();
-                 PreparedStatement ps = conn.prepareStatement(ins)) {
-
-                ps.setLong(1, pacienteId);
-                ps.setInt(2, anamneseId);
-                ps.setString(3, nomeArquivo);
-                ps.setString(4, destino.toAbsolutePath().toString());
-                ps.setNull(5, Types.VARCHAR); // storage_path (não usado para evolução local)
-
-                if (tamanho == null) ps.setNull(6, Types.BIGINT);
-                else ps.setLong(6, tamanho);
-
-                ps.setString(7, "EVOLUCAO");
-                ps.setString(8, agora);
-
-                ps.executeUpdate();
-
-            } catch (SQLException e) {
-                throw new RuntimeException("Erro ao inserir anexo TXT da evolução", e);
-            }
-        } else {
-            String upd = """
-                UPDATE anexo_paciente
-                   SET nome_arquivo = ?,
-                       caminho_arquivo = ?,
-                       storage_path = NULL,
-                       tamanho_bytes = ?,
-                       descricao = 'EVOLUCAO',
-                       data_hora = ?
-                 WHERE id = ?
-            """;
-            try (Connection conn = DatabaseConfig.getConnection();
-                 PreparedStatement ps = conn.prepareStatement(upd)) {
-
-                ps.setString(1, nomeArquivo);
-                ps.setString(2, destino.toAbsolutePath().toString());
-
-                if (tamanho == null) ps.setNull(3, Types.BIGINT);
-                else ps.setLong(3, tamanho);
-
-                ps.setString(4, agora);
-                ps.setLong(5, existenteId);
-
-                ps.executeUpdate();
-
-            } catch (SQLException e) {
-                throw new RuntimeException("Erro ao atualizar anexo TXT da evolução", e);
-            }
-        }
     }
-}
\ No newline at end of file
+}
@@ -1,7 +1,8 @@
 package br.com.clinica.dao;
 
 import br.com.clinica.database.DatabaseConfig;
-import br.com.clinica.session.Session;
+import br.com.clinica.database.Transacao;
+import br.com.clinica.service.AuditoriaService;
 
 import java.sql.*;
 import java.time.LocalDateTime;
@@ -45,14 +46,45 @@ public class AuditLogDAO {
         }
     }
 
-    // Atalho: abre conexão e usa Session.getUsuario()
+    /** Uma linha de audit_log já montada (data/usuário capturados na hora da ação). */
+    public record Registro(String dataHora, Integer usuarioId, String acao,
+                           String entidade, String entidadeId, String detalhes) {}
+
+    // Atalho: vai para a fila do AuditoriaService (gravação em lote, fora da thread de quem chama).
+    // Dentro de uma Transacao só entra na fila depois do commit: operação desfeita não é auditada.
     public void registrarAuto(String acao, String entidade, String entidadeId, String detalhes) {
-        Integer uid = (Session.getUsuario() != null) ? Session.getUsuario().getId() : null;
+        Registro r = AuditoriaService.montar(acao, entidade, entidadeId, detalhes);
+        Transacao.aposCommit(() -> AuditoriaService.enfileirar(r));
+    }
+
+    // Grava vários registros num único batch/commit (usado pelo AuditoriaService)
+    public void gravarLote(List<Registro> registros) throws SQLException {
+        if (registros.isEmpty()) return;
+
+        String sql = "INSERT INTO audit_log (data_hora, usuario_id, acao, entidade, entidade_id, detalhes) " +
+                "VALUES (?, ?, ?, ?, ?, ?)";
 
         try (Connection c = DatabaseConfig.getConnection()) {
-            registrar(c, uid, acao, entidade, entidadeId, detalhes);
-        } catch (SQLException e) {
-            // auditoria nunca deve quebrar a operação principal
+            c.setAutoCommit(false);
+            try (PreparedStatement ps = c.prepareStatement(sql)) {
+                for (Registro r : registros) {
+                    ps.setString(1, r.dataHora());
+                    if (r.usuarioId() != null) ps.setInt(2, r.usuarioId());
+                    else ps.setNull(2, Types.INTEGER);
+                    ps.setString(3, r.acao());
+                    ps.setString(4, r.entidade());
+                    ps.setString(5, r.entidadeId());
+                    ps.setString(6, r.detalhes());
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+                c.commit();
+            } catch (SQLException e) {
+                try { c.rollback(); } catch (SQLException ignored) {}
+                throw e;
+            } finally {
+                c.setAutoCommit(true);
+            }
         }
     }
 
@@ -86,7 +118,7 @@ public class AuditLogDAO {
 
         List<AuditRow> out = new ArrayList<>();
 
-        try (Connection c = DatabaseConfig.getConnection();
+        try (Connection c = DatabaseConfig.getReadConnection();
              PreparedStatement ps = c.prepareStatement(sql.toString())) {
 
             for (int i = 0; i < params.size(); i++) ps.setObject(i + 1, params.get(i));
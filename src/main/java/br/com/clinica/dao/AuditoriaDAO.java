@@ -1,6 +1,8 @@
 package br.com.clinica.dao;
 
 import br.com.clinica.database.DatabaseConfig;
+import br.com.clinica.database.Transacao;
+import br.com.clinica.service.AuditoriaService;
 
 import java.sql.*;
 import java.util.ArrayList;
@@ -36,7 +38,7 @@ public class AuditoriaDAO {
 
         List<LinhaAuditoria> out = new ArrayList<>();
 
-        try (Connection c = DatabaseConfig.getConnection();
+        try (Connection c = DatabaseConfig.getReadConnection();
              PreparedStatement ps = c.prepareStatement(sql)) {
 
             int lim = Math.max(10, Math.min(limite, 2000));
@@ -77,37 +79,9 @@ public class AuditoriaDAO {
 
 
     }
+    // Vai para a fila do AuditoriaService (gravado em lote em background); dentro de uma Transacao, só após o commit
     public void registrar(String acao, String entidade, String entidadeId, String detalhes) {
-        String sql = """
-        INSERT INTO audit_log (data_hora, usuario_id, acao, entidade, entidade_id, detalhes)
-        VALUES (CURRENT_TIMESTAMP, ?, ?, ?, ?, ?)
-    """;
-
-        Integer usuarioId = null;
-        try {
-            if (br.com.clinica.session.Session.getUsuario() != null) {
-                usuarioId = br.com.clinica.session.Session.getUsuario().getId();
-            }
-        } catch (Exception ignored) {}
-
-        try (java.sql.Connection c = br.com.clinica.database.DatabaseConfig.getConnection();
-             java.sql.PreparedStatement ps = c.prepareStatement(sql)) {
-
-            if (usuarioId != null) {
-                ps.setInt(1, usuarioId);
-            } else {
-                ps.setNull(1, java.sql.Types.INTEGER);
-            }
-
-            ps.setString(2, acao);
-            ps.setString(3, entidade);
-            ps.setString(4, entidadeId);
-            ps.setString(5, detalhes);
-
-            ps.executeUpdate();
-
-        } catch (java.sql.SQLException e) {
-            throw new RuntimeException("Erro ao registrar auditoria", e);
-        }
+        AuditLogDAO.Registro r = AuditoriaService.montar(acao, entidade, entidadeId, detalhes);
+        Transacao.aposCommit(() -> AuditoriaService.enfileirar(r));
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,262 @@
+package br.com.clinica.dao;
+
+import br.com.clinica.database.DatabaseConfig;
+import br.com.clinica.database.Transacao;
+import br.com.clinica.model.enums.TipoMovimento;
+
+import java.sql.*;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Fechamento de caixa (V011).
+ *
+ * Fechar um dia grava os totais dele (e por tipo/forma de pagamento) e o saldo acumulado até ali.
+ * Dias fechados ficam travados no banco (trigger em movimento_caixa), então o acumulado não muda mais:
+ * o saldo de qualquer data é o último fechamento + os movimentos depois dele, sem somar a história toda.
+ */
+public class FechamentoCaixaDAO {
+
+    private static final LocalDate INICIO_DOS_TEMPOS = LocalDate.of(1900, 1, 1);
+
+    public record Fechamento(LocalDate data, long quantidade, double entradas, double saidas,
+                             double saldoAcumulado, String fechadoEm, Integer usuarioId) {
+        public double saldoDia() {
+            return entradas - saidas;
+        }
+    }
+
+    private final MovimentoCaixaDAO movimentoCaixaDAO = new MovimentoCaixaDAO();
+    private final AuditLogDAO auditLogDAO = new AuditLogDAO();
+
+    /** Último dia fechado, ou null se o caixa nunca foi fechado. */
+    public LocalDate ultimoDiaFechado() {
+        Fechamento f = ultimoAte(null);
+        return f == null ? null : f.data();
+    }
+
+    /**
+     * Fecha todos os dias ainda abertos até {@code ate} (inclusive), um registro por dia, numa transação.
+     * Só fecha para frente (depois do último fechamento) e nunca dias futuros.
+     *
+     * @return os dias fechados agora
+     */
+    public List<Fechamento> fecharAte(LocalDate ate, Integer usuarioId) {
+        if (ate == null) throw new IllegalArgumentException("Informe o dia a fechar.");
+        if (ate.isAfter(LocalDate.now())) throw new IllegalArgumentException("Não é possível fechar um dia futuro.");
+
+        return Transacao.executar(() -> {
+            try (Connection c = DatabaseConfig.getConnection()) {
+                if (DatabaseConfig.isPostgres()) {
+                    // ninguém lança movimento nem fecha caixa enquanto os totais são calculados
+                    try (Statement st = c.createStatement()) {
+                        st.execute("LOCK TABLE fechamento_caixa, movimento_caixa IN SHARE ROW EXCLUSIVE MODE");
+                    }
+                }
+
+                Fechamento anterior = ultimoAte(null);
+                if (anterior != null && !ate.isAfter(anterior.data())) {
+                    throw new IllegalArgumentException("O caixa já está fechado até " + anterior.data() + ".");
+                }
+
+                // movimentos dos dias abertos, agrupados no banco
+                LocalDate de = (anterior != null) ? anterior.data().plusDays(1) : primeiroMovimento(c);
+                if (de == null || de.isAfter(ate)) de = ate;
+
+                MovimentoCaixaDAO.Resumo resumo = movimentoCaixaDAO.resumir(de, ate, false);
+                Map<LocalDate, List<MovimentoCaixaDAO.Soma>> porDia = new HashMap<>();
+                for (MovimentoCaixaDAO.Soma s : resumo.grupos()) {
+                    porDia.computeIfAbsent(s.data(), k -> new ArrayList<>()).add(s);
+                }
+
+                String agora = LocalDateTime.now().toString();
+                double acumulado = (anterior != null) ? anterior.saldoAcumulado() : 0.0;
+                List<Fechamento> fechados = new ArrayList<>();
+
+                String sqlDia = "INSERT INTO fechamento_caixa " +
+                        "(data, qtd_movimentos, entradas, saidas, saldo_acumulado, fechado_em, usuario_id) " +
+                        "VALUES (?, ?, ?, ?, ?, ?, ?)";
+                String sqlForma = "INSERT INTO fechamento_caixa_forma " +
+                        "(data, tipo, forma_pagamento, qtd_movimentos, valor) VALUES (?, ?, ?, ?, ?)";
+
+                try (PreparedStatement psDia = c.prepareStatement(sqlDia);
+                     PreparedStatement psForma = c.prepareStatement(sqlForma)) {
+
+                    for (LocalDate d = de; !d.isAfter(ate); d = d.plusDays(1)) {
+                        long qtd = 0;
+                        double entradas = 0.0, saidas = 0.0;
+
+                        for (MovimentoCaixaDAO.Soma s : porDia.getOrDefault(d, List.of())) {
+                            qtd += s.quantidade();
+                            if (s.tipo() == TipoMovimento.SAIDA) saidas += s.valor();
+                            else entradas += s.valor();
+
+                            psForma.setString(1, d.toString());
+                            psForma.setString(2, s.tipo() != null ? s.tipo().name() : "");
+                            psForma.setString(3, s.formaPagamento() != null ? s.formaPagamento() : "");
+                            psForma.setLong(4, s.quantidade());
+                            psForma.setDouble(5, s.valor());
+                            psForma.addBatch();
+                        }
+
+                        acumulado += entradas - saidas;
+
+                        psDia.setString(1, d.toString());
+                        psDia.setLong(2, qtd);
+                        psDia.setDouble(3, entradas);
+                        psDia.setDouble(4, saidas);
+                        psDia.setDouble(5, acumulado);
+                        psDia.setString(6, agora);
+                        if (usuarioId != null) psDia.setInt(7, usuarioId);
+                        else psDia.setNull(7, Types.INTEGER);
+                        psDia.addBatch();
+
+                        fechados.add(new Fechamento(d, qtd, entradas, saidas, acumulado, agora, usuarioId));
+                    }
+
+                    psDia.executeBatch();
+                    psForma.executeBatch();
+                }
+
+                auditLogDAO.registrarAuto("FECHAR", "CAIXA", ate.toString(), "dias fechados=" + fechados.size());
+
+                return fechados;
+            } catch (SQLException e) {
+                throw new RuntimeException("Erro ao fechar caixa", e);
+            }
+        });
+    }
+
+    /**
+     * Reabre o caixa a partir de {@code desde} (inclusive): apaga os fechamentos desse dia em diante,
+     * destravando os lançamentos (o trigger da V011 olha o último fechamento). Dias anteriores continuam
+     * fechados; fechar de novo recalcula os totais. Registra na auditoria.
+     *
+     * @return quantos dias foram reabertos
+     */
+    public int reabrirDesde(LocalDate desde) {
+        if (desde == null) throw new IllegalArgumentException("Informe o dia a reabrir.");
+
+        return Transacao.executar(() -> {
+            try (Connection c = DatabaseConfig.getConnection()) {
+                if (DatabaseConfig.isPostgres()) {
+                    try (Statement st = c.createStatement()) {
+                        st.execute("LOCK TABLE fechamento_caixa, movimento_caixa IN SHARE ROW EXCLUSIVE MODE");
+                    }
+                }
+
+                try (PreparedStatement ps = c.prepareStatement("DELETE FROM fechamento_caixa_forma WHERE data >= ?")) {
+                    ps.setString(1, desde.toString());
+                    ps.executeUpdate();
+                }
+
+                int dias;
+                try (PreparedStatement ps = c.prepareStatement("DELETE FROM fechamento_caixa WHERE data >= ?")) {
+                    ps.setString(1, desde.toString());
+                    dias = ps.executeUpdate();
+                }
+                if (dias == 0) throw new IllegalArgumentException("Não há caixa fechado a partir de " + desde + ".");
+
+                auditLogDAO.registrarAuto("REABRIR", "CAIXA", desde.toString(), "dias reabertos=" + dias);
+                return dias;
+            } catch (SQLException e) {
+                throw new RuntimeException("Erro ao reabrir caixa", e);
+            }
+        });
+    }
+
+    /**
+     * Saldo acumulado ao fim do dia {@code data}: último fechamento até a data + movimentos depois dele.
+     * A soma só passa pelos dias ainda abertos (ou pelos dias entre o fechamento e a data pedida).
+     */
+    public double saldoAte(LocalDate data) {
+        Fechamento f = ultimoAte(data);
+
+        String sql = "SELECT COALESCE(SUM(CASE WHEN tipo = 'SAIDA' THEN -valor ELSE valor END), 0) " +
+                "FROM movimento_caixa WHERE data > ? AND data <= ?";
+
+        try (Connection c = DatabaseConfig.getReadConnection();
+             PreparedStatement ps = c.prepareStatement(sql)) {
+
+            ps.setString(1, (f != null ? f.data() : INICIO_DOS_TEMPOS.minusDays(1)).toString());
+            ps.setString(2, data.toString());
+
+            try (ResultSet rs = ps.executeQuery()) {
+                double delta = rs.next() ? rs.getDouble(1) : 0.0;
+                return (f != null ? f.saldoAcumulado() : 0.0) + delta;
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro ao calcular saldo do caixa", e);
+        }
+    }
+
+    /** Fechamentos do período, em ordem de data. */
+    public List<Fechamento> listar(LocalDate inicio, LocalDate fim) {
+        String sql = "SELECT * FROM fechamento_caixa WHERE data >= ? AND data <= ? ORDER BY data";
+        List<Fechamento> out = new ArrayList<>();
+
+        try (Connection c = DatabaseConfig.getReadConnection();
+             PreparedStatement ps = c.prepareStatement(sql)) {
+
+            ps.setString(1, inicio.toString());
+            ps.setString(2, fim.toString());
+
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) out.add(mapRow(rs));
+            }
+            return out;
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro ao listar fechamentos de caixa", e);
+        }
+    }
+
+    // =========================================================
+    // HELPERS
+    // =========================================================
+
+    /** Último fechamento com data <= limite (limite null = o último de todos). */
+    private Fechamento ultimoAte(LocalDate limite) {
+        String sql = "SELECT * FROM fechamento_caixa " +
+                (limite != null ? "WHERE data <= ? " : "") +
+                "ORDER BY data DESC LIMIT 1";
+
+        try (Connection c = DatabaseConfig.getReadConnection();
+             PreparedStatement ps = c.prepareStatement(sql)) {
+
+            if (limite != null) ps.setString(1, limite.toString());
+
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? mapRow(rs) : null;
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro ao buscar fechamento de caixa", e);
+        }
+    }
+
+    private LocalDate primeiroMovimento(Connection c) throws SQLException {
+        try (Statement st = c.createStatement();
+             ResultSet rs = st.executeQuery("SELECT MIN(data) FROM movimento_caixa")) {
+            String d = rs.next() ? rs.getString(1) : null;
+            return d != null ? LocalDate.parse(d) : null;
+        }
+    }
+
+    private Fechamento mapRow(ResultSet rs) throws SQLException {
+        int uid = rs.getInt("usuario_id");
+        Integer usuarioId = rs.wasNull() ? null : uid;
+
+        return new Fechamento(
+                LocalDate.parse(rs.getString("data")),
+                rs.getLong("qtd_movimentos"),
+                rs.getDouble("entradas"),
+                rs.getDouble("saidas"),
+                rs.getDouble("saldo_acumulado"),
+                rs.getString("fechado_em"),
+                usuarioId
+        );
+    }
+}
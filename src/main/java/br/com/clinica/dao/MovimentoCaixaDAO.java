@@ -7,7 +7,10 @@ import br.com.clinica.model.enums.TipoMovimento;
 import java.sql.*;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
 public class MovimentoCaixaDAO {
 
@@ -32,25 +35,36 @@ public class MovimentoCaixaDAO {
         try (Connection conn = DatabaseConfig.getConnection()) {
             registrar(conn, mov);
         } catch (SQLException e) {
+            if (violouCaixaFechado(e)) {
+                throw new RuntimeException("O caixa de " + mov.getData() + " já foi fechado.", e);
+            }
             throw new RuntimeException("Erro ao registrar movimento de caixa", e);
         }
     }
 
+    /** Erro do trigger da V011: movimento em dia com caixa já fechado. */
+    public static boolean violouCaixaFechado(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t.getMessage() != null && t.getMessage().contains("caixa_fechado")) return true;
+        }
+        return false;
+    }
+
     public List<MovimentoCaixa> listarPorPeriodo(LocalDate inicio, LocalDate fim) {
         List<MovimentoCaixa> lista = new ArrayList<>();
 
         String sql = "SELECT id, data, descricao, tipo, valor, forma_pagamento, " +
                 "paciente_nome, observacao " +
                 "FROM movimento_caixa " +
-                "WHERE date(data) BETWEEN ? AND ? " +
+                "WHERE data >= ? AND data <= ? " +
                 "ORDER BY data, id";
 
-        try (Connection conn = DatabaseConfig.getConnection();
+        try (Connection conn = DatabaseConfig.getReadConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
 
-            // ✅ aqui é o fix do erro: date BETWEEN (date) e não BETWEEN (varchar)
-            stmt.setObject(1, inicio);
-            stmt.setObject(2, fim);
+            // data em texto ISO: range direto na coluna (idx_movimento_caixa_data)
+            stmt.setString(1, inicio.toString());
+            stmt.setString(2, fim.toString());
 
             try (ResultSet rs = stmt.executeQuery()) {
                 while (rs.next()) {
@@ -84,4 +98,103 @@ public class MovimentoCaixaDAO {
 
         return lista;
     }
-}
\ No newline at end of file
+
+    // =========================================================
+    // TOTAIS (agregados no banco)
+    // =========================================================
+
+    /** Soma de um grupo: dia + tipo + forma (+ paciente, se pedido). */
+    public record Soma(LocalDate data, TipoMovimento tipo, String formaPagamento, String pacienteNome,
+                       long quantidade, double valor) {}
+
+    /** Grupos do período e os totais derivados deles (entradas, saídas, por forma, por dia). */
+    public record Resumo(List<Soma> grupos) {
+
+        public double entradas() {
+            return total(TipoMovimento.ENTRADA);
+        }
+
+        public double saidas() {
+            return total(TipoMovimento.SAIDA);
+        }
+
+        public double saldo() {
+            return entradas() - saidas();
+        }
+
+        public long quantidade() {
+            return grupos.stream().mapToLong(Soma::quantidade).sum();
+        }
+
+        /** Valor por forma de pagamento, só do tipo informado. */
+        public Map<String, Double> porForma(TipoMovimento tipo) {
+            Map<String, Double> out = new LinkedHashMap<>();
+            for (Soma s : grupos) {
+                if (s.tipo() != tipo) continue;
+                String forma = (s.formaPagamento() == null || s.formaPagamento().isBlank()) ? "SEM FORMA" : s.formaPagamento();
+                out.merge(forma, s.valor(), Double::sum);
+            }
+            return out;
+        }
+
+        /** Saldo (entradas - saídas) de cada dia, em ordem. */
+        public Map<LocalDate, Double> saldoPorDia() {
+            Map<LocalDate, Double> out = new TreeMap<>();
+            for (Soma s : grupos) {
+                double v = s.tipo() == TipoMovimento.SAIDA ? -s.valor() : s.valor();
+                out.merge(s.data(), v, Double::sum);
+            }
+            return out;
+        }
+
+        private double total(TipoMovimento tipo) {
+            return grupos.stream().filter(s -> s.tipo() == tipo).mapToDouble(Soma::valor).sum();
+        }
+    }
+
+    /**
+     * Somas do período agrupadas por dia, tipo e forma de pagamento (e paciente, se {@code porPaciente}).
+     * O GROUP BY roda no banco: volta no máximo uma linha por dia/tipo/forma, não um movimento por linha.
+     * (O SQLite não tem ROLLUP; os subtotais saem desses grupos, no Resumo.)
+     */
+    public Resumo resumir(LocalDate inicio, LocalDate fim, boolean porPaciente) {
+        String grupo = porPaciente ? "data, tipo, forma_pagamento, paciente_nome" : "data, tipo, forma_pagamento";
+
+        String sql = "SELECT " + grupo + (porPaciente ? "" : ", NULL AS paciente_nome") +
+                ", COUNT(*) AS qtd, SUM(valor) AS total " +
+                "FROM movimento_caixa " +
+                "WHERE data >= ? AND data <= ? " +
+                "GROUP BY " + grupo + " " +
+                "ORDER BY " + grupo;
+
+        List<Soma> grupos = new ArrayList<>();
+
+        try (Connection conn = DatabaseConfig.getReadConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setString(1, inicio.toString());
+            stmt.setString(2, fim.toString());
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    String dataStr = rs.getString("data");
+                    String tipoStr = rs.getString("tipo");
+
+                    grupos.add(new Soma(
+                            dataStr != null ? LocalDate.parse(dataStr) : null,
+                            tipoStr != null ? TipoMovimento.valueOf(tipoStr) : null,
+                            rs.getString("forma_pagamento"),
+                            rs.getString("paciente_nome"),
+                            rs.getLong("qtd"),
+                            rs.getDouble("total")
+                    ));
+                }
+            }
+
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro ao totalizar movimentos de caixa", e);
+        }
+
+        return new Resumo(grupos);
+    }
+}
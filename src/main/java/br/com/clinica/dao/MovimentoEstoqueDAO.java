@@ -0,0 +1,236 @@
+package br.com.clinica.dao;
+
+import br.com.clinica.database.DatabaseConfig;
+import br.com.clinica.database.Transacao;
+import br.com.clinica.model.enums.TipoMovimentoEstoque;
+import br.com.clinica.session.Session;
+
+import java.sql.*;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Histórico de estoque (V013).
+ *
+ * Toda mudança de saldo vira uma linha em movimento_estoque (só INSERT): entradas e ajustes passam por
+ * {@link #registrar}, vendas são gravadas pelo trigger de nota_item. produto.estoque_atual é o saldo
+ * corrente e só muda por delta, na mesma transação da linha; ninguém sobrescreve o saldo inteiro.
+ *
+ * Para o saldo numa data, estoque_snapshot guarda saldos consolidados (gerados por {@link #consolidar}):
+ * último snapshot até a data + movimentos depois dele, sem somar o histórico todo.
+ */
+public class MovimentoEstoqueDAO {
+
+    /** Produto com pelo menos isso de movimentos desde o último snapshot ganha um novo. */
+    private static final int MOVIMENTOS_POR_SNAPSHOT = 100;
+
+    // segundos sempre presentes: a comparação de data_hora é de texto
+    private static final DateTimeFormatter TS = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss");
+
+    public record Movimento(long id, long produtoId, LocalDateTime dataHora, TipoMovimentoEstoque tipo,
+                            double quantidade, Long notaId, Integer usuarioId, String observacao, Long loteId) {}
+
+    private final ProdutoLoteDAO loteDAO = new ProdutoLoteDAO();
+
+    /**
+     * Registra entrada/ajuste (quantidade com sinal) e aplica o delta no saldo do produto e nos lotes:
+     * quantidade positiva entra no lote informado (criado se preciso), negativa sai em FEFO.
+     * Participa da transação aberta, se houver. Devolve o saldo depois do movimento.
+     */
+    public double registrar(long produtoId, TipoMovimentoEstoque tipo, double quantidade,
+                            String lote, LocalDate validade, String observacao) {
+        if (tipo == null || tipo == TipoMovimentoEstoque.VENDA) {
+            throw new IllegalArgumentException("Tipo de movimento inválido.");
+        }
+        if (quantidade == 0) throw new IllegalArgumentException("Informe a quantidade.");
+        if (tipo == TipoMovimentoEstoque.ENTRADA && quantidade < 0) {
+            throw new IllegalArgumentException("Quantidade de entrada deve ser positiva.");
+        }
+
+        Integer uid = (Session.getUsuario() != null) ? Session.getUsuario().getId() : null;
+
+        return Transacao.executar(() -> {
+            try (Connection c = DatabaseConfig.getConnection()) {
+
+                // delta primeiro: trava a linha do produto (Postgres) até o commit; saída não deixa saldo negativo
+                try (PreparedStatement ps = c.prepareStatement(
+                        "UPDATE produto SET estoque_atual = estoque_atual + ? WHERE id = ? AND estoque_atual + ? >= 0")) {
+                    ps.setDouble(1, quantidade);
+                    ps.setLong(2, produtoId);
+                    ps.setDouble(3, quantidade);
+                    if (ps.executeUpdate() == 0) {
+                        throw new IllegalArgumentException("Produto não encontrado ou saldo insuficiente para a saída.");
+                    }
+                }
+
+                Long loteId = null;
+                if (quantidade > 0) loteId = loteDAO.adicionar(c, produtoId, lote, validade, quantidade);
+                else loteDAO.consumirFefo(c, Map.of(produtoId, -quantidade));
+
+                try (PreparedStatement ps = c.prepareStatement(
+                        "INSERT INTO movimento_estoque (produto_id, data_hora, tipo, quantidade, usuario_id, observacao, lote_id) " +
+                                "VALUES (?, ?, ?, ?, ?, ?, ?)")) {
+                    ps.setLong(1, produtoId);
+                    ps.setString(2, LocalDateTime.now().format(TS));
+                    ps.setString(3, tipo.name());
+                    ps.setDouble(4, quantidade);
+                    if (uid != null) ps.setInt(5, uid);
+                    else ps.setNull(5, Types.INTEGER);
+                    ps.setString(6, observacao);
+                    if (loteId != null) ps.setLong(7, loteId);
+                    else ps.setNull(7, Types.BIGINT);
+                    ps.executeUpdate();
+                }
+
+                try (PreparedStatement ps = c.prepareStatement("SELECT estoque_atual FROM produto WHERE id = ?")) {
+                    ps.setLong(1, produtoId);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        return rs.next() ? rs.getDouble(1) : 0.0;
+                    }
+                }
+            } catch (SQLException e) {
+                throw new RuntimeException("Erro ao registrar movimento de estoque", e);
+            }
+        });
+    }
+
+    /** Últimos movimentos do produto, do mais recente para o mais antigo. */
+    public List<Movimento> historico(long produtoId, int limite) {
+        String sql = "SELECT * FROM movimento_estoque WHERE produto_id = ? " +
+                "ORDER BY data_hora DESC, id DESC LIMIT " + Math.max(1, limite);
+        List<Movimento> out = new ArrayList<>();
+
+        try (Connection c = DatabaseConfig.getReadConnection();
+             PreparedStatement ps = c.prepareStatement(sql)) {
+
+            ps.setLong(1, produtoId);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) out.add(mapRow(rs));
+            }
+            return out;
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro ao listar movimentos de estoque", e);
+        }
+    }
+
+    /**
+     * Saldo do produto em {@code quando}: último snapshot até a data + movimentos entre ele e {@code quando}.
+     * A soma passa só pela cauda depois do snapshot (idx_movimento_estoque_produto_data).
+     */
+    public double saldoEm(long produtoId, LocalDateTime quando) {
+        String limite = quando.format(TS);
+
+        String sqlSnap = "SELECT ate, saldo FROM estoque_snapshot " +
+                "WHERE produto_id = ? AND ate <= ? ORDER BY ate DESC LIMIT 1";
+        String sqlCauda = "SELECT COALESCE(SUM(quantidade), 0) FROM movimento_estoque " +
+                "WHERE produto_id = ? AND data_hora >= ? AND data_hora <= ?";
+
+        try (Connection c = DatabaseConfig.getReadConnection()) {
+            String desde = "";
+            double saldo = 0.0;
+
+            try (PreparedStatement ps = c.prepareStatement(sqlSnap)) {
+                ps.setLong(1, produtoId);
+                ps.setString(2, limite);
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (rs.next()) {
+                        desde = rs.getString("ate");
+                        saldo = rs.getDouble("saldo");
+                    }
+                }
+            }
+
+            try (PreparedStatement ps = c.prepareStatement(sqlCauda)) {
+                ps.setLong(1, produtoId);
+                ps.setString(2, desde);
+                ps.setString(3, limite);
+                try (ResultSet rs = ps.executeQuery()) {
+                    return saldo + (rs.next() ? rs.getDouble(1) : 0.0);
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro ao calcular saldo de estoque", e);
+        }
+    }
+
+    /**
+     * Grava snapshots com o saldo até o início de hoje para os produtos com muitos movimentos desde o
+     * último snapshot. Só dias passados (movimentos de hoje ainda podem chegar). Rodar de novo no mesmo
+     * dia não duplica nada. Devolve quantos snapshots foram gravados.
+     */
+    public int consolidar() {
+        String ate = LocalDate.now().toString();
+
+        // cauda de cada produto desde o seu último snapshot, somada no banco
+        String sql = """
+            SELECT m.produto_id, COUNT(*) AS qtd, SUM(m.quantidade) AS delta, MAX(s.saldo) AS saldo_anterior
+              FROM movimento_estoque m
+              LEFT JOIN estoque_snapshot s
+                ON s.produto_id = m.produto_id
+               AND s.ate = (SELECT MAX(x.ate) FROM estoque_snapshot x WHERE x.produto_id = m.produto_id)
+             WHERE m.data_hora < ?
+               AND (s.ate IS NULL OR m.data_hora >= s.ate)
+             GROUP BY m.produto_id
+            HAVING COUNT(*) >= ?
+            """;
+        String sqlInsert = "INSERT INTO estoque_snapshot (produto_id, ate, saldo, qtd_movimentos, criado_em) " +
+                "VALUES (?, ?, ?, ?, ?) ON CONFLICT (produto_id, ate) DO NOTHING";
+
+        return Transacao.executar(() -> {
+            try (Connection c = DatabaseConfig.getConnection();
+                 PreparedStatement sel = c.prepareStatement(sql);
+                 PreparedStatement ins = c.prepareStatement(sqlInsert)) {
+
+                sel.setString(1, ate);
+                sel.setInt(2, MOVIMENTOS_POR_SNAPSHOT);
+
+                String agora = LocalDateTime.now().format(TS);
+                int n = 0;
+                try (ResultSet rs = sel.executeQuery()) {
+                    while (rs.next()) {
+                        ins.setLong(1, rs.getLong("produto_id"));
+                        ins.setString(2, ate);
+                        ins.setDouble(3, rs.getDouble("saldo_anterior") + rs.getDouble("delta"));
+                        ins.setInt(4, rs.getInt("qtd"));
+                        ins.setString(5, agora);
+                        ins.addBatch();
+                        n++;
+                    }
+                }
+                if (n > 0) ins.executeBatch();
+                return n;
+            } catch (SQLException e) {
+                throw new RuntimeException("Erro ao consolidar saldos de estoque", e);
+            }
+        });
+    }
+
+    // =========================================================
+    // HELPERS
+    // =========================================================
+
+    private Movimento mapRow(ResultSet rs) throws SQLException {
+        long notaId = rs.getLong("nota_id");
+        Long nota = rs.wasNull() ? null : notaId;
+        int uid = rs.getInt("usuario_id");
+        Integer usuarioId = rs.wasNull() ? null : uid;
+        long lid = rs.getLong("lote_id");
+        Long loteId = rs.wasNull() ? null : lid;
+
+        return new Movimento(
+                rs.getLong("id"),
+                rs.getLong("produto_id"),
+                LocalDateTime.parse(rs.getString("data_hora")),
+                TipoMovimentoEstoque.valueOf(rs.getString("tipo")),
+                rs.getDouble("quantidade"),
+                nota,
+                usuarioId,
+                rs.getString("observacao"),
+                loteId
+        );
+    }
+}
@@ -1,16 +1,25 @@
 package br.com.clinica.dao;
 
 import br.com.clinica.database.DatabaseConfig;
+import br.com.clinica.database.Transacao;
 import br.com.clinica.model.*;
 import br.com.clinica.model.enums.TipoItemNota;
 import br.com.clinica.model.enums.TipoMovimento;
+import br.com.clinica.service.AlertasEstoqueService;
+import br.com.clinica.util.AppLogger;
+import br.com.clinica.util.ValidationUtils;
+import org.postgresql.util.PSQLException;
+import org.postgresql.util.ServerErrorMessage;
 
 import java.sql.*;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
 
 public class NotaDAO {
 
@@ -20,10 +29,66 @@ public class NotaDAO {
 
     private static final DateTimeFormatter DH_FMT = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm");
 
+    // false depois do primeiro "function does not exist" (V008 ainda não aplicada nesse banco)
+    private static volatile boolean funcaoFinalizarDisponivel = true;
+
+    /**
+     * Grava a nota, os itens, a baixa de estoque, a entrada no caixa e o audit log, tudo ou nada.
+     *
+     * No Postgres vai numa chamada só da função finalizar_nota (V008): a nota inteira em JSON, uma ida ao banco
+     * em vez de cinco comandos + commit. No SQLite (ou sem a função) usa os comandos separados numa transação.
+     *
+     * Idempotente pela chaveRequisicao (V009): reenviar a mesma nota (timeout, clique duplo) não grava de novo,
+     * só devolve o id da que já existe. Sem chave, gera uma agora.
+     */
     public void salvarNota(Nota nota) {
+        nota.recalcularTotais();
+        if (nota.getChaveRequisicao() == null) nota.setChaveRequisicao(UUID.randomUUID().toString());
+
+        if (!(DatabaseConfig.isPostgres() && funcaoFinalizarDisponivel && finalizarNoServidor(nota))) {
+            salvarNotaPorComandos(nota);
+        }
+
+        // a nota baixou estoque: o aviso da tela inicial recalcula em background, depois do commit
+        // (se salvarNota rodar dentro de uma transação maior, o leitor só enxerga a baixa depois dela)
+        Transacao.aposCommit(AlertasEstoqueService::verificarAgora);
+    }
+
+    /** true = gravou; false = função não existe no banco (quem chama usa o caminho antigo). */
+    private boolean finalizarNoServidor(Nota nota) {
+        try (Connection conn = DatabaseConfig.getConnection();
+             PreparedStatement ps = conn.prepareStatement("SELECT finalizar_nota(?::jsonb)")) {
+
+            ps.setString(1, notaJson(nota));
+
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) throw new RuntimeException("Não foi possível obter o ID da nota.");
+                nota.setId(rs.getLong(1));
+            }
+            return true;
+
+        } catch (SQLException e) {
+            if ("42883".equals(e.getSQLState())) { // undefined_function
+                funcaoFinalizarDisponivel = false;
+                AppLogger.info("[Nota] função finalizar_nota não encontrada, usando comandos separados");
+                return false;
+            }
+
+            ProdutoDAO.EstoqueInsuficienteException ei = estoqueInsuficiente(e);
+            if (ei != null) throw ei;
+
+            if (MovimentoCaixaDAO.violouCaixaFechado(e)) throw caixaFechado(nota, e);
+
+            String msg = (e.getMessage() != null) ? e.getMessage() : "Erro desconhecido.";
+            throw new RuntimeException("Erro ao salvar nota: " + msg, e);
+        }
+    }
+
+    private void salvarNotaPorComandos(Nota nota) {
         String sqlNota = "INSERT INTO nota " +
-                "(data_hora, id_paciente, id_profissional, forma_pagamento, total_bruto, desconto, total_liquido, observacao) " +
-                "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+                "(data_hora, id_paciente, id_profissional, forma_pagamento, total_bruto, desconto, total_liquido, observacao, chave_requisicao) " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?) " +
+                "ON CONFLICT (chave_requisicao) DO NOTHING";
 
         String sqlItem = "INSERT INTO nota_item " +
                 "(id_nota, tipo_item, id_produto, descricao, quantidade, valor_unitario, valor_total) " +
@@ -35,8 +100,6 @@ public class NotaDAO {
             conn = DatabaseConfig.getConnection();
             conn.setAutoCommit(false);
 
-            nota.recalcularTotais();
-
             long idNota;
 
             // 1) inserir cabeçalho
@@ -49,8 +112,14 @@ public class NotaDAO {
                 stmtNota.setDouble(6, nota.getDesconto());
                 stmtNota.setDouble(7, nota.getTotalLiquido());
                 stmtNota.setString(8, nota.getObservacao());
+                stmtNota.setString(9, nota.getChaveRequisicao());
 
-                stmtNota.executeUpdate();
+                if (stmtNota.executeUpdate() == 0) {
+                    // chave já gravada: é reenvio da mesma nota, nada mais a fazer (e nada foi gravado:
+                    // sem rollback, que dentro de uma Transacao desfaria o trabalho de quem chamou)
+                    nota.setId(buscarIdPorChave(conn, nota.getChaveRequisicao()));
+                    return;
+                }
 
                 try (ResultSet rs = stmtNota.getGeneratedKeys()) {
                     if (!rs.next()) {
@@ -61,7 +130,9 @@ public class NotaDAO {
                 }
             }
 
-            // 2) inserir itens + baixar estoque
+            // 2) inserir itens (batch) e somar as quantidades por produto para a baixa
+            Map<Long, Double> baixaPorProduto = new LinkedHashMap<>();
+
             try (PreparedStatement stmtItem = conn.prepareStatement(sqlItem)) {
                 for (NotaItem item : nota.getItens()) {
 
@@ -84,12 +155,15 @@ public class NotaDAO {
                     if (item.getTipoItem() == TipoItemNota.PRODUTO
                             && item.getProduto() != null
                             && item.getProduto().getId() != null) {
-                        produtoDAO.baixarEstoque(conn, item.getProduto().getId(), item.getQuantidade());
+                        baixaPorProduto.merge(item.getProduto().getId(), item.getQuantidade(), Double::sum);
                     }
                 }
                 stmtItem.executeBatch();
             }
 
+            // 2b) baixa de estoque: um UPDATE condicional por produto (mesmo produto 2x = 1 baixa), num batch
+            produtoDAO.baixarEstoque(conn, baixaPorProduto);
+
             // 3) registrar movimento caixa (entrada)
             MovimentoCaixa mov = new MovimentoCaixa();
             LocalDate dataMov = (nota.getDataHora() != null)
@@ -120,12 +194,18 @@ public class NotaDAO {
             );
 
             conn.commit();
+            nota.setId(idNota);
 
         } catch (Exception e) {
             if (conn != null) {
                 try { conn.rollback(); } catch (SQLException ignored) {}
             }
 
+            // já diz quais produtos faltaram
+            if (e instanceof ProdutoDAO.EstoqueInsuficienteException ei) throw ei;
+
+            if (MovimentoCaixaDAO.violouCaixaFechado(e)) throw caixaFechado(nota, e);
+
             String msg = (e.getMessage() != null) ? e.getMessage() : "Erro desconhecido.";
             if (msg.toLowerCase().contains("estoque insuficiente")) {
                 throw new RuntimeException("Não foi possível finalizar: estoque insuficiente para um ou mais produtos.", e);
@@ -143,6 +223,111 @@ public class NotaDAO {
         }
     }
 
+    private static RuntimeException caixaFechado(Nota nota, Exception e) {
+        LocalDate dia = (nota.getDataHora() != null) ? nota.getDataHora().toLocalDate() : LocalDate.now();
+        return new RuntimeException("Não foi possível finalizar: o caixa de " + dia + " já foi fechado.", e);
+    }
+
+    private Long buscarIdPorChave(Connection conn, String chave) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("SELECT id FROM nota WHERE chave_requisicao = ?")) {
+            ps.setString(1, chave);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : null;
+            }
+        }
+    }
+
+    /** Payload da finalizar_nota: cabeçalho, itens e o que vai para o caixa e o audit log. */
+    private static String notaJson(Nota nota) {
+        LocalDate dataMov = (nota.getDataHora() != null)
+                ? nota.getDataHora().toLocalDate()
+                : LocalDate.now();
+
+        String detalhes = "paciente=" + nota.getPaciente().getNome()
+                + ", total=" + nota.getTotalLiquido()
+                + ", forma=" + nota.getFormaPagamento();
+
+        StringBuilder sb = new StringBuilder(256 + nota.getItens().size() * 128);
+        sb.append('{');
+        campo(sb, "data_hora", nota.getDataHora().toString()).append(',');
+        sb.append("\"id_paciente\":").append(nota.getPaciente().getId()).append(',');
+        sb.append("\"id_profissional\":").append(nota.getProfissional().getId()).append(',');
+        campo(sb, "forma_pagamento", nota.getFormaPagamento()).append(',');
+        sb.append("\"total_bruto\":").append(nota.getTotalBruto()).append(',');
+        sb.append("\"desconto\":").append(nota.getDesconto()).append(',');
+        sb.append("\"total_liquido\":").append(nota.getTotalLiquido()).append(',');
+        campo(sb, "observacao", nota.getObservacao()).append(',');
+        campo(sb, "chave_requisicao", nota.getChaveRequisicao()).append(',');
+        campo(sb, "data_movimento", dataMov.toString()).append(',');
+        campo(sb, "paciente_nome", nota.getPaciente().getNome()).append(',');
+        campo(sb, "audit_data_hora", LocalDateTime.now().toString()).append(',');
+        campo(sb, "audit_detalhes", detalhes).append(',');
+
+        sb.append("\"itens\":[");
+        for (int i = 0; i < nota.getItens().size(); i++) {
+            NotaItem item = nota.getItens().get(i);
+            if (i > 0) sb.append(',');
+            sb.append('{');
+            campo(sb, "tipo_item", item.getTipoItem().name()).append(',');
+            Long idProduto = (item.getProduto() != null) ? item.getProduto().getId() : null;
+            sb.append("\"id_produto\":").append(idProduto).append(',');
+            campo(sb, "descricao", item.getDescricao()).append(',');
+            sb.append("\"quantidade\":").append(item.getQuantidade()).append(',');
+            sb.append("\"valor_unitario\":").append(item.getValorUnitario()).append(',');
+            sb.append("\"valor_total\":").append(item.getValorTotal());
+            sb.append('}');
+        }
+        sb.append("]}");
+        return sb.toString();
+    }
+
+    private static StringBuilder campo(StringBuilder sb, String nome, String valor) {
+        sb.append('"').append(nome).append("\":");
+        if (valor == null) return sb.append("null");
+
+        sb.append('"');
+        for (int i = 0; i < valor.length(); i++) {
+            char ch = valor.charAt(i);
+            switch (ch) {
+                case '"' -> sb.append("\\\"");
+                case '\\' -> sb.append("\\\\");
+                case '\n' -> sb.append("\\n");
+                case '\r' -> sb.append("\\r");
+                case '\t' -> sb.append("\\t");
+                default -> {
+                    if (ch < 0x20) sb.append(String.format("\\u%04x", (int) ch));
+                    else sb.append(ch);
+                }
+            }
+        }
+        return sb.append('"');
+    }
+
+    /**
+     * A finalizar_nota avisa falta de saldo com RAISE 'estoque_insuficiente' e uma linha por produto
+     * no DETAIL ("id|disponivel|pedido|nome"); vira a mesma exceção do caminho por comandos.
+     */
+    private static ProdutoDAO.EstoqueInsuficienteException estoqueInsuficiente(SQLException e) {
+        if (!(e instanceof PSQLException pe) || pe.getServerErrorMessage() == null) return null;
+
+        ServerErrorMessage sem = pe.getServerErrorMessage();
+        if (!"estoque_insuficiente".equals(sem.getMessage()) || sem.getDetail() == null) return null;
+
+        List<ProdutoDAO.EstoqueInsuficienteException.Falta> faltas = new ArrayList<>();
+        for (String linha : sem.getDetail().split("\n")) {
+            String[] c = linha.split("\\|", 4);
+            if (c.length < 4) continue;
+            try {
+                faltas.add(new ProdutoDAO.EstoqueInsuficienteException.Falta(
+                        Long.parseLong(c[0].trim()),
+                        c[3].isEmpty() ? null : c[3],
+                        Double.parseDouble(c[1].trim()),
+                        Double.parseDouble(c[2].trim())));
+            } catch (NumberFormatException ignored) {}
+        }
+        return faltas.isEmpty() ? null : new ProdutoDAO.EstoqueInsuficienteException(faltas);
+    }
+
     // CONSULTA / REIMPRESSÃO
 
     public static class NotaResumo {
@@ -170,10 +355,28 @@ public class NotaDAO {
         public double getTotalLiquido() { return totalLiquido; }
     }
 
-    public List<NotaResumo> listarNotasResumo(LocalDate inicio, LocalDate fim,
-                                              String pacienteLike,
-                                              Integer profissionalId,
-                                              String formaPagamento) {
+    /** Posição da última nota da página (a lista é por data_hora DESC, id DESC). */
+    public record CursorNota(String dataHora, long id) {}
+
+    /** Uma página de notas; proximo == null quando não há mais. */
+    public record PaginaNotas(List<NotaResumo> itens, CursorNota proximo) {}
+
+    /** Totais do período: quantidade, total líquido e total por forma de pagamento. */
+    public record TotaisNotas(long quantidade, double total, Map<String, Double> porForma) {}
+
+    /**
+     * Notas do período, mais novas primeiro, em páginas de {@code limite}.
+     * Paginação por (data_hora, id) < cursor: cada página custa o mesmo, seja o período de um dia ou de um ano.
+     *
+     * @param cursor null para a primeira página; depois, {@link PaginaNotas#proximo()}
+     */
+    public PaginaNotas listarNotasResumo(LocalDate inicio, LocalDate fim,
+                                         String pacienteLike,
+                                         Integer profissionalId,
+                                         String formaPagamento,
+                                         CursorNota cursor,
+                                         int limite) {
+        limite = Math.max(1, limite);
 
         StringBuilder sql = new StringBuilder("""
             SELECT n.id,
@@ -186,41 +389,45 @@ public class NotaDAO {
               FROM nota n
               JOIN paciente p ON p.id = n.id_paciente
               JOIN usuario  u ON u.id = n.id_profissional
-             WHERE substr(n.data_hora, 1, 10) BETWEEN ? AND ?
+             WHERE n.data_hora >= ? AND n.data_hora < ?
         """);
 
+        // intervalo meio-aberto [inicio, fim + 1 dia): pega qualquer hora do último dia e usa idx_nota_data_hora
         List<Object> params = new ArrayList<>();
         params.add(inicio.toString());
-        params.add(fim.toString());
+        params.add(fim.plusDays(1).toString());
 
-        if (pacienteLike != null && !pacienteLike.isBlank()) {
-            sql.append(" AND LOWER(p.nome) LIKE ? ");
-            params.add("%" + pacienteLike.trim().toLowerCase() + "%");
-        }
+        filtrosNota(sql, params, pacienteLike, profissionalId, formaPagamento);
 
-        if (profissionalId != null) {
-            sql.append(" AND n.id_profissional = ? ");
-            params.add(profissionalId);
-        }
-
-        if (formaPagamento != null && !formaPagamento.isBlank()) {
-            sql.append(" AND n.forma_pagamento = ? ");
-            params.add(formaPagamento.trim());
+        if (cursor != null) {
+            sql.append(" AND (n.data_hora < ? OR (n.data_hora = ? AND n.id < ?)) ");
+            params.add(cursor.dataHora());
+            params.add(cursor.dataHora());
+            params.add(cursor.id());
         }
 
-        sql.append(" ORDER BY n.data_hora DESC, n.id DESC ");
+        // busca 1 a mais só para saber se existe próxima página
+        sql.append(" ORDER BY n.data_hora DESC, n.id DESC LIMIT ").append(limite + 1);
 
         List<NotaResumo> out = new ArrayList<>();
+        CursorNota ultimo = null;
+        CursorNota proximo = null;
 
-        try (Connection c = DatabaseConfig.getConnection();
+        try (Connection c = DatabaseConfig.getReadConnection();
              PreparedStatement ps = c.prepareStatement(sql.toString())) {
 
             for (int i = 0; i < params.size(); i++) ps.setObject(i + 1, params.get(i));
 
             try (ResultSet rs = ps.executeQuery()) {
                 while (rs.next()) {
+                    if (out.size() == limite) {
+                        proximo = ultimo; // sobrou uma: tem próxima página
+                        break;
+                    }
+
                     long id = rs.getLong("id");
-                    LocalDateTime dh = LocalDateTime.parse(rs.getString("data_hora"));
+                    String dataHora = rs.getString("data_hora");
+                    LocalDateTime dh = LocalDateTime.parse(dataHora);
 
                     String paciente = rs.getString("paciente_nome");
                     String cargo = rs.getString("profissional_cargo");
@@ -238,15 +445,106 @@ public class NotaDAO {
                             forma,
                             total
                     ));
+                    ultimo = new CursorNota(dataHora, id);
                 }
             }
-            return out;
+            return new PaginaNotas(out, proximo);
 
         } catch (SQLException e) {
             throw new RuntimeException("Erro ao listar notas", e);
         }
     }
 
+    /**
+     * Totais do período com os mesmos filtros da listagem.
+     * Sem filtro de paciente vem da nota_resumo_diario (V010: uma linha por dia/forma/profissional);
+     * com paciente, soma direto nas notas (o resumo não é por paciente).
+     */
+    public TotaisNotas totaisNotas(LocalDate inicio, LocalDate fim,
+                                   String pacienteLike,
+                                   Integer profissionalId,
+                                   String formaPagamento) {
+        StringBuilder sql;
+        List<Object> params = new ArrayList<>();
+
+        if (pacienteLike == null || pacienteLike.isBlank()) {
+            sql = new StringBuilder("""
+                SELECT r.forma_pagamento, SUM(r.qtd_notas) AS qtd, SUM(r.total_liquido) AS total
+                  FROM nota_resumo_diario r
+                 WHERE r.data >= ? AND r.data <= ?
+            """);
+            params.add(inicio.toString());
+            params.add(fim.toString());
+
+            if (profissionalId != null) {
+                sql.append(" AND r.id_profissional = ? ");
+                params.add(profissionalId);
+            }
+            if (formaPagamento != null && !formaPagamento.isBlank()) {
+                sql.append(" AND r.forma_pagamento = ? ");
+                params.add(formaPagamento.trim());
+            }
+            sql.append(" GROUP BY r.forma_pagamento ORDER BY r.forma_pagamento ");
+        } else {
+            sql = new StringBuilder("""
+                SELECT n.forma_pagamento, COUNT(*) AS qtd, SUM(n.total_liquido) AS total
+                  FROM nota n
+                  JOIN paciente p ON p.id = n.id_paciente
+                 WHERE n.data_hora >= ? AND n.data_hora < ?
+            """);
+            params.add(inicio.toString());
+            params.add(fim.plusDays(1).toString());
+
+            filtrosNota(sql, params, pacienteLike, profissionalId, formaPagamento);
+            sql.append(" GROUP BY n.forma_pagamento ORDER BY n.forma_pagamento ");
+        }
+
+        long quantidade = 0;
+        double total = 0.0;
+        Map<String, Double> porForma = new LinkedHashMap<>();
+
+        try (Connection c = DatabaseConfig.getReadConnection();
+             PreparedStatement ps = c.prepareStatement(sql.toString())) {
+
+            for (int i = 0; i < params.size(); i++) ps.setObject(i + 1, params.get(i));
+
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    String forma = rs.getString("forma_pagamento");
+                    double v = rs.getDouble("total");
+                    quantidade += rs.getLong("qtd");
+                    total += v;
+                    porForma.merge((forma == null || forma.isBlank()) ? "SEM FORMA" : forma, v, Double::sum);
+                }
+            }
+            return new TotaisNotas(quantidade, total, porForma);
+
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro ao totalizar notas", e);
+        }
+    }
+
+    /** Filtros comuns da listagem e dos totais (nota n, paciente p). */
+    private void filtrosNota(StringBuilder sql, List<Object> params,
+                             String pacienteLike, Integer profissionalId, String formaPagamento) {
+        if (pacienteLike != null && !pacienteLike.isBlank()) {
+            // paciente.busca já é o nome sem acento/minúsculo (V004)
+            String t = ValidationUtils.normalizeSearch(pacienteLike);
+            sql.append(" AND p.busca LIKE ? ESCAPE '!' ");
+            params.add("%" + t.replace("!", "!!").replace("%", "!%").replace("_", "!_") + "%");
+        }
+
+        if (profissionalId != null) {
+            sql.append(" AND n.id_profissional = ? ");
+            params.add(profissionalId);
+        }
+
+        if (formaPagamento != null && !formaPagamento.isBlank()) {
+            sql.append(" AND n.forma_pagamento = ? ");
+            params.add(formaPagamento.trim());
+        }
+    }
+
     public Nota buscarNotaCompleta(long idNota) {
         String sqlNota = """
             SELECT n.id, n.data_hora, n.forma_pagamento, n.total_bruto, n.desconto, n.total_liquido, n.observacao,
@@ -273,7 +571,7 @@ public class NotaDAO {
              ORDER BY i.id
         """;
 
-        try (Connection c = DatabaseConfig.getConnection();
+        try (Connection c = DatabaseConfig.getReadConnection();
              PreparedStatement psNota = c.prepareStatement(sqlNota)) {
 
             psNota.setLong(1, idNota);
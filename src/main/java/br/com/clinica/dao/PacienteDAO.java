@@ -1,7 +1,10 @@
 package br.com.clinica.dao;
 
 import br.com.clinica.database.DatabaseConfig;
+import br.com.clinica.database.Transacao;
 import br.com.clinica.model.Paciente;
+import br.com.clinica.service.DiretorioPacientes;
+import br.com.clinica.util.ValidationUtils;
 
 import java.sql.*;
 import java.sql.Types;
@@ -25,88 +28,109 @@ public class PacienteDAO {
     private void inserir(Paciente p) {
         String sql = "INSERT INTO paciente (" +
                 "nome, cpf, data_nascimento, telefone, endereco, responsavel_legal, ativo, " +
-                "rua, numero, bairro, cidade, cep, uf" +
-                ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
-
-        try (Connection conn = DatabaseConfig.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-
-            // valida duplicidade (quando CPF informado)
-            String cpfNorm = normalizarDocumento(p.getCpf());
-            if (cpfNorm != null && cpfJaExisteParaOutro(conn, null, cpfNorm)) {
-                throw new RuntimeException("CPF já cadastrado para outro paciente.");
+                "rua, numero, bairro, cidade, cep, uf, busca" +
+                ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+        Transacao.executar(() -> {
+            try (Connection conn = DatabaseConfig.getConnection();
+                 PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+
+                // valida duplicidade (quando CPF informado)
+                String cpfNorm = normalizarDocumento(p.getCpf());
+                if (cpfNorm != null && cpfJaExisteParaOutro(conn, null, cpfNorm)) {
+                    throw new RuntimeException("CPF já cadastrado para outro paciente.");
+                }
+                p.setCpf(cpfNorm); // garante armazenamento consistente (digits-only)
+
+                preencherStatementBasico(stmt, p);
+
+                stmt.setString(8, nvlTrim(p.getRua()));
+                stmt.setString(9, nvlTrim(p.getNumero()));
+                stmt.setString(10, nvlTrim(p.getBairro()));
+                stmt.setString(11, nvlTrim(p.getCidade()));
+                stmt.setString(12, normalizarDocumento(p.getCep()));
+                stmt.setString(13, nvlTrim(p.getUf()));
+                stmt.setString(14, textoBusca(p));
+
+                stmt.executeUpdate();
+
+                Long id = null;
+                try (ResultSet rs = stmt.getGeneratedKeys()) {
+                    if (rs.next()) id = rs.getLong(1);
+                }
+
+                // id (e diretório) só depois do commit: se a transação for desfeita, o paciente continua "novo"
+                Long novoId = id;
+                Transacao.aposCommit(() -> {
+                    p.setId(novoId);
+                    DiretorioPacientes.atualizado(p);
+                });
+
+                audit.registrarAuto("CRIAR", "PACIENTE",
+                        String.valueOf(id),
+                        "nome=" + p.getNome() + ", cpf=" + (p.getCpf() == null ? "" : p.getCpf()));
+
+            } catch (SQLException e) {
+                // erro mais amigável quando a constraint estoura (caso o banco ainda tenha formato antigo)
+                if (isUniqueCpfError(e)) {
+                    throw new RuntimeException("CPF já cadastrado para outro paciente.");
+                }
+                throw new RuntimeException("Erro ao inserir paciente", e);
             }
-            p.setCpf(cpfNorm); // garante armazenamento consistente (digits-only)
-
-            preencherStatementBasico(stmt, p);
-
-            stmt.setString(8, nvlTrim(p.getRua()));
-            stmt.setString(9, nvlTrim(p.getNumero()));
-            stmt.setString(10, nvlTrim(p.getBairro()));
-            stmt.setString(11, nvlTrim(p.getCidade()));
-            stmt.setString(12, normalizarDocumento(p.getCep()));
-            stmt.setString(13, nvlTrim(p.getUf()));
-
-            stmt.executeUpdate();
-
-            try (ResultSet rs = stmt.getGeneratedKeys()) {
-                if (rs.next()) p.setId(rs.getLong(1));
-            }
-
-            audit.registrarAuto("CRIAR", "PACIENTE",
-                    String.valueOf(p.getId()),
-                    "nome=" + p.getNome() + ", cpf=" + (p.getCpf() == null ? "" : p.getCpf()));
-
-        } catch (SQLException e) {
-            // erro mais amigável quando a constraint estoura (caso o banco ainda tenha formato antigo)
-            if (isUniqueCpfError(e)) {
-                throw new RuntimeException("CPF já cadastrado para outro paciente.");
-            }
-            throw new RuntimeException("Erro ao inserir paciente", e);
-        }
+        });
     }
 
     public void atualizar(Paciente p) {
         if (p.getId() == null) throw new IllegalArgumentException("Paciente sem ID para atualizar");
 
+        // compare-and-set: só grava se ninguém salvou depois da leitura (versao), sem lock durante a edição
         String sql = "UPDATE paciente SET " +
                 "nome = ?, cpf = ?, data_nascimento = ?, telefone = ?, endereco = ?, " +
                 "responsavel_legal = ?, ativo = ?, " +
-                "rua = ?, numero = ?, bairro = ?, cidade = ?, cep = ?, uf = ? " +
-                "WHERE id = ?";
-
-        try (Connection conn = DatabaseConfig.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-
-            // valida duplicidade (quando CPF informado)
-            String cpfNorm = normalizarDocumento(p.getCpf());
-            if (cpfNorm != null && cpfJaExisteParaOutro(conn, p.getId(), cpfNorm)) {
-                throw new RuntimeException("CPF já cadastrado para outro paciente.");
+                "rua = ?, numero = ?, bairro = ?, cidade = ?, cep = ?, uf = ?, busca = ?, versao = versao + 1 " +
+                "WHERE id = ? AND versao = ?";
+
+        Transacao.executar(() -> {
+            try (Connection conn = DatabaseConfig.getConnection();
+                 PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+                // valida duplicidade (quando CPF informado)
+                String cpfNorm = normalizarDocumento(p.getCpf());
+                if (cpfNorm != null && cpfJaExisteParaOutro(conn, p.getId(), cpfNorm)) {
+                    throw new RuntimeException("CPF já cadastrado para outro paciente.");
+                }
+                p.setCpf(cpfNorm);
+
+                preencherStatementBasico(stmt, p);
+
+                stmt.setString(8, nvlTrim(p.getRua()));
+                stmt.setString(9, nvlTrim(p.getNumero()));
+                stmt.setString(10, nvlTrim(p.getBairro()));
+                stmt.setString(11, nvlTrim(p.getCidade()));
+                stmt.setString(12, normalizarDocumento(p.getCep()));
+                stmt.setString(13, nvlTrim(p.getUf()));
+                stmt.setString(14, textoBusca(p));
+                stmt.setLong(15, p.getId());
+                stmt.setInt(16, p.getVersao());
+
+                if (stmt.executeUpdate() == 0) throw new RegistroAlteradoException("PACIENTE", p.getId());
+                // só depois do commit: se a transação for desfeita, o objeto continua com a versão do banco
+                int novaVersao = p.getVersao() + 1;
+                Transacao.aposCommit(() -> p.setVersao(novaVersao));
+
+                audit.registrarAuto("EDITAR", "PACIENTE",
+                        String.valueOf(p.getId()),
+                        "nome=" + p.getNome() + ", cpf=" + (p.getCpf() == null ? "" : p.getCpf()));
+
+            } catch (SQLException e) {
+                if (isUniqueCpfError(e)) {
+                    throw new RuntimeException("CPF já cadastrado para outro paciente.");
+                }
+                throw new RuntimeException("Erro ao atualizar paciente", e);
             }
-            p.setCpf(cpfNorm);
-
-            preencherStatementBasico(stmt, p);
-
-            stmt.setString(8, nvlTrim(p.getRua()));
-            stmt.setString(9, nvlTrim(p.getNumero()));
-            stmt.setString(10, nvlTrim(p.getBairro()));
-            stmt.setString(11, nvlTrim(p.getCidade()));
-            stmt.setString(12, normalizarDocumento(p.getCep()));
-            stmt.setString(13, nvlTrim(p.getUf()));
-            stmt.setLong(14, p.getId());
+        });
 
-            stmt.executeUpdate();
-
-            audit.registrarAuto("EDITAR", "PACIENTE",
-                    String.valueOf(p.getId()),
-                    "nome=" + p.getNome() + ", cpf=" + (p.getCpf() == null ? "" : p.getCpf()));
-
-        } catch (SQLException e) {
-            if (isUniqueCpfError(e)) {
-                throw new RuntimeException("CPF já cadastrado para outro paciente.");
-            }
-            throw new RuntimeException("Erro ao atualizar paciente", e);
-        }
+        DiretorioPacientes.atualizado(p);
     }
 
     private void preencherStatementBasico(PreparedStatement stmt, Paciente p) throws SQLException {
@@ -155,6 +179,143 @@ public class PacienteDAO {
         return executarConsultaLista(sql, false);
     }
 
+    // =========================================================
+    // BUSCA PAGINADA (keyset por nome, id)
+    // =========================================================
+
+    /** Filtros da busca de pacientes. */
+    public record Filtros(boolean incluirInativos) {
+        public static final Filtros SO_ATIVOS = new Filtros(false);
+    }
+
+    /** Posição na listagem: último (nome, id) da página anterior. */
+    public record Cursor(String nome, long id) {}
+
+    /** Uma página da busca; proximo == null quando não há mais resultados. */
+    public record Pagina(List<Paciente> itens, Cursor proximo) {}
+
+    /**
+     * Busca por trecho do nome (sem acento/maiúsculas), CPF ou telefone, ordenada por nome.
+     * O filtro roda no banco em cima de paciente.busca (FTS5 trigram no SQLite, GIN pg_trgm no Postgres),
+     * e a paginação é por (nome, id) > cursor: o custo de cada página não cresce com o tamanho da base.
+     *
+     * @param cursor null para a primeira página; depois, {@link Pagina#proximo()}
+     */
+    public Pagina buscar(String termo, Filtros filtros, Cursor cursor, int limite) {
+        if (filtros == null) filtros = Filtros.SO_ATIVOS;
+        limite = Math.max(1, limite);
+
+        String t = termoBusca(termo);
+        boolean pg = DatabaseConfig.isPostgres();
+
+        StringBuilder sql = new StringBuilder("SELECT * FROM paciente p WHERE 1 = 1");
+        List<Object> params = new ArrayList<>();
+
+        if (!filtros.incluirInativos()) sql.append(" AND p.ativo = 1");
+
+        if (!t.isEmpty()) {
+            // trigram precisa de pelo menos 3 caracteres; abaixo disso fica o LIKE (a página limita o custo)
+            if (!pg && t.length() >= 3) {
+                sql.append(" AND p.id IN (SELECT rowid FROM paciente_fts WHERE paciente_fts MATCH ?)");
+                params.add("\"" + t.replace("\"", "\"\"") + "\"");
+            } else {
+                sql.append(" AND p.busca LIKE ? ESCAPE '!'");
+                params.add("%" + t.replace("!", "!!").replace("%", "!%").replace("_", "!_") + "%");
+            }
+        }
+
+        if (cursor != null) {
+            sql.append(" AND (p.nome > ? OR (p.nome = ? AND p.id > ?))");
+            params.add(cursor.nome());
+            params.add(cursor.nome());
+            params.add(cursor.id());
+        }
+
+        // busca 1 a mais só para saber se existe próxima página
+        sql.append(" ORDER BY p.nome, p.id LIMIT ").append(limite + 1);
+
+        List<Paciente> itens = new ArrayList<>();
+
+        try (Connection conn = DatabaseConfig.getReadConnection();
+             PreparedStatement ps = conn.prepareStatement(sql.toString())) {
+
+            for (int i = 0; i < params.size(); i++) ps.setObject(i + 1, params.get(i));
+
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) itens.add(mapRow(rs));
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro ao buscar pacientes", e);
+        }
+
+        Cursor proximo = null;
+        if (itens.size() > limite) {
+            itens.remove(itens.size() - 1);
+            Paciente ultimo = itens.get(itens.size() - 1);
+            proximo = new Cursor(ultimo.getNome(), ultimo.getId());
+        }
+        return new Pagina(itens, proximo);
+    }
+
+    /** Termo digitado -> formato da coluna busca: só dígitos se não tiver letra (CPF/telefone com máscara). */
+    private String termoBusca(String termo) {
+        String t = ValidationUtils.normalizeSearch(termo);
+        if (t.isEmpty()) return t;
+        boolean temLetra = t.chars().anyMatch(Character::isLetter);
+        return temLetra ? t : ValidationUtils.onlyDigits(t);
+    }
+
+    private String textoBusca(Paciente p) {
+        StringBuilder sb = new StringBuilder(ValidationUtils.normalizeSearch(p.getNome()));
+        String cpf = normalizarDocumento(p.getCpf());
+        String tel = normalizarDocumento(p.getTelefone());
+        sb.append(' ').append(cpf == null ? "" : cpf);
+        sb.append(' ').append(tel == null ? "" : tel);
+        return sb.toString().trim();
+    }
+
+    /** Projeção leve (id, nome, CPF, telefone, ativo) usada pelo {@link DiretorioPacientes}. */
+    public List<Paciente> listarDiretorio() {
+        String sql = "SELECT id, nome, cpf, telefone, ativo FROM paciente";
+        List<Paciente> out = new ArrayList<>();
+
+        try (Connection conn = DatabaseConfig.getReadConnection();
+             PreparedStatement ps = conn.prepareStatement(sql);
+             ResultSet rs = ps.executeQuery()) {
+
+            while (rs.next()) {
+                Paciente p = new Paciente();
+                p.setId(rs.getLong("id"));
+                p.setNome(rs.getString("nome"));
+                p.setCpf(rs.getString("cpf"));
+                p.setTelefone(rs.getString("telefone"));
+                p.setAtivo(rs.getInt("ativo") == 1);
+                out.add(p);
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro ao carregar diretório de pacientes", e);
+        }
+        return out;
+    }
+
+    /**
+     * Muda quando algum paciente é inserido, editado ou ativado/inativado (toda alteração soma versao).
+     * Usada pelo DiretorioPacientes para saber se precisa recarregar.
+     */
+    public String assinaturaDiretorio() {
+        String sql = "SELECT COUNT(*), COALESCE(MAX(id), 0), COALESCE(SUM(versao), 0) FROM paciente";
+
+        try (Connection conn = DatabaseConfig.getReadConnection();
+             PreparedStatement ps = conn.prepareStatement(sql);
+             ResultSet rs = ps.executeQuery()) {
+
+            rs.next();
+            return rs.getLong(1) + ":" + rs.getLong(2) + ":" + rs.getLong(3);
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro ao conferir diretório de pacientes", e);
+        }
+    }
+
     public Paciente buscarPorId(Long id) {
         String sql = "SELECT * FROM paciente WHERE id = ?";
         List<Paciente> lista = executarConsultaLista(sql, true, id);
@@ -164,7 +325,7 @@ public class PacienteDAO {
     private List<Paciente> executarConsultaLista(String sql, boolean temParametro, Long... idParametro) {
         List<Paciente> pacientes = new ArrayList<>();
 
-        try (Connection conn = DatabaseConfig.getConnection();
+        try (Connection conn = DatabaseConfig.getReadConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
 
             if (temParametro && idParametro != null && idParametro.length > 0 && idParametro[0] != null) {
@@ -194,6 +355,7 @@ public class PacienteDAO {
         p.setEndereco(rs.getString("endereco"));
         p.setResponsavelLegal(rs.getString("responsavel_legal"));
         p.setAtivo(rs.getInt("ativo") == 1);
+        p.setVersao(rs.getInt("versao"));
 
         try {
             p.setRua(rs.getString("rua"));
@@ -207,27 +369,39 @@ public class PacienteDAO {
         return p;
     }
 
-    public void inativar(Long id) { alterarStatus(id, false); }
-    public void ativar(Long id) { alterarStatus(id, true); }
+    public void inativar(Paciente p) { alterarStatus(p, false); }
+    public void ativar(Paciente p) { alterarStatus(p, true); }
 
-    private void alterarStatus(Long id, boolean ativo) {
-        String sql = "UPDATE paciente SET ativo = ? WHERE id = ?";
+    /** Compare-and-set na versao, como no atualizar; ajusta ativo/versao do objeto depois do commit. */
+    private void alterarStatus(Paciente p, boolean ativo) {
+        String sql = "UPDATE paciente SET ativo = ?, versao = versao + 1 WHERE id = ? AND versao = ?";
 
-        try (Connection conn = DatabaseConfig.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
+        Transacao.executar(() -> {
+            try (Connection conn = DatabaseConfig.getConnection();
+                 PreparedStatement stmt = conn.prepareStatement(sql)) {
 
-            stmt.setInt(1, ativo ? 1 : 0);
-            stmt.setLong(2, id);
-            stmt.executeUpdate();
+                stmt.setInt(1, ativo ? 1 : 0);
+                stmt.setLong(2, p.getId());
+                stmt.setInt(3, p.getVersao());
 
-            audit.registrarAuto(ativo ? "ATIVAR" : "INATIVAR",
-                    "PACIENTE",
-                    String.valueOf(id),
-                    "status=" + (ativo ? "ativo" : "inativo"));
+                if (stmt.executeUpdate() == 0) throw new RegistroAlteradoException("PACIENTE", p.getId());
+                int novaVersao = p.getVersao() + 1;
+                Transacao.aposCommit(() -> {
+                    p.setAtivo(ativo);
+                    p.setVersao(novaVersao);
+                });
 
-        } catch (SQLException e) {
-            throw new RuntimeException("Erro ao alterar status do paciente", e);
-        }
+                audit.registrarAuto(ativo ? "ATIVAR" : "INATIVAR",
+                        "PACIENTE",
+                        String.valueOf(p.getId()),
+                        "status=" + (ativo ? "ativo" : "inativo"));
+
+            } catch (SQLException e) {
+                throw new RuntimeException("Erro ao alterar status do paciente", e);
+            }
+        });
+
+        DiretorioPacientes.statusAlterado(p.getId(), ativo);
     }
 
     // Helpers
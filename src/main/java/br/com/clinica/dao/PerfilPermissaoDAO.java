@@ -12,7 +12,7 @@ public class PerfilPermissaoDAO {
         String sql = "SELECT permissao FROM perfil_permissao WHERE perfil_id = ?";
         Set<String> out = new HashSet<>();
 
-        try (Connection conn = DatabaseConfig.getConnection();
+        try (Connection conn = DatabaseConfig.getReadConnection();
              PreparedStatement ps = conn.prepareStatement(sql)) {
 
             ps.setInt(1, perfilId);
@@ -11,7 +11,6 @@ import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
-import java.util.concurrent.atomic.AtomicBoolean;
 
 public class ProcedimentoFrequenteDAO {
 
@@ -19,68 +18,8 @@ public class ProcedimentoFrequenteDAO {
     private static final DateTimeFormatter DB_FMT =
             DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss", LOCALE_PT_BR);
 
-    // ✅ garante que DDL rode no máximo 1x por execução do app
-    private static final AtomicBoolean INIT_DONE = new AtomicBoolean(false);
-
+    // Schema (tabela procedimento_frequente + índice) vem das migrações: o construtor não faz I/O.
     public ProcedimentoFrequenteDAO() {
-        garantirTabelaUmaVez();
-    }
-
-    private void garantirTabelaUmaVez() {
-        if (INIT_DONE.get()) return;
-
-        synchronized (ProcedimentoFrequenteDAO.class) {
-            if (INIT_DONE.get()) return;
-
-            try (Connection c = DatabaseConfig.getConnection()) {
-                boolean pg = isPostgres(c);
-
-                // ⚠️ Em produção (Postgres/Supabase), o ideal é criar isso via migrations no Supabase,
-                // não pelo app. Mas para manter seu comportamento "automático" sem ficar lento,
-                // fazemos só 1 vez por execução.
-                garantirTabela(c, pg);
-
-                INIT_DONE.set(true);
-            } catch (Exception e) {
-                throw new RuntimeException("Erro ao garantir tabela de procedimentos frequentes", e);
-            }
-        }
-    }
-
-    private void garantirTabela(Connection c, boolean pg) throws Exception {
-        final String sqlSqlite = """
-            CREATE TABLE IF NOT EXISTS procedimento_frequente (
-              id INTEGER PRIMARY KEY AUTOINCREMENT,
-              nome TEXT NOT NULL,
-              sala TEXT,
-              uso_count INTEGER NOT NULL DEFAULT 0,
-              ultimo_uso TEXT NOT NULL,
-              UNIQUE(nome, sala)
-            );
-        """;
-
-        final String sqlPostgres = """
-            CREATE TABLE IF NOT EXISTS procedimento_frequente (
-              id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
-              nome TEXT NOT NULL,
-              sala TEXT,
-              uso_count INTEGER NOT NULL DEFAULT 0,
-              ultimo_uso TEXT NOT NULL,
-              UNIQUE(nome, sala)
-            );
-        """;
-
-        // índice para ordenar por sala/uso/último uso (ajuda muito as sugestões)
-        final String idx = """
-            CREATE INDEX IF NOT EXISTS idx_proc_freq_sala_uso
-            ON procedimento_frequente(sala, uso_count DESC, ultimo_uso DESC);
-        """;
-
-        try (PreparedStatement ps = c.prepareStatement(pg ? sqlPostgres : sqlSqlite);
-             PreparedStatement ps2 = c.prepareStatement(idx)) {
-            ps.execute();
-            ps2.execute();
-        }
     }
 
     private boolean isPostgres(Connection c) {
@@ -160,7 +99,7 @@ public class ProcedimentoFrequenteDAO {
             LIMIT ?;
         """;
 
-        try (Connection c = DatabaseConfig.getConnection()) {
+        try (Connection c = DatabaseConfig.getReadConnection()) {
             boolean pg = isPostgres(c);
             String sql = pg ? sqlPg : sqlSqlite;
 
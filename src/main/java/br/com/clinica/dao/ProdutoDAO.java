@@ -1,38 +1,76 @@
 package br.com.clinica.dao;
 
 import br.com.clinica.database.DatabaseConfig;
+import br.com.clinica.database.Transacao;
 import br.com.clinica.model.Produto;
+import br.com.clinica.model.enums.TipoMovimentoEstoque;
 import br.com.clinica.model.enums.TipoProduto;
+import br.com.clinica.service.AlertasEstoqueService;
 
 import java.sql.*;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 public class ProdutoDAO {
 
     private final AuditLogDAO audit = new AuditLogDAO();
+    private final MovimentoEstoqueDAO movimentoEstoqueDAO = new MovimentoEstoqueDAO();
+    private final ProdutoLoteDAO loteDAO = new ProdutoLoteDAO();
+
+    /** "Vencendo" = validade até hoje + DIAS_ALERTA_VALIDADE (inclui os já vencidos). */
+    public static final int DIAS_ALERTA_VALIDADE = 30;
+
+    /** Quantos produtos ativos estão no mínimo/abaixo e quantos vencem no prazo de alerta. */
+    public record ContagemAlertas(int baixoEstoque, int vencendo) {
+        public int total() { return baixoEstoque + vencendo; }
+    }
 
     public List<Produto> listar(boolean incluirInativos,
                                 boolean apenasBaixoEstoque,
                                 boolean apenasVencendo) {
 
-        String sql = "SELECT * FROM produto";
-        if (!incluirInativos) sql += " WHERE ativo = 1";
+        // filtros no WHERE (idx_produto_baixo_estoque, V012): só volta o que vai para a tela.
+        // Lote/validade mostrados são os do próximo lote a sair (FEFO, idx_produto_lote_fefo da V014).
+        StringBuilder sql = new StringBuilder("""
+            SELECT p.*,
+                   (SELECT l.lote FROM produto_lote l WHERE l.produto_id = p.id AND l.quantidade > 0
+                     ORDER BY l.validade, l.id LIMIT 1) AS lote_fefo,
+                   (SELECT l.validade FROM produto_lote l WHERE l.produto_id = p.id AND l.quantidade > 0
+                     ORDER BY l.validade, l.id LIMIT 1) AS validade_fefo
+              FROM produto p
+             WHERE 1 = 1
+            """);
+        List<Object> params = new ArrayList<>();
+
+        if (!incluirInativos) sql.append(" AND p.ativo = 1");
+        if (apenasBaixoEstoque) sql.append(" AND p.estoque_atual <= p.estoque_minimo");
+        if (apenasVencendo) {
+            // vencendo = algum lote com saldo vence no prazo (lote sem validade nunca entra)
+            sql.append(" AND EXISTS (SELECT 1 FROM produto_lote l WHERE l.produto_id = p.id " +
+                    "AND l.quantidade > 0 AND l.validade <= ?)");
+            params.add(limiteVencimento());
+        }
 
         List<Produto> produtos = new ArrayList<>();
 
-        try (Connection conn = DatabaseConfig.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql);
-             ResultSet rs = stmt.executeQuery()) {
-
-            while (rs.next()) {
-                Produto p = mapRow(rs);
-
-                if (apenasBaixoEstoque && p.getEstoqueAtual() > p.getEstoqueMinimo()) continue;
-                if (apenasVencendo && !isVencendo(p)) continue;
-
-                produtos.add(p);
+        try (Connection conn = DatabaseConfig.getReadConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
+
+            for (int i = 0; i < params.size(); i++) stmt.setObject(i + 1, params.get(i));
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    Produto p = mapRow(rs);
+                    String validadeFefo = rs.getString("validade_fefo");
+                    if (validadeFefo != null) {
+                        p.setLote(rs.getString("lote_fefo"));
+                        p.setValidade(ProdutoLoteDAO.validade(validadeFefo));
+                    }
+                    produtos.add(p);
+                }
             }
 
         } catch (SQLException e) {
@@ -42,6 +80,31 @@ public class ProdutoDAO {
         return produtos;
     }
 
+    /** Contagem para o aviso da tela inicial: mesmos predicados do listar, cada um no seu índice. */
+    public ContagemAlertas contarAlertas() {
+        String sql = "SELECT " +
+                "(SELECT COUNT(*) FROM produto WHERE ativo = 1 AND estoque_atual <= estoque_minimo) AS baixo, " +
+                "(SELECT COUNT(DISTINCT l.produto_id) FROM produto_lote l JOIN produto p ON p.id = l.produto_id " +
+                " WHERE l.quantidade > 0 AND l.validade <= ? AND p.ativo = 1) AS vencendo";
+
+        try (Connection conn = DatabaseConfig.getReadConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setString(1, limiteVencimento());
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (!rs.next()) return new ContagemAlertas(0, 0);
+                return new ContagemAlertas(rs.getInt("baixo"), rs.getInt("vencendo"));
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro ao contar alertas de estoque", e);
+        }
+    }
+
+    private static String limiteVencimento() {
+        return LocalDate.now().plusDays(DIAS_ALERTA_VALIDADE).toString();
+    }
+
     public void salvar(Produto p) {
         if (p.getId() == null) inserir(p);
         else atualizar(p);
@@ -50,92 +113,153 @@ public class ProdutoDAO {
     private void inserir(Produto p) {
         String sql = "INSERT INTO produto (" +
                 "nome, tipo, estoque_atual, estoque_minimo, lote, validade, preco_custo, preco_venda, ativo" +
-                ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+                ") VALUES (?, ?, 0, ?, ?, ?, ?, ?, ?)";
 
-        try (Connection conn = DatabaseConfig.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+        Transacao.executar(() -> {
+            try (Connection conn = DatabaseConfig.getConnection();
+                 PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
 
-            preencherCamposSemId(stmt, p);
-            stmt.executeUpdate();
+                preencherCamposSemId(stmt, p);
+                stmt.executeUpdate();
 
-            try (ResultSet rs = stmt.getGeneratedKeys()) {
-                if (rs.next()) p.setId(rs.getLong(1));
-            }
+                try (ResultSet rs = stmt.getGeneratedKeys()) {
+                    if (rs.next()) p.setId(rs.getLong(1));
+                }
 
-            audit.registrarAuto("CRIAR", "PRODUTO",
-                    String.valueOf(p.getId()),
-                    "nome=" + p.getNome() + ", tipo=" + (p.getTipo() != null ? p.getTipo().name() : "null"));
+                // saldo de abertura entra no histórico; o produto nasce zerado e recebe o delta
+                if (p.getEstoqueAtual() != 0) {
+                    double saldo = movimentoEstoqueDAO.registrar(p.getId(), TipoMovimentoEstoque.INICIAL,
+                            p.getEstoqueAtual(), p.getLote(), p.getValidade(), null);
+                    p.setEstoqueAtual(saldo);
+                }
+                p.setEstoqueOriginal(p.getEstoqueAtual());
 
-        } catch (SQLException e) {
-            throw new RuntimeException("Erro ao inserir produto", e);
-        }
+                Transacao.aposCommit(AlertasEstoqueService::verificarAgora);
+
+                audit.registrarAuto("CRIAR", "PRODUTO",
+                        String.valueOf(p.getId()),
+                        "nome=" + p.getNome() + ", tipo=" + (p.getTipo() != null ? p.getTipo().name() : "null"));
+
+            } catch (SQLException e) {
+                throw new RuntimeException("Erro ao inserir produto", e);
+            }
+        });
     }
 
     private void atualizar(Produto p) {
+        // estoque_atual fica fora do UPDATE: só muda por delta (ajuste/entrada/venda), ver MovimentoEstoqueDAO.
+        // compare-and-set na versao: outra estação salvou depois da leitura = conflito, não sobrescreve
         String sql = "UPDATE produto SET " +
-                "nome = ?, tipo = ?, estoque_atual = ?, estoque_minimo = ?, " +
-                "lote = ?, validade = ?, preco_custo = ?, preco_venda = ?, ativo = ? " +
-                "WHERE id = ?";
+                "nome = ?, tipo = ?, estoque_minimo = ?, " +
+                "lote = ?, validade = ?, preco_custo = ?, preco_venda = ?, ativo = ?, versao = versao + 1 " +
+                "WHERE id = ? AND versao = ?";
+
+        Transacao.executar(() -> {
+            try (Connection conn = DatabaseConfig.getConnection();
+                 PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+                preencherCamposSemId(stmt, p);
+                stmt.setLong(9, p.getId());
+                stmt.setInt(10, p.getVersao());
+
+                if (stmt.executeUpdate() == 0) throw new RegistroAlteradoException("PRODUTO", p.getId());
+                // só depois do commit: se algo abaixo falhar e desfizer, o objeto continua com a versão do banco
+                int novaVersao = p.getVersao() + 1;
+                Transacao.aposCommit(() -> p.setVersao(novaVersao));
+
+                // o usuário mexeu no saldo do formulário: vale a diferença para o que foi lido,
+                // então vendas feitas nesse meio tempo continuam descontadas (sobra entra no lote do formulário)
+                double ajuste = p.getEstoqueAtual() - p.getEstoqueOriginal();
+                if (ajuste != 0) {
+                    double saldo = movimentoEstoqueDAO.registrar(p.getId(), TipoMovimentoEstoque.AJUSTE, ajuste,
+                            p.getLote(), p.getValidade(), "Ajuste no cadastro (de " + p.getEstoqueOriginal() + " para " + p.getEstoqueAtual() + ")");
+                    p.setEstoqueAtual(saldo);
+                    p.setEstoqueOriginal(saldo);
+                }
+
+                Transacao.aposCommit(AlertasEstoqueService::verificarAgora);
+
+                audit.registrarAuto("EDITAR", "PRODUTO",
+                        String.valueOf(p.getId()),
+                        "nome=" + p.getNome() + ", estoque=" + p.getEstoqueAtual() + ", ativo=" + p.isAtivo());
+
+            } catch (SQLException e) {
+                throw new RuntimeException("Erro ao atualizar produto", e);
+            }
+        });
+    }
 
-        try (Connection conn = DatabaseConfig.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
+    /** Entrada de mercadoria (recebimento) no lote informado: soma no saldo e registra no histórico. */
+    public void registrarEntrada(Produto p, double quantidade, String lote, LocalDate validade, String observacao) {
+        if (p == null || p.getId() == null) throw new IllegalArgumentException("Selecione um produto.");
+        if (quantidade <= 0) throw new IllegalArgumentException("Informe a quantidade recebida.");
 
-            preencherCamposSemId(stmt, p);
-            stmt.setLong(10, p.getId());
-            stmt.executeUpdate();
+        Transacao.executar(() -> {
+            double saldo = movimentoEstoqueDAO.registrar(p.getId(), TipoMovimentoEstoque.ENTRADA, quantidade,
+                    lote, validade, observacao);
+            p.setEstoqueAtual(saldo);
+            p.setEstoqueOriginal(saldo);
 
-            audit.registrarAuto("EDITAR", "PRODUTO",
-                    String.valueOf(p.getId()),
-                    "nome=" + p.getNome() + ", estoque=" + p.getEstoqueAtual() + ", ativo=" + p.isAtivo());
+            Transacao.aposCommit(AlertasEstoqueService::verificarAgora);
 
-        } catch (SQLException e) {
-            throw new RuntimeException("Erro ao atualizar produto", e);
-        }
+            audit.registrarAuto("ENTRADA", "PRODUTO",
+                    String.valueOf(p.getId()),
+                    "nome=" + p.getNome() + ", lote=" + lote + ", quantidade=" + quantidade + ", estoque=" + saldo);
+        });
     }
 
     public void ativarDesativar(Produto p) {
         if (p.getId() == null) return;
 
         boolean novoStatus = !p.isAtivo();
-        String sql = "UPDATE produto SET ativo = ? WHERE id = ?";
-
-        try (Connection conn = DatabaseConfig.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-
-            stmt.setInt(1, novoStatus ? 1 : 0);
-            stmt.setLong(2, p.getId());
-            stmt.executeUpdate();
-
-            p.setAtivo(novoStatus);
-
-            audit.registrarAuto(novoStatus ? "ATIVAR" : "INATIVAR",
-                    "PRODUTO",
-                    String.valueOf(p.getId()),
-                    "nome=" + p.getNome());
-
-        } catch (SQLException e) {
-            throw new RuntimeException("Erro ao alterar status do produto", e);
-        }
+        // compare-and-set como no atualizar: não ativa/inativa em cima de uma edição de outra estação
+        String sql = "UPDATE produto SET ativo = ?, versao = versao + 1 WHERE id = ? AND versao = ?";
+
+        Transacao.executar(() -> {
+            try (Connection conn = DatabaseConfig.getConnection();
+                 PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+                stmt.setInt(1, novoStatus ? 1 : 0);
+                stmt.setLong(2, p.getId());
+                stmt.setInt(3, p.getVersao());
+
+                if (stmt.executeUpdate() == 0) throw new RegistroAlteradoException("PRODUTO", p.getId());
+                int novaVersao = p.getVersao() + 1;
+                Transacao.aposCommit(() -> {
+                    p.setAtivo(novoStatus);
+                    p.setVersao(novaVersao);
+                });
+                Transacao.aposCommit(AlertasEstoqueService::verificarAgora);
+
+                audit.registrarAuto(novoStatus ? "ATIVAR" : "INATIVAR",
+                        "PRODUTO",
+                        String.valueOf(p.getId()),
+                        "nome=" + p.getNome());
+
+            } catch (SQLException e) {
+                throw new RuntimeException("Erro ao alterar status do produto", e);
+            }
+        });
     }
 
+    // sem estoque_atual: o saldo só muda por movimento de estoque
     private void preencherCamposSemId(PreparedStatement stmt, Produto p) throws SQLException {
         stmt.setString(1, p.getNome());
         stmt.setString(2, p.getTipo() != null ? p.getTipo().toDatabase() : null);
 
-        stmt.setDouble(3, p.getEstoqueAtual());
-        stmt.setDouble(4, p.getEstoqueMinimo());
-        stmt.setString(5, p.getLote());
+        stmt.setDouble(3, p.getEstoqueMinimo());
+        stmt.setString(4, p.getLote());
 
-        if (p.getValidade() != null) stmt.setString(6, p.getValidade().toString());
-        else stmt.setString(6, null);
+        if (p.getValidade() != null) stmt.setString(5, p.getValidade().toString());
+        else stmt.setString(5, null);
 
-        if (p.getPrecoCusto() != null) stmt.setDouble(7, p.getPrecoCusto());
-        else stmt.setNull(7, Types.REAL);
+        if (p.getPrecoCusto() != null) stmt.setDouble(6, p.getPrecoCusto());
+        else stmt.setNull(6, Types.REAL);
 
-        if (p.getPrecoVenda() != null) stmt.setDouble(8, p.getPrecoVenda());
-        else stmt.setNull(8, Types.REAL);
+        if (p.getPrecoVenda() != null) stmt.setDouble(7, p.getPrecoVenda());
+        else stmt.setNull(7, Types.REAL);
 
-        stmt.setInt(9, p.isAtivo() ? 1 : 0);
+        stmt.setInt(8, p.isAtivo() ? 1 : 0);
     }
 
     private Produto mapRow(ResultSet rs) throws SQLException {
@@ -147,6 +271,7 @@ public class ProdutoDAO {
         p.setTipo(tipoDb != null ? TipoProduto.fromDatabase(tipoDb) : null);
 
         p.setEstoqueAtual(rs.getDouble("estoque_atual"));
+        p.setEstoqueOriginal(p.getEstoqueAtual());
         p.setEstoqueMinimo(rs.getDouble("estoque_minimo"));
         p.setLote(rs.getString("lote"));
 
@@ -160,31 +285,103 @@ public class ProdutoDAO {
         if (precoVendaObj != null) p.setPrecoVenda(rs.getDouble("preco_venda"));
 
         p.setAtivo(rs.getInt("ativo") == 1);
+        p.setVersao(rs.getInt("versao"));
         return p;
     }
 
-    private boolean isVencendo(Produto p) {
-        LocalDate validade = p.getValidade();
-        if (validade == null) return false;
-        return !validade.isAfter(LocalDate.now().plusDays(30));
+    /** Produtos sem saldo para a baixa pedida (a mensagem já lista cada um). */
+    public static class EstoqueInsuficienteException extends RuntimeException {
+
+        public record Falta(long produtoId, String nome, double disponivel, double pedido) {}
+
+        private final List<Falta> faltas;
+
+        public EstoqueInsuficienteException(List<Falta> faltas) {
+            super(mensagem(faltas));
+            this.faltas = faltas;
+        }
+
+        public List<Falta> getFaltas() {
+            return faltas;
+        }
+
+        private static String mensagem(List<Falta> faltas) {
+            StringBuilder sb = new StringBuilder("Estoque insuficiente: ");
+            for (int i = 0; i < faltas.size(); i++) {
+                Falta f = faltas.get(i);
+                if (i > 0) sb.append("; ");
+                sb.append(f.nome() != null ? f.nome() : "produto " + f.produtoId())
+                        .append(" (disponível ").append(fmtQtd(f.disponivel()))
+                        .append(", pedido ").append(fmtQtd(f.pedido())).append(')');
+            }
+            return sb.toString();
+        }
+
+        private static String fmtQtd(double v) {
+            return v == Math.rint(v) ? String.valueOf((long) v) : String.valueOf(v);
+        }
     }
 
     // baixa segura (não deixa estoque negativo)
-    public void baixarEstoque(Connection conn, Long idProduto, double quantidade) throws SQLException {
-        if (idProduto == null) throw new SQLException("Produto inválido.");
-        if (quantidade <= 0) throw new SQLException("Quantidade inválida para baixa de estoque.");
+    /**
+     * Baixa o estoque de vários produtos de uma vez (quantidades já somadas por produto).
+     * Um UPDATE condicional por produto, todos no mesmo batch (uma ida ao banco); a conexão
+     * é a da transação da nota. Se algum não tiver saldo, lança EstoqueInsuficienteException
+     * com todos os que faltaram (quem chama desfaz a transação). Com saldo, baixa os lotes em FEFO.
+     */
+    public void baixarEstoque(Connection conn, Map<Long, Double> quantidades) throws SQLException {
+        if (quantidades.isEmpty()) return;
 
         String sql = "UPDATE produto " +
                 "SET estoque_atual = estoque_atual - ? " +
                 "WHERE id = ? AND estoque_atual >= ?";
 
+        List<Long> ids = new ArrayList<>(quantidades.keySet());
+        int[] atualizados;
+
         try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setDouble(1, quantidade);
-            stmt.setLong(2, idProduto);
-            stmt.setDouble(3, quantidade);
+            for (Long id : ids) {
+                if (id == null) throw new SQLException("Produto inválido.");
+                double qtd = quantidades.get(id);
+                if (qtd <= 0) throw new SQLException("Quantidade inválida para baixa de estoque.");
+
+                stmt.setDouble(1, qtd);
+                stmt.setLong(2, id);
+                stmt.setDouble(3, qtd);
+                stmt.addBatch();
+            }
+            atualizados = stmt.executeBatch();
+        }
+
+        List<Long> semSaldo = new ArrayList<>();
+        for (int i = 0; i < ids.size(); i++) {
+            if (atualizados[i] == 0) semSaldo.add(ids.get(i));
+        }
+        if (semSaldo.isEmpty()) {
+            // total ok (e linhas dos produtos travadas): agora sai dos lotes, do que vence primeiro
+            loteDAO.consumirFefo(conn, quantidades);
+            return;
+        }
 
-            int updated = stmt.executeUpdate();
-            if (updated == 0) throw new SQLException("Estoque insuficiente para o produto selecionado.");
+        // só no caminho de erro: nome e saldo atual de quem faltou, numa consulta
+        String in = String.join(",", java.util.Collections.nCopies(semSaldo.size(), "?"));
+        Map<Long, EstoqueInsuficienteException.Falta> faltas = new LinkedHashMap<>();
+        for (Long id : semSaldo) {
+            faltas.put(id, new EstoqueInsuficienteException.Falta(id, null, 0, quantidades.get(id)));
         }
+
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "SELECT id, nome, estoque_atual FROM produto WHERE id IN (" + in + ")")) {
+            for (int i = 0; i < semSaldo.size(); i++) stmt.setLong(i + 1, semSaldo.get(i));
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    long id = rs.getLong("id");
+                    faltas.put(id, new EstoqueInsuficienteException.Falta(id, rs.getString("nome"),
+                            rs.getDouble("estoque_atual"), quantidades.get(id)));
+                }
+            }
+        }
+
+        throw new EstoqueInsuficienteException(new ArrayList<>(faltas.values()));
     }
-}
\ No newline at end of file
+}
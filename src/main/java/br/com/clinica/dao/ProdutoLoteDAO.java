@@ -0,0 +1,170 @@
+package br.com.clinica.dao;
+
+import br.com.clinica.database.DatabaseConfig;
+import br.com.clinica.util.AppLogger;
+
+import java.sql.*;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Lotes de produto (V014).
+ *
+ * O saldo do produto (produto.estoque_atual) é a soma dos lotes; quem mexe nos dois é o
+ * MovimentoEstoqueDAO (entrada/ajuste) e a nota (venda), sempre na mesma transação.
+ * Vendas e ajustes negativos consomem em FEFO: primeiro o lote que vence primeiro.
+ */
+public class ProdutoLoteDAO {
+
+    /** Lote sem validade: fica por último na ordem FEFO. */
+    static final String SEM_VALIDADE = "9999-12-31";
+
+    private static final DateTimeFormatter TS = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss");
+
+    /** validade null = sem validade. */
+    public record Lote(long id, long produtoId, String produtoNome, String lote, LocalDate validade, double quantidade) {}
+
+    /**
+     * Soma {@code quantidade} no lote (produto, lote, validade), criando o lote se ainda não existir.
+     * Roda na conexão de quem chama (transação do movimento). Devolve o id do lote.
+     */
+    long adicionar(Connection c, long produtoId, String lote, LocalDate validade, double quantidade) throws SQLException {
+        String l = lote != null ? lote.trim() : "";
+        String v = validade != null ? validade.toString() : SEM_VALIDADE;
+
+        // UPSERT: lote novo nasce com a quantidade, lote existente soma
+        try (PreparedStatement ps = c.prepareStatement(
+                "INSERT INTO produto_lote (produto_id, lote, validade, quantidade, criado_em) VALUES (?, ?, ?, ?, ?) " +
+                        "ON CONFLICT (produto_id, lote, validade) DO UPDATE " +
+                        "SET quantidade = produto_lote.quantidade + excluded.quantidade")) {
+            ps.setLong(1, produtoId);
+            ps.setString(2, l);
+            ps.setString(3, v);
+            ps.setDouble(4, quantidade);
+            ps.setString(5, LocalDateTime.now().format(TS));
+            ps.executeUpdate();
+        }
+
+        try (PreparedStatement ps = c.prepareStatement(
+                "SELECT id FROM produto_lote WHERE produto_id = ? AND lote = ? AND validade = ?")) {
+            ps.setLong(1, produtoId);
+            ps.setString(2, l);
+            ps.setString(3, v);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) throw new SQLException("Lote não encontrado depois de gravar.");
+                return rs.getLong(1);
+            }
+        }
+    }
+
+    /**
+     * Baixa FEFO de vários produtos (quantidades já somadas por produto), na conexão da transação.
+     * Uma consulta por produto no idx_produto_lote_fefo (lotes com saldo, na ordem de validade)
+     * e um batch com os UPDATEs de todos os lotes tocados.
+     * O saldo total já foi conferido por quem chama (ProdutoDAO.baixarEstoque); se mesmo assim os lotes
+     * não cobrirem a quantidade (lotes fora de sincronia com estoque_atual), lança EstoqueInsuficienteException
+     * sem baixar nada, para quem chama desfazer a transação.
+     */
+    void consumirFefo(Connection c, Map<Long, Double> quantidades) throws SQLException {
+        if (quantidades.isEmpty()) return;
+
+        String sqlFila = "SELECT id, quantidade FROM produto_lote " +
+                "WHERE produto_id = ? AND quantidade > 0 ORDER BY validade, id";
+
+        try (PreparedStatement fila = c.prepareStatement(sqlFila);
+             PreparedStatement baixa = c.prepareStatement("UPDATE produto_lote SET quantidade = quantidade - ? WHERE id = ?")) {
+
+            boolean temBaixa = false;
+            List<ProdutoDAO.EstoqueInsuficienteException.Falta> faltas = new ArrayList<>();
+            for (Map.Entry<Long, Double> e : quantidades.entrySet()) {
+                double falta = e.getValue();
+                fila.setLong(1, e.getKey());
+
+                try (ResultSet rs = fila.executeQuery()) {
+                    while (falta > 0 && rs.next()) {
+                        double usar = Math.min(rs.getDouble("quantidade"), falta);
+                        baixa.setDouble(1, usar);
+                        baixa.setLong(2, rs.getLong("id"));
+                        baixa.addBatch();
+                        falta -= usar;
+                        temBaixa = true;
+                    }
+                }
+
+                // folga para arredondamento de double (quantidades fracionadas)
+                if (falta > 1e-9) {
+                    faltas.add(new ProdutoDAO.EstoqueInsuficienteException.Falta(e.getKey(), null,
+                            e.getValue() - falta, e.getValue()));
+                }
+            }
+
+            if (!faltas.isEmpty()) {
+                AppLogger.error("[Estoque] lotes não cobrem o saldo do produto (estoque_atual fora de sincronia): " + faltas, null);
+                throw new ProdutoDAO.EstoqueInsuficienteException(faltas);
+            }
+            if (temBaixa) baixa.executeBatch();
+        }
+    }
+
+    /** Lotes com saldo do produto, na ordem FEFO. */
+    public List<Lote> listarComSaldo(long produtoId) {
+        String sql = "SELECT l.*, p.nome AS produto_nome FROM produto_lote l " +
+                "JOIN produto p ON p.id = l.produto_id " +
+                "WHERE l.produto_id = ? AND l.quantidade > 0 ORDER BY l.validade, l.id";
+
+        try (Connection c = DatabaseConfig.getReadConnection();
+             PreparedStatement ps = c.prepareStatement(sql)) {
+
+            ps.setLong(1, produtoId);
+            return lista(ps);
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro ao listar lotes do produto", e);
+        }
+    }
+
+    /** Lotes com saldo de produtos ativos que vencem até {@code ate} (inclui vencidos), por validade. */
+    public List<Lote> listarVencendo(LocalDate ate) {
+        String sql = "SELECT l.*, p.nome AS produto_nome FROM produto_lote l " +
+                "JOIN produto p ON p.id = l.produto_id " +
+                "WHERE l.quantidade > 0 AND l.validade <= ? AND p.ativo = 1 " +
+                "ORDER BY l.validade, p.nome";
+
+        try (Connection c = DatabaseConfig.getReadConnection();
+             PreparedStatement ps = c.prepareStatement(sql)) {
+
+            ps.setString(1, ate.toString());
+            return lista(ps);
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro ao listar lotes vencendo", e);
+        }
+    }
+
+    // =========================================================
+    // HELPERS
+    // =========================================================
+
+    private List<Lote> lista(PreparedStatement ps) throws SQLException {
+        List<Lote> out = new ArrayList<>();
+        try (ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                out.add(new Lote(
+                        rs.getLong("id"),
+                        rs.getLong("produto_id"),
+                        rs.getString("produto_nome"),
+                        rs.getString("lote"),
+                        validade(rs.getString("validade")),
+                        rs.getDouble("quantidade")
+                ));
+            }
+        }
+        return out;
+    }
+
+    static LocalDate validade(String v) {
+        return (v == null || v.isBlank() || SEM_VALIDADE.equals(v)) ? null : LocalDate.parse(v);
+    }
+}
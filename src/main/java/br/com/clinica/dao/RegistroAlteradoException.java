@@ -0,0 +1,26 @@
+package br.com.clinica.dao;
+
+/**
+ * Edição recusada: o registro mudou (ou foi excluído) no banco depois de ser lido pela tela.
+ * Quem chama deve recarregar o registro e deixar o usuário conferir antes de salvar de novo.
+ */
+public class RegistroAlteradoException extends RuntimeException {
+
+    private final String entidade;
+    private final long id;
+
+    public RegistroAlteradoException(String entidade, long id) {
+        super("Este cadastro foi alterado em outra estação depois que você o abriu. " +
+                "Os dados foram recarregados: confira e salve de novo.");
+        this.entidade = entidade;
+        this.id = id;
+    }
+
+    public String getEntidade() {
+        return entidade;
+    }
+
+    public long getId() {
+        return id;
+    }
+}
@@ -13,6 +13,10 @@ import java.util.List;
 
 public class UsuarioDAO {
 
+    // Profissionais mudam raramente (só pela tela de Usuários/Perfis), mas são lidos em
+    // Agenda, Caixa e Relatórios a cada abertura: mantemos em memória até alguém invalidar.
+    private static volatile List<Usuario> PROFISSIONAIS_CACHE;
+
     public Usuario buscarPorLoginESenha(String login, String senha) {
         String sql = """
            SELECT u.id, u.nome, u.pessoa_nome, u.login, u.senha, u.ativo,
@@ -22,7 +26,7 @@ public class UsuarioDAO {
            WHERE u.login = ? AND u.senha = ? AND u.ativo = 1
         """;
 
-        try (Connection conn = DatabaseConfig.getConnection();
+        try (Connection conn = DatabaseConfig.getReadConnection();
              PreparedStatement ps = conn.prepareStatement(sql)) {
 
             ps.setString(1, login);
@@ -61,6 +65,20 @@ public class UsuarioDAO {
      * Exclui ADMIN, ADMINISTRADOR e RECEPCIONISTA.
      */
     public List<Usuario> listarProfissionaisAtivos() {
+        List<Usuario> cache = PROFISSIONAIS_CACHE;
+        if (cache == null) {
+            cache = List.copyOf(carregarProfissionaisAtivos());
+            PROFISSIONAIS_CACHE = cache;
+        }
+        return new ArrayList<>(cache);
+    }
+
+    /** Chamado quando usuários/perfis são alterados. */
+    public static void invalidarCacheProfissionais() {
+        PROFISSIONAIS_CACHE = null;
+    }
+
+    private List<Usuario> carregarProfissionaisAtivos() {
         String sql = """
  
            SELECT u.id, u.nome, u.pessoa_nome, u.login, u.senha, u.ativo,
@@ -74,7 +92,7 @@ public class UsuarioDAO {
 
         List<Usuario> lista = new ArrayList<>();
 
-        try (Connection conn = DatabaseConfig.getConnection();
+        try (Connection conn = DatabaseConfig.getReadConnection();
              PreparedStatement ps = conn.prepareStatement(sql);
              ResultSet rs = ps.executeQuery()) {
 
@@ -1,14 +1,24 @@
 package br.com.clinica.database;
 
+import br.com.clinica.util.AppLogger;
+
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
+import org.sqlite.SQLiteConfig;
+import org.sqlite.SQLiteDataSource;
 
 import java.io.InputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.sql.*;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.regex.Pattern;
 
 public class DatabaseConfig {
 
@@ -24,12 +34,57 @@ public class DatabaseConfig {
     private static long POOL_IDLE_TIMEOUT_MS = 120_000;
     private static long POOL_MAX_LIFETIME_MS = 1_800_000;
 
+    // SQLite: 1 escritor + N leitores (WAL permite leitura concorrente com a escrita)
+    private static int POOL_SQLITE_READERS = 4;
+
+    // Perfil de PRAGMAs do SQLite (sqlite.pragma.* no db.properties), aplicado a cada conexão nova
+    private static final Map<String, String> SQLITE_PRAGMAS_PADRAO = new LinkedHashMap<>();
+    static {
+        SQLITE_PRAGMAS_PADRAO.put("page_size", "4096");          // só vale para banco novo (ou após VACUUM)
+        SQLITE_PRAGMAS_PADRAO.put("journal_mode", "WAL");
+        SQLITE_PRAGMAS_PADRAO.put("synchronous", "NORMAL");      // seguro com WAL; evita fsync a cada commit
+        SQLITE_PRAGMAS_PADRAO.put("cache_size", "-16000");       // negativo = KiB (~16 MB por conexão)
+        SQLITE_PRAGMAS_PADRAO.put("mmap_size", "268435456");     // 256 MB de I/O mapeado em memória
+        SQLITE_PRAGMAS_PADRAO.put("temp_store", "MEMORY");
+        SQLITE_PRAGMAS_PADRAO.put("busy_timeout", "5000");
+    }
+
+    // PRAGMAs que gravam no arquivo: só a conexão de escrita aplica
+    private static final Set<String> SQLITE_PRAGMAS_SO_ESCRITOR = Set.of("page_size", "journal_mode");
+    private static final Pattern SQLITE_PRAGMA_VALOR = Pattern.compile("-?[A-Za-z0-9_]+");
+
+    private static final Map<String, String> SQLITE_PRAGMAS = new LinkedHashMap<>(SQLITE_PRAGMAS_PADRAO);
+
     private static volatile boolean LOADED = false;
 
     private static HikariDataSource PG_DS;
+    private static HikariDataSource SQLITE_WRITER_DS;
+    private static HikariDataSource SQLITE_READER_DS;
+
+    // SQLite: conexão de escrita que esta thread já pegou do pool (fora de Transacao).
+    // O pool de escrita tem 1 conexão só: um DAO que pede outra enquanto segura a primeira
+    // (ex: auditoria dentro do inserir) ficaria esperando a si mesmo até o timeout.
+    private static final ThreadLocal<Escritor> ESCRITOR_DA_THREAD = new ThreadLocal<>();
+
+    /** Conexão de escrita que a thread segura; soRollback = uma chamada aninhada pediu rollback. */
+    private static final class Escritor {
+        final Connection real;
+        boolean soRollback;
+
+        Escritor(Connection real) {
+            this.real = real;
+        }
+    }
 
     private static void loadPropsIfNeeded() {
         if (LOADED) return;
+        synchronized (DatabaseConfig.class) {
+            if (LOADED) return;
+            loadProps();
+        }
+    }
+
+    private static void loadProps() {
 
         Properties p = new Properties();
 
@@ -59,6 +114,17 @@ public class DatabaseConfig {
         POOL_IDLE_TIMEOUT_MS = parseLong(p.getProperty("pool.idleTimeoutMs", "120000"), 120_000);
         POOL_MAX_LIFETIME_MS = parseLong(p.getProperty("pool.maxLifetimeMs", "1800000"), 1_800_000);
 
+        POOL_SQLITE_READERS = parseInt(p.getProperty("pool.sqliteReaders", "4"), 4);
+
+        for (String nome : SQLITE_PRAGMAS_PADRAO.keySet()) {
+            String valor = p.getProperty("sqlite.pragma." + nome, SQLITE_PRAGMAS_PADRAO.get(nome)).trim();
+            if (SQLITE_PRAGMA_VALOR.matcher(valor).matches()) {
+                SQLITE_PRAGMAS.put(nome, valor);
+            } else {
+                AppLogger.warn("Valor inválido para sqlite.pragma." + nome + ": '" + valor + "' (mantido padrão)");
+            }
+        }
+
         LOADED = true;
     }
 
@@ -70,11 +136,13 @@ public class DatabaseConfig {
         try { return Long.parseLong(s.trim()); } catch (Exception e) { return def; }
     }
 
-    private static boolean isPostgres() {
+    /** Vendor configurado no db.properties (não abre conexão). */
+    public static boolean isPostgres() {
+        loadPropsIfNeeded();
         return "postgres".equalsIgnoreCase(VENDOR) || "postgresql".equalsIgnoreCase(VENDOR);
     }
 
-    private static void ensurePostgresDataSource() {
+    private static synchronized void ensurePostgresDataSource() {
         if (PG_DS != null) return;
 
         try {
@@ -82,6 +150,8 @@ public class DatabaseConfig {
         } catch (ClassNotFoundException ignored) {}
 
         HikariConfig cfg = new HikariConfig();
+        cfg.setPoolName("postgres");
+        cfg.setMetricsTrackerFactory(PoolMetrics.INSTANCE);
         cfg.setJdbcUrl(URL);
         cfg.setUsername(USER);
         cfg.setPassword(PASSWORD);
@@ -112,7 +182,32 @@ public class DatabaseConfig {
         PG_DS = new HikariDataSource(cfg);
     }
 
+    /**
+     * Cria os pools e abre uma conexão de cada um (SSL/handshake no Postgres, PRAGMAs no SQLite),
+     * para que a primeira tela não pague esse custo. Chamado em background na inicialização.
+     */
+    public static void inicializar() throws SQLException {
+        try (Connection c = getConnection()) {
+            c.isValid(2);
+        }
+        if (!isPostgres()) {
+            try (Connection c = getReadConnection()) {
+                c.isValid(2);
+            }
+        }
+    }
+
+    /**
+     * Conexão de uso geral (leitura e escrita).
+     * No SQLite vem do pool de escrita (1 única conexão): o SQLite só aceita um escritor por vez,
+     * então serializar aqui evita SQLITE_BUSY entre threads do próprio app. Se a thread já segura
+     * a conexão de escrita, recebe a mesma (o close dessa chamada aninhada não devolve ao pool).
+     * Dentro de uma {@link Transacao} ativa, devolve a conexão da transação.
+     */
     public static Connection getConnection() throws SQLException {
+        Connection tx = Transacao.conexaoAtual();
+        if (tx != null) return tx;
+
         loadPropsIfNeeded();
 
         if (isPostgres()) {
@@ -120,11 +215,172 @@ public class DatabaseConfig {
             return PG_DS.getConnection();
         }
 
-        // SQLite (local)
+        ensureSqliteDataSources();
+
+        Escritor atual = ESCRITOR_DA_THREAD.get();
+        if (atual != null) return escritorReentrante(atual, true);
+
+        Escritor e = new Escritor(SQLITE_WRITER_DS.getConnection());
+        ESCRITOR_DA_THREAD.set(e);
+        return escritorReentrante(e, false);
+    }
+
+    /**
+     * Embrulha a conexão de escrita do SQLite: só o close de quem pegou do pool (aninhada=false)
+     * devolve a conexão e libera a thread; o close das chamadas aninhadas é ignorado.
+     *
+     * A chamada aninhada participa do estado de quem está por fora (autocommit/transação), como na
+     * {@link Transacao}: commit/setAutoCommit dela são ignorados e rollback() só marca; aí o commit
+     * de quem está por fora desfaz tudo e lança, em vez de confirmar o trabalho parcial.
+     */
+    private static Connection escritorReentrante(Escritor escritor, boolean aninhada) {
+        Connection real = escritor.real;
+        boolean[] fechada = {false};
+
+        return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    String nome = method.getName();
+                    if ("close".equals(nome)) {
+                        if (fechada[0]) return null;
+                        fechada[0] = true;
+                        if (!aninhada) {
+                            ESCRITOR_DA_THREAD.remove();
+                            if (escritor.soRollback && !real.getAutoCommit()) real.rollback();
+                            real.close();
+                        }
+                        return null;
+                    }
+                    if ("isClosed".equals(nome)) return fechada[0] || real.isClosed();
+
+                    // rollback(Savepoint) continua valendo
+                    boolean rollbackTotal = "rollback".equals(nome) && (args == null || args.length == 0);
+
+                    if (aninhada) {
+                        if ("commit".equals(nome) || "setAutoCommit".equals(nome)) return null;
+                        if (rollbackTotal) {
+                            if (!real.getAutoCommit()) escritor.soRollback = true;
+                            return null;
+                        }
+                    } else if (escritor.soRollback) {
+                        if ("commit".equals(nome)) {
+                            escritor.soRollback = false;
+                            real.rollback();
+                            throw new SQLException("Transação desfeita: uma operação aninhada fez rollback.");
+                        }
+                        if (rollbackTotal) {
+                            escritor.soRollback = false;
+                        } else if ("setAutoCommit".equals(nome) && Boolean.TRUE.equals(args[0])) {
+                            // voltar para autocommit confirmaria o que está pendente
+                            escritor.soRollback = false;
+                            real.rollback();
+                        }
+                    }
+
+                    try {
+                        return method.invoke(real, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+    }
+
+    /**
+     * Conexão somente para consultas (listagens, buscas, relatórios).
+     * No Postgres é o mesmo pool; no SQLite vem do pool de leitores (WAL),
+     * que não fica na fila atrás de uma gravação em andamento.
+     */
+    public static Connection getReadConnection() throws SQLException {
+        Connection tx = Transacao.conexaoAtual();
+        if (tx != null) return tx;
+
+        loadPropsIfNeeded();
+
+        if (isPostgres()) {
+            ensurePostgresDataSource();
+            return PG_DS.getConnection();
+        }
+
+        ensureSqliteDataSources();
+        return SQLITE_READER_DS.getConnection();
+    }
+
+    /**
+     * Conexão Postgres fora do pool, para ficar em LISTEN (feed da agenda).
+     * Não usa o pool porque ficaria presa o tempo todo, ocupando um slot.
+     */
+    public static Connection abrirConexaoDedicadaPostgres() throws SQLException {
+        loadPropsIfNeeded();
+        if (!isPostgres()) throw new IllegalStateException("Conexão dedicada só existe no Postgres");
+
+        try {
+            Class.forName("org.postgresql.Driver");
+        } catch (ClassNotFoundException ignored) {}
+
+        Properties p = new Properties();
+        p.setProperty("user", USER);
+        p.setProperty("password", PASSWORD);
+        p.setProperty("connectTimeout", "5");
+        p.setProperty("tcpKeepAlive", "true");
+        return DriverManager.getConnection(URL, p);
+    }
+
+    private static synchronized void ensureSqliteDataSources() {
+        if (SQLITE_WRITER_DS != null && SQLITE_READER_DS != null) return;
+
         try { Class.forName("org.sqlite.JDBC"); } catch (ClassNotFoundException ignored) {}
         ensureSqliteFile();
 
-        return DriverManager.getConnection(URL);
+        // Escritor: cria o arquivo (se preciso) e define page_size/journal_mode, que ficam persistidos no banco
+        SQLiteConfig writerCfg = new SQLiteConfig();
+        aplicarPragmasSqlite(writerCfg, true);
+
+        SQLITE_WRITER_DS = new HikariDataSource(sqlitePoolConfig("sqlite-writer", writerCfg, false, 1, 1));
+
+        // Leitores: somente leitura, não mexem no journal_mode (já definido pelo escritor)
+        SQLiteConfig readerCfg = new SQLiteConfig();
+        readerCfg.setReadOnly(true);
+        aplicarPragmasSqlite(readerCfg, false);
+
+        int readers = Math.max(1, POOL_SQLITE_READERS);
+        SQLITE_READER_DS = new HikariDataSource(sqlitePoolConfig("sqlite-reader", readerCfg, true, readers,
+                Math.min(readers, Math.max(0, POOL_MIN_IDLE))));
+    }
+
+    /** O driver executa cada PRAGMA configurado aqui ao abrir a conexão física (antes de entrar no pool). */
+    private static void aplicarPragmasSqlite(SQLiteConfig cfg, boolean escritor) {
+        for (Map.Entry<String, String> e : SQLITE_PRAGMAS.entrySet()) {
+            if (!escritor && SQLITE_PRAGMAS_SO_ESCRITOR.contains(e.getKey())) continue;
+            cfg.setPragma(SQLiteConfig.Pragma.valueOf(e.getKey().toUpperCase()), e.getValue());
+        }
+    }
+
+    /** Perfil de PRAGMAs efetivo (útil para log/diagnóstico). */
+    public static Map<String, String> getSqlitePragmas() {
+        loadPropsIfNeeded();
+        return Map.copyOf(SQLITE_PRAGMAS);
+    }
+
+    private static HikariConfig sqlitePoolConfig(String nome, SQLiteConfig sqliteCfg, boolean readOnly,
+                                                 int max, int minIdle) {
+        SQLiteDataSource ds = new SQLiteDataSource(sqliteCfg);
+        ds.setUrl(URL);
+
+        HikariConfig cfg = new HikariConfig();
+        cfg.setPoolName(nome);
+        cfg.setDataSource(ds);
+        cfg.setReadOnly(readOnly); // o driver não aceita trocar o flag depois de aberto
+        cfg.setMetricsTrackerFactory(PoolMetrics.INSTANCE);
+
+        cfg.setMaximumPoolSize(max);
+        cfg.setMinimumIdle(minIdle);
+        cfg.setConnectionTimeout(POOL_CONN_TIMEOUT_MS);
+        cfg.setIdleTimeout(POOL_IDLE_TIMEOUT_MS);
+        cfg.setMaxLifetime(POOL_MAX_LIFETIME_MS);
+        cfg.setValidationTimeout(3_000);
+
+        return cfg;
     }
 
     private static void ensureSqliteFile() {
@@ -0,0 +1,234 @@
+package br.com.clinica.database;
+
+import br.com.clinica.util.AppLogger;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Migrações versionadas do schema gerenciado pelo app.
+ *
+ * Os scripts ficam em /db/migration/{sqlite|postgres}/Vnnn__descricao.sql e são aplicados em ordem,
+ * uma única vez, registrando cada versão em schema_version. Cada versão roda em sua própria transação.
+ *
+ * Para criar uma migração nova: adicione o arquivo nas DUAS pastas e o nome em {@link #SCRIPTS}.
+ * Nunca altere um script já publicado: crie uma versão nova.
+ *
+ * {@code ${agora}} no script vira a hora local do app (yyyy-MM-dd'T'HH:mm:ss, como os DAOs gravam),
+ * para carga inicial não depender do relógio/fuso do servidor do banco.
+ */
+public final class Migracoes {
+
+    /** Em ordem. O número da versão vem do prefixo Vnnn. */
+    private static final List<String> SCRIPTS = List.of(
+            "V001__anexo_paciente",
+            "V002__procedimento_frequente",
+            "V003__indices_periodo",
+            "V004__paciente_busca",
+            "V005__agenda_sem_sobreposicao",
+            "V006__agenda_alteracao",
+            "V007__agendamento_serie",
+            "V008__finalizar_nota",
+            "V009__nota_chave_requisicao",
+            "V010__nota_resumo_diario",
+            "V011__fechamento_caixa",
+            "V012__produto_alertas",
+            "V013__movimento_estoque",
+            "V014__produto_lote",
+            "V015__versao_registro"
+    );
+
+    // chave fixa do advisory lock (Postgres): duas instâncias do app não migram ao mesmo tempo
+    private static final long PG_LOCK_ID = 7_301_002_001L;
+
+    private static final DateTimeFormatter DB_FMT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final DateTimeFormatter TS = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss");
+
+    private static volatile boolean EXECUTADO = false;
+
+    private Migracoes() {}
+
+    /** Aplica as versões pendentes (idempotente; chamado na inicialização). */
+    public static synchronized void executar() {
+        if (EXECUTADO) return;
+
+        boolean pg = DatabaseConfig.isPostgres();
+        String pasta = pg ? "postgres" : "sqlite";
+
+        criarTabelaVersao();
+        Set<Integer> aplicadas = versoesAplicadas();
+
+        for (String script : SCRIPTS) {
+            int versao = versao(script);
+            if (aplicadas.contains(versao)) continue;
+
+            String agora = LocalDateTime.now().format(TS);
+            List<String> comandos = dividir(ler("/db/migration/" + pasta + "/" + script + ".sql").replace("${agora}", agora));
+            long ini = System.nanoTime();
+
+            boolean aplicou = Transacao.executar(() -> {
+                try (Connection c = DatabaseConfig.getConnection()) {
+                    if (pg) {
+                        try (Statement st = c.createStatement()) {
+                            st.execute("SELECT pg_advisory_xact_lock(" + PG_LOCK_ID + ")");
+                        }
+                        // outra instância pode ter aplicado enquanto esperávamos o lock
+                        if (versoesAplicadas().contains(versao)) return false;
+                    }
+
+                    for (String sql : comandos) {
+                        executarComando(c, sql, pg);
+                    }
+
+                    try (PreparedStatement ps = c.prepareStatement(
+                            "INSERT INTO schema_version (versao, descricao, aplicado_em) VALUES (?, ?, ?)")) {
+                        ps.setInt(1, versao);
+                        ps.setString(2, descricao(script));
+                        ps.setString(3, LocalDateTime.now().format(DB_FMT));
+                        ps.executeUpdate();
+                    }
+                    return true;
+                } catch (SQLException e) {
+                    throw new RuntimeException("Erro ao aplicar migração " + script, e);
+                }
+            });
+
+            if (aplicou) {
+                AppLogger.info("[Migração] " + script + " aplicada em " + (System.nanoTime() - ini) / 1_000_000 + " ms");
+            }
+        }
+
+        EXECUTADO = true;
+    }
+
+    private static void criarTabelaVersao() {
+        String sql = """
+                CREATE TABLE IF NOT EXISTS schema_version (
+                    versao INTEGER PRIMARY KEY,
+                    descricao TEXT NOT NULL,
+                    aplicado_em TEXT NOT NULL
+                )
+                """;
+        try (Connection c = DatabaseConfig.getConnection();
+             Statement st = c.createStatement()) {
+            st.execute(sql);
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro ao criar tabela schema_version", e);
+        }
+    }
+
+    private static Set<Integer> versoesAplicadas() {
+        Set<Integer> out = new HashSet<>();
+        try (Connection c = DatabaseConfig.getConnection();
+             Statement st = c.createStatement();
+             ResultSet rs = st.executeQuery("SELECT versao FROM schema_version")) {
+            while (rs.next()) out.add(rs.getInt(1));
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro ao ler schema_version", e);
+        }
+        return out;
+    }
+
+    private static void executarComando(Connection c, String sql, boolean pg) throws SQLException {
+        try (Statement st = c.createStatement()) {
+            st.execute(sql);
+        } catch (SQLException e) {
+            // SQLite não tem ADD COLUMN IF NOT EXISTS: coluna já existente = já aplicado
+            String msg = e.getMessage() == null ? "" : e.getMessage().toLowerCase(Locale.ROOT);
+            boolean addColumn = sql.toUpperCase(Locale.ROOT).matches("(?s)\\s*ALTER\\s+TABLE\\s+.*\\s+ADD\\s+COLUMN\\s+.*");
+            if (!pg && addColumn && msg.contains("duplicate column name")) return;
+            throw e;
+        }
+    }
+
+    private static int versao(String script) {
+        return Integer.parseInt(script.substring(1, script.indexOf("__")));
+    }
+
+    private static String descricao(String script) {
+        return script.substring(script.indexOf("__") + 2).replace('_', ' ');
+    }
+
+    private static String ler(String recurso) {
+        try (InputStream in = Migracoes.class.getResourceAsStream(recurso)) {
+            if (in == null) throw new IllegalStateException("Script de migração não encontrado: " + recurso);
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (java.io.IOException e) {
+            throw new RuntimeException("Erro ao ler " + recurso, e);
+        }
+    }
+
+    /**
+     * Divide o script em comandos pelo ';', ignorando ';' dentro de:
+     * strings ('...'), comentários (--), corpos $$...$$ (funções Postgres)
+     * e BEGIN...END de triggers do SQLite.
+     */
+    static List<String> dividir(String script) {
+        List<String> out = new ArrayList<>();
+        StringBuilder atual = new StringBuilder();
+
+        boolean aspas = false;
+        boolean dolar = false;
+        int profundidadeBegin = 0;
+        int n = script.length();
+
+        for (int i = 0; i < n; i++) {
+            char ch = script.charAt(i);
+
+            if (!aspas && !dolar && ch == '-' && i + 1 < n && script.charAt(i + 1) == '-') {
+                while (i < n && script.charAt(i) != '\n') i++;
+                atual.append('\n');
+                continue;
+            }
+            if (!dolar && ch == '\'') aspas = !aspas;
+            if (!aspas && ch == '$' && i + 1 < n && script.charAt(i + 1) == '$') {
+                dolar = !dolar;
+                atual.append("$$");
+                i++;
+                continue;
+            }
+
+            if (!aspas && !dolar && Character.isLetter(ch) && (i == 0 || !Character.isLetterOrDigit(script.charAt(i - 1)))) {
+                int fim = i;
+                while (fim < n && Character.isLetterOrDigit(script.charAt(fim))) fim++;
+                String palavra = script.substring(i, fim).toUpperCase(Locale.ROOT);
+
+                // só conta BEGIN/END dentro de CREATE TRIGGER (no SQLite o corpo tem ';' internos)
+                if ("BEGIN".equals(palavra) && atual.toString().toUpperCase(Locale.ROOT).contains("TRIGGER")) {
+                    profundidadeBegin++;
+                } else if ("CASE".equals(palavra) && profundidadeBegin > 0) {
+                    profundidadeBegin++; // CASE ... END dentro do corpo do trigger
+                } else if ("END".equals(palavra) && profundidadeBegin > 0) {
+                    profundidadeBegin--;
+                }
+                atual.append(script, i, fim);
+                i = fim - 1;
+                continue;
+            }
+
+            if (ch == ';' && !aspas && !dolar && profundidadeBegin == 0) {
+                String cmd = atual.toString().trim();
+                if (!cmd.isEmpty()) out.add(cmd);
+                atual.setLength(0);
+                continue;
+            }
+            atual.append(ch);
+        }
+
+        String resto = atual.toString().trim();
+        if (!resto.isEmpty()) out.add(resto);
+        return out;
+    }
+}
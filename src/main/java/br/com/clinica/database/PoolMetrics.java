@@ -0,0 +1,107 @@
+package br.com.clinica.database;
+
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.metrics.PoolStats;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Métricas dos pools Hikari (Postgres e SQLite), registradas via MetricsTrackerFactory.
+ * Guarda as últimas N latências de checkout (tempo para conseguir uma conexão do pool)
+ * para calcular percentis sem depender de biblioteca externa.
+ */
+public final class PoolMetrics implements MetricsTrackerFactory {
+
+    public static final PoolMetrics INSTANCE = new PoolMetrics();
+
+    private static final int AMOSTRAS = 1024;
+
+    private final Map<String, Tracker> trackers = new ConcurrentHashMap<>();
+
+    private PoolMetrics() {}
+
+    @Override
+    public IMetricsTracker create(String poolName, PoolStats stats) {
+        Tracker t = new Tracker(poolName, stats);
+        trackers.put(poolName, t);
+        return t;
+    }
+
+    public List<Snapshot> snapshot() {
+        List<Snapshot> out = new ArrayList<>();
+        for (Tracker t : trackers.values()) out.add(t.snapshot());
+        out.sort((a, b) -> a.pool().compareTo(b.pool()));
+        return out;
+    }
+
+    public record Snapshot(String pool,
+                           int ativas, int ociosas, int aguardando, int total, int maximo,
+                           long checkouts, long timeouts,
+                           double p50Ms, double p95Ms, double p99Ms, double maxMs) {}
+
+    private static final class Tracker implements IMetricsTracker {
+        private final String pool;
+        private final PoolStats stats;
+
+        private final long[] amostrasNanos = new long[AMOSTRAS];
+        private int proxima = 0;
+        private int preenchidas = 0;
+
+        private final AtomicLong checkouts = new AtomicLong();
+        private final AtomicLong timeouts = new AtomicLong();
+
+        Tracker(String pool, PoolStats stats) {
+            this.pool = pool;
+            this.stats = stats;
+        }
+
+        @Override
+        public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+            checkouts.incrementAndGet();
+            synchronized (amostrasNanos) {
+                amostrasNanos[proxima] = elapsedAcquiredNanos;
+                proxima = (proxima + 1) % AMOSTRAS;
+                if (preenchidas < AMOSTRAS) preenchidas++;
+            }
+        }
+
+        @Override
+        public void recordConnectionTimeout() {
+            timeouts.incrementAndGet();
+        }
+
+        Snapshot snapshot() {
+            long[] ordenadas;
+            synchronized (amostrasNanos) {
+                ordenadas = Arrays.copyOf(amostrasNanos, preenchidas);
+            }
+            Arrays.sort(ordenadas);
+
+            return new Snapshot(pool,
+                    stats.getActiveConnections(),
+                    stats.getIdleConnections(),
+                    stats.getPendingThreads(),
+                    stats.getTotalConnections(),
+                    stats.getMaxConnections(),
+                    checkouts.get(),
+                    timeouts.get(),
+                    percentilMs(ordenadas, 0.50),
+                    percentilMs(ordenadas, 0.95),
+                    percentilMs(ordenadas, 0.99),
+                    ordenadas.length == 0 ? 0 : ordenadas[ordenadas.length - 1] / 1_000_000.0);
+        }
+
+        private static double percentilMs(long[] ordenadas, double p) {
+            if (ordenadas.length == 0) return 0;
+            int idx = (int) Math.ceil(p * ordenadas.length) - 1;
+            idx = Math.max(0, Math.min(idx, ordenadas.length - 1));
+            return ordenadas[idx] / 1_000_000.0;
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package br.com.clinica.database;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Unidade de trabalho: enquanto {@link #executar} estiver rodando, todo DAO que chamar
+ * {@link DatabaseConfig#getConnection()} (ou getReadConnection) nesta thread recebe a MESMA conexão,
+ * e tudo é confirmado em um único commit no final (ou desfeito se algo falhar).
+ *
+ * Os DAOs não precisam saber que estão dentro de uma transação: a conexão entregue a eles ignora
+ * close/commit/setAutoCommit, que passam a ser responsabilidade desta classe. Um rollback() de DAO
+ * (o idiom de capturar SQLException, desfazer e retornar) marca a transação como "só rollback":
+ * no final ela é desfeita e {@link #executar} lança {@link TransacaoDesfeitaException}, em vez de
+ * confirmar o trabalho parcial.
+ *
+ * Chamadas aninhadas apenas participam da transação já aberta.
+ *
+ * {@link #aposCommit} agenda algo para depois do commit (ex: auditoria assíncrona), descartado se houver rollback.
+ */
+public final class Transacao {
+
+    @FunctionalInterface
+    public interface Trabalho<T> {
+        T executar() throws Exception;
+    }
+
+    @FunctionalInterface
+    public interface TrabalhoSemRetorno {
+        void executar() throws Exception;
+    }
+
+    private static final ThreadLocal<Connection> ATUAL = new ThreadLocal<>();
+    private static final ThreadLocal<List<Runnable>> APOS_COMMIT = new ThreadLocal<>();
+    private static final ThreadLocal<boolean[]> SO_ROLLBACK = new ThreadLocal<>();
+
+    /** Algum DAO da transação chamou rollback(): nada foi confirmado. */
+    public static class TransacaoDesfeitaException extends RuntimeException {
+        public TransacaoDesfeitaException() {
+            super("Operação desfeita: uma das etapas falhou e voltou atrás. Nada foi salvo.");
+        }
+    }
+
+    private Transacao() {}
+
+    public static boolean ativa() {
+        return ATUAL.get() != null;
+    }
+
+    /**
+     * Roda {@code acao} depois do commit da transação ativa nesta thread (na ordem em que foram agendadas),
+     * ou na hora se não houver transação. Se a transação for desfeita, a ação é descartada.
+     */
+    public static void aposCommit(Runnable acao) {
+        List<Runnable> pendentes = APOS_COMMIT.get();
+        if (pendentes == null) {
+            acao.run();
+            return;
+        }
+        pendentes.add(acao);
+    }
+
+    /** Conexão da transação ativa nesta thread (embrulhada), ou null se não houver. */
+    static Connection conexaoAtual() {
+        Connection c = ATUAL.get();
+        return c == null ? null : naoFechavel(c, SO_ROLLBACK.get());
+    }
+
+    public static void executar(TrabalhoSemRetorno trabalho) {
+        executar(() -> {
+            trabalho.executar();
+            return null;
+        });
+    }
+
+    public static <T> T executar(Trabalho<T> trabalho) {
+        // já existe transação nesta thread: só participa dela
+        if (ativa()) {
+            try {
+                return trabalho.executar();
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new RuntimeException(e.getMessage(), e);
+            }
+        }
+
+        Connection conn = null;
+        try {
+            conn = DatabaseConfig.getConnection();
+            conn.setAutoCommit(false);
+            ATUAL.set(conn);
+            APOS_COMMIT.set(new ArrayList<>());
+            boolean[] soRollback = new boolean[1];
+            SO_ROLLBACK.set(soRollback);
+
+            T resultado = trabalho.executar();
+
+            if (soRollback[0]) throw new TransacaoDesfeitaException();
+            conn.commit();
+
+            List<Runnable> pendentes = APOS_COMMIT.get();
+            APOS_COMMIT.remove();
+            for (Runnable r : pendentes) {
+                try {
+                    r.run();
+                } catch (RuntimeException ignored) {
+                    // o commit já foi feito: falha aqui não pode virar rollback
+                }
+            }
+
+            return resultado;
+
+        } catch (Exception e) {
+            if (conn != null) {
+                try { conn.rollback(); } catch (SQLException ignored) {}
+            }
+            if (e instanceof RuntimeException re) throw re;
+            throw new RuntimeException(e.getMessage(), e);
+
+        } finally {
+            ATUAL.remove();
+            APOS_COMMIT.remove();
+            SO_ROLLBACK.remove();
+            if (conn != null) {
+                try {
+                    conn.setAutoCommit(true);
+                    conn.close();
+                } catch (SQLException ignored) {}
+            }
+        }
+    }
+
+    private static Connection naoFechavel(Connection real, boolean[] soRollback) {
+        InvocationHandler h = (proxy, method, args) -> {
+            String nome = method.getName();
+
+            // rollback(Savepoint) continua valendo (usado para isolar falhas parciais)
+            boolean rollbackTotal = "rollback".equals(nome) && (args == null || args.length == 0);
+
+            if (rollbackTotal) {
+                // desfazer agora apagaria só o que veio antes e o resto seria confirmado: marca e desfaz tudo no final
+                soRollback[0] = true;
+                return null;
+            }
+            if ("close".equals(nome) || "commit".equals(nome) || "setAutoCommit".equals(nome)) {
+                return null;
+            }
+            if ("isClosed".equals(nome) || "getAutoCommit".equals(nome)) return false;
+
+            try {
+                return method.invoke(real, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        };
+
+        return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                h
+        );
+    }
+}
@@ -25,6 +25,9 @@ public class Agendamento {
 
     private StatusAgendamento status;
 
+    private String serieId;          // agendamentos da mesma série (recorrência) compartilham o id
+    private Recorrencia recorrencia; // só para criar a série; não é gravado
+
     public Integer getId() {
         return id;
     }
@@ -120,4 +123,20 @@ public class Agendamento {
     public void setStatus(StatusAgendamento status) {
         this.status = status;
     }
-}
+
+    public String getSerieId() {
+        return serieId;
+    }
+
+    public void setSerieId(String serieId) {
+        this.serieId = serieId;
+    }
+
+    public Recorrencia getRecorrencia() {
+        return recorrencia;
+    }
+
+    public void setRecorrencia(Recorrencia recorrencia) {
+        this.recorrencia = recorrencia;
+    }
+}
\ No newline at end of file
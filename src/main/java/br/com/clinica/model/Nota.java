@@ -16,6 +16,7 @@ public class Nota {
     private double totalLiquido;   // totalBruto - desconto
     private String observacao;
     private List<NotaItem> itens = new ArrayList<>();
+    private String chaveRequisicao; // idempotência: mesma chave = mesma nota (reenvio não duplica)
 
     public Long getId() {
         return id;
@@ -25,6 +26,14 @@ public class Nota {
         this.id = id;
     }
 
+    public String getChaveRequisicao() {
+        return chaveRequisicao;
+    }
+
+    public void setChaveRequisicao(String chaveRequisicao) {
+        this.chaveRequisicao = chaveRequisicao;
+    }
+
     public LocalDateTime getDataHora() {
         return dataHora;
     }
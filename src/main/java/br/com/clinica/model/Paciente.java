@@ -11,6 +11,8 @@ public class Paciente {
     private String telefone;
     private String responsavelLegal;
     private boolean ativo = true;
+    // versão lida do banco (concorrência otimista no atualizar)
+    private int versao;
 
     // Endereço COMPLETO
     private String endereco;
@@ -143,6 +145,14 @@ public class Paciente {
         this.uf = uf;
     }
 
+    public int getVersao() {
+        return versao;
+    }
+
+    public void setVersao(int versao) {
+        this.versao = versao;
+    }
+
     @Override
     public String toString() {
         // usado em ComboBox / TableView etc.
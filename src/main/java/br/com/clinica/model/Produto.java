@@ -11,12 +11,16 @@ public class Produto {
     private String nome;
     private TipoProduto tipo;
     private double estoqueAtual;
+    // saldo como veio do banco: no salvar, a diferença para estoqueAtual vira um ajuste (não sobrescreve vendas)
+    private double estoqueOriginal;
     private double estoqueMinimo;
     private String lote;
     private LocalDate validade;
     private Double precoCusto;
     private Double precoVenda;
     private boolean ativo;
+    // versão lida do banco (concorrência otimista no atualizar)
+    private int versao;
 
     public Produto() {
         this.ativo = true;
@@ -34,6 +38,9 @@ public class Produto {
     public double getEstoqueAtual() { return estoqueAtual; }
     public void setEstoqueAtual(double estoqueAtual) { this.estoqueAtual = estoqueAtual; }
 
+    public double getEstoqueOriginal() { return estoqueOriginal; }
+    public void setEstoqueOriginal(double estoqueOriginal) { this.estoqueOriginal = estoqueOriginal; }
+
     public double getEstoqueMinimo() { return estoqueMinimo; }
     public void setEstoqueMinimo(double estoqueMinimo) { this.estoqueMinimo = estoqueMinimo; }
 
@@ -52,6 +59,9 @@ public class Produto {
     public boolean isAtivo() { return ativo; }
     public void setAtivo(boolean ativo) { this.ativo = ativo; }
 
+    public int getVersao() { return versao; }
+    public void setVersao(int versao) { this.versao = versao; }
+
     @Override
     public String toString() {
         return nome != null ? nome : "Produto";
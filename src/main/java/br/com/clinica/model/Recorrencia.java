@@ -0,0 +1,92 @@
+package br.com.clinica.model;
+
+import br.com.clinica.model.enums.TipoRecorrencia;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Regra de repetição de um agendamento (ex: plano de 10 sessões semanais).
+ * Termina por quantidade de sessões OU por data final (o que vier primeiro, se vierem os dois).
+ */
+public class Recorrencia {
+
+    public static final int MAX_OCORRENCIAS = 100;
+
+    private TipoRecorrencia tipo;
+    private int intervalo = 1;     // semanas (SEMANAL) ou dias (A_CADA_N_DIAS)
+    private Integer quantidade;    // total de sessões, contando a primeira
+    private LocalDate ate;         // última data possível (inclusive)
+
+    public Recorrencia() {}
+
+    public Recorrencia(TipoRecorrencia tipo, int intervalo, Integer quantidade, LocalDate ate) {
+        this.tipo = tipo;
+        this.intervalo = intervalo;
+        this.quantidade = quantidade;
+        this.ate = ate;
+    }
+
+    /** Datas das ocorrências a partir da primeira (inclusive). */
+    public List<LocalDate> datas(LocalDate primeira) {
+        if (tipo == null || intervalo <= 0) throw new IllegalArgumentException("Recorrência inválida.");
+        if (quantidade == null && ate == null) throw new IllegalArgumentException("Informe a quantidade de sessões ou a data final.");
+        if (ate != null && ate.isBefore(primeira)) {
+            throw new IllegalArgumentException("A data final da repetição é anterior à primeira sessão.");
+        }
+
+        int passoDias = passoDias();
+        int limite = quantidade != null ? Math.min(quantidade, MAX_OCORRENCIAS) : MAX_OCORRENCIAS;
+
+        List<LocalDate> out = new ArrayList<>();
+        for (LocalDate d = primeira; out.size() < limite; d = d.plusDays(passoDias)) {
+            if (ate != null && d.isAfter(ate)) break;
+            out.add(d);
+        }
+        return out;
+    }
+
+    /** true se a regra passaria de MAX_OCORRENCIAS sessões ({@link #datas} corta no limite). */
+    public boolean ultrapassaLimite(LocalDate primeira) {
+        if (quantidade != null && quantidade <= MAX_OCORRENCIAS) return false;
+        LocalDate excedente = primeira.plusDays((long) passoDias() * MAX_OCORRENCIAS);
+        return ate == null || !excedente.isAfter(ate);
+    }
+
+    private int passoDias() {
+        return tipo == TipoRecorrencia.SEMANAL ? 7 * intervalo : intervalo;
+    }
+
+    public TipoRecorrencia getTipo() {
+        return tipo;
+    }
+
+    public void setTipo(TipoRecorrencia tipo) {
+        this.tipo = tipo;
+    }
+
+    public int getIntervalo() {
+        return intervalo;
+    }
+
+    public void setIntervalo(int intervalo) {
+        this.intervalo = intervalo;
+    }
+
+    public Integer getQuantidade() {
+        return quantidade;
+    }
+
+    public void setQuantidade(Integer quantidade) {
+        this.quantidade = quantidade;
+    }
+
+    public LocalDate getAte() {
+        return ate;
+    }
+
+    public void setAte(LocalDate ate) {
+        this.ate = ate;
+    }
+}
@@ -0,0 +1,27 @@
+package br.com.clinica.model.enums;
+
+/**
+ * Tipo da linha do histórico de estoque (tabela movimento_estoque, coluna tipo = name()).
+ */
+public enum TipoMovimentoEstoque {
+
+    INICIAL("Saldo inicial"),
+    ENTRADA("Entrada"),
+    AJUSTE("Ajuste"),
+    VENDA("Venda");
+
+    private final String descricao;
+
+    TipoMovimentoEstoque(String descricao) {
+        this.descricao = descricao;
+    }
+
+    public String getDescricao() {
+        return descricao;
+    }
+
+    @Override
+    public String toString() {
+        return descricao;
+    }
+}
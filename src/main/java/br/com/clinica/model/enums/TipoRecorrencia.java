@@ -0,0 +1,21 @@
+package br.com.clinica.model.enums;
+
+public enum TipoRecorrencia {
+    SEMANAL("Semanal"),
+    A_CADA_N_DIAS("A cada N dias");
+
+    private final String descricao;
+
+    TipoRecorrencia(String descricao) {
+        this.descricao = descricao;
+    }
+
+    public String getDescricao() {
+        return descricao;
+    }
+
+    @Override
+    public String toString() {
+        return descricao;
+    }
+}
@@ -0,0 +1,191 @@
+package br.com.clinica.service;
+
+import br.com.clinica.dao.AgendamentoDAO;
+import br.com.clinica.dao.AgendamentoDAO.Alteracao;
+import br.com.clinica.database.DatabaseConfig;
+import br.com.clinica.model.enums.StatusAgendamento;
+import br.com.clinica.util.AppLogger;
+import org.postgresql.PGConnection;
+
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Feed de alterações da agenda entre estações.
+ *
+ * Os triggers da V006 registram cada insert/update/delete de agendamento em agenda_alteracao (seq crescente).
+ *  - Postgres: LISTEN agenda_alteracao numa conexão dedicada; o NOTIFY acorda o feed na hora.
+ *    Sem notificação, confere max(seq) a cada PG_ESPERA_MS (cobre NOTIFY perdido / pooler sem LISTEN).
+ *  - SQLite: confere max(seq) a cada POLL_MS (consulta pela chave primária, praticamente de graça).
+ *
+ * Quando a versão muda, busca só as linhas novas (com o estado atual do agendamento), atualiza
+ * CacheAgenda/IndiceAgenda e entrega o lote para as telas assinantes.
+ *
+ * No Postgres o seq (BIGSERIAL) é pego no INSERT, não no commit: uma transação com seq N pode commitar
+ * depois de N+1 já ter sido lido. Por isso lá o feed relê os seq dos últimos JANELA_PG e guarda os já
+ * vistos (VISTOS): uma linha que aparece atrasada ainda é entregue. No SQLite o único escritor
+ * serializa os commits na ordem do seq, então basta o maior visto.
+ */
+public final class AgendaFeed {
+
+    private static final long POLL_MS = 3_000;
+    private static final int PG_ESPERA_MS = 30_000;
+    private static final long POLL_SEM_LISTEN_MS = 5 * 60_000; // depois tenta o LISTEN de novo
+    private static final long MANTER_HISTORICO = 5_000;
+    private static final long JANELA_PG = 1_000; // menor que MANTER_HISTORICO
+
+    private static final AgendamentoDAO DAO = new AgendamentoDAO();
+    private static final List<Consumer<List<Alteracao>>> ASSINANTES = new CopyOnWriteArrayList<>();
+
+    private static Thread THREAD;
+    private static long ultimoSeq = -1;
+    private static final TreeSet<Long> VISTOS = new TreeSet<>(); // seq já entregues dentro da janela (só a thread do feed)
+
+    private AgendaFeed() {}
+
+    /**
+     * Recebe os lotes de alterações (na thread do feed: use Platform.runLater para mexer na tela).
+     * Devolve o Runnable que cancela a assinatura.
+     */
+    public static synchronized Runnable assinar(Consumer<List<Alteracao>> assinante) {
+        ASSINANTES.add(assinante);
+        iniciar();
+        return () -> ASSINANTES.remove(assinante);
+    }
+
+    private static synchronized void iniciar() {
+        if (THREAD != null) return;
+
+        THREAD = new Thread(AgendaFeed::executar, "agenda-feed");
+        THREAD.setDaemon(true);
+        THREAD.start();
+    }
+
+    private static void executar() {
+        try {
+            DAO.limparAlteracoes(MANTER_HISTORICO);
+        } catch (Exception e) {
+            AppLogger.error("[Agenda] falha ao limpar histórico do feed", e);
+        }
+
+        while (true) {
+            try {
+                if (DatabaseConfig.isPostgres()) ouvirPostgres();
+                else consultarPeriodicamente(POLL_MS);
+            } catch (InterruptedException e) {
+                return;
+            } catch (Exception e) {
+                AppLogger.error("[Agenda] feed de alterações caiu, tentando de novo", e);
+                try {
+                    Thread.sleep(POLL_MS * 5);
+                } catch (InterruptedException ie) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private static void ouvirPostgres() throws Exception {
+        try (Connection c = DatabaseConfig.abrirConexaoDedicadaPostgres()) {
+            try (Statement st = c.createStatement()) {
+                st.execute("LISTEN agenda_alteracao");
+            }
+            PGConnection pg = c.unwrap(PGConnection.class);
+
+            while (true) {
+                // volta com as notificações ou depois do tempo de espera; de qualquer jeito confere a versão
+                pg.getNotifications(PG_ESPERA_MS);
+                verificar();
+            }
+        } catch (Exception e) {
+            // sem LISTEN (ex: pooler em modo transação / conexão caiu): consulta a versão por um tempo
+            AppLogger.error("[Agenda] LISTEN indisponível, usando consulta periódica", e);
+            consultarPeriodicamente(POLL_MS, POLL_SEM_LISTEN_MS);
+        }
+    }
+
+    private static void consultarPeriodicamente(long intervaloMs) throws InterruptedException {
+        consultarPeriodicamente(intervaloMs, Long.MAX_VALUE);
+    }
+
+    private static void consultarPeriodicamente(long intervaloMs, long duracaoMs) throws InterruptedException {
+        long fim = duracaoMs == Long.MAX_VALUE ? Long.MAX_VALUE : System.currentTimeMillis() + duracaoMs;
+        while (System.currentTimeMillis() < fim) {
+            verificar();
+            Thread.sleep(intervaloMs);
+        }
+    }
+
+    private static void verificar() {
+        boolean pg = DatabaseConfig.isPostgres();
+        long versao = DAO.ultimaAlteracao();
+
+        if (ultimoSeq < 0) {
+            // começa a partir de agora: a tela já carregou o estado atual.
+            // No Postgres o que já está commitado na janela conta como visto; o que commitar depois, não.
+            ultimoSeq = versao;
+            if (pg) VISTOS.addAll(DAO.listarSeqAlteracoesDesde(Math.max(0, versao - JANELA_PG)));
+            return;
+        }
+        if (!pg && versao <= ultimoSeq) return;
+
+        long desde = ultimoSeq;
+        if (pg) {
+            // seq que ainda não vimos na janela (inclui os que commitaram fora de ordem)
+            long primeiroNovo = -1;
+            for (long seq : DAO.listarSeqAlteracoesDesde(Math.max(0, ultimoSeq - JANELA_PG))) {
+                if (!VISTOS.contains(seq)) {
+                    primeiroNovo = seq;
+                    break;
+                }
+            }
+            if (primeiroNovo < 0) return;
+            desde = primeiroNovo - 1;
+        }
+
+        List<Alteracao> novas = new ArrayList<>();
+        for (Alteracao a : DAO.listarAlteracoesDesde(desde)) {
+            if (!VISTOS.contains(a.seq())) novas.add(a);
+        }
+        if (novas.isEmpty()) return;
+
+        for (Alteracao a : novas) {
+            VISTOS.add(a.seq());
+            ultimoSeq = Math.max(ultimoSeq, a.seq());
+        }
+        VISTOS.headSet(ultimoSeq - JANELA_PG).clear();
+
+        List<Alteracao> lote = compactar(novas);
+
+        for (Alteracao a : lote) {
+            CacheAgenda.aplicar(a);
+            if (a.atual() == null) IndiceAgenda.statusAlterado(a.agendamentoId(), StatusAgendamento.CANCELADO);
+            else IndiceAgenda.salvo(a.atual());
+        }
+
+        for (Consumer<List<Alteracao>> s : ASSINANTES) {
+            try {
+                s.accept(lote);
+            } catch (Exception e) {
+                AppLogger.error("[Agenda] assinante do feed falhou", e);
+            }
+        }
+    }
+
+    /** Várias alterações do mesmo agendamento no lote: fica só a última (o estado atual já vem junto). */
+    private static List<Alteracao> compactar(List<Alteracao> alteracoes) {
+        Map<Integer, Alteracao> porId = new LinkedHashMap<>();
+        for (Alteracao a : alteracoes) {
+            porId.remove(a.agendamentoId());
+            porId.put(a.agendamentoId(), a);
+        }
+        return new ArrayList<>(porId.values());
+    }
+}
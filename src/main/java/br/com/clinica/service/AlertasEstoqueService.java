@@ -0,0 +1,87 @@
+package br.com.clinica.service;
+
+import br.com.clinica.dao.ProdutoDAO;
+import br.com.clinica.dao.ProdutoDAO.ContagemAlertas;
+import br.com.clinica.util.AppLogger;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Alertas de estoque (abaixo do mínimo / vencendo) para a tela inicial.
+ *
+ * Uma thread daemon conta os produtos a cada INTERVALO_S (ProdutoDAO.contarAlertas, dois COUNT indexados)
+ * e guarda o último resultado. As telas assinam e recebem a contagem quando ela muda; ninguém
+ * varre o estoque na thread da tela. ProdutoDAO/NotaDAO pedem uma contagem na hora depois de gravar.
+ */
+public final class AlertasEstoqueService {
+
+    private static final int INTERVALO_S = 300;
+    private static final int ATRASO_INICIAL_S = 3;
+
+    private static final ProdutoDAO DAO = new ProdutoDAO();
+    private static final List<Consumer<ContagemAlertas>> ASSINANTES = new CopyOnWriteArrayList<>();
+
+    private static ScheduledExecutorService EXEC;
+    private static volatile ContagemAlertas ultimo;
+
+    private AlertasEstoqueService() {}
+
+    /** Inicia a contagem periódica (idempotente; roda em thread daemon). */
+    public static synchronized void iniciar() {
+        if (EXEC != null) return;
+
+        EXEC = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "estoque-alertas");
+            t.setDaemon(true);
+            return t;
+        });
+        EXEC.scheduleWithFixedDelay(AlertasEstoqueService::verificar, ATRASO_INICIAL_S, INTERVALO_S, TimeUnit.SECONDS);
+    }
+
+    /** Pede uma contagem agora (ex: depois de salvar produto / baixar estoque). Sem efeito antes do iniciar. */
+    public static synchronized void verificarAgora() {
+        if (EXEC != null) EXEC.execute(AlertasEstoqueService::verificar);
+    }
+
+    /** Última contagem, ou null se ainda não rodou. */
+    public static ContagemAlertas ultimo() {
+        return ultimo;
+    }
+
+    /**
+     * Recebe a contagem sempre que ela mudar (na thread dos alertas: use Platform.runLater para mexer na tela).
+     * Se já houver contagem, entrega na hora. Devolve o Runnable que cancela a assinatura.
+     */
+    public static Runnable assinar(Consumer<ContagemAlertas> assinante) {
+        ASSINANTES.add(assinante);
+        ContagemAlertas atual = ultimo;
+        if (atual != null) assinante.accept(atual);
+        return () -> ASSINANTES.remove(assinante);
+    }
+
+    private static void verificar() {
+        ContagemAlertas c;
+        try {
+            c = DAO.contarAlertas();
+        } catch (Exception e) {
+            AppLogger.error("[Estoque] falha ao contar alertas", e); // tenta de novo na próxima rodada
+            return;
+        }
+
+        if (c.equals(ultimo)) return;
+        ultimo = c;
+
+        for (Consumer<ContagemAlertas> s : ASSINANTES) {
+            try {
+                s.accept(c);
+            } catch (Exception e) {
+                AppLogger.error("[Estoque] assinante dos alertas falhou", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package br.com.clinica.service;
+
+import br.com.clinica.dao.AuditLogDAO;
+import br.com.clinica.dao.AuditLogDAO.Registro;
+import br.com.clinica.session.Session;
+import br.com.clinica.util.AppLogger;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Auditoria assíncrona.
+ *
+ * Quem audita só monta o registro e coloca numa fila em memória (sem ir ao banco). Uma thread daemon
+ * esvazia a fila e grava em lote no audit_log (um batch + um commit): assim que junta LOTE registros
+ * ou ESPERA_MS depois do primeiro, o que vier antes. Ao fechar o app o que sobrou é gravado na hora.
+ *
+ * A fila é limitada (CAPACIDADE): se o banco ficar fora por muito tempo, o excedente é descartado
+ * e contado em {@link #metricas()} (também vai para o metrics.log do DiagnosticoBancoService).
+ */
+public final class AuditoriaService {
+
+    private static final int CAPACIDADE = 10_000;
+    private static final int LOTE = 200;
+    private static final long ESPERA_MS = 1_000;
+    private static final int TENTATIVAS = 3;
+    private static final long ESPERA_ENCERRAR_MS = 10_000;
+
+    private static final AuditLogDAO DAO = new AuditLogDAO();
+    private static final BlockingQueue<Registro> FILA = new ArrayBlockingQueue<>(CAPACIDADE);
+
+    private static final AtomicLong ENFILEIRADOS = new AtomicLong();
+    private static final AtomicLong GRAVADOS = new AtomicLong();
+    private static final AtomicLong DESCARTADOS = new AtomicLong();
+    private static final AtomicLong PERDIDOS = new AtomicLong();
+    private static final AtomicLong LOTES = new AtomicLong();
+    private static final AtomicLong FALHAS = new AtomicLong();
+
+    private static volatile Thread WRITER;
+    private static volatile boolean PARAR;
+    private static boolean hookRegistrado;
+
+    /**
+     * @param descartados fila cheia na hora de enfileirar
+     * @param perdidos    lote que falhou em todas as tentativas de gravar
+     */
+    public record Metricas(long enfileirados, long gravados, long descartados, long perdidos,
+                           long lotes, long falhas, int naFila) {}
+
+    private AuditoriaService() {}
+
+    /** Inicia a thread de gravação (idempotente; daemon) e o flush no encerramento da JVM. */
+    public static synchronized void iniciar() {
+        if (WRITER != null) return;
+
+        PARAR = false;
+        Thread t = new Thread(AuditoriaService::loop, "auditoria-writer");
+        t.setDaemon(true);
+        t.start();
+        WRITER = t;
+
+        if (!hookRegistrado) {
+            Runtime.getRuntime().addShutdownHook(new Thread(AuditoriaService::encerrar, "auditoria-flush"));
+            hookRegistrado = true;
+        }
+    }
+
+    /** Audita com o usuário da sessão. Não bloqueia nem lança: no pior caso o registro é descartado. */
+    public static void registrar(String acao, String entidade, String entidadeId, String detalhes) {
+        enfileirar(montar(acao, entidade, entidadeId, detalhes));
+    }
+
+    /** Monta o registro agora (data e usuário de quem chamou), para enfileirar depois. */
+    public static Registro montar(String acao, String entidade, String entidadeId, String detalhes) {
+        Integer uid = (Session.getUsuario() != null) ? Session.getUsuario().getId() : null;
+        return new Registro(LocalDateTime.now().toString(), uid, acao, entidade, entidadeId, detalhes);
+    }
+
+    public static void enfileirar(Registro r) {
+        if (WRITER == null) iniciar();
+
+        if (FILA.offer(r)) {
+            ENFILEIRADOS.incrementAndGet();
+            return;
+        }
+
+        // avisa no 1º descarte e depois a cada mil, para não encher o log
+        long n = DESCARTADOS.incrementAndGet();
+        if (n == 1 || n % 1000 == 0) {
+            AppLogger.error("[Auditoria] fila cheia (" + CAPACIDADE + "), registros descartados: " + n, null);
+        }
+    }
+
+    /**
+     * Para o writer (esperando o lote que ele já tirou da fila) e grava aqui o que sobrou na fila.
+     * Chamado ao fechar o app; um registro depois disso inicia o writer de novo.
+     */
+    public static void encerrar() {
+        Thread w;
+        synchronized (AuditoriaService.class) {
+            w = WRITER;
+            WRITER = null;
+            PARAR = true;
+        }
+
+        if (w != null) {
+            try {
+                w.join(ESPERA_ENCERRAR_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        List<Registro> lote = new ArrayList<>(LOTE);
+        while (FILA.drainTo(lote, LOTE) > 0) {
+            gravar(lote);
+            lote.clear();
+        }
+    }
+
+    public static Metricas metricas() {
+        return new Metricas(ENFILEIRADOS.get(), GRAVADOS.get(), DESCARTADOS.get(), PERDIDOS.get(),
+                LOTES.get(), FALHAS.get(), FILA.size());
+    }
+
+    private static void loop() {
+        List<Registro> lote = new ArrayList<>(LOTE);
+
+        while (!PARAR) {
+            try {
+                Registro primeiro = FILA.poll(ESPERA_MS, TimeUnit.MILLISECONDS);
+                if (primeiro == null) continue;
+                lote.add(primeiro);
+
+                // junta até LOTE registros ou até ESPERA_MS depois do primeiro
+                long limite = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ESPERA_MS);
+                while (lote.size() < LOTE) {
+                    FILA.drainTo(lote, LOTE - lote.size());
+                    long resta = limite - System.nanoTime();
+                    if (lote.size() >= LOTE || resta <= 0 || PARAR) break;
+
+                    Registro r = FILA.poll(resta, TimeUnit.NANOSECONDS);
+                    if (r == null) break;
+                    lote.add(r);
+                }
+
+                gravar(lote);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                AppLogger.error("[Auditoria] erro inesperado no writer", e); // segue para o próximo lote
+            } finally {
+                lote.clear();
+            }
+        }
+    }
+
+    private static void gravar(List<Registro> lote) {
+        if (lote.isEmpty()) return;
+
+        for (int tentativa = 1; ; tentativa++) {
+            try {
+                DAO.gravarLote(lote);
+                GRAVADOS.addAndGet(lote.size());
+                LOTES.incrementAndGet();
+                return;
+            } catch (Exception e) {
+                FALHAS.incrementAndGet();
+                if (tentativa >= TENTATIVAS) {
+                    PERDIDOS.addAndGet(lote.size());
+                    AppLogger.error("[Auditoria] lote de " + lote.size() + " registros não gravado", e);
+                    return;
+                }
+                try {
+                    Thread.sleep(500L * tentativa);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    PERDIDOS.addAndGet(lote.size());
+                    return;
+                }
+            }
+        }
+    }
+}
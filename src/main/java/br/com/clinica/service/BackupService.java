@@ -39,7 +39,7 @@ public class BackupService {
         try {
             // ✅ Postgres/Supabase: não existe "VACUUM INTO" para gerar backup .db
             // O backup deve ser feito pelo provedor (Supabase) / export.
-            if (isPostgres()) {
+            if (DatabaseConfig.isPostgres()) {
                 return new BackupResult(true, null,
                         "Banco PostgreSQL (Supabase): backup local .db não se aplica. Use os backups/exports do Supabase.");
             }
@@ -70,15 +70,6 @@ public class BackupService {
         }
     }
 
-    private static boolean isPostgres() {
-        try (var conn = DatabaseConfig.getConnection()) {
-            String prod = conn.getMetaData().getDatabaseProductName();
-            return prod != null && prod.toLowerCase().contains("postgres");
-        } catch (Exception e) {
-            return false;
-        }
-    }
-
     /** Mantém apenas os N backups mais recentes na pasta (evita encher o disco). */
     private static void manterUltimos(Path pasta, int maxArquivos) throws IOException {
         try (var stream = Files.list(pasta)) {
@@ -0,0 +1,200 @@
+package br.com.clinica.service;
+
+import br.com.clinica.dao.AgendamentoDAO;
+import br.com.clinica.model.Agendamento;
+import br.com.clinica.model.enums.StatusAgendamento;
+import br.com.clinica.util.AppLogger;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Cache da agenda por dia, no cliente.
+ *
+ * A tela pede uma janela (dia, semana ou mês): os dias que faltam vêm numa consulta de período só
+ * (AgendamentoDAO.listarPorPeriodo) e são guardados em baldes por dia. Depois de servir a janela,
+ * a anterior e a seguinte são carregadas em background, então navegar entre dias/semanas não vai ao banco.
+ *
+ * Os baldes guardam todos os profissionais (o filtro por profissional é feito em memória) e expiram
+ * em VALIDADE_MS para pegar alterações de outras estações. O AgendamentoDAO avisa salvar/status.
+ */
+public final class CacheAgenda {
+
+    private static final long VALIDADE_MS = 60_000;
+    private static final int MAX_DIAS = 400;
+
+    private static final class Balde {
+        final long carregadoEm;
+        final List<Agendamento> itens = new ArrayList<>();
+
+        Balde(long carregadoEm) {
+            this.carregadoEm = carregadoEm;
+        }
+
+        boolean valido(long agora) {
+            return agora - carregadoEm < VALIDADE_MS;
+        }
+    }
+
+    private static final Map<LocalDate, Balde> DIAS = new HashMap<>();
+    private static long GERACAO; // muda a cada invalidar/statusAlterado/aplicar (com o lock da classe)
+    private static final AgendamentoDAO DAO = new AgendamentoDAO();
+
+    private static final ExecutorService PREFETCH = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "agenda-prefetch");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private CacheAgenda() {}
+
+    /**
+     * Agendamentos de {@code inicio} a {@code fim} (inclusive), menos concluídos, ordenados por data/hora.
+     * profissionalId null = todos. Dispara o prefetch das janelas vizinhas.
+     */
+    public static List<Agendamento> periodo(LocalDate inicio, LocalDate fim, Integer profissionalId) {
+        List<Agendamento> out = carregar(inicio, fim, profissionalId);
+
+        long dias = ChronoUnit.DAYS.between(inicio, fim) + 1;
+        LocalDate antesIni = inicio.minusDays(dias);
+        LocalDate depoisFim = fim.plusDays(dias);
+        PREFETCH.execute(() -> {
+            try {
+                carregar(fim.plusDays(1), depoisFim, null);
+                carregar(antesIni, inicio.minusDays(1), null);
+            } catch (Exception e) {
+                AppLogger.error("[Agenda] prefetch falhou", e); // a tela carrega sob demanda
+            }
+        });
+
+        return out;
+    }
+
+    /** Descarta o dia (ou tudo, se data == null); a próxima consulta recarrega. */
+    public static synchronized void invalidar(LocalDate data) {
+        GERACAO++;
+        if (data == null) DIAS.clear();
+        else DIAS.remove(data);
+    }
+
+    /** Status alterado (chamado pelo AgendamentoDAO): atualiza o item em memória, sem ir ao banco. */
+    public static synchronized void statusAlterado(int agendamentoId, StatusAgendamento status) {
+        GERACAO++;
+        for (Balde b : DIAS.values()) {
+            for (int i = 0; i < b.itens.size(); i++) {
+                Agendamento a = b.itens.get(i);
+                if (a.getId() == null || a.getId() != agendamentoId) continue;
+                // a agenda não mostra concluídos (mesma regra do listarPorPeriodo)
+                if (status == StatusAgendamento.CONCLUIDO) b.itens.remove(i);
+                else a.setStatus(status);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Alteração vinda de outra estação (AgendaFeed): tira o agendamento de onde estava
+     * e recoloca no balde do dia, se esse dia estiver em memória.
+     */
+    public static synchronized void aplicar(AgendamentoDAO.Alteracao alt) {
+        GERACAO++;
+        for (Balde b : DIAS.values()) {
+            b.itens.removeIf(a -> a.getId() != null && a.getId() == alt.agendamentoId());
+        }
+
+        Agendamento atual = alt.atual();
+        if (atual == null || atual.getStatus() == StatusAgendamento.CONCLUIDO) return;
+
+        Balde b = DIAS.get(atual.getData());
+        if (b == null) return;
+
+        int pos = 0;
+        while (pos < b.itens.size() && !b.itens.get(pos).getHoraInicio().isAfter(atual.getHoraInicio())) pos++;
+        b.itens.add(pos, atual);
+    }
+
+    // =========================================================
+    // HELPERS
+    // =========================================================
+
+    /**
+     * Lê o cache e a consulta do banco (só dos dias faltando) fora do lock: a tela não fica esperando
+     * o I/O do prefetch. O resultado é publicado e a janela lida num único trecho sob o lock.
+     */
+    private static List<Agendamento> carregar(LocalDate inicio, LocalDate fim, Integer profissionalId) {
+        Map<LocalDate, Balde> janela = new HashMap<>();
+        LocalDate faltaIni = null, faltaFim = null;
+        long geracao;
+
+        synchronized (CacheAgenda.class) {
+            long agora = System.currentTimeMillis();
+            geracao = GERACAO;
+
+            // menor intervalo que cobre os dias faltando/expirados: uma consulta só
+            for (LocalDate d = inicio; !d.isAfter(fim); d = d.plusDays(1)) {
+                Balde b = DIAS.get(d);
+                if (b != null && b.valido(agora)) {
+                    janela.put(d, b);
+                    continue;
+                }
+                if (faltaIni == null) faltaIni = d;
+                faltaFim = d;
+            }
+
+            if (faltaIni == null) return filtrar(janela, inicio, fim, profissionalId);
+        }
+
+        long lidoEm = System.currentTimeMillis();
+        List<Agendamento> lidos = DAO.listarPorPeriodo(faltaIni, faltaFim);
+
+        synchronized (CacheAgenda.class) {
+            // invalidar/aplicar durante a consulta podem não estar no que foi lido:
+            // serve esta janela, mas os baldes já nascem vencidos e a próxima consulta relê
+            long carregadoEm = (GERACAO == geracao) ? lidoEm : 0L;
+
+            Map<LocalDate, Balde> novos = new HashMap<>();
+            for (LocalDate d = faltaIni; !d.isAfter(faltaFim); d = d.plusDays(1)) novos.put(d, new Balde(carregadoEm));
+            for (Agendamento a : lidos) {
+                Balde b = novos.get(a.getData());
+                if (b != null) b.itens.add(a);
+            }
+            DIAS.putAll(novos);
+            janela.putAll(novos);
+
+            List<Agendamento> out = filtrar(janela, inicio, fim, profissionalId);
+            if (DIAS.size() > MAX_DIAS) descartarAntigos(inicio, fim);
+            return out;
+        }
+    }
+
+    /** Itens da janela (com o lock da classe). */
+    private static List<Agendamento> filtrar(Map<LocalDate, Balde> janela, LocalDate inicio, LocalDate fim,
+                                             Integer profissionalId) {
+        List<Agendamento> out = new ArrayList<>();
+        for (LocalDate d = inicio; !d.isAfter(fim); d = d.plusDays(1)) {
+            for (Agendamento a : janela.get(d).itens) {
+                if (profissionalId == null || profissionalId.equals(a.getProfissionalId())) out.add(a);
+            }
+        }
+        return out;
+    }
+
+    /** Tira os baldes carregados há mais tempo, nunca os da janela que acabou de ser pedida. */
+    private static void descartarAntigos(LocalDate inicio, LocalDate fim) {
+        List<Map.Entry<LocalDate, Balde>> entradas = new ArrayList<>();
+        for (Map.Entry<LocalDate, Balde> e : DIAS.entrySet()) {
+            LocalDate d = e.getKey();
+            if (d.isBefore(inicio) || d.isAfter(fim)) entradas.add(e);
+        }
+        entradas.sort((a, b) -> Long.compare(a.getValue().carregadoEm, b.getValue().carregadoEm));
+
+        int excesso = DIAS.size() - MAX_DIAS;
+        for (int i = 0; i < entradas.size() && i < excesso; i++) DIAS.remove(entradas.get(i).getKey());
+    }
+}
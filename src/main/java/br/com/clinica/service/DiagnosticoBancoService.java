@@ -0,0 +1,155 @@
+package br.com.clinica.service;
+
+import br.com.clinica.database.DatabaseConfig;
+import br.com.clinica.database.PoolMetrics;
+import br.com.clinica.util.AppLogger;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.FileHandler;
+import java.util.logging.Formatter;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+/**
+ * Diagnóstico de latência do banco.
+ *
+ * A cada PROBE_INTERVALO_S roda um "SELECT 1" medindo separadamente:
+ *  - checkout: tempo para obter a conexão do pool (alto = pool esgotado / fila)
+ *  - rtt: ida e volta do SELECT 1 (alto = rede / Supabase lento)
+ *
+ * Cada rodada também grava as métricas dos pools em logs/metrics.N.log (rotativo).
+ */
+public final class DiagnosticoBancoService {
+
+    private static final int PROBE_INTERVALO_S = 30;
+    private static final int HISTORICO_MAX = 120; // ~1h com intervalo de 30s
+
+    private static final DateTimeFormatter TS = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private static final Deque<Probe> HISTORICO = new ArrayDeque<>();
+    private static ScheduledExecutorService EXEC;
+    private static Logger METRICS_LOG;
+
+    private DiagnosticoBancoService() {}
+
+    public record Probe(LocalDateTime quando, double checkoutMs, double rttMs, String erro) {
+        public boolean ok() { return erro == null; }
+    }
+
+    /** Inicia o probe periódico (idempotente; roda em thread daemon). */
+    public static synchronized void iniciar() {
+        if (EXEC != null) return;
+
+        EXEC = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "db-diagnostico");
+            t.setDaemon(true);
+            return t;
+        });
+        EXEC.scheduleWithFixedDelay(() -> {
+            try {
+                Probe p = probeAgora();
+                gravarMetricas(p);
+            } catch (Exception ignored) {
+                // diagnóstico nunca deve derrubar nada
+            }
+        }, 5, PROBE_INTERVALO_S, TimeUnit.SECONDS);
+    }
+
+    /** Executa um SELECT 1 agora e registra no histórico. */
+    public static Probe probeAgora() {
+        long t0 = System.nanoTime();
+        long t1 = t0;
+        Probe p;
+
+        try (Connection c = DatabaseConfig.getReadConnection()) {
+            t1 = System.nanoTime();
+            try (Statement st = c.createStatement()) {
+                st.execute("SELECT 1");
+            }
+            long t2 = System.nanoTime();
+            p = new Probe(LocalDateTime.now(), (t1 - t0) / 1_000_000.0, (t2 - t1) / 1_000_000.0, null);
+        } catch (Exception e) {
+            long t2 = System.nanoTime();
+            p = new Probe(LocalDateTime.now(), (t1 - t0) / 1_000_000.0, (t2 - t1) / 1_000_000.0,
+                    e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName());
+        }
+
+        synchronized (HISTORICO) {
+            HISTORICO.addLast(p);
+            while (HISTORICO.size() > HISTORICO_MAX) HISTORICO.removeFirst();
+        }
+        return p;
+    }
+
+    /** Histórico dos probes (mais antigo primeiro). */
+    public static List<Probe> historico() {
+        synchronized (HISTORICO) {
+            return new ArrayList<>(HISTORICO);
+        }
+    }
+
+    private static void gravarMetricas(Probe p) {
+        Logger log = metricsLog();
+        if (log == null) return;
+
+        StringBuilder sb = new StringBuilder();
+        sb.append(p.quando().format(TS))
+                .append(String.format(Locale.ROOT, " probe checkout=%.1fms rtt=%.1fms", p.checkoutMs(), p.rttMs()));
+        if (!p.ok()) sb.append(" erro=\"").append(p.erro()).append('"');
+
+        for (PoolMetrics.Snapshot s : PoolMetrics.INSTANCE.snapshot()) {
+            sb.append(String.format(Locale.ROOT,
+                    " | pool=%s ativas=%d ociosas=%d aguardando=%d total=%d/%d checkouts=%d timeouts=%d p50=%.1fms p95=%.1fms p99=%.1fms",
+                    s.pool(), s.ativas(), s.ociosas(), s.aguardando(), s.total(), s.maximo(),
+                    s.checkouts(), s.timeouts(), s.p50Ms(), s.p95Ms(), s.p99Ms()));
+        }
+
+        AuditoriaService.Metricas a = AuditoriaService.metricas();
+        sb.append(String.format(Locale.ROOT,
+                " | auditoria fila=%d enfileirados=%d gravados=%d lotes=%d descartados=%d perdidos=%d falhas=%d",
+                a.naFila(), a.enfileirados(), a.gravados(), a.lotes(), a.descartados(), a.perdidos(), a.falhas()));
+
+        log.info(sb.toString());
+    }
+
+    private static synchronized Logger metricsLog() {
+        if (METRICS_LOG != null) return METRICS_LOG;
+
+        try {
+            Files.createDirectories(Path.of("logs"));
+
+            // rotativo: até 5 arquivos de 1 MB
+            FileHandler fh = new FileHandler("logs/metrics.%g.log", 1_000_000, 5, true);
+            fh.setFormatter(new Formatter() {
+                @Override
+                public String format(LogRecord r) {
+                    return r.getMessage() + System.lineSeparator();
+                }
+            });
+
+            Logger log = Logger.getLogger("ClinicaMetrics");
+            log.setUseParentHandlers(false);
+            log.addHandler(fh);
+            log.setLevel(Level.INFO);
+
+            METRICS_LOG = log;
+        } catch (Exception e) {
+            AppLogger.error("[Diagnóstico] não foi possível abrir logs/metrics", e);
+        }
+        return METRICS_LOG;
+    }
+}
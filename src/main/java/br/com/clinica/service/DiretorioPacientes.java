@@ -0,0 +1,423 @@
+package br.com.clinica.service;
+
+import br.com.clinica.dao.PacienteDAO;
+import br.com.clinica.model.Paciente;
+import br.com.clinica.util.AppLogger;
+import br.com.clinica.util.ValidationUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Diretório de pacientes em memória, compartilhado por todas as telas (Agenda, Caixa...).
+ *
+ * Guarda só a projeção leve (id, nome, CPF, telefone, ativo) e um índice de trigramas
+ * sobre o texto normalizado (mesma regra da coluna paciente.busca), para o autocomplete
+ * filtrar sem ir ao banco e sem varrer a lista inteira.
+ *
+ * Carrega na primeira utilização (ou no preload da inicialização). O PacienteDAO avisa
+ * cada salvar/ativar/inativar e só o paciente alterado é reindexado. Alterações de outras estações:
+ * no máximo a cada 30s uma consulta confere a assinatura da tabela (PacienteDAO.assinaturaDiretorio)
+ * e, se mudou, um índice novo é montado em background e trocado de uma vez.
+ */
+public final class DiretorioPacientes {
+
+    private static final Comparator<Entrada> POR_NOME =
+            Comparator.comparing((Entrada e) -> e.chaveNome).thenComparingLong(e -> e.id);
+
+    private static final class Entrada {
+        final long id;
+        final String chave;      // nome normalizado + cpf + telefone
+        final String chaveNome;  // nome normalizado (ordenação e prefixo)
+        final Paciente paciente; // instância usada nos combos (sempre a mesma para a mesma versão)
+
+        Entrada(Paciente p) {
+            this.id = p.getId();
+            this.chaveNome = ValidationUtils.normalizeSearch(p.getNome());
+            String cpf = ValidationUtils.onlyDigits(p.getCpf());
+            String tel = ValidationUtils.onlyDigits(p.getTelefone());
+            this.chave = (chaveNome + " " + cpf + " " + tel).trim();
+            this.paciente = p;
+        }
+    }
+
+    /** Lista de ids crescendo durante a carga inicial. */
+    private static final class Ids {
+        int[] a = new int[4];
+        int n;
+
+        void add(int id) {
+            if (n > 0 && a[n - 1] == id) return;
+            if (n == a.length) a = Arrays.copyOf(a, n * 2);
+            a[n++] = id;
+        }
+    }
+
+    /** Diretório carregado: mexido só com o monitor dele (operações em memória, sem I/O). */
+    private static final class Indice {
+        final Map<Long, Entrada> porId = new HashMap<>();
+        final List<Entrada> ordenados = new ArrayList<>();      // por nome normalizado, id
+        final Map<String, int[]> trigramas = new HashMap<>();   // trigrama -> ids (ordenados)
+        final String assinatura;                                // assinaturaDiretorio() quando carregou
+
+        Indice(String assinatura) {
+            this.assinatura = assinatura;
+        }
+    }
+
+    /** Intervalo mínimo entre conferências da assinatura no banco (alterações de outras estações). */
+    private static final long VERIFICAR_A_CADA_NS = TimeUnit.SECONDS.toNanos(30);
+
+    private static final PacienteDAO DAO = new PacienteDAO();
+
+    private static final ExecutorService EXEC = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "pacientes-diretorio");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private static final Object CARGA = new Object();                   // uma carga do banco por vez
+    private static final AtomicLong ALTERACOES = new AtomicLong();       // avisos locais (atualizado/status)
+    private static final AtomicBoolean VERIFICANDO = new AtomicBoolean();
+
+    private static volatile Indice ATUAL;                               // null = ainda não carregou
+    private static volatile long ultimaVerificacao = System.nanoTime();
+
+    private DiretorioPacientes() {}
+
+    // =========================================================
+    // CONSULTA
+    // =========================================================
+
+    /** Todos os pacientes (ordenados por nome), para preencher combos. */
+    public static List<Paciente> todos(boolean incluirInativos) {
+        Indice ix = indice();
+        synchronized (ix) {
+            return todos(ix, incluirInativos);
+        }
+    }
+
+    public static Paciente porId(long id) {
+        Indice ix = indice();
+        synchronized (ix) {
+            Entrada e = ix.porId.get(id);
+            return e == null ? null : e.paciente;
+        }
+    }
+
+    /** Nome igual ao digitado (ignorando acento e maiúsculas), ou null. */
+    public static Paciente porNomeExato(String nome) {
+        String alvo = ValidationUtils.normalizeSearch(nome);
+        if (alvo.isEmpty()) return null;
+
+        Indice ix = indice();
+        synchronized (ix) {
+            // ordenados está por chaveNome: busca binária pelo primeiro nome >= alvo
+            List<Entrada> ord = ix.ordenados;
+            int lo = 0, hi = ord.size();
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (ord.get(mid).chaveNome.compareTo(alvo) < 0) lo = mid + 1;
+                else hi = mid;
+            }
+            if (lo < ord.size() && ord.get(lo).chaveNome.equals(alvo)) return ord.get(lo).paciente;
+            return null;
+        }
+    }
+
+    /**
+     * Pacientes cujo nome/CPF/telefone contém o termo (ordenados por nome).
+     * Termos com menos de 3 caracteres casam pelo início das palavras do nome.
+     */
+    public static List<Paciente> buscar(String termo, boolean incluirInativos, int limite) {
+        Indice ix = indice();
+        synchronized (ix) {
+            return buscar(ix, termo, incluirInativos, limite);
+        }
+    }
+
+    private static List<Paciente> todos(Indice ix, boolean incluirInativos) {
+        List<Paciente> out = new ArrayList<>(ix.ordenados.size());
+        for (Entrada e : ix.ordenados) {
+            if (incluirInativos || e.paciente.isAtivo()) out.add(e.paciente);
+        }
+        return out;
+    }
+
+    private static List<Paciente> buscar(Indice ix, String termo, boolean incluirInativos, int limite) {
+        String t = ValidationUtils.normalizeSearch(termo);
+        if (t.isEmpty()) {
+            List<Paciente> todos = todos(ix, incluirInativos);
+            return todos.size() > limite ? new ArrayList<>(todos.subList(0, limite)) : todos;
+        }
+        if (t.chars().noneMatch(Character::isLetter)) {
+            String d = ValidationUtils.onlyDigits(t);
+            if (!d.isEmpty()) t = d;
+        }
+
+        List<Paciente> out = new ArrayList<>();
+
+        if (t.length() < 3) {
+            // ordenados já está por nome: para no limite
+            String meioPalavra = " " + t;
+            for (Entrada e : ix.ordenados) {
+                if (!incluirInativos && !e.paciente.isAtivo()) continue;
+                if (e.chaveNome.startsWith(t) || e.chaveNome.contains(meioPalavra)) {
+                    out.add(e.paciente);
+                    if (out.size() >= limite) break;
+                }
+            }
+            return out;
+        }
+
+        // intersecção das listas de ids de cada trigrama do termo (começando pela menor)
+        List<int[]> listas = new ArrayList<>();
+        for (String g : trigramas(t)) {
+            int[] ids = ix.trigramas.get(g);
+            if (ids == null) return out;
+            listas.add(ids);
+        }
+        listas.sort(Comparator.comparingInt(a -> a.length));
+
+        int[] candidatos = listas.get(0);
+        for (int k = 1; k < listas.size() && candidatos.length > 0; k++) {
+            candidatos = intersecao(candidatos, listas.get(k));
+        }
+
+        List<Entrada> achados = new ArrayList<>();
+        for (int id : candidatos) {
+            Entrada e = ix.porId.get((long) id);
+            if (e == null) continue;
+            if (!incluirInativos && !e.paciente.isAtivo()) continue;
+            if (e.chave.contains(t)) achados.add(e); // trigramas batem, confirma a sequência
+        }
+        achados.sort(POR_NOME);
+
+        for (Entrada e : achados) {
+            out.add(e.paciente);
+            if (out.size() >= limite) break;
+        }
+        return out;
+    }
+
+    // =========================================================
+    // CARGA / ATUALIZAÇÃO
+    // =========================================================
+
+    /** Carrega agora (chamado no preload da inicialização). */
+    public static void precarregar() {
+        indice();
+    }
+
+    /** Recarrega do banco em background; as consultas seguem com o diretório atual até a troca. */
+    public static void invalidar() {
+        EXEC.execute(DiretorioPacientes::recarregar);
+    }
+
+    /** Paciente inserido/alterado (chamado pelo PacienteDAO). */
+    public static void atualizado(Paciente p) {
+        if (p == null || p.getId() == null) return;
+        ALTERACOES.incrementAndGet();
+
+        Indice ix = ATUAL;
+        if (ix == null) return;
+        synchronized (ix) {
+            remover(ix, p.getId());
+            adicionar(ix, projecao(p));
+        }
+    }
+
+    /** Paciente ativado/inativado (chamado pelo PacienteDAO). */
+    public static void statusAlterado(long id, boolean ativo) {
+        ALTERACOES.incrementAndGet();
+
+        Indice ix = ATUAL;
+        if (ix == null) return;
+        synchronized (ix) {
+            Entrada atual = ix.porId.get(id);
+            if (atual != null) {
+                Paciente p = projecao(atual.paciente);
+                p.setAtivo(ativo);
+                remover(ix, id);
+                adicionar(ix, p);
+                return;
+            }
+        }
+        invalidar(); // não conhecíamos: recarrega
+    }
+
+    /**
+     * Diretório atual. A primeira chamada carrega do banco (fora do monitor do índice); depois disso
+     * nunca espera I/O: no máximo agenda a conferência de alterações feitas em outras estações.
+     */
+    private static Indice indice() {
+        Indice ix = ATUAL;
+        if (ix != null) {
+            verificarSeVencido();
+            return ix;
+        }
+
+        synchronized (CARGA) {
+            if (ATUAL == null) ATUAL = carregar();
+            return ATUAL;
+        }
+    }
+
+    /** Confere a assinatura do banco em background, no máximo a cada VERIFICAR_A_CADA_NS. */
+    private static void verificarSeVencido() {
+        if (System.nanoTime() - ultimaVerificacao < VERIFICAR_A_CADA_NS) return;
+        if (!VERIFICANDO.compareAndSet(false, true)) return;
+
+        EXEC.execute(() -> {
+            try {
+                Indice ix = ATUAL;
+                if (ix != null && !ix.assinatura.equals(DAO.assinaturaDiretorio())) recarregar();
+            } catch (Exception e) {
+                AppLogger.error("[Pacientes] falha ao conferir o diretório", e); // tenta na próxima consulta
+            } finally {
+                ultimaVerificacao = System.nanoTime();
+                VERIFICANDO.set(false);
+            }
+        });
+    }
+
+    private static void recarregar() {
+        try {
+            synchronized (CARGA) {
+                ATUAL = carregar();
+            }
+        } catch (Exception e) {
+            AppLogger.error("[Pacientes] falha ao recarregar o diretório", e); // segue com o atual
+        }
+    }
+
+    /**
+     * Lê o banco e monta um índice novo (sem tocar no atual). Se um aviso local chegou durante a
+     * leitura, ele pode ter caído no índice velho e faltar no novo: lê de novo.
+     */
+    private static Indice carregar() {
+        for (int tentativa = 1; ; tentativa++) {
+            long alteracoes = ALTERACOES.get();
+            String assinatura = DAO.assinaturaDiretorio();
+            Indice ix = montar(DAO.listarDiretorio(), assinatura);
+            if (ALTERACOES.get() == alteracoes || tentativa >= 3) {
+                ultimaVerificacao = System.nanoTime();
+                return ix;
+            }
+        }
+    }
+
+    private static Indice montar(List<Paciente> pacientes, String assinatura) {
+        Indice ix = new Indice(assinatura);
+
+        for (Paciente p : pacientes) {
+            Entrada e = new Entrada(p);
+            ix.porId.put(e.id, e);
+            ix.ordenados.add(e);
+        }
+        ix.ordenados.sort(POR_NOME);
+
+        // monta as listas de ids de uma vez (bem mais barato que inserir um a um)
+        Map<String, Ids> tmp = new HashMap<>();
+        for (Entrada e : ix.ordenados) {
+            String c = e.chave;
+            for (int i = 0; i + 3 <= c.length(); i++) {
+                Ids ids = tmp.computeIfAbsent(c.substring(i, i + 3), k -> new Ids());
+                ids.add((int) e.id); // ignora repetido (mesmo trigrama 2x no mesmo nome)
+            }
+        }
+        for (Map.Entry<String, Ids> en : tmp.entrySet()) {
+            int[] ids = Arrays.copyOf(en.getValue().a, en.getValue().n);
+            Arrays.sort(ids);
+            ix.trigramas.put(en.getKey(), ids);
+        }
+        return ix;
+    }
+
+    private static void adicionar(Indice ix, Paciente p) {
+        Entrada e = new Entrada(p);
+        ix.porId.put(e.id, e);
+
+        int pos = Collections.binarySearch(ix.ordenados, e, POR_NOME);
+        ix.ordenados.add(pos < 0 ? -pos - 1 : pos, e);
+
+        for (String g : trigramas(e.chave)) {
+            int[] ids = ix.trigramas.getOrDefault(g, new int[0]);
+            int i = Arrays.binarySearch(ids, (int) e.id);
+            if (i >= 0) continue;
+            int ins = -i - 1;
+            int[] novo = new int[ids.length + 1];
+            System.arraycopy(ids, 0, novo, 0, ins);
+            novo[ins] = (int) e.id;
+            System.arraycopy(ids, ins, novo, ins + 1, ids.length - ins);
+            ix.trigramas.put(g, novo);
+        }
+    }
+
+    private static void remover(Indice ix, long id) {
+        Entrada e = ix.porId.remove(id);
+        if (e == null) return;
+
+        int pos = Collections.binarySearch(ix.ordenados, e, POR_NOME);
+        if (pos >= 0) ix.ordenados.remove(pos);
+
+        for (String g : trigramas(e.chave)) {
+            int[] ids = ix.trigramas.get(g);
+            if (ids == null) continue;
+            int i = Arrays.binarySearch(ids, (int) id);
+            if (i < 0) continue;
+            if (ids.length == 1) {
+                ix.trigramas.remove(g);
+                continue;
+            }
+            int[] novo = new int[ids.length - 1];
+            System.arraycopy(ids, 0, novo, 0, i);
+            System.arraycopy(ids, i + 1, novo, i, ids.length - i - 1);
+            ix.trigramas.put(g, novo);
+        }
+    }
+
+    /** Cópia só com os campos do diretório (não segura o objeto do formulário de cadastro). */
+    private static Paciente projecao(Paciente origem) {
+        Paciente p = new Paciente();
+        p.setId(origem.getId());
+        p.setNome(origem.getNome());
+        p.setCpf(origem.getCpf());
+        p.setTelefone(origem.getTelefone());
+        p.setAtivo(origem.isAtivo());
+        return p;
+    }
+
+    // =========================================================
+    // HELPERS
+    // =========================================================
+
+    private static Set<String> trigramas(String s) {
+        Set<String> out = new LinkedHashSet<>();
+        for (int i = 0; i + 3 <= s.length(); i++) out.add(s.substring(i, i + 3));
+        return out;
+    }
+
+    private static int[] intersecao(int[] a, int[] b) {
+        int[] out = new int[Math.min(a.length, b.length)];
+        int i = 0, j = 0, n = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) i++;
+            else if (a[i] > b[j]) j++;
+            else { out[n++] = a[i]; i++; j++; }
+        }
+        return Arrays.copyOf(out, n);
+    }
+}
@@ -0,0 +1,155 @@
+package br.com.clinica.service;
+
+import br.com.clinica.dao.AgendamentoDAO;
+import br.com.clinica.model.Agendamento;
+import br.com.clinica.model.enums.SalaAtendimento;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Busca dos próximos horários livres da agenda.
+ *
+ * Uma consulta só traz tudo o que está ocupado no período; depois cada dia é varrido em memória
+ * (grade de PASSO_MIN minutos) contra as ocupações já ordenadas do profissional, do paciente e das salas.
+ * Nada de uma consulta por horário testado nem por dia.
+ *
+ * As regras de expediente (abertura, fechamento, almoço) ficam aqui e são as mesmas usadas no salvar da agenda.
+ */
+public final class HorariosLivresService {
+
+    // Regras fixas
+    public static final LocalTime HORA_ABERTURA = LocalTime.of(7, 0);
+    public static final LocalTime HORA_FECHAMENTO = LocalTime.of(19, 0);
+    public static final LocalTime ALMOCO_INICIO = LocalTime.of(12, 0);
+    public static final LocalTime ALMOCO_FIM = LocalTime.of(13, 0);
+
+    private static final int PASSO_MIN = 15;
+    private static final int MAX_DIAS = 90;
+
+    private static final AgendamentoDAO DAO = new AgendamentoDAO();
+
+    /** Horário livre encontrado (sala já escolhida). */
+    public record HorarioLivre(LocalDate data, LocalTime inicio, LocalTime fim, SalaAtendimento sala) {}
+
+    private HorariosLivresService() {}
+
+    /** Dentro do expediente e fora do almoço. */
+    public static boolean horarioPermitido(LocalTime ini, LocalTime fim) {
+        if (ini.isBefore(HORA_ABERTURA) || fim.isAfter(HORA_FECHAMENTO)) return false;
+        boolean sobrepoeAlmoco = !(fim.isBefore(ALMOCO_INICIO) || ini.isAfter(ALMOCO_FIM));
+        return !sobrepoeAlmoco;
+    }
+
+    /**
+     * Próximos {@code quantidade} horários livres entre {@code de} e {@code ate} (inclusive).
+     *
+     * @param profissionalId opcional: o profissional precisa estar livre
+     * @param sala           opcional: sem sala, sugere a primeira sala livre no horário
+     * @param pacienteId     opcional: o paciente não pode ter outro agendamento no horário
+     */
+    public static List<HorarioLivre> proximos(LocalDate de, LocalDate ate, int duracaoMin,
+                                              Integer profissionalId, SalaAtendimento sala, Integer pacienteId,
+                                              int quantidade) {
+        List<HorarioLivre> out = new ArrayList<>();
+        if (de == null || duracaoMin <= 0 || quantidade <= 0) return out;
+
+        LocalDate hoje = LocalDate.now();
+        if (de.isBefore(hoje)) de = hoje;
+        if (ate == null || ate.isAfter(de.plusDays(MAX_DIAS))) ate = de.plusDays(MAX_DIAS);
+        if (ate.isBefore(de)) return out;
+
+        // uma consulta para o período inteiro
+        Map<LocalDate, List<Agendamento>> porDia = new HashMap<>();
+        for (Agendamento a : DAO.listarOcupadosPorPeriodo(de, ate)) {
+            porDia.computeIfAbsent(a.getData(), k -> new ArrayList<>()).add(a);
+        }
+
+        SalaAtendimento[] salas = sala != null ? new SalaAtendimento[]{sala} : SalaAtendimento.values();
+        LocalDateTime agora = LocalDateTime.now();
+
+        for (LocalDate d = de; !d.isAfter(ate) && out.size() < quantidade; d = d.plusDays(1)) {
+            List<Agendamento> doDia = porDia.getOrDefault(d, List.of());
+
+            // ocupações que bloqueiam qualquer sala (profissional / paciente) e por sala
+            List<int[]> bloqueio = new ArrayList<>();
+            Map<SalaAtendimento, List<int[]>> porSala = new EnumMap<>(SalaAtendimento.class);
+            for (SalaAtendimento s : salas) porSala.put(s, new ArrayList<>());
+
+            for (Agendamento a : doDia) {
+                int[] iv = {minutos(a.getHoraInicio()), minutos(a.getHoraFim())};
+                boolean mesmoProf = profissionalId != null && profissionalId.equals(a.getProfissionalId());
+                boolean mesmoPac = pacienteId != null && pacienteId.equals(a.getPacienteId());
+                if (mesmoProf || mesmoPac) bloqueio.add(iv);
+                List<int[]> daSala = porSala.get(a.getSala());
+                if (daSala != null) daSala.add(iv);
+            }
+
+            Varredura livreComum = new Varredura(bloqueio);
+            Map<SalaAtendimento, Varredura> livreSala = new EnumMap<>(SalaAtendimento.class);
+            for (Map.Entry<SalaAtendimento, List<int[]>> e : porSala.entrySet()) {
+                livreSala.put(e.getKey(), new Varredura(e.getValue()));
+            }
+
+            int primeiro = minutos(HORA_ABERTURA);
+            if (d.equals(hoje)) {
+                int agoraMin = agora.getHour() * 60 + agora.getMinute() + 1;
+                primeiro = Math.max(primeiro, ((agoraMin + PASSO_MIN - 1) / PASSO_MIN) * PASSO_MIN);
+            }
+            int ultimoFim = minutos(HORA_FECHAMENTO);
+
+            // t só cresce: cada Varredura anda para frente, sem voltar
+            for (int t = primeiro; t + duracaoMin <= ultimoFim && out.size() < quantidade; t += PASSO_MIN) {
+                int fim = t + duracaoMin;
+                LocalTime ini = LocalTime.of(t / 60, t % 60);
+                LocalTime fimHora = LocalTime.of(fim / 60, fim % 60);
+
+                if (!horarioPermitido(ini, fimHora)) continue;
+                if (!livreComum.livre(t, fim)) continue;
+
+                for (SalaAtendimento s : salas) {
+                    if (livreSala.get(s).livre(t, fim)) {
+                        out.add(new HorarioLivre(d, ini, fimHora, s));
+                        break;
+                    }
+                }
+            }
+        }
+
+        return out;
+    }
+
+    /**
+     * Ocupações do dia juntadas e ordenadas; consultas com início crescente andam com um ponteiro só.
+     */
+    private static final class Varredura {
+        private final List<int[]> blocos = new ArrayList<>();
+        private int pos = 0;
+
+        Varredura(List<int[]> intervalos) {
+            intervalos.sort(Comparator.comparingInt(iv -> iv[0]));
+            for (int[] iv : intervalos) {
+                int[] ultimo = blocos.isEmpty() ? null : blocos.get(blocos.size() - 1);
+                if (ultimo != null && iv[0] <= ultimo[1]) ultimo[1] = Math.max(ultimo[1], iv[1]);
+                else blocos.add(new int[]{iv[0], iv[1]});
+            }
+        }
+
+        /** [ini, fim) não encosta em nenhum bloco ocupado. Chamadas devem vir com ini crescente. */
+        boolean livre(int ini, int fim) {
+            while (pos < blocos.size() && blocos.get(pos)[1] <= ini) pos++; // blocos que já terminaram
+            return pos >= blocos.size() || blocos.get(pos)[0] >= fim;
+        }
+    }
+
+    private static int minutos(LocalTime t) {
+        return t.getHour() * 60 + t.getMinute();
+    }
+}
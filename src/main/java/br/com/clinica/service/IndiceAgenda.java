@@ -0,0 +1,199 @@
+package br.com.clinica.service;
+
+import br.com.clinica.dao.AgendamentoDAO;
+import br.com.clinica.model.Agendamento;
+import br.com.clinica.model.enums.StatusAgendamento;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Índice de horários ocupados por dia, em memória, para avisar conflito enquanto o usuário preenche a agenda.
+ *
+ * Para cada dia carregado guarda uma linha do tempo por profissional, por sala e por paciente:
+ * intervalos ordenados pelo início + o maior fim acumulado até cada posição. Assim "tem alguém entre
+ * X e Y?" é uma busca binária (O(log n)), mesmo se a base tiver sobreposições antigas.
+ *
+ * É só para feedback rápido: quem garante a regra é o AgendamentoDAO.salvar (INSERT condicional +
+ * constraint/trigger da V005). Cada dia expira em VALIDADE_MS para pegar agendamentos de outras estações.
+ */
+public final class IndiceAgenda {
+
+    private static final long VALIDADE_MS = 30_000;
+    private static final int MAX_DIAS = 60;
+
+    public enum Recurso { PROFISSIONAL, SALA, PACIENTE }
+
+    /** Agendamento que ocupa o horário pedido, e por qual recurso. */
+    public record Conflito(Recurso recurso, Agendamento existente) {}
+
+    /** Linha do tempo de um recurso no dia (minutos desde 00:00). */
+    private static final class Linha {
+        final List<Agendamento> itens = new ArrayList<>();
+        int[] inicio = new int[0];
+        int[] maxFim = new int[0]; // maior fim entre itens[0..i]
+
+        void adicionar(Agendamento a) {
+            int pos = 0;
+            while (pos < itens.size() && !itens.get(pos).getHoraInicio().isAfter(a.getHoraInicio())) pos++;
+            itens.add(pos, a);
+            reconstruir();
+        }
+
+        boolean remover(int id) {
+            boolean removeu = itens.removeIf(a -> a.getId() != null && a.getId() == id);
+            if (removeu) reconstruir();
+            return removeu;
+        }
+
+        void reconstruir() {
+            int n = itens.size();
+            inicio = new int[n];
+            maxFim = new int[n];
+            int max = Integer.MIN_VALUE;
+            for (int i = 0; i < n; i++) {
+                Agendamento a = itens.get(i);
+                inicio[i] = minutos(a.getHoraInicio());
+                max = Math.max(max, minutos(a.getHoraFim()));
+                maxFim[i] = max;
+            }
+        }
+
+        /** Algum item com inicio < fim e fim > ini (ignorando o próprio agendamento, se já salvo). */
+        Agendamento sobreposto(int ini, int fim, Integer ignorarId) {
+            // último índice com inicio < fim
+            int lo = 0, hi = inicio.length;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (inicio[mid] < fim) lo = mid + 1;
+                else hi = mid;
+            }
+            // anda para trás só enquanto ainda pode haver alguém terminando depois de ini
+            for (int i = lo - 1; i >= 0 && maxFim[i] > ini; i--) {
+                Agendamento a = itens.get(i);
+                if (ignorarId != null && ignorarId.equals(a.getId())) continue;
+                if (minutos(a.getHoraFim()) > ini) return a;
+            }
+            return null;
+        }
+    }
+
+    private static final class Dia {
+        final long carregadoEm = System.currentTimeMillis();
+        final Map<String, Linha> linhas = new HashMap<>();
+
+        void adicionar(Agendamento a) {
+            linha("p:" + a.getProfissionalId()).adicionar(a);
+            if (a.getSala() != null) linha("s:" + a.getSala().name()).adicionar(a);
+            if (a.getPacienteId() != null) linha("c:" + a.getPacienteId()).adicionar(a);
+        }
+
+        boolean remover(int id) {
+            boolean removeu = false;
+            for (Linha l : linhas.values()) removeu |= l.remover(id);
+            return removeu;
+        }
+
+        Linha linha(String chave) {
+            return linhas.computeIfAbsent(chave, k -> new Linha());
+        }
+    }
+
+    private static final Map<LocalDate, Dia> DIAS = new HashMap<>();
+    private static final AgendamentoDAO DAO = new AgendamentoDAO();
+
+    private IndiceAgenda() {}
+
+    /**
+     * Conflitos do agendamento informado (vazio = horário livre).
+     * Carrega o dia do banco na primeira consulta (ou se expirou).
+     */
+    public static synchronized List<Conflito> conflitos(Agendamento ag) {
+        List<Conflito> out = new ArrayList<>();
+        if (ag == null || ag.getData() == null || ag.getHoraInicio() == null || ag.getHoraFim() == null) return out;
+        if (!ag.getHoraFim().isAfter(ag.getHoraInicio())) return out;
+
+        Dia dia = dia(ag.getData());
+        int ini = minutos(ag.getHoraInicio());
+        int fim = minutos(ag.getHoraFim());
+
+        if (ag.getProfissionalId() != null) {
+            verificar(dia, "p:" + ag.getProfissionalId(), Recurso.PROFISSIONAL, ini, fim, ag.getId(), out);
+        }
+        if (ag.getSala() != null) {
+            verificar(dia, "s:" + ag.getSala().name(), Recurso.SALA, ini, fim, ag.getId(), out);
+        }
+        if (ag.getPacienteId() != null) {
+            verificar(dia, "c:" + ag.getPacienteId(), Recurso.PACIENTE, ini, fim, ag.getId(), out);
+        }
+        return out;
+    }
+
+    /** Agendamento gravado (chamado pelo AgendamentoDAO). */
+    public static synchronized void salvo(Agendamento ag) {
+        if (ag == null || ag.getData() == null || ag.getId() == null) return;
+        Dia dia = DIAS.get(ag.getData());
+        if (dia == null) return; // dia ainda não carregado: carrega do banco quando precisar
+
+        dia.remover(ag.getId());
+        if (ag.getStatus() != StatusAgendamento.CANCELADO) dia.adicionar(ag);
+    }
+
+    /** Status alterado (chamado pelo AgendamentoDAO); só cancelar/reativar muda a ocupação. */
+    public static synchronized void statusAlterado(int agendamentoId, StatusAgendamento status) {
+        if (status == StatusAgendamento.CANCELADO) {
+            for (Dia d : DIAS.values()) d.remover(agendamentoId);
+            return;
+        }
+        boolean conhecido = false;
+        for (Dia d : DIAS.values()) {
+            for (Linha l : d.linhas.values()) {
+                conhecido |= l.itens.stream().anyMatch(a -> a.getId() != null && a.getId() == agendamentoId);
+            }
+        }
+        if (!conhecido) DIAS.clear(); // pode ter sido reativado: recarrega na próxima consulta
+    }
+
+    /** Descarta o dia (ou tudo, se data == null). */
+    public static synchronized void invalidar(LocalDate data) {
+        if (data == null) DIAS.clear();
+        else DIAS.remove(data);
+    }
+
+    // =========================================================
+    // HELPERS
+    // =========================================================
+
+    private static void verificar(Dia dia, String chave, Recurso recurso, int ini, int fim, Integer ignorarId, List<Conflito> out) {
+        Linha l = dia.linhas.get(chave);
+        if (l == null) return;
+        Agendamento a = l.sobreposto(ini, fim, ignorarId);
+        if (a != null) out.add(new Conflito(recurso, a));
+    }
+
+    private static Dia dia(LocalDate data) {
+        Dia d = DIAS.get(data);
+        if (d != null && System.currentTimeMillis() - d.carregadoEm < VALIDADE_MS) return d;
+
+        d = new Dia();
+        for (Agendamento a : DAO.listarOcupados(data)) d.adicionar(a);
+
+        if (DIAS.size() >= MAX_DIAS) {
+            // descarta o carregado há mais tempo
+            DIAS.entrySet().stream()
+                    .min(Comparator.comparingLong(e -> e.getValue().carregadoEm))
+                    .ifPresent(e -> DIAS.remove(e.getKey()));
+        }
+        DIAS.put(data, d);
+        return d;
+    }
+
+    private static int minutos(LocalTime t) {
+        return t.toSecondOfDay() / 60;
+    }
+}
@@ -0,0 +1,137 @@
+package br.com.clinica.service;
+
+import br.com.clinica.dao.AgendamentoDAO;
+import br.com.clinica.dao.MovimentoEstoqueDAO;
+import br.com.clinica.dao.UsuarioDAO;
+import br.com.clinica.database.DatabaseConfig;
+import br.com.clinica.database.Migracoes;
+import br.com.clinica.util.AppLogger;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pipeline de inicialização em background.
+ *
+ * A tela de login aparece na hora; enquanto isso rodam em paralelo:
+ *  - pool:     cria os pools e abre a primeira conexão (SSL no Supabase, PRAGMAs no SQLite)
+ *  - backup:   backup diário (só SQLite): ponto de restauração de antes das migrações
+ *  - schema:   migrações versionadas pendentes (ver {@link Migracoes}), depois do backup
+ *  - preload:  dados de referência usados pelas telas (profissionais ativos)
+ *  - pacientes: diretório de pacientes do autocomplete (depois do schema)
+ *  - agenda:   confere se as exclusion constraints da V005 existem (Postgres)
+ *  - estoque:  snapshots de saldo do histórico de estoque (depois do schema; no máximo um por produto/dia)
+ *
+ * Cada etapa registra seu tempo em logs/app.log ("[Startup] ..."), junto com o total.
+ * Falha em backup/preload/pacientes/agenda/estoque só é logada. Pool e schema são obrigatórios: se falharem, a future
+ * de {@link #schemaPronto()} completa com erro e a tela principal não abre (os DAOs dependem do schema novo).
+ */
+public final class InicializacaoService {
+
+    private static final AtomicInteger SEQ = new AtomicInteger();
+
+    private static final ExecutorService EXEC = Executors.newFixedThreadPool(3, r -> {
+        Thread t = new Thread(r, "startup-" + SEQ.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+    });
+
+    private static CompletableFuture<Void> PRONTO;
+    private static CompletableFuture<Void> SCHEMA;
+
+    private InicializacaoService() {}
+
+    /** Dispara as etapas (idempotente). t0 = System.nanoTime() do início do app. */
+    public static synchronized CompletableFuture<Void> iniciar(long t0) {
+        if (PRONTO != null) return PRONTO;
+
+        CompletableFuture<Void> pool = etapa("pool", t0, true, DatabaseConfig::inicializar);
+
+        // schema e preload precisam do pool; backup é independente do pool (VACUUM INTO pega o escritor quando livre)
+        CompletableFuture<Void> backup = etapa("backup", t0, false, () -> {
+            BackupService.BackupResult r = BackupService.backupDiarioSeNecessario();
+            log("backup: " + r.mensagem + (r.arquivo != null ? " -> " + r.arquivo : ""));
+        });
+        // schema espera o backup: a cópia do dia tem que ser do banco de antes das migrações, nunca de um
+        // banco pela metade (backup que falha só é logado e não segura o schema)
+        CompletableFuture<Void> schema = pool.thenCombine(backup, (a, b) -> (Void) null)
+                .thenCompose(v -> etapa("schema", t0, true, Migracoes::executar));
+        CompletableFuture<Void> preload = pool.thenCompose(v -> etapa("preload", t0, false, () ->
+                new UsuarioDAO().listarProfissionaisAtivos()));
+        // o diretório confere paciente.versao (V015): só depois do schema
+        CompletableFuture<Void> pacientes = schema.thenCompose(v -> etapa("pacientes", t0, false,
+                DiretorioPacientes::precarregar));
+
+        // V005 pula a exclusion constraint quando a base já tem sobreposições: avisa em vez de seguir calado
+        CompletableFuture<Void> agenda = schema.thenCompose(v -> etapa("agenda", t0, false, () -> {
+            List<String> faltando = new AgendamentoDAO().constraintsSobreposicaoAusentes();
+            if (!faltando.isEmpty()) {
+                AppLogger.error("[Startup] agenda sem proteção do banco contra sobreposição (" +
+                        String.join(", ", faltando) + "): existem agendamentos sobrepostos antigos. " +
+                        "Corrija-os e rode novamente o bloco da V005.", null);
+            }
+        }));
+
+        CompletableFuture<Void> estoque = schema.thenCompose(v -> etapa("estoque", t0, false, () ->
+                log("snapshots de estoque gravados: " + new MovimentoEstoqueDAO().consolidar())));
+
+        // probe de latência só depois que o pool já existe
+        pool.thenRun(DiagnosticoBancoService::iniciar);
+        // alertas de estoque usam os índices da V012
+        schema.thenRun(AlertasEstoqueService::iniciar);
+        // writer da auditoria (quem auditar antes disso já o inicia pelo enfileirar)
+        pool.thenRun(AuditoriaService::iniciar);
+
+        SCHEMA = schema;
+        PRONTO = CompletableFuture.allOf(pool, backup, schema, preload, pacientes, agenda, estoque)
+                .whenComplete((v, e) -> log((e == null ? "concluído" : "concluído com falha") +
+                        " em " + ms(t0) + " ms desde o início do app"));
+        return PRONTO;
+    }
+
+    /**
+     * Completa quando as migrações terminarem; completa com erro se o pool ou as migrações falharem.
+     * Quem abre a tela principal espera por ela (fora da thread da tela).
+     */
+    public static synchronized CompletableFuture<Void> schemaPronto() {
+        return SCHEMA != null ? SCHEMA : CompletableFuture.completedFuture(null);
+    }
+
+    /** Marca de tempo avulsa (ex: "login visível"). */
+    public static void marcar(String evento, long t0) {
+        log(evento + " em " + ms(t0) + " ms desde o início do app");
+    }
+
+    @FunctionalInterface
+    private interface Etapa {
+        void executar() throws Exception;
+    }
+
+    /**
+     * Roda a etapa no executor; erro é logado. Etapa obrigatória completa a future com o erro
+     * (e as que dependem dela não rodam); as outras completam normalmente.
+     */
+    private static CompletableFuture<Void> etapa(String nome, long t0, boolean obrigatoria, Etapa etapa) {
+        return CompletableFuture.runAsync(() -> {
+            long ini = System.nanoTime();
+            try {
+                etapa.executar();
+                log(nome + ": " + (System.nanoTime() - ini) / 1_000_000 + " ms (fim em " + ms(t0) + " ms)");
+            } catch (Exception e) {
+                AppLogger.error("[Startup] " + nome + " falhou após " + (System.nanoTime() - ini) / 1_000_000 + " ms", e);
+                if (obrigatoria) throw new IllegalStateException("Falha na inicialização (" + nome + "): " + e.getMessage(), e);
+            }
+        }, EXEC);
+    }
+
+    private static long ms(long t0) {
+        return (System.nanoTime() - t0) / 1_000_000;
+    }
+
+    private static void log(String msg) {
+        AppLogger.info("[Startup] " + msg);
+    }
+}
@@ -1,5 +1,6 @@
 package br.com.clinica.service;
 
+import br.com.clinica.dao.MovimentoCaixaDAO;
 import br.com.clinica.model.MovimentoCaixa;
 import br.com.clinica.model.enums.TipoMovimento;
 import org.apache.pdfbox.pdmodel.*;
@@ -14,8 +15,10 @@ import java.io.InputStream;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 
 public class RelatorioCaixaPdfService {
 
@@ -23,10 +26,24 @@ public class RelatorioCaixaPdfService {
     private static final DateTimeFormatter D = DateTimeFormatter.ofPattern("dd/MM/yyyy", PT);
     private static final DateTimeFormatter DH = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm", PT);
 
-    public void gerar(LocalDate ini, LocalDate fim, List<MovimentoCaixa> itens, File destino) throws Exception {
-
-        double entradas = itens.stream().filter(m -> m.getTipo() == TipoMovimento.ENTRADA).mapToDouble(MovimentoCaixa::getValor).sum();
-        double saidas   = itens.stream().filter(m -> m.getTipo() == TipoMovimento.SAIDA).mapToDouble(MovimentoCaixa::getValor).sum();
+    /**
+     * @param itens  linhas da tabela (lançamentos ou somas por dia)
+     * @param resumo totais do período agrupados no banco; null = soma as linhas recebidas
+     */
+    public void gerar(LocalDate ini, LocalDate fim, List<MovimentoCaixa> itens,
+                      MovimentoCaixaDAO.Resumo resumo, File destino) throws Exception {
+
+        double entradas;
+        double saidas;
+        Map<String, Double> entradasPorForma = new LinkedHashMap<>();
+        if (resumo != null) {
+            entradas = resumo.entradas();
+            saidas = resumo.saidas();
+            entradasPorForma.putAll(resumo.porForma(TipoMovimento.ENTRADA));
+        } else {
+            entradas = itens.stream().filter(m -> m.getTipo() == TipoMovimento.ENTRADA).mapToDouble(MovimentoCaixa::getValor).sum();
+            saidas   = itens.stream().filter(m -> m.getTipo() == TipoMovimento.SAIDA).mapToDouble(MovimentoCaixa::getValor).sum();
+        }
         double saldo = entradas - saidas;
 
         try (PDDocument doc = new PDDocument()) {
@@ -48,6 +65,13 @@ public class RelatorioCaixaPdfService {
                 y = text(cs, margin, y, 11, true,  String.format(PT, "Saídas:   R$ %.2f", saidas));
                 y = text(cs, margin, y, 12, true,  String.format(PT, "Saldo:    R$ %.2f", saldo));
 
+                if (!entradasPorForma.isEmpty()) {
+                    y -= 4;
+                    for (var e : entradasPorForma.entrySet()) {
+                        y = text(cs, margin, y, 10, false, String.format(PT, "• Entradas %s: R$ %.2f", e.getKey(), e.getValue()));
+                    }
+                }
+
                 y -= 6;
                 line(cs, margin, w - margin, y);
                 y -= 18;
@@ -20,14 +20,21 @@ public class RelatorioNotasPdfService {
     public void gerar(LocalDate ini, LocalDate fim,
                       String filtroPaciente, String filtroProf, String filtroForma,
                       List<NotaDAO.NotaResumo> itens,
+                      NotaDAO.TotaisNotas totais,
                       File destino) throws Exception {
 
-        double total = itens.stream().mapToDouble(NotaDAO.NotaResumo::getTotalLiquido).sum();
-
+        // totais do período inteiro (vindos do resumo); sem eles, soma as notas carregadas
+        double total;
         Map<String, Double> porForma = new LinkedHashMap<>();
-        for (NotaDAO.NotaResumo n : itens) {
-            String forma = n.getFormaPagamento() == null ? "SEM FORMA" : n.getFormaPagamento();
-            porForma.put(forma, porForma.getOrDefault(forma, 0.0) + n.getTotalLiquido());
+        if (totais != null) {
+            total = totais.total();
+            porForma.putAll(totais.porForma());
+        } else {
+            total = itens.stream().mapToDouble(NotaDAO.NotaResumo::getTotalLiquido).sum();
+            for (NotaDAO.NotaResumo n : itens) {
+                String forma = n.getFormaPagamento() == null ? "SEM FORMA" : n.getFormaPagamento();
+                porForma.put(forma, porForma.getOrDefault(forma, 0.0) + n.getTotalLiquido());
+            }
         }
 
         try (PDDocument doc = new PDDocument()) {
@@ -42,6 +42,10 @@ public final class AppLogger {
         get().log(Level.SEVERE, msg, t);
     }
 
+    public static void warn(String msg) {
+        get().warning(msg);
+    }
+
     public static void info(String msg) {
         get().info(msg);
     }
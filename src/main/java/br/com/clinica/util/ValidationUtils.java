@@ -1,13 +1,27 @@
 package br.com.clinica.util;
 
+import java.text.Normalizer;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
 public final class ValidationUtils {
 
+    private static final Pattern MARCAS = Pattern.compile("\\p{M}+");
+    private static final Pattern ESPACOS = Pattern.compile("\\s+");
+
     private ValidationUtils() {}
 
     public static String onlyDigits(String s) {
         return s == null ? "" : s.replaceAll("\\D", "");
     }
 
+    /** Texto para busca: sem acento, minúsculo e com espaços simples (mesma regra da coluna paciente.busca) */
+    public static String normalizeSearch(String s) {
+        if (s == null) return "";
+        String semAcento = MARCAS.matcher(Normalizer.normalize(s, Normalizer.Form.NFD)).replaceAll("");
+        return ESPACOS.matcher(semAcento.toLowerCase(Locale.ROOT).trim()).replaceAll(" ");
+    }
+
     /** Aceita letras (com acento), espaço, hífen e apóstrofo */
     public static boolean isValidName(String nome) {
         if (nome == null) return false;
@@ -0,0 +1,20 @@
+-- Anexos (PDFs) do paciente. Bancos antigos podem ter a tabela sem algumas colunas.
+CREATE TABLE IF NOT EXISTS anexo_paciente (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    paciente_id BIGINT NOT NULL,
+    anamnese INTEGER NULL,
+    nome_arquivo TEXT NOT NULL,
+    caminho_arquivo TEXT NOT NULL,
+    storage_path TEXT NULL,
+    tamanho_bytes BIGINT NULL,
+    descricao TEXT NULL,
+    data_hora TEXT NOT NULL
+);
+
+ALTER TABLE anexo_paciente ADD COLUMN IF NOT EXISTS anamnese INTEGER NULL;
+ALTER TABLE anexo_paciente ADD COLUMN IF NOT EXISTS nome_arquivo TEXT NOT NULL DEFAULT '';
+ALTER TABLE anexo_paciente ADD COLUMN IF NOT EXISTS caminho_arquivo TEXT NOT NULL DEFAULT '';
+ALTER TABLE anexo_paciente ADD COLUMN IF NOT EXISTS storage_path TEXT NULL;
+ALTER TABLE anexo_paciente ADD COLUMN IF NOT EXISTS tamanho_bytes BIGINT NULL;
+ALTER TABLE anexo_paciente ADD COLUMN IF NOT EXISTS descricao TEXT NULL;
+ALTER TABLE anexo_paciente ADD COLUMN IF NOT EXISTS data_hora TEXT NOT NULL DEFAULT '';
@@ -0,0 +1,25 @@
+-- Datas ficam em TEXT ISO (yyyy-MM-dd / yyyy-MM-ddTHH:mm[:ss]): comparação de texto = comparação de data.
+-- Os DAOs filtram com "coluna >= ? AND coluna < ?" (sem date()/substr() na coluna), então estes índices são usados.
+
+-- normaliza legados que o date(data) tolerava: 'yyyy-MM-dd HH:mm:ss' e 'dd/MM/yyyy'
+UPDATE agendamento SET data = substr(data, 1, 10) WHERE length(data) > 10;
+UPDATE agendamento SET data = substr(data, 7, 4) || '-' || substr(data, 4, 2) || '-' || substr(data, 1, 2)
+ WHERE data LIKE '__/__/____';
+
+UPDATE movimento_caixa SET data = substr(data, 1, 10) WHERE length(data) > 10;
+UPDATE movimento_caixa SET data = substr(data, 7, 4) || '-' || substr(data, 4, 2) || '-' || substr(data, 1, 2)
+ WHERE data LIKE '__/__/____';
+
+-- agenda do dia / conflito (data = ?) e relatório por período + profissional
+CREATE INDEX IF NOT EXISTS idx_agendamento_data_prof ON agendamento(data, profissional_id);
+
+-- caixa por período
+CREATE INDEX IF NOT EXISTS idx_movimento_caixa_data ON movimento_caixa(data);
+
+-- notas por período e histórico do paciente
+CREATE INDEX IF NOT EXISTS idx_nota_data_hora ON nota(data_hora);
+CREATE INDEX IF NOT EXISTS idx_nota_paciente_data_hora ON nota(id_paciente, data_hora);
+
+-- prontuário: anamneses e anexos do paciente, mais recentes primeiro
+CREATE INDEX IF NOT EXISTS idx_anamnese_paciente_data_hora ON anamnese(paciente_id, data_hora);
+CREATE INDEX IF NOT EXISTS idx_anexo_paciente_paciente_data_hora ON anexo_paciente(paciente_id, data_hora);
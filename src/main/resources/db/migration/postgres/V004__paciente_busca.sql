@@ -0,0 +1,15 @@
+-- Busca de pacientes: coluna "busca" = nome sem acento/minúsculo + CPF + telefone (só dígitos).
+-- O PacienteDAO grava essa coluna em todo insert/update; aqui só preenchemos os registros existentes.
+ALTER TABLE paciente ADD COLUMN IF NOT EXISTS busca TEXT;
+
+-- translate() com a mesma tabela de acentos usada no SQLite/Java (não depende da extensão unaccent)
+UPDATE paciente
+   SET busca = trim(translate(lower(nome), 'áàâãäéèêëíìîïóòôõöúùûüçñ', 'aaaaaeeeeiiiiooooouuuucn')
+                    || ' ' || coalesce(cpf, '') || ' ' || coalesce(telefone, ''));
+
+-- índice trigram (GIN): LIKE '%trecho%' usa o índice a partir de 3 caracteres
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+CREATE INDEX IF NOT EXISTS idx_paciente_busca_trgm ON paciente USING gin (busca gin_trgm_ops);
+
+-- paginação por (nome, id)
+CREATE INDEX IF NOT EXISTS idx_paciente_nome_id ON paciente(nome, id);
@@ -0,0 +1,47 @@
+-- Agenda sem sobreposição garantida pelo banco: duas estações não conseguem marcar o mesmo horário
+-- para o mesmo profissional, sala ou paciente (o check-then-insert do app tinha uma janela de corrida).
+-- Cancelados não contam. O AgendamentoDAO trata a violação (23P01) como conflito.
+
+-- gist com "=" em colunas int/text
+CREATE EXTENSION IF NOT EXISTS btree_gist;
+
+-- data/hora são TEXT ISO ('yyyy-MM-dd' / 'HH:mm'); o cast text->timestamp não é IMMUTABLE por causa do
+-- DateStyle, mas com formato ISO o resultado não muda (por isso a função pode ser usada no índice)
+CREATE OR REPLACE FUNCTION agendamento_periodo(d TEXT, ini TEXT, fim TEXT)
+RETURNS tsrange
+LANGUAGE sql IMMUTABLE
+AS $$
+    SELECT tsrange((d || ' ' || ini)::timestamp, greatest((d || ' ' || ini)::timestamp, (d || ' ' || fim)::timestamp))
+$$;
+
+-- cada constraint no seu bloco: se a base já tiver sobreposições antigas, aquela constraint fica de fora
+-- (aviso no log do Postgres) e o INSERT condicional do DAO continua valendo
+DO $$
+BEGIN
+    ALTER TABLE agendamento ADD CONSTRAINT ex_agendamento_profissional
+        EXCLUDE USING gist (profissional_id WITH =, agendamento_periodo(data, hora_inicio, hora_fim) WITH &&)
+        WHERE (status <> 'CANCELADO');
+EXCEPTION
+    WHEN duplicate_object OR duplicate_table THEN NULL;
+    WHEN exclusion_violation THEN RAISE WARNING 'agendamento: sobreposição existente por profissional, constraint não criada';
+END $$;
+
+DO $$
+BEGIN
+    ALTER TABLE agendamento ADD CONSTRAINT ex_agendamento_sala
+        EXCLUDE USING gist (sala WITH =, agendamento_periodo(data, hora_inicio, hora_fim) WITH &&)
+        WHERE (status <> 'CANCELADO');
+EXCEPTION
+    WHEN duplicate_object OR duplicate_table THEN NULL;
+    WHEN exclusion_violation THEN RAISE WARNING 'agendamento: sobreposição existente por sala, constraint não criada';
+END $$;
+
+DO $$
+BEGIN
+    ALTER TABLE agendamento ADD CONSTRAINT ex_agendamento_paciente
+        EXCLUDE USING gist (paciente_id WITH =, agendamento_periodo(data, hora_inicio, hora_fim) WITH &&)
+        WHERE (status <> 'CANCELADO' AND paciente_id IS NOT NULL);
+EXCEPTION
+    WHEN duplicate_object OR duplicate_table THEN NULL;
+    WHEN exclusion_violation THEN RAISE WARNING 'agendamento: sobreposição existente por paciente, constraint não criada';
+END $$;
@@ -0,0 +1,31 @@
+-- Feed de alterações da agenda entre estações.
+-- Cada insert/update/delete em agendamento gera uma linha aqui e um NOTIFY no canal agenda_alteracao;
+-- as estações fazem LISTEN e só buscam as linhas com seq maior que a última vista.
+-- (atrás do pooler em modo transação o LISTEN não funciona: o app cai para consulta periódica de max(seq))
+CREATE TABLE IF NOT EXISTS agenda_alteracao (
+    seq BIGSERIAL PRIMARY KEY,
+    agendamento_id INTEGER NOT NULL,
+    data TEXT,
+    op TEXT NOT NULL
+);
+
+CREATE OR REPLACE FUNCTION agendamento_registrar_alteracao()
+RETURNS trigger
+LANGUAGE plpgsql
+AS $$
+BEGIN
+    IF TG_OP = 'DELETE' THEN
+        INSERT INTO agenda_alteracao (agendamento_id, data, op) VALUES (OLD.id, OLD.data, 'D');
+    ELSE
+        INSERT INTO agenda_alteracao (agendamento_id, data, op) VALUES (NEW.id, NEW.data, left(TG_OP, 1));
+    END IF;
+    -- payload só informativo: quem ouve busca as linhas novas de agenda_alteracao
+    PERFORM pg_notify('agenda_alteracao', TG_OP);
+    RETURN NULL;
+END
+$$;
+
+DROP TRIGGER IF EXISTS agendamento_alteracao ON agendamento;
+CREATE TRIGGER agendamento_alteracao
+AFTER INSERT OR UPDATE OR DELETE ON agendamento
+FOR EACH ROW EXECUTE FUNCTION agendamento_registrar_alteracao();
@@ -0,0 +1,4 @@
+-- Séries de agendamentos (recorrência): ocorrências da mesma série compartilham serie_id.
+ALTER TABLE agendamento ADD COLUMN IF NOT EXISTS serie_id TEXT;
+
+CREATE INDEX IF NOT EXISTS idx_agendamento_serie ON agendamento(serie_id);
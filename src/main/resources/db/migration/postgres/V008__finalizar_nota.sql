@@ -0,0 +1,77 @@
+-- Finalização da nota numa ida só ao banco (checkout no Supabase: cada comando era um round trip).
+-- Recebe a nota inteira em JSON (cabeçalho + itens + dados do caixa/auditoria) e faz, na mesma transação:
+--   nota -> nota_item -> baixa de estoque (somada por produto) -> movimento_caixa -> audit_log
+-- Devolve o id da nota. Sem saldo: RAISE 'estoque_insuficiente' com uma linha por produto no DETAIL
+-- ("id|disponivel|pedido|nome"), que o NotaDAO transforma em EstoqueInsuficienteException.
+CREATE OR REPLACE FUNCTION finalizar_nota(p JSONB)
+RETURNS BIGINT
+LANGUAGE plpgsql
+AS $$
+DECLARE
+    v_id BIGINT;
+    v_faltas TEXT;
+BEGIN
+    INSERT INTO nota (data_hora, id_paciente, id_profissional, forma_pagamento,
+                      total_bruto, desconto, total_liquido, observacao)
+    VALUES (p->>'data_hora',
+            (p->>'id_paciente')::BIGINT,
+            (p->>'id_profissional')::INTEGER,
+            p->>'forma_pagamento',
+            (p->>'total_bruto')::DOUBLE PRECISION,
+            (p->>'desconto')::DOUBLE PRECISION,
+            (p->>'total_liquido')::DOUBLE PRECISION,
+            p->>'observacao')
+    RETURNING id INTO v_id;
+
+    INSERT INTO nota_item (id_nota, tipo_item, id_produto, descricao, quantidade, valor_unitario, valor_total)
+    SELECT v_id, i.tipo_item, i.id_produto, i.descricao, i.quantidade, i.valor_unitario, i.valor_total
+      FROM jsonb_to_recordset(p->'itens') AS i(tipo_item TEXT, id_produto BIGINT, descricao TEXT,
+                                               quantidade DOUBLE PRECISION, valor_unitario DOUBLE PRECISION,
+                                               valor_total DOUBLE PRECISION);
+
+    -- baixa condicional: um UPDATE para todos os produtos; quem não tinha saldo fica de fora do RETURNING
+    WITH pedido AS (
+        SELECT i.id_produto, sum(i.quantidade) AS qtd
+          FROM jsonb_to_recordset(p->'itens') AS i(tipo_item TEXT, id_produto BIGINT, quantidade DOUBLE PRECISION)
+         WHERE i.tipo_item = 'PRODUTO' AND i.id_produto IS NOT NULL
+         GROUP BY i.id_produto
+    ),
+    baixados AS (
+        UPDATE produto pr
+           SET estoque_atual = pr.estoque_atual - pedido.qtd
+          FROM pedido
+         WHERE pr.id = pedido.id_produto
+           AND pr.estoque_atual >= pedido.qtd
+        RETURNING pr.id
+    )
+    SELECT string_agg(pedido.id_produto || '|' || coalesce(pr.estoque_atual, 0) || '|' || pedido.qtd || '|' || coalesce(pr.nome, ''),
+                      E'\n' ORDER BY pedido.id_produto)
+      INTO v_faltas
+      FROM pedido
+      LEFT JOIN produto pr ON pr.id = pedido.id_produto
+     WHERE pedido.id_produto NOT IN (SELECT id FROM baixados);
+
+    IF v_faltas IS NOT NULL THEN
+        RAISE EXCEPTION 'estoque_insuficiente' USING DETAIL = v_faltas;
+    END IF;
+
+    INSERT INTO movimento_caixa (data, descricao, tipo, valor, forma_pagamento, paciente_nome, observacao)
+    VALUES (p->>'data_movimento',
+            'Recebimento - Nota ' || v_id,
+            'ENTRADA',
+            (p->>'total_liquido')::DOUBLE PRECISION,
+            p->>'forma_pagamento',
+            p->>'paciente_nome',
+            p->>'observacao');
+
+    INSERT INTO audit_log (data_hora, usuario_id, acao, entidade, entidade_id, detalhes)
+    VALUES (p->>'audit_data_hora',
+            (p->>'id_profissional')::INTEGER,
+            'CRIAR',
+            'NOTA',
+            v_id::TEXT,
+            p->>'audit_detalhes');
+
+    RETURN v_id;
+END
+$$;
@@ -0,0 +1,43 @@
+-- Resumo financeiro das notas por dia, forma de pagamento e profissional.
+-- Os totais dos relatórios saem daqui (poucas linhas por dia) em vez de somar todas as notas do período.
+-- Mantido pelo trigger a cada nota inserida (finalizar_nota ou comandos separados, tanto faz).
+CREATE TABLE IF NOT EXISTS nota_resumo_diario (
+    data TEXT NOT NULL,
+    forma_pagamento TEXT NOT NULL,
+    id_profissional INTEGER NOT NULL,
+    qtd_notas INTEGER NOT NULL DEFAULT 0,
+    total_bruto DOUBLE PRECISION NOT NULL DEFAULT 0,
+    desconto DOUBLE PRECISION NOT NULL DEFAULT 0,
+    total_liquido DOUBLE PRECISION NOT NULL DEFAULT 0,
+    PRIMARY KEY (data, forma_pagamento, id_profissional)
+);
+
+-- carga inicial com as notas que já existem
+INSERT INTO nota_resumo_diario (data, forma_pagamento, id_profissional, qtd_notas, total_bruto, desconto, total_liquido)
+SELECT substr(data_hora, 1, 10), coalesce(forma_pagamento, ''), id_profissional,
+       count(*), coalesce(sum(total_bruto), 0), coalesce(sum(desconto), 0), coalesce(sum(total_liquido), 0)
+  FROM nota
+ GROUP BY substr(data_hora, 1, 10), coalesce(forma_pagamento, ''), id_profissional
+ON CONFLICT DO NOTHING;
+
+CREATE OR REPLACE FUNCTION nota_atualizar_resumo_diario()
+RETURNS trigger
+LANGUAGE plpgsql
+AS $$
+BEGIN
+    INSERT INTO nota_resumo_diario (data, forma_pagamento, id_profissional, qtd_notas, total_bruto, desconto, total_liquido)
+    VALUES (substr(NEW.data_hora, 1, 10), coalesce(NEW.forma_pagamento, ''), NEW.id_profissional, 1,
+            coalesce(NEW.total_bruto, 0), coalesce(NEW.desconto, 0), coalesce(NEW.total_liquido, 0))
+    ON CONFLICT (data, forma_pagamento, id_profissional) DO UPDATE
+       SET qtd_notas = nota_resumo_diario.qtd_notas + 1,
+           total_bruto = nota_resumo_diario.total_bruto + EXCLUDED.total_bruto,
+           desconto = nota_resumo_diario.desconto + EXCLUDED.desconto,
+           total_liquido = nota_resumo_diario.total_liquido + EXCLUDED.total_liquido;
+    RETURN NULL;
+END
+$$;
+
+DROP TRIGGER IF EXISTS nota_resumo_diario ON nota;
+CREATE TRIGGER nota_resumo_diario
+AFTER INSERT ON nota
+FOR EACH ROW EXECUTE FUNCTION nota_atualizar_resumo_diario();
@@ -0,0 +1,57 @@
+-- Fechamento de caixa: uma linha por dia fechado com os totais e o saldo acumulado até aquele dia.
+-- O saldo de qualquer data = saldo_acumulado do último fechamento + movimentos depois dele (poucos dias),
+-- em vez de somar o movimento_caixa desde o começo.
+CREATE TABLE IF NOT EXISTS fechamento_caixa (
+    data TEXT PRIMARY KEY,
+    qtd_movimentos INTEGER NOT NULL DEFAULT 0,
+    entradas DOUBLE PRECISION NOT NULL DEFAULT 0,
+    saidas DOUBLE PRECISION NOT NULL DEFAULT 0,
+    saldo_acumulado DOUBLE PRECISION NOT NULL DEFAULT 0,
+    fechado_em TEXT NOT NULL,
+    usuario_id INTEGER
+);
+
+-- totais do dia por tipo e forma de pagamento (só os grupos que tiveram movimento)
+CREATE TABLE IF NOT EXISTS fechamento_caixa_forma (
+    data TEXT NOT NULL,
+    tipo TEXT NOT NULL,
+    forma_pagamento TEXT NOT NULL,
+    qtd_movimentos INTEGER NOT NULL DEFAULT 0,
+    valor DOUBLE PRECISION NOT NULL DEFAULT 0,
+    PRIMARY KEY (data, tipo, forma_pagamento)
+);
+
+-- dia fechado não muda mais: tudo até o último fechamento fica travado
+CREATE OR REPLACE FUNCTION movimento_caixa_verificar_fechado()
+RETURNS trigger
+LANGUAGE plpgsql
+AS $$
+DECLARE
+    v_ultimo TEXT;
+BEGIN
+    SELECT max(data) INTO v_ultimo FROM fechamento_caixa;
+
+    IF v_ultimo IS NOT NULL THEN
+        IF TG_OP IN ('UPDATE', 'DELETE') THEN
+            IF OLD.data <= v_ultimo THEN
+                RAISE EXCEPTION 'caixa_fechado';
+            END IF;
+        END IF;
+        IF TG_OP IN ('INSERT', 'UPDATE') THEN
+            IF NEW.data <= v_ultimo THEN
+                RAISE EXCEPTION 'caixa_fechado';
+            END IF;
+        END IF;
+    END IF;
+
+    IF TG_OP = 'DELETE' THEN
+        RETURN OLD;
+    END IF;
+    RETURN NEW;
+END
+$$;
+
+DROP TRIGGER IF EXISTS movimento_caixa_fechado ON movimento_caixa;
+CREATE TRIGGER movimento_caixa_fechado
+BEFORE INSERT OR UPDATE OR DELETE ON movimento_caixa
+FOR EACH ROW EXECUTE FUNCTION movimento_caixa_verificar_fechado();
@@ -0,0 +1,7 @@
+-- Filtros de estoque no banco (ProdutoDAO.listar e contagem de alertas da tela inicial).
+-- Validade é texto ISO: o range "validade <= ?" usa o índice direto.
+CREATE INDEX IF NOT EXISTS idx_produto_validade ON produto(validade);
+
+-- estoque_atual <= estoque_minimo compara duas colunas: índice parcial só com as linhas que batem
+-- (normalmente poucas), usado quando a consulta tem o mesmo predicado
+CREATE INDEX IF NOT EXISTS idx_produto_baixo_estoque ON produto(nome) WHERE estoque_atual <= estoque_minimo;
@@ -0,0 +1,54 @@
+-- Histórico de estoque: cada entrada, ajuste e venda vira uma linha (só INSERT, nunca UPDATE/DELETE).
+-- quantidade tem sinal (+ entra, - sai). produto.estoque_atual continua sendo o saldo corrente,
+-- mas só muda por delta (estoque_atual + ?) na mesma transação da linha do histórico.
+CREATE TABLE IF NOT EXISTS movimento_estoque (
+    id BIGSERIAL PRIMARY KEY,
+    produto_id BIGINT NOT NULL,
+    data_hora TEXT NOT NULL,
+    tipo TEXT NOT NULL,
+    quantidade DOUBLE PRECISION NOT NULL,
+    nota_id BIGINT,
+    usuario_id INTEGER,
+    observacao TEXT
+);
+
+CREATE INDEX IF NOT EXISTS idx_movimento_estoque_produto_data ON movimento_estoque(produto_id, data_hora);
+
+-- Saldo consolidado: saldo do produto com todos os movimentos de data_hora < ate (ate = 'YYYY-MM-DD').
+-- Saldo numa data = último snapshot até ela + movimentos depois dele (ver MovimentoEstoqueDAO).
+CREATE TABLE IF NOT EXISTS estoque_snapshot (
+    produto_id BIGINT NOT NULL,
+    ate TEXT NOT NULL,
+    saldo DOUBLE PRECISION NOT NULL,
+    qtd_movimentos INTEGER NOT NULL DEFAULT 0,
+    criado_em TEXT NOT NULL,
+    PRIMARY KEY (produto_id, ate)
+);
+
+-- carga inicial: o saldo de hoje de cada produto entra como movimento INICIAL
+INSERT INTO movimento_estoque (produto_id, data_hora, tipo, quantidade, observacao)
+SELECT id, '${agora}', 'INICIAL', estoque_atual, 'Saldo na criação do histórico'
+  FROM produto
+ WHERE estoque_atual <> 0
+   AND NOT EXISTS (SELECT 1 FROM movimento_estoque);
+
+-- venda: cada item de produto da nota (finalizar_nota ou comandos separados) registra a saída
+CREATE OR REPLACE FUNCTION nota_item_registrar_movimento_estoque()
+RETURNS trigger
+LANGUAGE plpgsql
+AS $$
+BEGIN
+    INSERT INTO movimento_estoque (produto_id, data_hora, tipo, quantidade, nota_id, usuario_id)
+    SELECT NEW.id_produto, substr(n.data_hora, 1, 19), 'VENDA', -NEW.quantidade, n.id, n.id_profissional
+      FROM nota n
+     WHERE n.id = NEW.id_nota;
+    RETURN NULL;
+END
+$$;
+
+DROP TRIGGER IF EXISTS nota_item_movimento_estoque ON nota_item;
+CREATE TRIGGER nota_item_movimento_estoque
+AFTER INSERT ON nota_item
+FOR EACH ROW
+WHEN (NEW.tipo_item = 'PRODUTO' AND NEW.id_produto IS NOT NULL)
+EXECUTE FUNCTION nota_item_registrar_movimento_estoque();
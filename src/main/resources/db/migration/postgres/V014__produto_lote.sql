@@ -0,0 +1,157 @@
+-- Estoque por lote: cada produto pode ter vários lotes com validades diferentes.
+-- produto.estoque_atual continua sendo o total (soma dos lotes), mantido na mesma transação.
+-- validade '9999-12-31' = lote sem validade (fica por último na ordem FEFO).
+CREATE TABLE IF NOT EXISTS produto_lote (
+    id BIGSERIAL PRIMARY KEY,
+    produto_id BIGINT NOT NULL,
+    lote TEXT NOT NULL DEFAULT '',
+    validade TEXT NOT NULL DEFAULT '9999-12-31',
+    quantidade DOUBLE PRECISION NOT NULL DEFAULT 0,
+    criado_em TEXT NOT NULL
+);
+
+CREATE UNIQUE INDEX IF NOT EXISTS ux_produto_lote ON produto_lote(produto_id, lote, validade);
+
+-- FEFO: lotes com saldo do produto, já na ordem de consumo (vence primeiro, sai primeiro)
+CREATE INDEX IF NOT EXISTS idx_produto_lote_fefo ON produto_lote(produto_id, validade, id) WHERE quantidade > 0;
+
+-- relatório de validade por lote
+CREATE INDEX IF NOT EXISTS idx_produto_lote_validade ON produto_lote(validade) WHERE quantidade > 0;
+
+ALTER TABLE movimento_estoque ADD COLUMN IF NOT EXISTS lote_id BIGINT;
+
+-- carga inicial: o saldo atual de cada produto vira um lote com o lote/validade do cadastro
+INSERT INTO produto_lote (produto_id, lote, validade, quantidade, criado_em)
+SELECT id, coalesce(lote, ''), coalesce(nullif(validade, ''), '9999-12-31'), estoque_atual,
+       '${agora}'
+  FROM produto
+ WHERE estoque_atual > 0
+ON CONFLICT DO NOTHING;
+
+-- finalizar_nota passa a baixar também os lotes (FEFO), na mesma chamada.
+CREATE OR REPLACE FUNCTION finalizar_nota(p JSONB)
+RETURNS BIGINT
+LANGUAGE plpgsql
+AS $$
+DECLARE
+    v_id BIGINT;
+    v_faltas TEXT;
+BEGIN
+    INSERT INTO nota (data_hora, id_paciente, id_profissional, forma_pagamento,
+                      total_bruto, desconto, total_liquido, observacao, chave_requisicao)
+    VALUES (p->>'data_hora',
+            (p->>'id_paciente')::BIGINT,
+            (p->>'id_profissional')::INTEGER,
+            p->>'forma_pagamento',
+            (p->>'total_bruto')::DOUBLE PRECISION,
+            (p->>'desconto')::DOUBLE PRECISION,
+            (p->>'total_liquido')::DOUBLE PRECISION,
+            p->>'observacao',
+            p->>'chave_requisicao')
+    ON CONFLICT (chave_requisicao) DO NOTHING
+    RETURNING id INTO v_id;
+
+    -- mesma chave já gravada (reenvio): devolve a nota existente sem mexer em estoque/caixa
+    IF v_id IS NULL THEN
+        SELECT id INTO v_id FROM nota WHERE chave_requisicao = p->>'chave_requisicao';
+        RETURN v_id;
+    END IF;
+
+    INSERT INTO nota_item (id_nota, tipo_item, id_produto, descricao, quantidade, valor_unitario, valor_total)
+    SELECT v_id, i.tipo_item, i.id_produto, i.descricao, i.quantidade, i.valor_unitario, i.valor_total
+      FROM jsonb_to_recordset(p->'itens') AS i(tipo_item TEXT, id_produto BIGINT, descricao TEXT,
+                                               quantidade DOUBLE PRECISION, valor_unitario DOUBLE PRECISION,
+                                               valor_total DOUBLE PRECISION);
+
+    -- baixa condicional: um UPDATE para todos os produtos; quem não tinha saldo fica de fora do RETURNING
+    WITH pedido AS (
+        SELECT i.id_produto, sum(i.quantidade) AS qtd
+          FROM jsonb_to_recordset(p->'itens') AS i(tipo_item TEXT, id_produto BIGINT, quantidade DOUBLE PRECISION)
+         WHERE i.tipo_item = 'PRODUTO' AND i.id_produto IS NOT NULL
+         GROUP BY i.id_produto
+    ),
+    baixados AS (
+        UPDATE produto pr
+           SET estoque_atual = pr.estoque_atual - pedido.qtd
+          FROM pedido
+         WHERE pr.id = pedido.id_produto
+           AND pr.estoque_atual >= pedido.qtd
+        RETURNING pr.id
+    )
+    SELECT string_agg(pedido.id_produto || '|' || coalesce(pr.estoque_atual, 0) || '|' || pedido.qtd || '|' || coalesce(pr.nome, ''),
+                      E'\n' ORDER BY pedido.id_produto)
+      INTO v_faltas
+      FROM pedido
+      LEFT JOIN produto pr ON pr.id = pedido.id_produto
+     WHERE pedido.id_produto NOT IN (SELECT id FROM baixados);
+
+    IF v_faltas IS NOT NULL THEN
+        RAISE EXCEPTION 'estoque_insuficiente' USING DETAIL = v_faltas;
+    END IF;
+
+    -- os lotes têm que cobrir o pedido: lote fora de sincronia com estoque_atual também é falta
+    -- (mesma falha do ProdutoLoteDAO.consumirFefo; "disponivel" = soma dos lotes), nada é baixado
+    WITH pedido AS (
+        SELECT i.id_produto, sum(i.quantidade) AS qtd
+          FROM jsonb_to_recordset(p->'itens') AS i(tipo_item TEXT, id_produto BIGINT, quantidade DOUBLE PRECISION)
+         WHERE i.tipo_item = 'PRODUTO' AND i.id_produto IS NOT NULL
+         GROUP BY i.id_produto
+    ),
+    cobertura AS (
+        SELECT pedido.id_produto, pedido.qtd, coalesce(sum(l.quantidade), 0) AS em_lotes
+          FROM pedido
+          LEFT JOIN produto_lote l ON l.produto_id = pedido.id_produto AND l.quantidade > 0
+         GROUP BY pedido.id_produto, pedido.qtd
+    )
+    SELECT string_agg(c.id_produto || '|' || c.em_lotes || '|' || c.qtd || '|' || coalesce(pr.nome, ''),
+                      E'\n' ORDER BY c.id_produto)
+      INTO v_faltas
+      FROM cobertura c
+      LEFT JOIN produto pr ON pr.id = c.id_produto
+     WHERE c.qtd - c.em_lotes > 1e-9;
+
+    IF v_faltas IS NOT NULL THEN
+        RAISE EXCEPTION 'estoque_insuficiente' USING DETAIL = v_faltas;
+    END IF;
+
+    -- FEFO: cada produto consome os lotes com saldo, do que vence primeiro (idx_produto_lote_fefo);
+    -- "antes" = saldo dos lotes que saem antes deste, então cada lote perde só o que ainda falta
+    WITH pedido AS (
+        SELECT i.id_produto, sum(i.quantidade) AS qtd
+          FROM jsonb_to_recordset(p->'itens') AS i(tipo_item TEXT, id_produto BIGINT, quantidade DOUBLE PRECISION)
+         WHERE i.tipo_item = 'PRODUTO' AND i.id_produto IS NOT NULL
+         GROUP BY i.id_produto
+    ),
+    fila AS (
+        SELECT l.id, l.quantidade, pedido.qtd,
+               sum(l.quantidade) OVER (PARTITION BY l.produto_id ORDER BY l.validade, l.id) - l.quantidade AS antes
+          FROM produto_lote l
+          JOIN pedido ON pedido.id_produto = l.produto_id
+         WHERE l.quantidade > 0
+    )
+    UPDATE produto_lote l
+       SET quantidade = l.quantidade - least(fila.quantidade, fila.qtd - fila.antes)
+      FROM fila
+     WHERE l.id = fila.id
+       AND fila.antes < fila.qtd;
+
+    INSERT INTO movimento_caixa (data, descricao, tipo, valor, forma_pagamento, paciente_nome, observacao)
+    VALUES (p->>'data_movimento',
+            'Recebimento - Nota ' || v_id,
+            'ENTRADA',
+            (p->>'total_liquido')::DOUBLE PRECISION,
+            p->>'forma_pagamento',
+            p->>'paciente_nome',
+            p->>'observacao');
+
+    INSERT INTO audit_log (data_hora, usuario_id, acao, entidade, entidade_id, detalhes)
+    VALUES (p->>'audit_data_hora',
+            (p->>'id_profissional')::INTEGER,
+            'CRIAR',
+            'NOTA',
+            v_id::TEXT,
+            p->>'audit_detalhes');
+
+    RETURN v_id;
+END
+$$;
@@ -0,0 +1,21 @@
+-- Anexos (PDFs) do paciente. Bancos antigos podem ter a tabela sem algumas colunas:
+-- "duplicate column name" no ADD COLUMN é tratado como já aplicado pelo runner.
+CREATE TABLE IF NOT EXISTS anexo_paciente (
+    id INTEGER PRIMARY KEY AUTOINCREMENT,
+    paciente_id INTEGER NOT NULL,
+    anamnese INTEGER NULL,
+    nome_arquivo TEXT NOT NULL,
+    caminho_arquivo TEXT NOT NULL,
+    storage_path TEXT NULL,
+    tamanho_bytes INTEGER NULL,
+    descricao TEXT NULL,
+    data_hora TEXT NOT NULL
+);
+
+ALTER TABLE anexo_paciente ADD COLUMN anamnese INTEGER NULL;
+ALTER TABLE anexo_paciente ADD COLUMN nome_arquivo TEXT NOT NULL DEFAULT '';
+ALTER TABLE anexo_paciente ADD COLUMN caminho_arquivo TEXT NOT NULL DEFAULT '';
+ALTER TABLE anexo_paciente ADD COLUMN storage_path TEXT NULL;
+ALTER TABLE anexo_paciente ADD COLUMN tamanho_bytes INTEGER NULL;
+ALTER TABLE anexo_paciente ADD COLUMN descricao TEXT NULL;
+ALTER TABLE anexo_paciente ADD COLUMN data_hora TEXT NOT NULL DEFAULT '';
@@ -0,0 +1,12 @@
+-- Sugestões de procedimentos por sala (autocomplete do Caixa)
+CREATE TABLE IF NOT EXISTS procedimento_frequente (
+    id INTEGER PRIMARY KEY AUTOINCREMENT,
+    nome TEXT NOT NULL,
+    sala TEXT,
+    uso_count INTEGER NOT NULL DEFAULT 0,
+    ultimo_uso TEXT NOT NULL,
+    UNIQUE(nome, sala)
+);
+
+CREATE INDEX IF NOT EXISTS idx_proc_freq_sala_uso
+    ON procedimento_frequente(sala, uso_count DESC, ultimo_uso DESC);
@@ -0,0 +1,39 @@
+-- Busca de pacientes: coluna "busca" = nome sem acento/minúsculo + CPF + telefone (só dígitos).
+-- O PacienteDAO grava essa coluna em todo insert/update; aqui só preenchemos os registros existentes.
+ALTER TABLE paciente ADD COLUMN busca TEXT;
+
+-- SQLite não tem unaccent e o lower() só trata ASCII: tira os acentos do português na mão
+-- (um UPDATE por vogal: replace() aninhado demais estoura a pilha do parser)
+UPDATE paciente SET busca = nome;
+UPDATE paciente SET busca = replace(replace(replace(replace(replace(replace(replace(replace(replace(replace(busca, 'Á', 'a'), 'À', 'a'), 'Â', 'a'), 'Ã', 'a'), 'Ä', 'a'), 'á', 'a'), 'à', 'a'), 'â', 'a'), 'ã', 'a'), 'ä', 'a');
+UPDATE paciente SET busca = replace(replace(replace(replace(replace(replace(replace(replace(busca, 'É', 'e'), 'È', 'e'), 'Ê', 'e'), 'Ë', 'e'), 'é', 'e'), 'è', 'e'), 'ê', 'e'), 'ë', 'e');
+UPDATE paciente SET busca = replace(replace(replace(replace(replace(replace(replace(replace(busca, 'Í', 'i'), 'Ì', 'i'), 'Î', 'i'), 'Ï', 'i'), 'í', 'i'), 'ì', 'i'), 'î', 'i'), 'ï', 'i');
+UPDATE paciente SET busca = replace(replace(replace(replace(replace(replace(replace(replace(replace(replace(busca, 'Ó', 'o'), 'Ò', 'o'), 'Ô', 'o'), 'Õ', 'o'), 'Ö', 'o'), 'ó', 'o'), 'ò', 'o'), 'ô', 'o'), 'õ', 'o'), 'ö', 'o');
+UPDATE paciente SET busca = replace(replace(replace(replace(replace(replace(replace(replace(busca, 'Ú', 'u'), 'Ù', 'u'), 'Û', 'u'), 'Ü', 'u'), 'ú', 'u'), 'ù', 'u'), 'û', 'u'), 'ü', 'u');
+UPDATE paciente SET busca = replace(replace(replace(replace(busca, 'Ç', 'c'), 'ç', 'c'), 'Ñ', 'n'), 'ñ', 'n');
+UPDATE paciente SET busca = trim(lower(busca) || ' ' || coalesce(cpf, '') || ' ' || coalesce(telefone, ''));
+
+-- índice FTS5 com tokenizer trigram: busca por trecho ("silv", "9988") sem varrer a tabela
+CREATE VIRTUAL TABLE IF NOT EXISTS paciente_fts USING fts5(
+    busca,
+    content = 'paciente',
+    content_rowid = 'id',
+    tokenize = 'trigram'
+);
+INSERT INTO paciente_fts(paciente_fts) VALUES ('rebuild');
+
+CREATE TRIGGER IF NOT EXISTS paciente_fts_ai AFTER INSERT ON paciente BEGIN
+    INSERT INTO paciente_fts(rowid, busca) VALUES (new.id, new.busca);
+END;
+
+CREATE TRIGGER IF NOT EXISTS paciente_fts_ad AFTER DELETE ON paciente BEGIN
+    INSERT INTO paciente_fts(paciente_fts, rowid, busca) VALUES ('delete', old.id, old.busca);
+END;
+
+CREATE TRIGGER IF NOT EXISTS paciente_fts_au AFTER UPDATE OF busca ON paciente BEGIN
+    INSERT INTO paciente_fts(paciente_fts, rowid, busca) VALUES ('delete', old.id, old.busca);
+    INSERT INTO paciente_fts(rowid, busca) VALUES (new.id, new.busca);
+END;
+
+-- paginação por (nome, id)
+CREATE INDEX IF NOT EXISTS idx_paciente_nome_id ON paciente(nome, id);
@@ -0,0 +1,16 @@
+-- Agenda sem sobreposição garantida pelo banco (mesma regra das exclusion constraints do Postgres).
+-- No SQLite toda escrita passa pelo único escritor, então o trigger roda serializado com o INSERT.
+-- Cancelados não contam. O AgendamentoDAO trata o RAISE como conflito.
+CREATE TRIGGER IF NOT EXISTS agendamento_sem_sobreposicao
+BEFORE INSERT ON agendamento
+WHEN new.status <> 'CANCELADO' AND EXISTS (
+    SELECT 1 FROM agendamento a
+     WHERE a.data = new.data
+       AND a.status <> 'CANCELADO'
+       AND (a.profissional_id = new.profissional_id OR a.sala = new.sala OR a.paciente_id = new.paciente_id)
+       AND a.hora_inicio < new.hora_fim
+       AND a.hora_fim > new.hora_inicio
+)
+BEGIN
+    SELECT RAISE(ABORT, 'conflito_agenda');
+END;
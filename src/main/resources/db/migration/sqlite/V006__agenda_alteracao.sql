@@ -0,0 +1,21 @@
+-- Feed de alterações da agenda entre estações.
+-- Cada insert/update/delete em agendamento gera uma linha aqui; seq é o "número de versão" da agenda.
+-- As estações consultam max(seq) de tempos em tempos (barato: é a chave primária) e só buscam as linhas novas.
+CREATE TABLE IF NOT EXISTS agenda_alteracao (
+    seq INTEGER PRIMARY KEY AUTOINCREMENT,
+    agendamento_id INTEGER NOT NULL,
+    data TEXT,
+    op TEXT NOT NULL
+);
+
+CREATE TRIGGER IF NOT EXISTS agendamento_alteracao_ai AFTER INSERT ON agendamento BEGIN
+    INSERT INTO agenda_alteracao (agendamento_id, data, op) VALUES (new.id, new.data, 'I');
+END;
+
+CREATE TRIGGER IF NOT EXISTS agendamento_alteracao_au AFTER UPDATE ON agendamento BEGIN
+    INSERT INTO agenda_alteracao (agendamento_id, data, op) VALUES (new.id, new.data, 'U');
+END;
+
+CREATE TRIGGER IF NOT EXISTS agendamento_alteracao_ad AFTER DELETE ON agendamento BEGIN
+    INSERT INTO agenda_alteracao (agendamento_id, data, op) VALUES (old.id, old.data, 'D');
+END;
@@ -0,0 +1,3 @@
+-- Só no Postgres: função finalizar_nota (nota inteira numa ida ao banco).
+-- No SQLite o banco é local, então o NotaDAO continua com os comandos separados na mesma transação.
+-- Arquivo mantido para as duas pastas terem as mesmas versões.
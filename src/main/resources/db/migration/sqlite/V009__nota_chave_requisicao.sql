@@ -0,0 +1,5 @@
+-- Chave de idempotência da nota: gerada no cliente a cada "Finalizar" e repetida nos reenvios.
+-- O índice único garante uma nota só por chave; notas antigas ficam com NULL (não conflitam).
+ALTER TABLE nota ADD COLUMN chave_requisicao TEXT;
+
+CREATE UNIQUE INDEX IF NOT EXISTS ux_nota_chave_requisicao ON nota(chave_requisicao);
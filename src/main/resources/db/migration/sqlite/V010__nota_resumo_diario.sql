@@ -0,0 +1,35 @@
+-- Resumo financeiro das notas por dia, forma de pagamento e profissional.
+-- Os totais dos relatórios saem daqui (poucas linhas por dia) em vez de somar todas as notas do período.
+-- Mantido pelo trigger a cada nota inserida (vale para qualquer caminho do NotaDAO.salvarNota).
+CREATE TABLE IF NOT EXISTS nota_resumo_diario (
+    data TEXT NOT NULL,
+    forma_pagamento TEXT NOT NULL,
+    id_profissional INTEGER NOT NULL,
+    qtd_notas INTEGER NOT NULL DEFAULT 0,
+    total_bruto REAL NOT NULL DEFAULT 0,
+    desconto REAL NOT NULL DEFAULT 0,
+    total_liquido REAL NOT NULL DEFAULT 0,
+    PRIMARY KEY (data, forma_pagamento, id_profissional)
+);
+
+-- carga inicial com as notas que já existem
+INSERT OR IGNORE INTO nota_resumo_diario (data, forma_pagamento, id_profissional, qtd_notas, total_bruto, desconto, total_liquido)
+SELECT substr(data_hora, 1, 10), coalesce(forma_pagamento, ''), id_profissional,
+       count(*), coalesce(sum(total_bruto), 0), coalesce(sum(desconto), 0), coalesce(sum(total_liquido), 0)
+  FROM nota
+ GROUP BY substr(data_hora, 1, 10), coalesce(forma_pagamento, ''), id_profissional;
+
+-- linha zerada se ainda não existe + soma (UPSERT dentro de trigger não é aceito em versões antigas do SQLite)
+CREATE TRIGGER IF NOT EXISTS nota_resumo_diario_ai AFTER INSERT ON nota BEGIN
+    INSERT OR IGNORE INTO nota_resumo_diario (data, forma_pagamento, id_profissional)
+    VALUES (substr(new.data_hora, 1, 10), coalesce(new.forma_pagamento, ''), new.id_profissional);
+
+    UPDATE nota_resumo_diario
+       SET qtd_notas = qtd_notas + 1,
+           total_bruto = total_bruto + coalesce(new.total_bruto, 0),
+           desconto = desconto + coalesce(new.desconto, 0),
+           total_liquido = total_liquido + coalesce(new.total_liquido, 0)
+     WHERE data = substr(new.data_hora, 1, 10)
+       AND forma_pagamento = coalesce(new.forma_pagamento, '')
+       AND id_profissional = new.id_profissional;
+END;
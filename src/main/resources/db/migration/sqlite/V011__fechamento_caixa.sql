@@ -0,0 +1,45 @@
+-- Fechamento de caixa: uma linha por dia fechado com os totais e o saldo acumulado até aquele dia.
+-- O saldo de qualquer data = saldo_acumulado do último fechamento + movimentos depois dele (poucos dias),
+-- em vez de somar o movimento_caixa desde o começo.
+CREATE TABLE IF NOT EXISTS fechamento_caixa (
+    data TEXT PRIMARY KEY,
+    qtd_movimentos INTEGER NOT NULL DEFAULT 0,
+    entradas REAL NOT NULL DEFAULT 0,
+    saidas REAL NOT NULL DEFAULT 0,
+    saldo_acumulado REAL NOT NULL DEFAULT 0,
+    fechado_em TEXT NOT NULL,
+    usuario_id INTEGER
+);
+
+-- totais do dia por tipo e forma de pagamento (só os grupos que tiveram movimento)
+CREATE TABLE IF NOT EXISTS fechamento_caixa_forma (
+    data TEXT NOT NULL,
+    tipo TEXT NOT NULL,
+    forma_pagamento TEXT NOT NULL,
+    qtd_movimentos INTEGER NOT NULL DEFAULT 0,
+    valor REAL NOT NULL DEFAULT 0,
+    PRIMARY KEY (data, tipo, forma_pagamento)
+);
+
+-- dia fechado não muda mais: tudo até o último fechamento fica travado
+CREATE TRIGGER IF NOT EXISTS movimento_caixa_fechado_bi
+BEFORE INSERT ON movimento_caixa
+WHEN new.data <= (SELECT max(data) FROM fechamento_caixa)
+BEGIN
+    SELECT RAISE(ABORT, 'caixa_fechado');
+END;
+
+CREATE TRIGGER IF NOT EXISTS movimento_caixa_fechado_bu
+BEFORE UPDATE ON movimento_caixa
+WHEN old.data <= (SELECT max(data) FROM fechamento_caixa)
+  OR new.data <= (SELECT max(data) FROM fechamento_caixa)
+BEGIN
+    SELECT RAISE(ABORT, 'caixa_fechado');
+END;
+
+CREATE TRIGGER IF NOT EXISTS movimento_caixa_fechado_bd
+BEFORE DELETE ON movimento_caixa
+WHEN old.data <= (SELECT max(data) FROM fechamento_caixa)
+BEGIN
+    SELECT RAISE(ABORT, 'caixa_fechado');
+END;
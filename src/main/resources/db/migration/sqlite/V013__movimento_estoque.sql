@@ -0,0 +1,42 @@
+-- Histórico de estoque: cada entrada, ajuste e venda vira uma linha (só INSERT, nunca UPDATE/DELETE).
+-- quantidade tem sinal (+ entra, - sai). produto.estoque_atual continua sendo o saldo corrente,
+-- mas só muda por delta (estoque_atual + ?) na mesma transação da linha do histórico.
+CREATE TABLE IF NOT EXISTS movimento_estoque (
+    id INTEGER PRIMARY KEY AUTOINCREMENT,
+    produto_id INTEGER NOT NULL,
+    data_hora TEXT NOT NULL,
+    tipo TEXT NOT NULL,
+    quantidade REAL NOT NULL,
+    nota_id INTEGER,
+    usuario_id INTEGER,
+    observacao TEXT
+);
+
+CREATE INDEX IF NOT EXISTS idx_movimento_estoque_produto_data ON movimento_estoque(produto_id, data_hora);
+
+-- Saldo consolidado: saldo do produto com todos os movimentos de data_hora < ate (ate = 'YYYY-MM-DD').
+-- Saldo numa data = último snapshot até ela + movimentos depois dele (ver MovimentoEstoqueDAO).
+CREATE TABLE IF NOT EXISTS estoque_snapshot (
+    produto_id INTEGER NOT NULL,
+    ate TEXT NOT NULL,
+    saldo REAL NOT NULL,
+    qtd_movimentos INTEGER NOT NULL DEFAULT 0,
+    criado_em TEXT NOT NULL,
+    PRIMARY KEY (produto_id, ate)
+);
+
+-- carga inicial: o saldo de hoje de cada produto entra como movimento INICIAL
+INSERT INTO movimento_estoque (produto_id, data_hora, tipo, quantidade, observacao)
+SELECT id, '${agora}', 'INICIAL', estoque_atual, 'Saldo na criação do histórico'
+  FROM produto
+ WHERE estoque_atual <> 0;
+
+-- venda: cada item de produto da nota (qualquer caminho do NotaDAO.salvarNota) registra a saída
+CREATE TRIGGER IF NOT EXISTS nota_item_movimento_estoque AFTER INSERT ON nota_item
+WHEN new.tipo_item = 'PRODUTO' AND new.id_produto IS NOT NULL
+BEGIN
+    INSERT INTO movimento_estoque (produto_id, data_hora, tipo, quantidade, nota_id, usuario_id)
+    SELECT new.id_produto, substr(n.data_hora, 1, 19), 'VENDA', -new.quantidade, n.id, n.id_profissional
+      FROM nota n
+     WHERE n.id = new.id_nota;
+END;
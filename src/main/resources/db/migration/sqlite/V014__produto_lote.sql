@@ -0,0 +1,28 @@
+-- Estoque por lote: cada produto pode ter vários lotes com validades diferentes.
+-- produto.estoque_atual continua sendo o total (soma dos lotes), mantido na mesma transação.
+-- validade '9999-12-31' = lote sem validade (fica por último na ordem FEFO).
+CREATE TABLE IF NOT EXISTS produto_lote (
+    id INTEGER PRIMARY KEY AUTOINCREMENT,
+    produto_id INTEGER NOT NULL,
+    lote TEXT NOT NULL DEFAULT '',
+    validade TEXT NOT NULL DEFAULT '9999-12-31',
+    quantidade REAL NOT NULL DEFAULT 0,
+    criado_em TEXT NOT NULL
+);
+
+CREATE UNIQUE INDEX IF NOT EXISTS ux_produto_lote ON produto_lote(produto_id, lote, validade);
+
+-- FEFO: lotes com saldo do produto, já na ordem de consumo (vence primeiro, sai primeiro)
+CREATE INDEX IF NOT EXISTS idx_produto_lote_fefo ON produto_lote(produto_id, validade, id) WHERE quantidade > 0;
+
+-- relatório de validade por lote
+CREATE INDEX IF NOT EXISTS idx_produto_lote_validade ON produto_lote(validade) WHERE quantidade > 0;
+
+ALTER TABLE movimento_estoque ADD COLUMN lote_id INTEGER;
+
+-- carga inicial: o saldo atual de cada produto vira um lote com o lote/validade do cadastro
+INSERT OR IGNORE INTO produto_lote (produto_id, lote, validade, quantidade, criado_em)
+SELECT id, coalesce(lote, ''), coalesce(nullif(validade, ''), '9999-12-31'), estoque_atual,
+       '${agora}'
+  FROM produto
+ WHERE estoque_atual > 0;
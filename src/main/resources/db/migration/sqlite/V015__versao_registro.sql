@@ -0,0 +1,6 @@
+-- Controle de concorrência otimista: cada edição de cadastro confere a versão lida e soma 1.
+-- Quem salvar por cima de uma versão mais nova recebe conflito em vez de sobrescrever.
+-- (estoque_atual não entra: só muda por delta, ver V013)
+ALTER TABLE produto ADD COLUMN versao INTEGER NOT NULL DEFAULT 0;
+
+ALTER TABLE paciente ADD COLUMN versao INTEGER NOT NULL DEFAULT 0;